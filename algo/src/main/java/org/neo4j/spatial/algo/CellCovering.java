@@ -0,0 +1,420 @@
+package org.neo4j.spatial.algo;
+
+import org.neo4j.spatial.core.CRS;
+import org.neo4j.spatial.core.Point;
+import org.neo4j.spatial.core.Polygon;
+import org.neo4j.spatial.core.Vector;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Covers a polygon with the cells of a quad-tree over a rectangular frame, split into interior cells, which lie
+ * completely inside the polygon, and boundary cells, which are crossed by its edges. Every other cell of the frame is
+ * exterior. Points in interior or exterior cells are then known to be within or outside the polygon without testing
+ * the polygon, and only points in boundary cells need an exact {@link WithinCalculator#within(Polygon, Point)}.
+ * <p>
+ * Cells are subdivided breadth first while they are crossed by edges, as long as the number of cells stays below the
+ * maximum, so the covering follows long or concave boundaries closely at a bounded size. Cells left over when the
+ * maximum is reached stay boundary cells.
+ * <p>
+ * Every cell has a key, which orders the cells of a level along a Hilbert curve, with a trailing marker bit encoding
+ * the level. The keys of all cells inside a cell lie between the key of the cell plus and minus its marker bit, and
+ * the keys are the same for every polygon covered in the same frame. For WGS84 the frame is the whole world, so the
+ * cells of different polygons can be looked up together, see {@link #cellsContaining}.
+ * <p>
+ * For WGS84 the edges are great circle arcs, while the cells are ranges of longitude and latitude, so arcs are split
+ * until they are nearly straight, and every part is tested against cells widened by how far it bends away from the
+ * straight line between its ends. Polygons with edges crossing the date line are covered by a single boundary cell.
+ */
+public class CellCovering {
+    public static final int MAX_LEVEL = 30;
+    public static final double[] WGS84_FRAME = new double[]{-180, -90, 180, 90};
+
+    public enum Position {
+        INTERIOR, BOUNDARY, EXTERIOR
+    }
+
+    private final Polygon polygon;
+    private final double[] frame;
+    private final long[] interior;
+    private final long[] boundary;
+
+    /**
+     * @param polygon  the covered polygon, which is only needed by {@link #within(Point)}
+     * @param interior the sorted keys of the interior cells
+     * @param boundary the sorted keys of the boundary cells
+     */
+    public CellCovering(Polygon polygon, double[] frame, long[] interior, long[] boundary) {
+        this.polygon = polygon;
+        this.frame = frame;
+        this.interior = interior;
+        this.boundary = boundary;
+    }
+
+    /**
+     * Covers the polygon in the whole world for WGS84, or in the smallest square around the polygon for Cartesian
+     */
+    public static CellCovering cover(Polygon polygon, int maxLevel, int maxCells) {
+        return cover(polygon, defaultFrame(polygon), maxLevel, maxCells);
+    }
+
+    /**
+     * @param frame    {minX, minY, maxX, maxY} of the root cell
+     * @param maxLevel the deepest level of cells
+     * @param maxCells the number of interior and boundary cells above which no cells are subdivided any more
+     */
+    public static CellCovering cover(Polygon polygon, double[] frame, int maxLevel, int maxCells) {
+        if (maxLevel < 0 || maxLevel > MAX_LEVEL) {
+            throw new IllegalArgumentException("Level must be between 0 and " + MAX_LEVEL + ", but was " + maxLevel);
+        }
+        if (maxCells < 1) {
+            throw new IllegalArgumentException("Must allow at least one cell, but was " + maxCells);
+        }
+        // Arcs are split until they bend much less than the height of the smallest cells
+        double[] edges = edges(polygon, (frame[3] - frame[1]) / (1L << maxLevel) / 16);
+        if (edges == null) {
+            return new CellCovering(polygon, frame, new long[0], new long[]{key(0, 0, 0)});
+        }
+        double[] bounds = bounds(edges);
+
+        List<Long> interior = new ArrayList<>();
+        List<Long> boundary = new ArrayList<>();
+        List<Cell> pending = new ArrayList<>();
+        pending.add(new Cell(0, 0, 0, allEdges(edges)));
+        for (int level = 0; !pending.isEmpty(); level++) {
+            List<Cell> crossed = new ArrayList<>();
+            for (Cell cell : pending) {
+                double[] rectangle = cell.rectangle(frame);
+                if (!overlaps(rectangle, bounds)) {
+                    continue;
+                }
+                int[] crossing = cell.crossing(edges, rectangle);
+                if (crossing.length > 0) {
+                    crossed.add(new Cell(cell.level, cell.x, cell.y, crossing));
+                } else if (WithinCalculator.within(polygon, Point.point(polygon.getCRS(), (rectangle[0] + rectangle[2]) / 2, (rectangle[1] + rectangle[3]) / 2))) {
+                    interior.add(cell.key());
+                }
+            }
+            pending.clear();
+            // Subdividing a cell replaces it with up to four cells, so only as many are subdivided as fit the maximum
+            int subdivided = level == maxLevel ? 0 : Math.max(0, (maxCells - interior.size() - boundary.size() - crossed.size()) / 3);
+            for (int i = 0; i < crossed.size(); i++) {
+                if (i < subdivided) {
+                    pending.addAll(crossed.get(i).children());
+                } else {
+                    boundary.add(crossed.get(i).key());
+                }
+            }
+        }
+        return new CellCovering(polygon, frame, sorted(interior), sorted(boundary));
+    }
+
+    private static double[] defaultFrame(Polygon polygon) {
+        if (polygon.getCRS() == CRS.WGS84) {
+            return WGS84_FRAME;
+        }
+        double[] bounds = bounds(edges(polygon, 0));
+        double size = Math.max(bounds[2] - bounds[0], bounds[3] - bounds[1]);
+        // Padded, so that no vertex lies on the edge of the frame
+        double padding = Math.max(size, 1) * 1e-6;
+        return new double[]{bounds[0] - padding, bounds[1] - padding, bounds[0] + size + padding, bounds[1] + size + padding};
+    }
+
+    /**
+     * @param maxBend how far in degrees a great circle arc may bend away from the straight line between its ends, before
+     *                it is split in two
+     * @return Every edge of the polygon as {x1, y1, x2, y2, tolerance}, or null if an edge crosses the date line
+     */
+    private static double[] edges(Polygon polygon, double maxBend) {
+        List<Polygon.SimplePolygon> rings = new ArrayList<>(Arrays.asList(polygon.getShells()));
+        rings.addAll(Arrays.asList(polygon.getHoles()));
+        boolean geographic = polygon.getCRS() == CRS.WGS84;
+        Edges edges = new Edges();
+        for (Polygon.SimplePolygon ring : rings) {
+            Point[] points = ring.getPoints();
+            for (int i = 0; i < points.length - 1; i++) {
+                double[] a = points[i].getCoordinate();
+                double[] b = points[i + 1].getCoordinate();
+                if (!geographic) {
+                    edges.add(a, b, 0);
+                } else if (Math.abs(b[0] - a[0]) > 180) {
+                    return null;
+                } else {
+                    addArc(edges, a, b, maxBend);
+                }
+            }
+        }
+        return edges.toArray();
+    }
+
+    /**
+     * Adds the great circle arc as straight edges, splitting it until every part bends less than the maximum
+     */
+    private static void addArc(Edges edges, double[] a, double[] b, double maxBend) {
+        double[] middle = middle(a, b);
+        double bend = bend(a, b, middle);
+        if (bend <= maxBend) {
+            edges.add(a, b, 2 * bend + 1e-9);
+        } else {
+            addArc(edges, a, middle, maxBend);
+            addArc(edges, middle, b, maxBend);
+        }
+    }
+
+    private static double[] middle(double[] a, double[] b) {
+        return new Vector(Point.point(CRS.WGS84, a)).add(new Vector(Point.point(CRS.WGS84, b))).normalize().toPoint().getCoordinate();
+    }
+
+    /**
+     * @return How far in degrees the great circle arc between the points bends away from the straight line between
+     * them in longitude and latitude at the middle of the arc, which is about half of the largest bend
+     */
+    private static double bend(double[] a, double[] b, double[] middle) {
+        if (a[0] == b[0]) {
+            return 0;
+        }
+        double fraction = (middle[0] - a[0]) / (b[0] - a[0]);
+        double straight = a[1] + fraction * (b[1] - a[1]);
+        return Math.abs(middle[1] - straight);
+    }
+
+    private static class Edges {
+        private double[] edges = new double[5 * 64];
+        private int size = 0;
+
+        private void add(double[] a, double[] b, double tolerance) {
+            if (size + 5 > edges.length) {
+                edges = Arrays.copyOf(edges, edges.length * 2);
+            }
+            edges[size++] = a[0];
+            edges[size++] = a[1];
+            edges[size++] = b[0];
+            edges[size++] = b[1];
+            edges[size++] = tolerance;
+        }
+
+        private double[] toArray() {
+            return Arrays.copyOf(edges, size);
+        }
+    }
+
+    private static double[] bounds(double[] edges) {
+        double[] bounds = new double[]{Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY};
+        for (int i = 0; i < edges.length; i += 5) {
+            for (int end = 0; end < 4; end += 2) {
+                bounds[0] = Math.min(bounds[0], edges[i + end] - edges[i + 4]);
+                bounds[1] = Math.min(bounds[1], edges[i + end + 1] - edges[i + 4]);
+                bounds[2] = Math.max(bounds[2], edges[i + end] + edges[i + 4]);
+                bounds[3] = Math.max(bounds[3], edges[i + end + 1] + edges[i + 4]);
+            }
+        }
+        return bounds;
+    }
+
+    private static int[] allEdges(double[] edges) {
+        int[] all = new int[edges.length / 5];
+        for (int i = 0; i < all.length; i++) {
+            all[i] = i;
+        }
+        return all;
+    }
+
+    private static boolean overlaps(double[] a, double[] b) {
+        return a[0] <= b[2] && a[2] >= b[0] && a[1] <= b[3] && a[3] >= b[1];
+    }
+
+    /**
+     * @return True if the segment touches the rectangle widened by the tolerance
+     */
+    private static boolean crosses(double[] edges, int edge, double[] rectangle) {
+        double ax = edges[edge * 5], ay = edges[edge * 5 + 1], bx = edges[edge * 5 + 2], by = edges[edge * 5 + 3];
+        double tolerance = edges[edge * 5 + 4];
+        double minX = rectangle[0] - tolerance, minY = rectangle[1] - tolerance, maxX = rectangle[2] + tolerance, maxY = rectangle[3] + tolerance;
+        if (Math.max(ax, bx) < minX || Math.min(ax, bx) > maxX || Math.max(ay, by) < minY || Math.min(ay, by) > maxY) {
+            return false;
+        }
+        // The segment crosses the rectangle unless all corners are on the same side of its line
+        double dx = bx - ax;
+        double dy = by - ay;
+        double c1 = dx * (minY - ay) - dy * (minX - ax);
+        double c2 = dx * (minY - ay) - dy * (maxX - ax);
+        double c3 = dx * (maxY - ay) - dy * (maxX - ax);
+        double c4 = dx * (maxY - ay) - dy * (minX - ax);
+        return !((c1 > 0 && c2 > 0 && c3 > 0 && c4 > 0) || (c1 < 0 && c2 < 0 && c3 < 0 && c4 < 0));
+    }
+
+    private static long[] sorted(List<Long> keys) {
+        long[] sorted = keys.stream().mapToLong(Long::longValue).toArray();
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    private static class Cell {
+        private final int level;
+        private final long x;
+        private final long y;
+        private final int[] edges;
+
+        private Cell(int level, long x, long y, int[] edges) {
+            this.level = level;
+            this.x = x;
+            this.y = y;
+            this.edges = edges;
+        }
+
+        private double[] rectangle(double[] frame) {
+            double width = (frame[2] - frame[0]) / (1L << level);
+            double height = (frame[3] - frame[1]) / (1L << level);
+            return new double[]{frame[0] + x * width, frame[1] + y * height, frame[0] + (x + 1) * width, frame[1] + (y + 1) * height};
+        }
+
+        /**
+         * @return The edges of the parent that touch this cell
+         */
+        private int[] crossing(double[] allEdges, double[] rectangle) {
+            int[] crossing = new int[edges.length];
+            int count = 0;
+            for (int edge : edges) {
+                if (crosses(allEdges, edge, rectangle)) {
+                    crossing[count++] = edge;
+                }
+            }
+            return Arrays.copyOf(crossing, count);
+        }
+
+        private List<Cell> children() {
+            List<Cell> children = new ArrayList<>(4);
+            for (int child = 0; child < 4; child++) {
+                children.add(new Cell(level + 1, x * 2 + (child & 1), y * 2 + (child >> 1), edges));
+            }
+            return children;
+        }
+
+        private long key() {
+            return CellCovering.key(level, x, y);
+        }
+    }
+
+    /**
+     * @return The key of the cell at column x and row y of the level
+     */
+    public static long key(int level, long x, long y) {
+        return ((hilbert(level, x, y) << 1) | 1) << (2 * (MAX_LEVEL - level));
+    }
+
+    /**
+     * @return The level of the cell with the key
+     */
+    public static int level(long key) {
+        return MAX_LEVEL - Long.numberOfTrailingZeros(key) / 2;
+    }
+
+    /**
+     * @return The distance along the Hilbert curve that fills the level
+     */
+    private static long hilbert(int level, long x, long y) {
+        long n = 1L << level;
+        long d = 0;
+        for (long s = n / 2; s > 0; s /= 2) {
+            long rx = (x & s) > 0 ? 1 : 0;
+            long ry = (y & s) > 0 ? 1 : 0;
+            d += s * s * ((3 * rx) ^ ry);
+            if (ry == 0) {
+                if (rx == 1) {
+                    x = n - 1 - x;
+                    y = n - 1 - y;
+                }
+                long t = x;
+                x = y;
+                y = t;
+            }
+        }
+        return d;
+    }
+
+    /**
+     * @return The key of the deepest cell containing the point
+     */
+    private static long leaf(double[] frame, Point point) {
+        double[] coordinate = point.getCoordinate();
+        long size = 1L << MAX_LEVEL;
+        long x = (long) Math.floor((coordinate[0] - frame[0]) / (frame[2] - frame[0]) * size);
+        long y = (long) Math.floor((coordinate[1] - frame[1]) / (frame[3] - frame[1]) * size);
+        return key(MAX_LEVEL, Math.max(0, Math.min(size - 1, x)), Math.max(0, Math.min(size - 1, y)));
+    }
+
+    /**
+     * @param maxLevel the deepest level, which must be at least the deepest level of the coverings that are looked up,
+     *                 or the cells of theirs that are below it are not found
+     * @return The keys of the cells containing the point on every level up to the maximum level, so that the cells of
+     * many coverings in the same frame can be looked up in an index
+     */
+    public static long[] cellsContaining(double[] frame, Point point, int maxLevel) {
+        if (maxLevel < 0 || maxLevel > MAX_LEVEL) {
+            throw new IllegalArgumentException("Level must be between 0 and " + MAX_LEVEL + ", but was " + maxLevel);
+        }
+        long leaf = leaf(frame, point);
+        long[] cells = new long[maxLevel + 1];
+        for (int level = 0; level <= maxLevel; level++) {
+            long marker = 1L << (2 * (MAX_LEVEL - level));
+            cells[level] = (leaf & -(marker << 1)) | marker;
+        }
+        return cells;
+    }
+
+    /**
+     * @return Whether the point is in an interior, boundary or exterior cell
+     */
+    public Position classify(Point point) {
+        long leaf = leaf(frame, point);
+        if (contains(interior, leaf)) {
+            return Position.INTERIOR;
+        } else if (contains(boundary, leaf)) {
+            return Position.BOUNDARY;
+        }
+        return Position.EXTERIOR;
+    }
+
+    /**
+     * @return True if the point is within the polygon, testing the polygon only for points in boundary cells
+     */
+    public boolean within(Point point) {
+        switch (classify(point)) {
+            case INTERIOR:
+                return true;
+            case EXTERIOR:
+                return false;
+            default:
+                return WithinCalculator.within(polygon, point);
+        }
+    }
+
+    private static boolean contains(long[] cells, long leaf) {
+        int index = Arrays.binarySearch(cells, leaf);
+        if (index >= 0) {
+            return true;
+        }
+        int insertion = -index - 1;
+        // The cells do not overlap, so only the cells just before and after the leaf can contain it
+        return (insertion > 0 && covers(cells[insertion - 1], leaf)) || (insertion < cells.length && covers(cells[insertion], leaf));
+    }
+
+    private static boolean covers(long cell, long leaf) {
+        long marker = cell & -cell;
+        return leaf > cell - marker && leaf < cell + marker;
+    }
+
+    public double[] getFrame() {
+        return frame;
+    }
+
+    public long[] getInterior() {
+        return interior;
+    }
+
+    public long[] getBoundary() {
+        return boundary;
+    }
+}
@@ -0,0 +1,194 @@
+package org.neo4j.spatial.algo;
+
+import org.neo4j.spatial.core.LineSegment;
+import org.neo4j.spatial.core.Point;
+import org.neo4j.spatial.core.Polyline;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.IntStream;
+
+/**
+ * The length along a polyline up to every vertex, so that the point at a given distance from the start can be found
+ * with a binary search and a single {@link LinearReference#reference(LineSegment, double)}, instead of measuring every
+ * segment before it. Lengths are in the unit of the {@link Distance} calculator of the CRS, so meters for WGS84.
+ * <p>
+ * The reverse, finding the measure along the polyline of the point closest to a given point, uses a
+ * {@link SegmentBallTree} which is built the first time a point is projected.
+ */
+public class CumulativeLengthIndex {
+    private final Point[] points;
+    private final double[] lengths;
+    private final LinearReference reference;
+    private SegmentBallTree segments;
+
+    public CumulativeLengthIndex(Polyline polyline) {
+        this(polyline.getPoints());
+    }
+
+    public CumulativeLengthIndex(Point[] points) {
+        this(points, cumulativeLengths(points));
+    }
+
+    /**
+     * @param lengths previously calculated cumulative lengths, see {@link #getCumulativeLengths()}
+     */
+    public CumulativeLengthIndex(Point[] points, double[] lengths) {
+        if (points.length < 2) {
+            throw new IllegalArgumentException("Polyline cannot have less than 2 points");
+        }
+        if (lengths.length != points.length) {
+            throw new IllegalArgumentException("Expected " + points.length + " cumulative lengths, but got " + lengths.length);
+        }
+        this.points = points;
+        this.lengths = lengths;
+        this.reference = LinearReferenceCalculator.getCalculator(points[0].getCRS());
+    }
+
+    /**
+     * @return The length along the points up to every point, starting with 0
+     */
+    public static double[] cumulativeLengths(Point[] points) {
+        if (points.length == 0) {
+            return new double[0];
+        }
+        Distance calculator = DistanceCalculator.getCalculator(points[0]);
+        double[] lengths = new double[points.length];
+        for (int i = 1; i < points.length; i++) {
+            lengths[i] = lengths[i - 1] + calculator.distance(points[i - 1], points[i]);
+        }
+        return lengths;
+    }
+
+    public double[] getCumulativeLengths() {
+        return lengths;
+    }
+
+    public double length() {
+        return lengths[lengths.length - 1];
+    }
+
+    /**
+     * @return The index of the segment containing the point at distance d, so that the segment starts at or before d
+     */
+    public int segment(double d) {
+        int index = Arrays.binarySearch(lengths, d);
+        if (index < 0) {
+            index = -index - 2;
+        } else {
+            // Skip zero length segments ending at d
+            while (index + 1 < lengths.length && lengths[index + 1] == d) {
+                index++;
+            }
+        }
+        return Math.max(0, Math.min(index, lengths.length - 2));
+    }
+
+    /**
+     * @return The point at distance d along the polyline, or null if d is negative or longer than the polyline
+     */
+    public Point locate(double d) {
+        if (d < 0 || d > length()) {
+            return null;
+        }
+        return locate(segment(d), d);
+    }
+
+    /**
+     * Locate many distances in one pass along the polyline, in the order of the distances
+     *
+     * @return The points at the distances, with null for distances outside the polyline
+     */
+    public Point[] locate(double[] distances) {
+        Integer[] order = IntStream.range(0, distances.length).boxed().toArray(Integer[]::new);
+        Arrays.sort(order, Comparator.comparingDouble(i -> distances[i]));
+
+        Point[] result = new Point[distances.length];
+        int segment = 0;
+        for (int i : order) {
+            double d = distances[i];
+            if (d < 0 || d > length()) {
+                continue;
+            }
+            while (segment < lengths.length - 2 && lengths[segment + 1] <= d) {
+                segment++;
+            }
+            result[i] = locate(segment, d);
+        }
+        return result;
+    }
+
+    private Point locate(int segment, double d) {
+        double offset = d - lengths[segment];
+        double segmentLength = lengths[segment + 1] - lengths[segment];
+        if (offset >= segmentLength) {
+            return points[segment + 1];
+        }
+        Point point = reference.reference(LineSegment.lineSegment(points[segment], points[segment + 1]), offset);
+        // The segment length is measured again, and may come out just shorter than the offset
+        return point == null ? points[segment + 1] : point;
+    }
+
+    /**
+     * The closest point on the polyline to a projected point
+     */
+    public static class Projection {
+        /**
+         * The index of the segment containing the closest point
+         */
+        public final int segment;
+        /**
+         * The closest point on the polyline
+         */
+        public final Point point;
+        /**
+         * The distance along the polyline from its start to the closest point
+         */
+        public final double measure;
+        /**
+         * The distance from the projected point to the closest point
+         */
+        public final double offset;
+
+        private Projection(int segment, Point point, double measure, double offset) {
+            this.segment = segment;
+            this.point = point;
+            this.measure = measure;
+            this.offset = offset;
+        }
+    }
+
+    /**
+     * @return The closest point on the polyline, with its measure along the polyline and its distance to the point
+     */
+    public Projection project(Point point) {
+        return project(point, -1);
+    }
+
+    /**
+     * Project all points of a trace, like a GPS track following the polyline. Each point is first compared to the
+     * segment the previous point was projected to, which is usually close, so less of the polyline is searched.
+     *
+     * @return The projections, in the order of the points
+     */
+    public Projection[] project(Point[] trace) {
+        Projection[] result = new Projection[trace.length];
+        int hint = -1;
+        for (int i = 0; i < trace.length; i++) {
+            result[i] = project(trace[i], hint);
+            hint = result[i].segment;
+        }
+        return result;
+    }
+
+    private Projection project(Point point, int hint) {
+        if (segments == null) {
+            segments = new SegmentBallTree(points, lengths);
+        }
+        SegmentBallTree.Nearest nearest = segments.nearest(point, hint);
+        int segment = nearest.segment;
+        double along = DistanceCalculator.getCalculator(point).distance(points[segment], nearest.point);
+        double measure = Math.min(lengths[segment] + along, lengths[segment + 1]);
+        return new Projection(segment, nearest.point, measure, nearest.distance);
+    }
+}
@@ -0,0 +1,248 @@
+package org.neo4j.spatial.algo;
+
+import org.neo4j.spatial.core.CRS;
+import org.neo4j.spatial.core.MultiPolygon;
+import org.neo4j.spatial.core.Point;
+import org.neo4j.spatial.core.Polygon;
+
+import java.util.List;
+
+/**
+ * Computes the area, length, envelope, centroid and convex hull of a geometry in a single pass over its vertices. Only
+ * the first and previous vertex of the current part, and the points of the convex hull, are kept.
+ * <p>
+ * The area of every shell is added and the area of every hole subtracted, like {@link Area#area(MultiPolygon)}. The
+ * length includes the closing edge of every ring, so it is the perimeter of polygons. The centroid is the centroid of
+ * the area, or of the length when there is no area, for example for polylines. Points given with {@link #point(Point)}
+ * only count for the vertex count, envelope and convex hull.
+ * <p>
+ * Instances keep state, so a new one is needed for every geometry, see {@link GeometryAggregatesCalculator}.
+ */
+public abstract class GeometryAggregates implements GeometryConsumer {
+    private final CRS crs;
+    private MultiPolygon.PolygonType type;
+    private boolean inPart = false;
+    private Point first;
+    private Point previous;
+    private long vertices = 0;
+    private double length = 0;
+    private final double[] min = new double[]{Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY};
+    private final double[] max = new double[]{Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY};
+    private final OnlineConvexHull hull = new OnlineConvexHull();
+    private boolean hullProjected = true;
+
+    protected GeometryAggregates(CRS crs) {
+        this.crs = crs;
+    }
+
+    @Override
+    public void startPolygon(MultiPolygon.PolygonType type) {
+        start(type);
+        startRing();
+    }
+
+    @Override
+    public void startPolyline() {
+        start(null);
+    }
+
+    private void start(MultiPolygon.PolygonType type) {
+        if (inPart) {
+            throw new IllegalStateException("Cannot start a new part before the previous part has ended");
+        }
+        this.inPart = true;
+        this.type = type;
+        this.first = null;
+        this.previous = null;
+        hull.startPart();
+    }
+
+    @Override
+    public void vertex(Point point) {
+        if (!inPart) {
+            throw new IllegalStateException("Vertices must be given between the start and end of a part");
+        }
+        if (point.getCRS() != crs) {
+            throw new IllegalArgumentException("Cannot aggregate points of different CRS: " + crs + " != " + point.getCRS());
+        }
+        double[] coordinate = point.getCoordinate();
+        for (int i = 0; i < 2; i++) {
+            min[i] = Math.min(min[i], coordinate[i]);
+            max[i] = Math.max(max[i], coordinate[i]);
+        }
+        vertices++;
+        if (type != MultiPolygon.PolygonType.HOLE) {
+            // Holes are inside the shells, so they cannot change the hull
+            double[] planar = project(point);
+            if (planar != null) {
+                hull.add(planar, point);
+            }
+        }
+        if (previous == null) {
+            first = point;
+        } else {
+            edge(previous, point);
+        }
+        previous = point;
+    }
+
+    /**
+     * Adds a point that is not part of a polygon or polyline, for example one of many aggregated points. Points can be
+     * given in any order, and only the points of the convex hull and a bounded batch of points are kept.
+     */
+    public void point(Point point) {
+        if (inPart) {
+            throw new IllegalStateException("Points cannot be given between the start and end of a part");
+        }
+        if (point.getCRS() != crs) {
+            throw new IllegalArgumentException("Cannot aggregate points of different CRS: " + crs + " != " + point.getCRS());
+        }
+        double[] coordinate = point.getCoordinate();
+        for (int i = 0; i < 2; i++) {
+            min[i] = Math.min(min[i], coordinate[i]);
+            max[i] = Math.max(max[i], coordinate[i]);
+        }
+        vertices++;
+        double[] planar = project(point);
+        if (planar != null) {
+            hull.addPoint(planar, point);
+        }
+    }
+
+    /**
+     * @return The planar coordinate of the point for the hull, after moving the projection if the point does not fit
+     * the current one, or null if there is no projection in which all points fit
+     */
+    private double[] project(Point point) {
+        if (!hullProjected) {
+            return null;
+        }
+        double[] planar = planar(point);
+        if (planar == null) {
+            List<Point> points = hull.getPoints();
+            points.add(point);
+            if (recenter(points)) {
+                hull.reproject(this::planar);
+                planar = planar(point);
+            }
+        }
+        hullProjected = planar != null;
+        return planar;
+    }
+
+    private void edge(Point from, Point to) {
+        length += distance(from, to);
+        if (type == null) {
+            lineEdge(from, to);
+        } else {
+            ringEdge(from, to);
+        }
+    }
+
+    @Override
+    public void end() {
+        if (!inPart) {
+            throw new IllegalStateException("Cannot end a part that was not started");
+        }
+        inPart = false;
+        if (type != null) {
+            if (previous != null && !AlgoUtil.equal(previous.getCoordinate(), first.getCoordinate())) {
+                edge(previous, first);
+            } else if (previous != first) {
+                // The ring repeated its first vertex, which is not counted twice
+                vertices--;
+            }
+            endRing(type == MultiPolygon.PolygonType.HOLE);
+        }
+        hull.endPart();
+    }
+
+    /**
+     * Starts accumulating the area of a ring
+     */
+    protected abstract void startRing();
+
+    /**
+     * Accumulates the area and centroid of a ring, and of its closing edge if the ring did not repeat its first vertex
+     */
+    protected abstract void ringEdge(Point from, Point to);
+
+    /**
+     * Adds the area and centroid of the ring, whatever its orientation, to the totals, or subtracts them for a hole
+     */
+    protected abstract void endRing(boolean hole);
+
+    /**
+     * Accumulates the length weighted centroid of a polyline edge
+     */
+    protected abstract void lineEdge(Point from, Point to);
+
+    protected abstract double distance(Point from, Point to);
+
+    /**
+     * @return The coordinate of the point in a plane in which the convex hull can be computed, or null if the point
+     * does not fit the current projection, see {@link #recenter(List)}
+     */
+    protected abstract double[] planar(Point point);
+
+    /**
+     * Moves the projection of {@link #planar(Point)} so that all the points fit it. The projection must keep the
+     * orientation of the plane, and lines that are straight in one projection must be straight in the other.
+     *
+     * @param points all points the hull is made of so far, and the point that did not fit
+     * @return False if there is no projection that all the points fit, which makes the convex hull unavailable
+     */
+    protected boolean recenter(List<Point> points) {
+        return false;
+    }
+
+    /**
+     * @return The area of the shells minus the area of the holes
+     */
+    public abstract double getArea();
+
+    /**
+     * @return The length of all edges, including the closing edges of rings
+     */
+    public double getLength() {
+        return length;
+    }
+
+    /**
+     * @return The number of distinct vertices, so a ring that repeats its first vertex at the end counts it once
+     */
+    public long getVertexCount() {
+        return vertices;
+    }
+
+    public Point getMin() {
+        return vertices == 0 ? null : Point.point(crs, min[0], min[1]);
+    }
+
+    public Point getMax() {
+        return vertices == 0 ? null : Point.point(crs, max[0], max[1]);
+    }
+
+    /**
+     * @return The centroid of the rings, or if they have no area, of the edges, or null if there are no edges
+     */
+    public abstract Point getCentroid();
+
+    /**
+     * @return The convex hull of the shells, polylines and points
+     */
+    public Polygon.SimplePolygon getConvexHull() {
+        if (!hullProjected) {
+            throw new IllegalArgumentException("Points do not lie all on the same hemisphere");
+        }
+        Point[] points = hull.getHull();
+        if (points.length < 3) {
+            throw new IllegalStateException("Cannot make a convex hull of less than 3 points that are not on a line");
+        }
+        return Polygon.simple(points);
+    }
+
+    public CRS getCRS() {
+        return crs;
+    }
+}
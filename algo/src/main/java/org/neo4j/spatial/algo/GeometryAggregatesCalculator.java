@@ -0,0 +1,23 @@
+package org.neo4j.spatial.algo;
+
+import org.neo4j.spatial.algo.cartesian.CartesianGeometryAggregates;
+import org.neo4j.spatial.algo.wgs84.WGS84GeometryAggregates;
+import org.neo4j.spatial.core.CRS;
+import org.neo4j.spatial.core.HasCRS;
+
+public class GeometryAggregatesCalculator {
+    /**
+     * Unlike the other calculators, this returns a new instance on every call, since the aggregates keep state
+     */
+    public static GeometryAggregates getCalculator(HasCRS geometry) {
+        return getCalculator(geometry.getCRS());
+    }
+
+    public static GeometryAggregates getCalculator(CRS crs) {
+        if (crs == CRS.Cartesian) {
+            return new CartesianGeometryAggregates();
+        } else {
+            return new WGS84GeometryAggregates();
+        }
+    }
+}
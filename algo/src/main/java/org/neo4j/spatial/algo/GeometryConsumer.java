@@ -0,0 +1,80 @@
+package org.neo4j.spatial.algo;
+
+import org.neo4j.spatial.core.MultiPolygon;
+import org.neo4j.spatial.core.MultiPolyline;
+import org.neo4j.spatial.core.Point;
+import org.neo4j.spatial.core.Polygon;
+import org.neo4j.spatial.core.Polyline;
+
+import java.util.Iterator;
+
+/**
+ * Receives the vertices of a geometry one at a time, so that algorithms can run in a single pass over geometries that
+ * are read while they are traversed, without the points of a whole ring being held in memory.
+ * <p>
+ * Every ring of a polygon and every polyline is one part, given as {@link #startPolygon} or {@link #startPolyline},
+ * followed by its vertices and {@link #end()}.
+ */
+public interface GeometryConsumer {
+    /**
+     * Starts a ring of a polygon. The ring may or may not repeat its first vertex at the end.
+     */
+    void startPolygon(MultiPolygon.PolygonType type);
+
+    void startPolyline();
+
+    void vertex(Point point);
+
+    /**
+     * Ends the current ring or polyline
+     */
+    void end();
+
+    /**
+     * Passes all rings of the multipolygon to the consumer, using {@link Polygon.SimplePolygon#vertices()}
+     *
+     * @return The consumer
+     */
+    static <T extends GeometryConsumer> T consume(MultiPolygon multiPolygon, T consumer) {
+        for (MultiPolygon.MultiPolygonNode child : multiPolygon.getChildren()) {
+            consume(child.getPolygon(), child.getType(), consumer);
+            consume(child, consumer);
+        }
+        return consumer;
+    }
+
+    /**
+     * @return The consumer
+     */
+    static <T extends GeometryConsumer> T consume(Polygon.SimplePolygon polygon, MultiPolygon.PolygonType type, T consumer) {
+        consumer.startPolygon(type);
+        consumeVertices(polygon.vertices(), consumer);
+        return consumer;
+    }
+
+    /**
+     * @return The consumer
+     */
+    static <T extends GeometryConsumer> T consume(MultiPolyline multiPolyline, T consumer) {
+        for (Polyline polyline : multiPolyline.getChildren()) {
+            consume(polyline, consumer);
+        }
+        return consumer;
+    }
+
+    /**
+     * @return The consumer
+     */
+    static <T extends GeometryConsumer> T consume(Polyline polyline, T consumer) {
+        consumer.startPolyline();
+        consumeVertices(polyline.vertices(), consumer);
+        return consumer;
+    }
+
+    private static void consumeVertices(Iterator<Point> vertices, GeometryConsumer consumer) {
+        while (vertices.hasNext()) {
+            consumer.vertex(vertices.next());
+        }
+        consumer.end();
+    }
+}
@@ -3,6 +3,7 @@ package org.neo4j.spatial.algo;
 import org.neo4j.spatial.core.*;
 
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 
 public abstract class LinearReference {
@@ -21,16 +22,16 @@ public abstract class LinearReference {
         List<Point> points = new ArrayList<>();
         Distance calculator = DistanceCalculator.getCalculator(getCRS());
 
-        polygon.startTraversal(start, direction);
-        Point previous = polygon.getNextPoint();
+        Iterator<Point> vertices = polygon.vertices(start, direction);
+        Point previous = vertices.next();
         points.add(previous);
         while (d > 0) {
-            if (polygon.fullyTraversed()) {
-                polygon.startTraversal(start, direction);
-                polygon.getNextPoint();//Skip start/end point
+            if (!vertices.hasNext()) {
+                vertices = polygon.vertices(start, direction);
+                vertices.next();//Skip start/end point
             }
 
-            Point current = polygon.getNextPoint();
+            Point current = vertices.next();
             double length = calculator.distance(previous, current);
 
             if (length < d) {
@@ -64,11 +65,11 @@ public abstract class LinearReference {
         List<Point> points = new ArrayList<>();
         Distance calculator = DistanceCalculator.getCalculator(start);
 
-        polyline.startTraversal(start, direction);
-        Point previous = polyline.getNextPoint();
+        Iterator<Point> vertices = polyline.vertices(start, direction);
+        Point previous = vertices.next();
         points.add(previous);
-        while (d > 0 && !polyline.fullyTraversed()) {
-            Point current = polyline.getNextPoint();
+        while (d > 0 && vertices.hasNext()) {
+            Point current = vertices.next();
             double length = calculator.distance(previous, current);
 
             if (length < d) {
@@ -101,6 +102,15 @@ public abstract class LinearReference {
      */
     public abstract Point reference(LineSegment lineSegment, double d);
 
+    /**
+     * Finds the point on the line segment which is closest to the given point.
+     *
+     * @param lineSegment
+     * @param point
+     * @return The closest point, which is an end point of the line segment if the point lies beyond that end
+     */
+    public abstract Point project(LineSegment lineSegment, Point point);
+
     /**
      * Finds the point on the line segment between the given points which is distance d from a
      *
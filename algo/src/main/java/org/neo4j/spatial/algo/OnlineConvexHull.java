@@ -0,0 +1,244 @@
+package org.neo4j.spatial.algo;
+
+import org.neo4j.spatial.algo.cartesian.CartesianConvexHull;
+import org.neo4j.spatial.core.Point;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * The convex hull of points that are added one at a time, keeping only the points of the hull.
+ * <p>
+ * The vertices of every part are added in order, and the hull of a part is kept with Melkman's algorithm, which is
+ * linear, but only correct when the part is a simple polyline or ring. When a part ends, its hull is merged into the
+ * hull of the earlier parts with Graham's scan.
+ * <p>
+ * Points that are not part of a polyline or ring can be added in any order. They are collected in a batch, which is
+ * merged into the hull with Graham's scan whenever it grows larger than the hull, so only the hull and one batch are
+ * kept however many points are added.
+ * <p>
+ * The hull is computed on planar coordinates given with every point, so that geographic points can be added in a
+ * projection where great circles are straight lines. The projection can be changed with {@link #reproject}, as long as
+ * it keeps straight lines straight and the orientation of the plane.
+ */
+public class OnlineConvexHull {
+    private static final int MIN_BATCH_SIZE = 1024;
+
+    private final List<double[]> hullCoordinates = new ArrayList<>();
+    private final List<Point> hullPoints = new ArrayList<>();
+
+    // Melkman's deque of the current part, with the last point at both ends
+    private double[][] coordinates = new double[16][];
+    private Point[] points = new Point[16];
+    private int bottom;
+    private int top;
+    private boolean started;
+
+    // The first points of the current part, until they are not collinear
+    private final List<double[]> startCoordinates = new ArrayList<>();
+    private final List<Point> startPoints = new ArrayList<>();
+
+    // Points of ended parts, or added in any order, not yet merged into the hull
+    private final List<double[]> batchCoordinates = new ArrayList<>();
+    private final List<Point> batchPoints = new ArrayList<>();
+
+    public void startPart() {
+        started = false;
+        startCoordinates.clear();
+        startPoints.clear();
+    }
+
+    /**
+     * @param coordinate the planar coordinate of the point
+     */
+    public void add(double[] coordinate, Point point) {
+        if (started) {
+            addToDeque(coordinate, point);
+            return;
+        }
+        if (startCoordinates.isEmpty()) {
+            startCoordinates.add(coordinate);
+            startPoints.add(point);
+            return;
+        }
+        double[] first = startCoordinates.get(0);
+        double[] last = startCoordinates.get(startCoordinates.size() - 1);
+        if (startCoordinates.size() == 1) {
+            if (!AlgoUtil.equal(first, coordinate)) {
+                startCoordinates.add(coordinate);
+                startPoints.add(point);
+            }
+            return;
+        }
+        if (AlgoUtil.ccw(first, last, coordinate) == 0) {
+            // Of collinear points, only the two extremes are needed, found by the projection onto first to last
+            double dx = last[0] - first[0];
+            double dy = last[1] - first[1];
+            double projection = ((coordinate[0] - first[0]) * dx + (coordinate[1] - first[1]) * dy) / (dx * dx + dy * dy);
+            if (projection > 1) {
+                startCoordinates.set(1, coordinate);
+                startPoints.set(1, point);
+            } else if (projection < 0) {
+                startCoordinates.set(0, coordinate);
+                startPoints.set(0, point);
+            }
+            return;
+        }
+        bottom = coordinates.length / 2;
+        top = bottom - 1;
+        if (AlgoUtil.ccw(first, last, coordinate) > 0) {
+            pushTop(coordinate, point);
+            pushTop(first, startPoints.get(0));
+            pushTop(last, startPoints.get(1));
+        } else {
+            pushTop(coordinate, point);
+            pushTop(last, startPoints.get(1));
+            pushTop(first, startPoints.get(0));
+        }
+        pushTop(coordinate, point);
+        started = true;
+    }
+
+    private void addToDeque(double[] c, Point point) {
+        if (AlgoUtil.ccw(coordinates[top - 1], coordinates[top], c) > 0 && AlgoUtil.ccw(coordinates[bottom], coordinates[bottom + 1], c) > 0) {
+            return;
+        }
+        while (top - bottom > 1 && AlgoUtil.ccw(coordinates[top - 1], coordinates[top], c) <= 0) {
+            top--;
+        }
+        pushTop(c, point);
+        while (top - bottom > 1 && AlgoUtil.ccw(c, coordinates[bottom], coordinates[bottom + 1]) <= 0) {
+            bottom++;
+        }
+        pushBottom(c, point);
+    }
+
+    private void pushTop(double[] c, Point point) {
+        if (top + 1 == coordinates.length) {
+            recenter();
+        }
+        top++;
+        coordinates[top] = c;
+        points[top] = point;
+    }
+
+    private void pushBottom(double[] c, Point point) {
+        if (bottom == 0) {
+            recenter();
+        }
+        bottom--;
+        coordinates[bottom] = c;
+        points[bottom] = point;
+    }
+
+    private void recenter() {
+        int size = top - bottom + 1;
+        int capacity = Math.max(coordinates.length, size * 4);
+        double[][] movedCoordinates = new double[capacity][];
+        Point[] movedPoints = new Point[capacity];
+        int from = (capacity - size) / 2;
+        System.arraycopy(coordinates, bottom, movedCoordinates, from, size);
+        System.arraycopy(points, bottom, movedPoints, from, size);
+        coordinates = movedCoordinates;
+        points = movedPoints;
+        bottom = from;
+        top = from + size - 1;
+    }
+
+    /**
+     * Merges the hull of the current part into the hull of the earlier parts
+     */
+    public void endPart() {
+        if (started) {
+            for (int i = bottom; i < top; i++) {
+                batchCoordinates.add(coordinates[i]);
+                batchPoints.add(points[i]);
+            }
+        } else {
+            batchCoordinates.addAll(startCoordinates);
+            batchPoints.addAll(startPoints);
+        }
+        startPart();
+        merge();
+    }
+
+    /**
+     * Adds a point that is not part of a polyline or ring
+     *
+     * @param coordinate the planar coordinate of the point
+     */
+    public void addPoint(double[] coordinate, Point point) {
+        batchCoordinates.add(coordinate);
+        batchPoints.add(point);
+        if (batchCoordinates.size() >= Math.max(MIN_BATCH_SIZE, hullCoordinates.size())) {
+            merge();
+        }
+    }
+
+    private void merge() {
+        if (batchCoordinates.isEmpty()) {
+            return;
+        }
+        hullCoordinates.addAll(batchCoordinates);
+        hullPoints.addAll(batchPoints);
+        batchCoordinates.clear();
+        batchPoints.clear();
+        if (hullCoordinates.size() > 2) {
+            int[] hull = CartesianConvexHull.convexHullByIndex(hullCoordinates.toArray(new double[0][]));
+            List<double[]> mergedCoordinates = new ArrayList<>(hull.length);
+            List<Point> mergedPoints = new ArrayList<>(hull.length);
+            for (int index : hull) {
+                mergedCoordinates.add(hullCoordinates.get(index));
+                mergedPoints.add(hullPoints.get(index));
+            }
+            hullCoordinates.clear();
+            hullCoordinates.addAll(mergedCoordinates);
+            hullPoints.clear();
+            hullPoints.addAll(mergedPoints);
+        }
+    }
+
+    /**
+     * @return All points that are kept, which are the points the hull of everything added so far is made of
+     */
+    public List<Point> getPoints() {
+        List<Point> kept = new ArrayList<>(hullPoints);
+        kept.addAll(batchPoints);
+        kept.addAll(startPoints);
+        if (started) {
+            for (int i = bottom; i < top; i++) {
+                kept.add(points[i]);
+            }
+        }
+        return kept;
+    }
+
+    /**
+     * Replaces the planar coordinates of all kept points
+     */
+    public void reproject(Function<Point, double[]> projection) {
+        reproject(hullCoordinates, hullPoints, projection);
+        reproject(batchCoordinates, batchPoints, projection);
+        reproject(startCoordinates, startPoints, projection);
+        if (started) {
+            for (int i = bottom; i <= top; i++) {
+                coordinates[i] = projection.apply(points[i]);
+            }
+        }
+    }
+
+    private static void reproject(List<double[]> coordinates, List<Point> points, Function<Point, double[]> projection) {
+        for (int i = 0; i < points.size(); i++) {
+            coordinates.set(i, projection.apply(points.get(i)));
+        }
+    }
+
+    /**
+     * @return The points of the hull of all ended parts and added points, counter-clockwise in the planar coordinates
+     */
+    public Point[] getHull() {
+        merge();
+        return hullPoints.toArray(new Point[0]);
+    }
+}
@@ -0,0 +1,189 @@
+package org.neo4j.spatial.algo;
+
+import org.neo4j.spatial.core.*;
+
+import java.util.Arrays;
+
+/**
+ * A polygon stored at several levels of detail, where level 0 is the full resolution polygon and every coarser level
+ * is a simplification with a known tolerance. Since a Douglas-Peucker simplification never moves the boundary further
+ * than its tolerance, a predicate can be answered at a coarse level whenever the query geometry is further than the
+ * tolerance from the coarse boundary. Only when the answer is ambiguous is the next finer level loaded.
+ * <p>
+ * For geographic polygons the tolerance bound holds for the short edges found in real data, but is not exact for
+ * very long edges where the great circle arcs of the simplified and original polygon diverge.
+ */
+public class PolygonPyramid {
+    /**
+     * Loads the polygon at the given level, where 0 is the full resolution
+     */
+    public interface LevelLoader {
+        Polygon load(int level);
+    }
+
+    private final double[] tolerances;
+    private final Polygon[] levels;
+    private final LevelLoader loader;
+    private int loadCount;
+
+    /**
+     * @param tolerances the tolerance of each coarser level, in increasing order. Level i has tolerance tolerances[i-1].
+     * @param loader     loads the polygon at a level the first time it is needed
+     */
+    public PolygonPyramid(double[] tolerances, LevelLoader loader) {
+        for (int i = 0; i < tolerances.length; i++) {
+            if (tolerances[i] < 0 || (i > 0 && tolerances[i] < tolerances[i - 1])) {
+                throw new IllegalArgumentException("Tolerances must be positive and increasing, but were: " + Arrays.toString(tolerances));
+            }
+        }
+        this.tolerances = new double[tolerances.length + 1];
+        System.arraycopy(tolerances, 0, this.tolerances, 1, tolerances.length);
+        this.levels = new Polygon[this.tolerances.length];
+        this.loader = loader;
+    }
+
+    /**
+     * Build all levels in memory by simplifying the given polygon
+     */
+    public static PolygonPyramid build(Polygon polygon, double... tolerances) {
+        Simplify simplify = SimplifyCalculator.getCalculator(polygon);
+        return new PolygonPyramid(tolerances, level -> {
+            if (level == 0) {
+                return polygon;
+            } else if (polygon instanceof MultiPolygon) {
+                return simplify.simplify((MultiPolygon) polygon, tolerances[level - 1]);
+            } else {
+                return simplify.simplify((Polygon.SimplePolygon) polygon, tolerances[level - 1]);
+            }
+        });
+    }
+
+    public int getLevelCount() {
+        return levels.length;
+    }
+
+    public double getTolerance(int level) {
+        return tolerances[level];
+    }
+
+    public Polygon getLevel(int level) {
+        if (levels[level] == null) {
+            levels[level] = loader.load(level);
+            loadCount++;
+        }
+        return levels[level];
+    }
+
+    /**
+     * @return The number of levels loaded so far
+     */
+    public int getLoadCount() {
+        return loadCount;
+    }
+
+    /**
+     * @param point
+     * @return True iff the point is within the full resolution polygon
+     */
+    public boolean within(Point point) {
+        for (int level = levels.length - 1; level > 0; level--) {
+            Polygon polygon = getLevel(level);
+            if (boundaryDistance(polygon, point) > tolerances[level]) {
+                return WithinCalculator.within(polygon, point);
+            }
+        }
+        return WithinCalculator.within(getLevel(0), point);
+    }
+
+    /**
+     * @param point
+     * @param distance
+     * @return True iff the point is within the given distance of the full resolution polygon, including its interior
+     */
+    public boolean withinDistance(Point point, double distance) {
+        for (int level = levels.length - 1; level > 0; level--) {
+            Polygon polygon = getLevel(level);
+            double tolerance = tolerances[level];
+            double boundaryDistance = boundaryDistance(polygon, point);
+            if (boundaryDistance + tolerance <= distance) {
+                return true;
+            }
+            if (boundaryDistance > tolerance) {
+                // The point is on the same side of the boundary at all finer levels
+                if (WithinCalculator.within(polygon, point)) {
+                    return true;
+                } else if (boundaryDistance - tolerance > distance) {
+                    return false;
+                }
+            }
+        }
+        Polygon polygon = getLevel(0);
+        return WithinCalculator.within(polygon, point) || boundaryDistance(polygon, point) <= distance;
+    }
+
+    /**
+     * @param polyline
+     * @return True iff the polyline touches the full resolution polygon, either crossing its boundary or lying inside it
+     */
+    public boolean intersects(Polyline polyline) {
+        LineSegment[] other = polyline.toLineSegments();
+        for (int level = levels.length - 1; level > 0; level--) {
+            Polygon polygon = getLevel(level);
+            if (boundaryDistance(polygon, other) > tolerances[level]) {
+                // No finer boundary can cross the polyline, so it is either completely inside or completely outside
+                return WithinCalculator.within(polygon, polyline.getPoints()[0]);
+            }
+        }
+        Polygon polygon = getLevel(0);
+        return IntersectCalculator.getCalculator(polygon).doesIntersect(polygon, polyline) || WithinCalculator.within(polygon, polyline.getPoints()[0]);
+    }
+
+    /**
+     * @param other
+     * @return True iff the other polygon overlaps the full resolution polygon, including when one contains the other
+     */
+    public boolean intersects(Polygon other) {
+        LineSegment[] otherSegments = other.toLineSegments();
+        Point otherPoint = other.getShells()[0].getPoints()[0];
+        for (int level = levels.length - 1; level > 0; level--) {
+            Polygon polygon = getLevel(level);
+            if (boundaryDistance(polygon, otherSegments) > tolerances[level]) {
+                // No finer boundary can cross the other boundary, so they overlap only by containment
+                return WithinCalculator.within(polygon, otherPoint) || WithinCalculator.within(other, polygon.getShells()[0].getPoints()[0]);
+            }
+        }
+        Polygon polygon = getLevel(0);
+        return IntersectCalculator.getCalculator(polygon).doesIntersect(polygon, other)
+                || WithinCalculator.within(polygon, otherPoint)
+                || WithinCalculator.within(other, polygon.getShells()[0].getPoints()[0]);
+    }
+
+    private static double boundaryDistance(Polygon polygon, Point point) {
+        Distance calculator = DistanceCalculator.getCalculator(polygon.getCRS());
+        double minDistance = Double.MAX_VALUE;
+        for (LineSegment segment : polygon.toLineSegments()) {
+            double current = calculator.distance(segment, point);
+            // Degenerate segments can give NaN, which must never count as far away
+            if (Double.isNaN(current)) {
+                return 0;
+            }
+            minDistance = Math.min(minDistance, current);
+        }
+        return minDistance;
+    }
+
+    private static double boundaryDistance(Polygon polygon, LineSegment[] other) {
+        Distance calculator = DistanceCalculator.getCalculator(polygon.getCRS());
+        double minDistance = Double.MAX_VALUE;
+        for (LineSegment segment : polygon.toLineSegments()) {
+            for (LineSegment otherSegment : other) {
+                double current = calculator.distance(segment, otherSegment);
+                if (Double.isNaN(current)) {
+                    return 0;
+                }
+                minDistance = Math.min(minDistance, current);
+            }
+        }
+        return minDistance;
+    }
+}
@@ -0,0 +1,184 @@
+package org.neo4j.spatial.algo;
+
+import org.neo4j.spatial.algo.wgs84.WGSUtil;
+import org.neo4j.spatial.core.CRS;
+import org.neo4j.spatial.core.EnvelopeTree;
+import org.neo4j.spatial.core.HasCRS;
+import org.neo4j.spatial.core.LineSegment;
+import org.neo4j.spatial.core.Point;
+import org.neo4j.spatial.core.Polygon;
+
+/**
+ * A polygon analyzed once for many point in polygon tests, giving the same results as
+ * {@link WithinCalculator#within(Polygon, Point)}. The edges of all rings are packed into a single array, and indexed
+ * in an {@link EnvelopeTree}, so that every test only looks at the edges the ray from the point can cross, instead of
+ * all edges.
+ * <p>
+ * For Cartesian the ray runs in the direction of positive x, so only edges with a y range containing the point, and
+ * ending to the right of it, are tested. Points outside the envelope of the polygon are not tested at all. For WGS84
+ * the ray is the meridian from the point to the north pole, so only edges with a longitude range containing the point
+ * are tested, and whether a ring contains a pole is found once for every ring.
+ * <p>
+ * Polygons prepared with {@link #preparePlanar(Polygon.SimplePolygon)} are tested like Cartesian polygons whatever
+ * their CRS, giving the same results as {@link org.neo4j.spatial.algo.cartesian.CartesianWithin}.
+ */
+public class PreparedPolygon implements HasCRS {
+    private final CRS crs;
+    private final boolean planar;
+    private final double[] envelope;
+    private final double[] edges;
+    private final int[] edgeRings;
+    private final boolean[] holes;
+    private final boolean containsPole;
+    private final EnvelopeTree index;
+    private final int vertexCount;
+
+    private PreparedPolygon(CRS crs, boolean planar, Polygon.SimplePolygon[] shells, Polygon.SimplePolygon[] holes) {
+        this.crs = crs;
+        this.planar = planar;
+        int ringCount = shells.length + holes.length;
+        Point[][] rings = new Point[ringCount][];
+        this.holes = new boolean[ringCount];
+        int edgeCount = 0;
+        int vertices = 0;
+        boolean pole = false;
+        for (int ring = 0; ring < ringCount; ring++) {
+            this.holes[ring] = ring >= shells.length;
+            rings[ring] = (ring < shells.length ? shells[ring] : holes[ring - shells.length]).getPoints();
+            vertices += rings[ring].length;
+            // Cartesian tests also use the edge from the last point to the first, while WGS84 tests do not
+            edgeCount += planar ? rings[ring].length : rings[ring].length - 1;
+            if (!planar) {
+                double courseDelta = WGSUtil.courseDelta(rings[ring]);
+                pole |= courseDelta <= 270 && courseDelta >= -270;
+            }
+        }
+        this.vertexCount = vertices;
+        this.containsPole = pole;
+        this.edges = new double[edgeCount * 4];
+        this.edgeRings = new int[edgeCount];
+        this.envelope = new double[]{Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY};
+        int edge = 0;
+        for (int ring = 0; ring < ringCount; ring++) {
+            Point[] points = rings[ring];
+            for (int i = planar ? 0 : 1; i < points.length; i++) {
+                double[] a = points[i == 0 ? points.length - 1 : i - 1].getCoordinate();
+                double[] b = points[i].getCoordinate();
+                System.arraycopy(a, 0, edges, edge * 4, 2);
+                System.arraycopy(b, 0, edges, edge * 4 + 2, 2);
+                edgeRings[edge++] = ring;
+                envelope[0] = Math.min(envelope[0], b[0]);
+                envelope[1] = Math.min(envelope[1], b[1]);
+                envelope[2] = Math.max(envelope[2], b[0]);
+                envelope[3] = Math.max(envelope[3], b[1]);
+            }
+        }
+        this.index = new EnvelopeTree(rayEnvelopes());
+    }
+
+    public static PreparedPolygon prepare(Polygon polygon) {
+        return new PreparedPolygon(polygon.getCRS(), polygon.getCRS() == CRS.Cartesian, polygon.getShells(), polygon.getHoles());
+    }
+
+    public static PreparedPolygon prepare(Polygon.SimplePolygon polygon) {
+        return new PreparedPolygon(polygon.getCRS(), polygon.getCRS() == CRS.Cartesian, new Polygon.SimplePolygon[]{polygon}, new Polygon.SimplePolygon[0]);
+    }
+
+    /**
+     * @return The polygon prepared with straight edges between the coordinates, also for geographic polygons
+     */
+    public static PreparedPolygon preparePlanar(Polygon.SimplePolygon polygon) {
+        return new PreparedPolygon(polygon.getCRS(), true, new Polygon.SimplePolygon[]{polygon}, new Polygon.SimplePolygon[0]);
+    }
+
+    /**
+     * @return For every edge, the envelope of all points whose ray can cross it
+     */
+    private double[] rayEnvelopes() {
+        int edgeCount = edgeRings.length;
+        double[] envelopes = new double[edgeCount * 4];
+        for (int edge = 0; edge < edgeCount; edge++) {
+            double x1 = edges[edge * 4], y1 = edges[edge * 4 + 1], x2 = edges[edge * 4 + 2], y2 = edges[edge * 4 + 3];
+            if (planar) {
+                envelopes[edge * 4] = envelope[0];
+                envelopes[edge * 4 + 1] = Math.min(y1, y2);
+                envelopes[edge * 4 + 2] = Math.max(x1, x2);
+                envelopes[edge * 4 + 3] = Math.max(y1, y2);
+            } else if (Math.abs(x2 - x1) >= 180) {
+                // Edges across the date line or over a pole can cross the meridian of any point
+                envelopes[edge * 4] = -180;
+                envelopes[edge * 4 + 1] = -90;
+                envelopes[edge * 4 + 2] = 180;
+                envelopes[edge * 4 + 3] = 90;
+            } else {
+                // Great circle arcs can bend past the latitudes of their ends, so only the longitudes limit the edge
+                envelopes[edge * 4] = Math.min(x1, x2);
+                envelopes[edge * 4 + 1] = -90;
+                envelopes[edge * 4 + 2] = Math.max(x1, x2);
+                envelopes[edge * 4 + 3] = 90;
+            }
+        }
+        return envelopes;
+    }
+
+    /**
+     * @return True if the point is within more shells than holes, as for {@link WithinCalculator#within(Polygon, Point)}
+     */
+    public boolean within(Point point) {
+        double x = point.getCoordinate()[0];
+        double y = point.getCoordinate()[1];
+        if (planar && (x < envelope[0] || x > envelope[2] || y < envelope[1] || y > envelope[3])) {
+            return false;
+        }
+        if (containsPole) {
+            throw new IllegalArgumentException("Polygon contains at least one pole");
+        }
+        boolean[] inside = new boolean[holes.length];
+        if (planar) {
+            index.containing(x, y, x, y, edge -> {
+                double xi = edges[edge * 4 + 2], yi = edges[edge * 4 + 3], xj = edges[edge * 4], yj = edges[edge * 4 + 1];
+                if ((yi > y) != (yj > y) && (x < (xj - xi) * (y - yi) / (yj - yi) + xi)) {
+                    inside[edgeRings[edge]] = !inside[edgeRings[edge]];
+                }
+            });
+        } else {
+            LineSegment meridian = LineSegment.lineSegment(point, Point.point(CRS.WGS84, x, 90));
+            index.containing(x, y, x, y, edge -> {
+                Point a = Point.point(CRS.WGS84, edges[edge * 4], edges[edge * 4 + 1]);
+                Point b = Point.point(CRS.WGS84, edges[edge * 4 + 2], edges[edge * 4 + 3]);
+                if (WGSUtil.intersect(LineSegment.lineSegment(a, b), meridian) != null) {
+                    inside[edgeRings[edge]] = !inside[edgeRings[edge]];
+                }
+            });
+        }
+        int withinShells = 0;
+        int withinHoles = 0;
+        for (int ring = 0; ring < holes.length; ring++) {
+            if (inside[ring]) {
+                if (holes[ring]) {
+                    withinHoles++;
+                } else {
+                    withinShells++;
+                }
+            }
+        }
+        return withinShells > withinHoles;
+    }
+
+    @Override
+    public CRS getCRS() {
+        return crs;
+    }
+
+    @Override
+    public int dimension() {
+        return 2;
+    }
+
+    /**
+     * @return The number of vertices of all rings, for example to weigh the polygon in a cache
+     */
+    public int getVertexCount() {
+        return vertexCount;
+    }
+}
@@ -0,0 +1,154 @@
+package org.neo4j.spatial.algo;
+
+import org.neo4j.spatial.core.LineSegment;
+import org.neo4j.spatial.core.Point;
+
+/**
+ * A static ball tree over the segments of a polyline, answering which segment is closest to a point without measuring
+ * the distance to every segment.
+ * <p>
+ * Every node covers a run of consecutive segments, which are usually close together in real data, and is bounded by
+ * a ball around one of its vertices. The radius only relies on the triangle inequality of the {@link Distance}
+ * calculator, so the same tree works for Cartesian distances and for great circle distances in meters.
+ */
+public class SegmentBallTree {
+    private static final int LEAF_SIZE = 8;
+
+    private final Point[] points;
+    private final Distance distance;
+    private final LinearReference reference;
+    private final int[] from;
+    private final int[] to;
+    private final int[] center;
+    private final double[] radius;
+
+    public SegmentBallTree(Point[] points) {
+        this(points, CumulativeLengthIndex.cumulativeLengths(points));
+    }
+
+    /**
+     * @param lengths the cumulative lengths of the points, see {@link CumulativeLengthIndex#cumulativeLengths(Point[])}
+     */
+    public SegmentBallTree(Point[] points, double[] lengths) {
+        if (points.length < 2) {
+            throw new IllegalArgumentException("Polyline cannot have less than 2 points");
+        }
+        this.points = points;
+        this.distance = DistanceCalculator.getCalculator(points[0]);
+        this.reference = LinearReferenceCalculator.getCalculator(points[0].getCRS());
+        int nodes = 4 * ((points.length - 1 + LEAF_SIZE - 1) / LEAF_SIZE);
+        this.from = new int[nodes];
+        this.to = new int[nodes];
+        this.center = new int[nodes];
+        this.radius = new double[nodes];
+        build(0, 0, points.length - 1, lengths);
+    }
+
+    /**
+     * The closest point on a polyline, and the segment it is on
+     */
+    public static class Nearest {
+        public final int segment;
+        public final Point point;
+        public final double distance;
+
+        private Nearest(int segment, Point point, double distance) {
+            this.segment = segment;
+            this.point = point;
+            this.distance = distance;
+        }
+    }
+
+    public int segments() {
+        return points.length - 1;
+    }
+
+    /**
+     * @return The closest point on the segments, on the lowest segment if several are equally close
+     */
+    public Nearest nearest(Point point) {
+        return nearest(point, -1);
+    }
+
+    /**
+     * @param hint a segment expected to be close to the point, like the segment of the previous point of a trace,
+     *             which is measured first so that far away parts of the tree are skipped sooner, or -1 for none
+     * @return The closest point on the segments, on the lowest segment if several are equally close
+     */
+    public Nearest nearest(Point point, int hint) {
+        if (point.getCRS() != points[0].getCRS()) {
+            throw new IllegalArgumentException("Cannot find the nearest " + points[0].getCRS() + " segment to a " + point.getCRS() + " point");
+        }
+        Nearest nearest = null;
+        if (hint >= 0 && hint < segments()) {
+            nearest = measure(hint, point, null);
+        }
+        return search(0, point, nearest);
+    }
+
+    private void build(int node, int from, int to, double[] lengths) {
+        this.from[node] = from;
+        this.to[node] = to;
+        this.center[node] = (from + to) >>> 1;
+        Point c = points[center[node]];
+        if (to - from <= LEAF_SIZE) {
+            double r = 0;
+            for (int i = from; i < to; i++) {
+                // Any point on a segment is within half its length of one of its end points
+                double ends = Math.max(distance.distance(c, points[i]), distance.distance(c, points[i + 1]));
+                r = Math.max(r, ends + (lengths[i + 1] - lengths[i]) / 2);
+            }
+            radius[node] = r;
+        } else {
+            int middle = (from + to) >>> 1;
+            build(2 * node + 1, from, middle, lengths);
+            build(2 * node + 2, middle, to, lengths);
+            radius[node] = Math.max(
+                    distance.distance(c, points[center[2 * node + 1]]) + radius[2 * node + 1],
+                    distance.distance(c, points[center[2 * node + 2]]) + radius[2 * node + 2]);
+        }
+    }
+
+    private Nearest search(int node, Point point, Nearest nearest) {
+        if (to[node] - from[node] <= LEAF_SIZE) {
+            for (int i = from[node]; i < to[node]; i++) {
+                nearest = measure(i, point, nearest);
+            }
+            return nearest;
+        }
+        int left = 2 * node + 1;
+        int right = 2 * node + 2;
+        double leftBound = bound(left, point);
+        double rightBound = bound(right, point);
+        if (rightBound < leftBound) {
+            nearest = visit(right, rightBound, point, nearest);
+            return visit(left, leftBound, point, nearest);
+        } else {
+            nearest = visit(left, leftBound, point, nearest);
+            return visit(right, rightBound, point, nearest);
+        }
+    }
+
+    private Nearest visit(int node, double bound, Point point, Nearest nearest) {
+        if (nearest != null && bound > nearest.distance) {
+            return nearest;
+        }
+        return search(node, point, nearest);
+    }
+
+    /**
+     * @return A lower bound of the distance from the point to the segments of the node
+     */
+    private double bound(int node, Point point) {
+        return distance.distance(point, points[center[node]]) - radius[node];
+    }
+
+    private Nearest measure(int segment, Point point, Nearest nearest) {
+        Point projected = reference.project(LineSegment.lineSegment(points[segment], points[segment + 1]), point);
+        double d = distance.distance(point, projected);
+        if (nearest == null || d < nearest.distance || (d == nearest.distance && segment < nearest.segment)) {
+            return new Nearest(segment, projected, d);
+        }
+        return nearest;
+    }
+}
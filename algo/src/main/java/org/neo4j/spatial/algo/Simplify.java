@@ -0,0 +1,650 @@
+package org.neo4j.spatial.algo;
+
+import org.neo4j.spatial.core.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Douglas-Peucker simplification of polylines and polygons.
+ * <p>
+ * The simplification is topology preserving: after the initial simplification of each ring or line, all simplified
+ * segments are checked against each other, also across the rings of a multipolygon, and wherever two simplified segments
+ * cross, or a simplified segment sweeps past a whole ring, such as a small hole near a spike of its shell, the vertex
+ * furthest from the offending segment is restored. This is repeated until no new crossings appear, so simplified rings
+ * stay simple and do not cut through or swap sides with each other, as long as the original geometry was valid.
+ */
+public abstract class Simplify {
+    /**
+     * @param polyline
+     * @param tolerance the maximum distance of any removed vertex from the simplified polyline
+     * @return The simplified polyline, which always keeps both end points
+     */
+    public Polyline simplify(Polyline polyline, double tolerance) {
+        return simplify(new Polyline[]{polyline}, tolerance)[0];
+    }
+
+    /**
+     * Simplify several polylines together, making sure the simplified polylines do not introduce crossings with each other
+     *
+     * @param polylines
+     * @param tolerance the maximum distance of any removed vertex from the simplified polyline
+     * @return The simplified polylines, in the same order as the input
+     */
+    public Polyline[] simplify(Polyline[] polylines, double tolerance) {
+        Chain[] chains = new Chain[polylines.length];
+        for (int i = 0; i < polylines.length; i++) {
+            chains[i] = new Chain(polylines[i].getPoints(), false, tolerance);
+        }
+        preserveTopology(chains);
+
+        Polyline[] result = new Polyline[polylines.length];
+        for (int i = 0; i < chains.length; i++) {
+            result[i] = Polyline.polyline(chains[i].getPoints());
+        }
+        return result;
+    }
+
+    public MultiPolyline simplify(MultiPolyline multiPolyline, double tolerance) {
+        MultiPolyline result = new MultiPolyline();
+        for (Polyline polyline : simplify(multiPolyline.getChildren(), tolerance)) {
+            result.insertPolyline(polyline);
+        }
+        return result;
+    }
+
+    /**
+     * @param polygon
+     * @param tolerance the maximum distance of any removed vertex from the simplified polygon
+     * @return The simplified polygon, which has at least three distinct vertices
+     */
+    public Polygon.SimplePolygon simplify(Polygon.SimplePolygon polygon, double tolerance) {
+        return simplify(new Polygon.SimplePolygon[]{polygon}, tolerance)[0];
+    }
+
+    /**
+     * Simplify several rings together, making sure the simplified rings do not introduce crossings with each other
+     *
+     * @param polygons
+     * @param tolerance the maximum distance of any removed vertex from the simplified polygon
+     * @return The simplified polygons, in the same order as the input
+     */
+    public Polygon.SimplePolygon[] simplify(Polygon.SimplePolygon[] polygons, double tolerance) {
+        Chain[] chains = new Chain[polygons.length];
+        for (int i = 0; i < polygons.length; i++) {
+            chains[i] = new Chain(PolygonUtil.closeRing(polygons[i].getPoints()), true, tolerance);
+        }
+        preserveTopology(chains);
+
+        Polygon.SimplePolygon[] result = new Polygon.SimplePolygon[polygons.length];
+        for (int i = 0; i < chains.length; i++) {
+            result[i] = Polygon.simple(chains[i].getPoints());
+        }
+        return result;
+    }
+
+    /**
+     * Simplify all shells and holes of the multipolygon together, keeping the shell/hole structure of the original
+     *
+     * @param multiPolygon
+     * @param tolerance the maximum distance of any removed vertex from the simplified polygon
+     * @return A new multipolygon with the same structure and simplified rings
+     */
+    public MultiPolygon simplify(MultiPolygon multiPolygon, double tolerance) {
+        List<MultiPolygon.MultiPolygonNode> nodes = new ArrayList<>();
+        collectNodes(multiPolygon, nodes);
+
+        Polygon.SimplePolygon[] rings = new Polygon.SimplePolygon[nodes.size()];
+        for (int i = 0; i < rings.length; i++) {
+            rings[i] = nodes.get(i).getPolygon();
+        }
+        Polygon.SimplePolygon[] simplified = simplify(rings, tolerance);
+
+        MultiPolygon result = new MultiPolygon();
+        int[] index = new int[]{0};
+        copyStructure(multiPolygon, result, simplified, index);
+        return result;
+    }
+
+    private static void collectNodes(MultiPolygon multiPolygon, List<MultiPolygon.MultiPolygonNode> nodes) {
+        for (MultiPolygon.MultiPolygonNode child : multiPolygon.getChildren()) {
+            nodes.add(child);
+            collectNodes(child, nodes);
+        }
+    }
+
+    private static void copyStructure(MultiPolygon original, MultiPolygon copy, Polygon.SimplePolygon[] simplified, int[] index) {
+        for (MultiPolygon.MultiPolygonNode child : original.getChildren()) {
+            MultiPolygon.MultiPolygonNode childCopy = new MultiPolygon.MultiPolygonNode(simplified[index[0]++]);
+            copy.addChild(childCopy);
+            copyStructure(child, childCopy, simplified, index);
+        }
+    }
+
+    /**
+     * Simplify a sequence of points without any topology checks
+     *
+     * @param points
+     * @param tolerance the maximum distance of any removed vertex from the simplified line
+     * @return The kept points, including both end points
+     */
+    public Point[] simplify(Point[] points, double tolerance) {
+        return new Chain(points, false, tolerance).getPoints();
+    }
+
+    /**
+     * @param point
+     * @param a
+     * @param b
+     * @return The minimum distance between the point and the line segment from a to b
+     */
+    protected abstract double distance(Point point, Point a, Point b);
+
+    /**
+     * @param a1
+     * @param a2
+     * @param b1
+     * @param b2
+     * @return True iff the segments a1-a2 and b1-b2 cross each other in a single point which is not an end point of either
+     */
+    protected abstract boolean crosses(Point a1, Point a2, Point b1, Point b2);
+
+    protected abstract CRS getCRS();
+
+    /**
+     * Restore vertices until no simplified segment crosses another one, and no simplified segment moves another chain
+     * to its other side. The segments of every chain are indexed once, and the index is updated as vertices are
+     * restored. Since the kept segments were already checked, only the segments created by the last restored vertices
+     * are checked again, and only against the chains whose envelopes overlap theirs.
+     */
+    private void preserveTopology(Chain[] chains) {
+        double[] envelopes = new double[chains.length * 4];
+        List<Segment> pending = new ArrayList<>();
+        for (int i = 0; i < chains.length; i++) {
+            System.arraycopy(chains[i].envelope, 0, envelopes, i * 4, 4);
+            chains[i].indexSegments(pending);
+        }
+        EnvelopeTree chainTree = new EnvelopeTree(envelopes);
+
+        while (!pending.isEmpty()) {
+            List<Segment> refine = new ArrayList<>();
+            for (int i = 0; i < pending.size(); i++) {
+                pending.get(i).pending = i;
+            }
+            for (Segment s : pending) {
+                // Pairs of new segments are only checked once
+                chainTree.intersecting(s.minX, s.minY, s.maxX, s.maxY, i -> chains[i].overlapping(s.minX, s.minY, s.maxX, s.maxY, t -> {
+                    if (t.pending <= s.pending && t.pending >= 0) {
+                        return;
+                    }
+                    if (!s.isAdjacent(t) && crosses(s.start(), s.end(), t.start(), t.end())) {
+                        markForRefinement(s, refine);
+                        markForRefinement(t, refine);
+                    }
+                }));
+            }
+
+            // A shortcut can also sweep past a whole ring without crossing it, which moves the ring to the other side
+            for (Segment s : pending) {
+                if (s.to - s.from > 1 && !s.refine && s.chain.sweepsPast(s.from, s.to, chains, chainTree)) {
+                    markForRefinement(s, refine);
+                }
+            }
+
+            for (Segment s : pending) {
+                s.pending = -1;
+            }
+            pending = new ArrayList<>();
+            for (Segment s : refine) {
+                s.chain.refine(s, pending);
+            }
+        }
+    }
+
+    private static void markForRefinement(Segment segment, List<Segment> refine) {
+        if (!segment.refine) {
+            segment.refine = true;
+            refine.add(segment);
+        }
+    }
+
+    /**
+     * A sequence of points together with the subset of points kept by the simplification
+     */
+    private class Chain {
+        private final Point[] points;
+        private final boolean[] kept;
+        private final boolean ring;
+        private final double[] envelope;
+        // A grid over the envelope of the points, with the current segments in every cell their envelope overlaps
+        private List<Segment>[] cells;
+        private int columns;
+        private int rows;
+        private double cellWidth;
+        private double cellHeight;
+        private double gridX;
+        private double gridY;
+        private int queries;
+
+        private Chain(Point[] points, boolean ring, double tolerance) {
+            this.points = points;
+            this.ring = ring;
+            this.envelope = envelope(points);
+            this.kept = new boolean[points.length];
+            this.kept[0] = true;
+            this.kept[points.length - 1] = true;
+
+            if (ring) {
+                int last = points.length - 1;
+                int far = farthestFrom(points[0], 1, last);
+                if (far > 0) {
+                    kept[far] = true;
+                    douglasPeucker(0, far, tolerance);
+                    douglasPeucker(far, last, tolerance);
+                }
+                // A ring needs at least three distinct vertices
+                boolean refined = true;
+                while (refined && keptCount() < 4) {
+                    refined = refineWorstSpan();
+                }
+            } else {
+                douglasPeucker(0, points.length - 1, tolerance);
+            }
+        }
+
+        private int farthestFrom(Point origin, int from, int to) {
+            int far = -1;
+            double maxDistance = -1;
+            for (int i = from; i < to; i++) {
+                double d = distance(points[i], origin, origin);
+                if (d > maxDistance) {
+                    maxDistance = d;
+                    far = i;
+                }
+            }
+            return far;
+        }
+
+        private void douglasPeucker(int first, int last, double tolerance) {
+            int[] stack = new int[64];
+            int size = 0;
+            stack[size++] = first;
+            stack[size++] = last;
+            while (size > 0) {
+                int to = stack[--size];
+                int from = stack[--size];
+                int far = farthest(from, to);
+                if (far >= 0 && distance(points[far], points[from], points[to]) > tolerance) {
+                    kept[far] = true;
+                    if (size + 4 > stack.length) {
+                        stack = Arrays.copyOf(stack, stack.length * 2);
+                    }
+                    stack[size++] = from;
+                    stack[size++] = far;
+                    stack[size++] = far;
+                    stack[size++] = to;
+                }
+            }
+        }
+
+        /**
+         * @return The index of the vertex strictly between from and to furthest from the segment between them, or -1 if there is none
+         */
+        private int farthest(int from, int to) {
+            int far = -1;
+            double maxDistance = -1;
+            for (int i = from + 1; i < to; i++) {
+                double d = distance(points[i], points[from], points[to]);
+                if (d > maxDistance) {
+                    maxDistance = d;
+                    far = i;
+                }
+            }
+            return far;
+        }
+
+        private int nextKept(int from) {
+            int i = from + 1;
+            while (!kept[i]) {
+                i++;
+            }
+            return i;
+        }
+
+        /**
+         * Restore the furthest vertex of the span of the segment, replacing it in the index by the two segments next to
+         * the restored vertex
+         *
+         * @param created receives the new segments, nothing is added if the span has no removed vertices to restore
+         */
+        private void refine(Segment segment, List<Segment> created) {
+            segment.refine = false;
+            int far = farthest(segment.from, segment.to);
+            if (far < 0) {
+                return;
+            }
+            kept[far] = true;
+            removeSegment(segment);
+            Segment before = new Segment(this, segment.from, far);
+            Segment after = new Segment(this, far, segment.to);
+            addSegment(before);
+            addSegment(after);
+            created.add(before);
+            created.add(after);
+        }
+
+        private boolean refineWorstSpan() {
+            int worstFrom = -1;
+            int worst = -1;
+            double maxDistance = -1;
+            for (int from = 0; from < points.length - 1; from = nextKept(from)) {
+                int to = nextKept(from);
+                int far = farthest(from, to);
+                if (far >= 0) {
+                    double d = distance(points[far], points[from], points[to]);
+                    if (d > maxDistance) {
+                        maxDistance = d;
+                        worstFrom = from;
+                        worst = far;
+                    }
+                }
+            }
+            if (worstFrom < 0) {
+                return false;
+            }
+            kept[worst] = true;
+            return true;
+        }
+
+        /**
+         * Since the original chains do not cross, and crossings of the simplified segments are found separately, a chain
+         * that is not crossed by the segment from 'from' to 'to' is swept past by it iff its first point, which is
+         * always kept, lies between the segment and the removed vertices.
+         *
+         * @return True if the first point of any other chain lies in the area enclosed by the removed vertices between
+         * from and to, and the segment between them
+         */
+        private boolean sweepsPast(int from, int to, Chain[] chains, EnvelopeTree chainTree) {
+            double x0 = points[from].getCoordinate()[0];
+            double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+            double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+            for (int i = from; i <= to; i++) {
+                double[] c = points[i].getCoordinate();
+                double x = relativeX(c[0], x0);
+                minX = Math.min(minX, x);
+                minY = Math.min(minY, c[1]);
+                maxX = Math.max(maxX, x);
+                maxY = Math.max(maxY, c[1]);
+            }
+            if (getCRS() == CRS.WGS84 && (x0 + minX < -180 || x0 + maxX > 180)) {
+                // Across the date line, so check the first points of all chains
+                boolean found = false;
+                for (Chain other : chains) {
+                    found |= other != this && startsWithin(other, x0, minX, minY, maxX, maxY, from, to);
+                }
+                return found;
+            }
+            boolean[] found = new boolean[1];
+            double left = minX, right = maxX, bottom = minY, top = maxY;
+            chainTree.intersecting(x0 + left, bottom, x0 + right, top, i -> {
+                found[0] |= chains[i] != this && startsWithin(chains[i], x0, left, bottom, right, top, from, to);
+            });
+            return found[0];
+        }
+
+        private boolean startsWithin(Chain other, double x0, double minX, double minY, double maxX, double maxY, int from, int to) {
+            double[] q = other.points[0].getCoordinate();
+            double qx = relativeX(q[0], x0);
+            return qx >= minX && qx <= maxX && q[1] >= minY && q[1] <= maxY && encloses(from, to, q);
+        }
+
+        /**
+         * Even-odd test of the point against the ring of the vertices from 'from' to 'to', closed by the segment between
+         * them. Geographic longitudes are taken relative to the point, so rings across the date line work as well.
+         */
+        private boolean encloses(int from, int to, double[] q) {
+            boolean inside = false;
+            for (int i = from, j = to; i <= to; j = i++) {
+                double[] a = points[i].getCoordinate();
+                double[] b = points[j].getCoordinate();
+                double xa = relativeX(a[0], q[0]);
+                double xb = relativeX(b[0], q[0]);
+                if ((a[1] > q[1]) != (b[1] > q[1]) && 0 < (xb - xa) * (q[1] - a[1]) / (b[1] - a[1]) + xa) {
+                    inside = !inside;
+                }
+            }
+            return inside;
+        }
+
+        private double relativeX(double x, double origin) {
+            double dx = x - origin;
+            if (getCRS() == CRS.WGS84) {
+                if (dx > 180) {
+                    dx -= 360;
+                } else if (dx < -180) {
+                    dx += 360;
+                }
+            }
+            return dx;
+        }
+
+        private int keptCount() {
+            int count = 0;
+            for (boolean k : kept) {
+                if (k) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        @SuppressWarnings("unchecked")
+        private void indexSegments(List<Segment> created) {
+            List<Segment> segments = new ArrayList<>();
+            for (int from = 0; from < points.length - 1; from = nextKept(from)) {
+                segments.add(new Segment(this, from, nextKept(from)));
+            }
+            // About one cell per segment, shaped like the envelope of the points
+            double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+            double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+            for (Point point : points) {
+                double[] c = point.getCoordinate();
+                minX = Math.min(minX, c[0]);
+                minY = Math.min(minY, c[1]);
+                maxX = Math.max(maxX, c[0]);
+                maxY = Math.max(maxY, c[1]);
+            }
+            double width = Math.max(maxX - minX, Double.MIN_NORMAL);
+            double height = Math.max(maxY - minY, Double.MIN_NORMAL);
+            int count = segments.size();
+            columns = (int) Math.max(1, Math.min(count, Math.round(Math.sqrt(count * width / height))));
+            rows = Math.max(1, Math.min(count, (count + columns - 1) / columns));
+            cellWidth = width / columns;
+            cellHeight = height / rows;
+            gridX = minX;
+            gridY = minY;
+            cells = new List[columns * rows];
+            for (Segment segment : segments) {
+                addSegment(segment);
+            }
+            created.addAll(segments);
+        }
+
+        private void addSegment(Segment segment) {
+            for (int row = row(segment.minY); row <= row(segment.maxY); row++) {
+                for (int column = column(segment.minX); column <= column(segment.maxX); column++) {
+                    int cell = row * columns + column;
+                    if (cells[cell] == null) {
+                        cells[cell] = new ArrayList<>();
+                    }
+                    cells[cell].add(segment);
+                }
+            }
+        }
+
+        private void removeSegment(Segment segment) {
+            for (int row = row(segment.minY); row <= row(segment.maxY); row++) {
+                for (int column = column(segment.minX); column <= column(segment.maxX); column++) {
+                    cells[row * columns + column].remove(segment);
+                }
+            }
+        }
+
+        /**
+         * @param consumer receives every current segment of this chain with an envelope overlapping the given one, once
+         */
+        private void overlapping(double minX, double minY, double maxX, double maxY, Consumer<Segment> consumer) {
+            int query = ++queries;
+            for (int row = row(minY); row <= row(maxY); row++) {
+                for (int column = column(minX); column <= column(maxX); column++) {
+                    List<Segment> cell = cells[row * columns + column];
+                    if (cell == null) {
+                        continue;
+                    }
+                    for (Segment segment : cell) {
+                        if (segment.query != query && segment.minX <= maxX && segment.maxX >= minX && segment.minY <= maxY && segment.maxY >= minY) {
+                            segment.query = query;
+                            consumer.accept(segment);
+                        }
+                    }
+                }
+            }
+        }
+
+        /**
+         * Coordinates outside the grid are clamped to its border cells, which keeps overlapping envelopes in common cells
+         */
+        private int column(double x) {
+            return (int) Math.max(0, Math.min(columns - 1, Math.floor((x - gridX) / cellWidth)));
+        }
+
+        private int row(double y) {
+            return (int) Math.max(0, Math.min(rows - 1, Math.floor((y - gridY) / cellHeight)));
+        }
+
+        /**
+         * Geographic chains are not bounded in latitude, since great circle segments bulge towards the poles, and
+         * chains across the date line are not bounded in longitude either.
+         *
+         * @return The envelope of all points as {minX, minY, maxX, maxY}, which contains every simplified segment
+         */
+        private double[] envelope(Point[] points) {
+            double[] envelope = new double[]{Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY};
+            for (int i = 0; i < points.length; i++) {
+                double[] c = points[i].getCoordinate();
+                envelope[0] = Math.min(envelope[0], c[0]);
+                envelope[1] = Math.min(envelope[1], c[1]);
+                envelope[2] = Math.max(envelope[2], c[0]);
+                envelope[3] = Math.max(envelope[3], c[1]);
+                if (getCRS() == CRS.WGS84 && i > 0 && Math.abs(c[0] - points[i - 1].getCoordinate()[0]) > 180) {
+                    envelope[0] = -180;
+                    envelope[2] = 180;
+                }
+            }
+            if (getCRS() == CRS.WGS84) {
+                if (envelope[2] - envelope[0] > 180) {
+                    // Segments between points further apart than this take the short way across the date line
+                    envelope[0] = -180;
+                    envelope[2] = 180;
+                }
+                envelope[1] = -90;
+                envelope[3] = 90;
+            }
+            return envelope;
+        }
+
+        private Point[] getPoints() {
+            Point[] result = new Point[keptCount()];
+            int j = 0;
+            for (int i = 0; i < points.length; i++) {
+                if (kept[i]) {
+                    result[j++] = points[i];
+                }
+            }
+            return result;
+        }
+    }
+
+    private class Segment {
+        private final Chain chain;
+        private final int from;
+        private final int to;
+        private final double minX;
+        private final double maxX;
+        private final double minY;
+        private final double maxY;
+        private boolean refine;
+        // The position of a segment created in the previous round in the list of segments to check, or -1
+        private int pending = -1;
+        // The last query of the chain index that found this segment
+        private int query;
+
+        private Segment(Chain chain, int from, int to) {
+            this.chain = chain;
+            this.from = from;
+            this.to = to;
+            double[] a = chain.points[from].getCoordinate();
+            double[] b = chain.points[to].getCoordinate();
+            if (getCRS() == CRS.WGS84 && Math.abs(b[0] - a[0]) > 180) {
+                // Crossing the date line, so the x-range does not help
+                this.minX = -180;
+                this.maxX = 180;
+            } else {
+                this.minX = Math.min(a[0], b[0]);
+                this.maxX = Math.max(a[0], b[0]);
+            }
+            if (getCRS() == CRS.WGS84) {
+                // Great circle segments bulge towards the poles, but stay within half their length of their midpoint
+                double[] range = latitudeRange(a, b);
+                this.minY = range[0];
+                this.maxY = range[1];
+            } else {
+                this.minY = Math.min(a[1], b[1]);
+                this.maxY = Math.max(a[1], b[1]);
+            }
+        }
+
+        private double[] latitudeRange(double[] a, double[] b) {
+            double[] u = direction(a);
+            double[] v = direction(b);
+            double mx = u[0] + v[0], my = u[1] + v[1], mz = u[2] + v[2];
+            double length = Math.sqrt(mx * mx + my * my + mz * mz);
+            if (length < 1e-9) {
+                return new double[]{-90, 90};
+            }
+            double middle = Math.asin(Math.max(-1, Math.min(1, mz / length)));
+            double halfLength = Math.acos(Math.max(-1, Math.min(1, (u[0] * mx + u[1] * my + u[2] * mz) / length)));
+            return new double[]{
+                    Math.max(-90, Math.toDegrees(middle - halfLength) - 1e-9),
+                    Math.min(90, Math.toDegrees(middle + halfLength) + 1e-9)
+            };
+        }
+
+        private double[] direction(double[] coordinate) {
+            double lon = Math.toRadians(coordinate[0]);
+            double lat = Math.toRadians(coordinate[1]);
+            return new double[]{Math.cos(lat) * Math.cos(lon), Math.cos(lat) * Math.sin(lon), Math.sin(lat)};
+        }
+
+        private Point start() {
+            return chain.points[from];
+        }
+
+        private Point end() {
+            return chain.points[to];
+        }
+
+        private boolean isAdjacent(Segment other) {
+            if (chain != other.chain) {
+                return false;
+            }
+            if (from == other.to || to == other.from) {
+                return true;
+            }
+            int last = chain.points.length - 1;
+            return chain.ring && ((from == 0 && other.to == last) || (other.from == 0 && to == last));
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package org.neo4j.spatial.algo;
+
+import org.neo4j.spatial.algo.cartesian.CartesianSimplify;
+import org.neo4j.spatial.algo.wgs84.WGS84Simplify;
+import org.neo4j.spatial.core.CRS;
+import org.neo4j.spatial.core.HasCRS;
+
+public class SimplifyCalculator {
+    private static CartesianSimplify cartesian;
+    private static WGS84Simplify wgs84;
+
+    private static Simplify getCartesian() {
+        if (cartesian == null) {
+            cartesian = new CartesianSimplify();
+        }
+        return cartesian;
+    }
+
+    private static Simplify getWGS84() {
+        if (wgs84 == null) {
+            wgs84 = new WGS84Simplify();
+        }
+        return wgs84;
+    }
+
+    public static Simplify getCalculator(CRS crs) {
+        if (crs == CRS.Cartesian) {
+            return getCartesian();
+        } else {
+            return getWGS84();
+        }
+    }
+
+    public static Simplify getCalculator(HasCRS geometry) {
+        return getCalculator(geometry.getCRS());
+    }
+}
@@ -0,0 +1,98 @@
+package org.neo4j.spatial.algo.cartesian;
+
+import org.neo4j.spatial.algo.GeometryAggregates;
+import org.neo4j.spatial.core.CRS;
+import org.neo4j.spatial.core.Point;
+
+public class CartesianGeometryAggregates extends GeometryAggregates {
+    // All sums are relative to the first vertex, to keep the shoelace terms small
+    private double[] origin;
+
+    // Twice the signed area and six times the first moments of the current ring
+    private double ringArea;
+    private double ringX;
+    private double ringY;
+
+    private double area = 0;
+    private double momentX = 0;
+    private double momentY = 0;
+
+    private double lineLength = 0;
+    private double lineX = 0;
+    private double lineY = 0;
+
+    public CartesianGeometryAggregates() {
+        super(CRS.Cartesian);
+    }
+
+    @Override
+    protected void startRing() {
+        ringArea = 0;
+        ringX = 0;
+        ringY = 0;
+    }
+
+    @Override
+    protected void ringEdge(Point from, Point to) {
+        double[] a = relative(from);
+        double[] b = relative(to);
+        double cross = a[0] * b[1] - b[0] * a[1];
+        ringArea += cross;
+        ringX += (a[0] + b[0]) * cross;
+        ringY += (a[1] + b[1]) * cross;
+        lineEdge(a, b);
+    }
+
+    @Override
+    protected void endRing(boolean hole) {
+        double sign = Math.signum(ringArea) * (hole ? -1 : 1);
+        area += sign * ringArea / 2;
+        momentX += sign * ringX / 6;
+        momentY += sign * ringY / 6;
+    }
+
+    @Override
+    protected void lineEdge(Point from, Point to) {
+        lineEdge(relative(from), relative(to));
+    }
+
+    private void lineEdge(double[] a, double[] b) {
+        double length = CartesianUtil.distance(a, b);
+        lineLength += length;
+        lineX += (a[0] + b[0]) / 2 * length;
+        lineY += (a[1] + b[1]) / 2 * length;
+    }
+
+    private double[] relative(Point point) {
+        double[] coordinate = point.getCoordinate();
+        if (origin == null) {
+            origin = coordinate;
+        }
+        return new double[]{coordinate[0] - origin[0], coordinate[1] - origin[1]};
+    }
+
+    @Override
+    protected double distance(Point from, Point to) {
+        return CartesianUtil.distance(from.getCoordinate(), to.getCoordinate());
+    }
+
+    @Override
+    protected double[] planar(Point point) {
+        return point.getCoordinate();
+    }
+
+    @Override
+    public double getArea() {
+        return area;
+    }
+
+    @Override
+    public Point getCentroid() {
+        if (area != 0) {
+            return Point.point(CRS.Cartesian, origin[0] + momentX / area, origin[1] + momentY / area);
+        } else if (lineLength > 0) {
+            return Point.point(CRS.Cartesian, origin[0] + lineX / lineLength, origin[1] + lineY / lineLength);
+        }
+        return null;
+    }
+}
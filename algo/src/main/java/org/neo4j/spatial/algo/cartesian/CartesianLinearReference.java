@@ -33,4 +33,20 @@ public class CartesianLinearReference extends LinearReference {
 
         return Point.point(CRS.Cartesian, p[0] + fraction * (q[0] - p[0]), p[1] + fraction * (q[1] - p[1]));
     }
+
+    @Override
+    public Point project(LineSegment lineSegment, Point point) {
+        double[] p = lineSegment.getPoints()[0].getCoordinate();
+        double[] q = lineSegment.getPoints()[1].getCoordinate();
+        double[] c = point.getCoordinate();
+        double[] a = new double[]{q[0] - p[0], q[1] - p[1]};
+        double lengthSquared = a[0] * a[0] + a[1] * a[1];
+        if (lengthSquared == 0) {
+            return lineSegment.getPoints()[0];
+        }
+
+        double t = Math.max(0, Math.min(1, (a[0] * (c[0] - p[0]) + a[1] * (c[1] - p[1])) / lengthSquared));
+
+        return Point.point(CRS.Cartesian, p[0] + t * a[0], p[1] + t * a[1]);
+    }
 }
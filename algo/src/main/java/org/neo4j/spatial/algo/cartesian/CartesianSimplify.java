@@ -0,0 +1,52 @@
+package org.neo4j.spatial.algo.cartesian;
+
+import org.neo4j.spatial.algo.Simplify;
+import org.neo4j.spatial.core.CRS;
+import org.neo4j.spatial.core.Point;
+
+public class CartesianSimplify extends Simplify {
+    @Override
+    protected CRS getCRS() {
+        return CRS.Cartesian;
+    }
+
+    @Override
+    protected double distance(Point point, Point a, Point b) {
+        double[] p = point.getCoordinate();
+        double[] u = a.getCoordinate();
+        double[] v = b.getCoordinate();
+
+        double dx = v[0] - u[0];
+        double dy = v[1] - u[1];
+        double lengthSquared = dx * dx + dy * dy;
+        if (lengthSquared == 0) {
+            return CartesianUtil.distance(p, u);
+        }
+
+        double t = ((p[0] - u[0]) * dx + (p[1] - u[1]) * dy) / lengthSquared;
+        t = Math.max(0, Math.min(1, t));
+
+        double x = u[0] + t * dx - p[0];
+        double y = u[1] + t * dy - p[1];
+        return Math.sqrt(x * x + y * y);
+    }
+
+    @Override
+    protected boolean crosses(Point a1, Point a2, Point b1, Point b2) {
+        double[] p1 = a1.getCoordinate();
+        double[] p2 = a2.getCoordinate();
+        double[] q1 = b1.getCoordinate();
+        double[] q2 = b2.getCoordinate();
+
+        double d1 = side(q1, q2, p1);
+        double d2 = side(q1, q2, p2);
+        double d3 = side(p1, p2, q1);
+        double d4 = side(p1, p2, q2);
+
+        return d1 * d2 < 0 && d3 * d4 < 0;
+    }
+
+    private static double side(double[] a, double[] b, double[] c) {
+        return (b[0] - a[0]) * (c[1] - a[1]) - (b[1] - a[1]) * (c[0] - a[0]);
+    }
+}
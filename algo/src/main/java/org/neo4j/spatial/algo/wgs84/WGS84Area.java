@@ -1,9 +1,12 @@
 package org.neo4j.spatial.algo.wgs84;
 
 import org.neo4j.spatial.algo.Area;
+import org.neo4j.spatial.core.Point;
 import org.neo4j.spatial.core.Polygon;
 import org.neo4j.spatial.core.Vector;
 
+import java.util.Iterator;
+
 public class WGS84Area extends Area {
     /**
      * Computes the area of the polygon according to Girard’s theorem
@@ -12,10 +15,10 @@ public class WGS84Area extends Area {
      */
     @Override
     public double area(Polygon.SimplePolygon polygon) {
-        polygon.startTraversal();
+        Iterator<Point> vertices = polygon.vertices();
         Vector currentGC;
-        Vector prev = new Vector(polygon.getNextPoint());
-        Vector current = new Vector(polygon.getNextPoint());
+        Vector prev = new Vector(vertices.next());
+        Vector current = new Vector(vertices.next());
         Vector previousGC = prev.cross(current);
 
         prev = current;
@@ -26,8 +29,8 @@ public class WGS84Area extends Area {
 
         int n = 0;
 
-        while (!polygon.fullyTraversed()) {
-            current = new Vector(polygon.getNextPoint());
+        while (vertices.hasNext()) {
+            current = new Vector(vertices.next());
 
             if (prev.equals(current)) {
                 continue;
@@ -0,0 +1,205 @@
+package org.neo4j.spatial.algo.wgs84;
+
+import org.neo4j.spatial.algo.GeometryAggregates;
+import org.neo4j.spatial.core.CRS;
+import org.neo4j.spatial.core.Point;
+import org.neo4j.spatial.core.Vector;
+
+import java.util.List;
+
+/**
+ * The convex hull is computed in a gnomonic projection, in which great circles are straight lines. It is first centered
+ * on the first vertex. Points far from the center get large planar coordinates, and points 90 degrees or more from it cannot
+ * be projected at all, so when a point gets too far the projection is moved to the center of the smallest cap around
+ * the points kept for the hull, and the hull is only unavailable when the points do not lie on one hemisphere.
+ */
+public class WGS84GeometryAggregates extends GeometryAggregates {
+    // Iterations of the approximation of the center of the smallest cap, and of the search for any hemisphere after it
+    private static final int CAP_ITERATIONS = 200;
+    private static final int HEMISPHERE_ITERATIONS = 1000;
+    private static final double MIN_DISTANCE = 1e-9;
+
+    // The gnomonic projection for the convex hull
+    private Vector center;
+    private Vector east;
+    private Vector north;
+    // Points closer to the plane through the center of the earth than this are moved into a new projection
+    private double recenterBelow = 0.5;
+
+    private double ringExcess;
+    private double ringLongitudes;
+    private Vector ringMoment;
+    private Vector ringDirection;
+
+    private double area = 0;
+    private Vector moment = new Vector(0, 0, 0);
+
+    private double lineAngle = 0;
+    private Vector lineMoment = new Vector(0, 0, 0);
+
+    public WGS84GeometryAggregates() {
+        super(CRS.WGS84);
+    }
+
+    @Override
+    protected void startRing() {
+        ringExcess = 0;
+        ringLongitudes = 0;
+        ringMoment = new Vector(0, 0, 0);
+        ringDirection = new Vector(0, 0, 0);
+    }
+
+    /**
+     * Adds the spherical excess of the trapezoid between the edge and the equator, and the integral of the position
+     * over the area, which is half the unit normal of the edge times its angle
+     */
+    @Override
+    protected void ringEdge(Point from, Point to) {
+        double[] a = from.getCoordinate();
+        double[] b = to.getCoordinate();
+        double longitudes = Math.toRadians(b[0] - a[0]);
+        if (longitudes > Math.PI) {
+            longitudes -= 2 * Math.PI;
+        } else if (longitudes < -Math.PI) {
+            longitudes += 2 * Math.PI;
+        }
+        double tanA = Math.tan(Math.toRadians(a[1]) / 2);
+        double tanB = Math.tan(Math.toRadians(b[1]) / 2);
+        ringExcess += 2 * Math.atan2(Math.tan(longitudes / 2) * (tanA + tanB), 1 + tanA * tanB);
+        ringLongitudes += longitudes;
+
+        Vector u = new Vector(from);
+        Vector v = new Vector(to);
+        Vector normal = u.cross(v);
+        double sin = normal.magnitude();
+        double angle = Math.atan2(sin, u.dot(v));
+        if (sin > 0) {
+            ringMoment = ringMoment.add(normal.multiply(angle / sin / 2));
+        }
+        ringDirection = ringDirection.add(u);
+        lineEdge(u, v, angle);
+    }
+
+    @Override
+    protected void endRing(boolean hole) {
+        double excess = Math.abs(ringExcess);
+        if (Math.abs(ringLongitudes) > Math.PI) {
+            // The ring goes around a pole
+            excess = Math.abs(excess - 2 * Math.PI);
+        }
+        Vector ringCentroid = ringMoment.dot(ringDirection) < 0 ? ringMoment.multiply(-1) : ringMoment;
+        double sign = hole ? -1 : 1;
+        area += sign * excess * WGSUtil.RADIUS * WGSUtil.RADIUS;
+        moment = moment.add(ringCentroid.multiply(sign));
+    }
+
+    @Override
+    protected void lineEdge(Point from, Point to) {
+        Vector u = new Vector(from);
+        Vector v = new Vector(to);
+        lineEdge(u, v, Math.atan2(u.cross(v).magnitude(), u.dot(v)));
+    }
+
+    private void lineEdge(Vector u, Vector v, double angle) {
+        lineAngle += angle;
+        lineMoment = lineMoment.add(u.add(v).normalize().multiply(angle));
+    }
+
+    @Override
+    protected double distance(Point from, Point to) {
+        return WGSUtil.distance(new Vector(from), new Vector(to));
+    }
+
+    @Override
+    protected double[] planar(Point point) {
+        Vector vector = new Vector(point);
+        if (center == null) {
+            setCenter(vector);
+        }
+        double distance = vector.dot(center);
+        if (distance < recenterBelow) {
+            return null;
+        }
+        return new double[]{vector.dot(east) / distance, vector.dot(north) / distance};
+    }
+
+    /**
+     * Centers the projection on the smallest cap around the points, or if that is not found precisely enough, on any
+     * pole of a hemisphere containing them
+     */
+    @Override
+    protected boolean recenter(List<Point> points) {
+        Vector[] vectors = new Vector[points.size()];
+        for (int i = 0; i < vectors.length; i++) {
+            vectors[i] = new Vector(points.get(i));
+        }
+        // Badoiu and Clarkson: step towards the farthest point, by less every time, to approach the smallest ball
+        Vector ball = vectors[0];
+        for (int k = 1; k <= CAP_ITERATIONS; k++) {
+            Vector farthest = vectors[0];
+            double maxDistance = -1;
+            for (Vector vector : vectors) {
+                Vector difference = vector.subtract(ball);
+                double distance = difference.dot(difference);
+                if (distance > maxDistance) {
+                    maxDistance = distance;
+                    farthest = vector;
+                }
+            }
+            ball = ball.add(farthest.subtract(ball).divide(k + 1));
+        }
+        if (ball.magnitude() < 1e-12) {
+            return false;
+        }
+        // Perceptron: add the point furthest from the hemisphere until all points are in it
+        Vector pole = ball.normalize();
+        for (int i = 0; i < HEMISPHERE_ITERATIONS; i++) {
+            Vector closest = vectors[0];
+            double minDistance = Double.POSITIVE_INFINITY;
+            for (Vector vector : vectors) {
+                double distance = vector.dot(pole);
+                if (distance < minDistance) {
+                    minDistance = distance;
+                    closest = vector;
+                }
+            }
+            if (minDistance > MIN_DISTANCE) {
+                setCenter(pole);
+                // The next points that are this close to the edge of the cap move the projection again
+                recenterBelow = minDistance / 2;
+                return true;
+            }
+            Vector moved = pole.add(closest);
+            if (moved.magnitude() < 1e-12) {
+                return false;
+            }
+            pole = moved.normalize();
+        }
+        return false;
+    }
+
+    private void setCenter(Vector center) {
+        this.center = center;
+        this.east = WGSUtil.NORTH_POLE.cross(center);
+        if (east.magnitude() < 1e-12) {
+            east = new Vector(0, 1, 0);
+        }
+        this.east = east.normalize();
+        this.north = center.cross(east);
+    }
+
+    @Override
+    public double getArea() {
+        return area;
+    }
+
+    @Override
+    public Point getCentroid() {
+        if (area != 0 && moment.magnitude() > 0) {
+            return moment.normalize().toPoint();
+        } else if (lineAngle > 0) {
+            return lineMoment.normalize().toPoint();
+        }
+        return null;
+    }
+}
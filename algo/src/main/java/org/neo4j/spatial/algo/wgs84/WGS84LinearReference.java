@@ -56,4 +56,26 @@ public class WGS84LinearReference extends LinearReference {
 
         return inter.toPoint();
     }
+
+    @Override
+    public Point project(LineSegment lineSegment, Point point) {
+        Point p1 = lineSegment.getPoints()[0];
+        Point p2 = lineSegment.getPoints()[1];
+        Vector u1 = new Vector(p1);
+        Vector u2 = new Vector(p2);
+        Vector v = new Vector(point);
+
+        //The point is within the extent of the line segment if it is on the same side of each end point as the other end point
+        boolean withinExtent = v.subtract(u1).dot(u2.subtract(u1)) >= 0 && v.subtract(u2).dot(u1.subtract(u2)) >= 0
+                && v.dot(u1) >= 0 && v.dot(u2) >= 0;
+
+        if (withinExtent && !u1.equals(u2)) {
+            Vector c1 = u1.cross(u2); // great circle through the line segment
+            Vector c2 = v.cross(c1);  // great circle through the point normal to c1
+            return c1.cross(c2).toPoint();
+        }
+
+        Distance calculator = DistanceCalculator.getCalculator(CRS.WGS84);
+        return calculator.distance(point, p1) <= calculator.distance(point, p2) ? p1 : p2;
+    }
 }
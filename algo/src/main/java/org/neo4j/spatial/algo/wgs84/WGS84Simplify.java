@@ -0,0 +1,55 @@
+package org.neo4j.spatial.algo.wgs84;
+
+import org.neo4j.spatial.algo.Simplify;
+import org.neo4j.spatial.core.CRS;
+import org.neo4j.spatial.core.Point;
+import org.neo4j.spatial.core.Vector;
+
+/**
+ * Simplification on the sphere, where the tolerance is given in meters and distances are measured along great circles
+ */
+public class WGS84Simplify extends Simplify {
+    @Override
+    protected CRS getCRS() {
+        return CRS.WGS84;
+    }
+
+    @Override
+    protected double distance(Point point, Point a, Point b) {
+        Vector p = new Vector(point);
+        Vector u = new Vector(a);
+        Vector v = new Vector(b);
+
+        Vector normal = u.cross(v);
+        if (normal.magnitude() == 0) {
+            return Math.min(WGSUtil.distance(p, u), WGSUtil.distance(p, v));
+        }
+        normal = normal.normalize();
+
+        // The closest point on the great circle lies on the arc iff p is 'after' u and 'before' v
+        if (u.cross(p).dot(normal) >= 0 && p.cross(v).dot(normal) >= 0) {
+            double sinCrossTrack = Math.max(-1, Math.min(1, normal.dot(p)));
+            return WGSUtil.RADIUS * Math.abs(Math.asin(sinCrossTrack));
+        }
+        return Math.min(WGSUtil.distance(p, u), WGSUtil.distance(p, v));
+    }
+
+    @Override
+    protected boolean crosses(Point a1, Point a2, Point b1, Point b2) {
+        Vector u1 = new Vector(a1);
+        Vector u2 = new Vector(a2);
+        Vector v1 = new Vector(b1);
+        Vector v2 = new Vector(b2);
+
+        Vector gc1 = u1.cross(u2);
+        Vector gc2 = v1.cross(v2);
+
+        double d1 = gc2.dot(u1);
+        double d2 = gc2.dot(u2);
+        double d3 = gc1.dot(v1);
+        double d4 = gc1.dot(v2);
+
+        // Both arcs straddle the great circle of the other, and they are on the same side of the sphere
+        return d1 * d2 < 0 && d3 * d4 < 0 && u1.add(u2).dot(v1.add(v2)) > 0;
+    }
+}
@@ -0,0 +1,117 @@
+package org.neo4j.spatial.algo;
+
+import org.junit.Test;
+import org.neo4j.spatial.core.CRS;
+import org.neo4j.spatial.core.MultiPolygon;
+import org.neo4j.spatial.core.Point;
+import org.neo4j.spatial.core.Polygon;
+
+import java.util.Random;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.fail;
+
+public class CellCoveringTest {
+
+    @Test
+    public void shouldNestCellKeys() {
+        Random random = new Random(0);
+        for (int i = 0; i < 100; i++) {
+            Point point = Point.point(CRS.WGS84, random.nextDouble() * 360 - 180, random.nextDouble() * 180 - 90);
+            long[] cells = CellCovering.cellsContaining(CellCovering.WGS84_FRAME, point, CellCovering.MAX_LEVEL);
+            long x = (long) Math.floor((point.getCoordinate()[0] + 180) / 360 * (1L << CellCovering.MAX_LEVEL));
+            long y = (long) Math.floor((point.getCoordinate()[1] + 90) / 180 * (1L << CellCovering.MAX_LEVEL));
+            for (int level = 0; level <= CellCovering.MAX_LEVEL; level++) {
+                int shift = CellCovering.MAX_LEVEL - level;
+                assertThat(cells[level], equalTo(CellCovering.key(level, x >> shift, y >> shift)));
+                assertThat(CellCovering.level(cells[level]), equalTo(level));
+            }
+        }
+    }
+
+    @Test
+    public void shouldRejectInvalidLevelsOfContainingCells() {
+        Point point = Point.point(CRS.WGS84, 12.5, 55.5);
+        for (int level : new int[]{-1, CellCovering.MAX_LEVEL + 1}) {
+            try {
+                CellCovering.cellsContaining(CellCovering.WGS84_FRAME, point, level);
+                fail("Should not find cells down to level " + level);
+            } catch (IllegalArgumentException e) {
+                assertThat(e.getMessage(), equalTo("Level must be between 0 and " + CellCovering.MAX_LEVEL + ", but was " + level));
+            }
+        }
+    }
+
+    @Test
+    public void shouldCoverCartesianPolygonWithHole() {
+        // An L shape with a hole in its corner
+        MultiPolygon polygon = new MultiPolygon();
+        polygon.insertPolygon(Polygon.simple(
+                Point.point(CRS.Cartesian, 0, 0),
+                Point.point(CRS.Cartesian, 10, 0),
+                Point.point(CRS.Cartesian, 10, 2),
+                Point.point(CRS.Cartesian, 2, 2),
+                Point.point(CRS.Cartesian, 2, 10),
+                Point.point(CRS.Cartesian, 0, 10)
+        ));
+        polygon.insertPolygon(Polygon.simple(
+                Point.point(CRS.Cartesian, 0.5, 0.5),
+                Point.point(CRS.Cartesian, 1.5, 0.5),
+                Point.point(CRS.Cartesian, 1.5, 1.5),
+                Point.point(CRS.Cartesian, 0.5, 1.5)
+        ));
+        assertCoveringAgreesWithWithin(polygon, CellCovering.cover(polygon, 12, 256), 0, 0, 10, 10);
+    }
+
+    @Test
+    public void shouldCoverLongDiagonalGeographicPolygon() {
+        // A thin strip from south-west to north-east, where the envelope is mostly outside the polygon
+        Polygon.SimplePolygon strip = Polygon.simple(
+                Point.point(CRS.WGS84, 11, 55),
+                Point.point(CRS.WGS84, 11.5, 55),
+                Point.point(CRS.WGS84, 24, 69),
+                Point.point(CRS.WGS84, 23.5, 69)
+        );
+        CellCovering covering = CellCovering.cover(strip, 16, 512);
+        assertThat(covering.getInterior().length, greaterThan(0));
+        assertThat(covering.getInterior().length + covering.getBoundary().length, lessThanOrEqualTo(512));
+        assertCoveringAgreesWithWithin(strip, covering, 11, 55, 24, 69);
+    }
+
+    @Test
+    public void shouldFallBackToBoundaryAcrossTheDateLine() {
+        Polygon.SimplePolygon polygon = Polygon.simple(
+                Point.point(CRS.WGS84, 179, 10),
+                Point.point(CRS.WGS84, -179, 10),
+                Point.point(CRS.WGS84, -179, 11),
+                Point.point(CRS.WGS84, 179, 11)
+        );
+        CellCovering covering = CellCovering.cover(polygon, 16, 256);
+        assertThat(covering.getInterior().length, equalTo(0));
+        assertThat(covering.getBoundary().length, equalTo(1));
+        assertThat(covering.classify(Point.point(CRS.WGS84, 0, 0)), equalTo(CellCovering.Position.BOUNDARY));
+    }
+
+    private static void assertCoveringAgreesWithWithin(Polygon polygon, CellCovering covering, double minX, double minY, double maxX, double maxY) {
+        Random random = new Random(1);
+        int decided = 0;
+        int total = 2000;
+        for (int i = 0; i < total; i++) {
+            Point point = Point.point(polygon.getCRS(), minX + random.nextDouble() * (maxX - minX), minY + random.nextDouble() * (maxY - minY));
+            boolean expected = WithinCalculator.within(polygon, point);
+            CellCovering.Position position = covering.classify(point);
+            if (position == CellCovering.Position.INTERIOR) {
+                assertThat("Point in interior cell should be within: " + point, expected, equalTo(true));
+                decided++;
+            } else if (position == CellCovering.Position.EXTERIOR) {
+                assertThat("Point in exterior cell should be outside: " + point, expected, equalTo(false));
+                decided++;
+            }
+            assertThat(covering.within(point), equalTo(expected));
+        }
+        assertThat("Most points should be decided by the cells alone", decided, greaterThan(total * 3 / 4));
+    }
+}
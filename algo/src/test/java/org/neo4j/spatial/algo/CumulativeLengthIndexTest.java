@@ -0,0 +1,141 @@
+package org.neo4j.spatial.algo;
+
+import org.junit.Test;
+import org.neo4j.spatial.core.CRS;
+import org.neo4j.spatial.core.LineSegment;
+import org.neo4j.spatial.core.Point;
+import org.neo4j.spatial.core.Polyline;
+
+import java.util.Random;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.Matchers.closeTo;
+import static org.junit.Assert.assertThat;
+
+public class CumulativeLengthIndexTest {
+
+    @Test
+    public void shouldLocateCartesianDistances() {
+        Polyline polyline = Polyline.polyline(
+                Point.point(CRS.Cartesian, 0, 0),
+                Point.point(CRS.Cartesian, 10, 0),
+                Point.point(CRS.Cartesian, 10, 0),
+                Point.point(CRS.Cartesian, 10, 5)
+        );
+        CumulativeLengthIndex index = new CumulativeLengthIndex(polyline);
+
+        assertThat(index.getCumulativeLengths(), equalTo(new double[]{0, 10, 10, 15}));
+        assertThat(index.length(), equalTo(15.0));
+        assertThat(index.locate(0), equalTo(Point.point(CRS.Cartesian, 0, 0)));
+        assertThat(index.locate(4), equalTo(Point.point(CRS.Cartesian, 4, 0)));
+        assertThat(index.locate(10), equalTo(Point.point(CRS.Cartesian, 10, 0)));
+        assertThat(index.locate(12), equalTo(Point.point(CRS.Cartesian, 10, 2)));
+        assertThat(index.locate(15), equalTo(Point.point(CRS.Cartesian, 10, 5)));
+        assertThat(index.locate(15.1), is(nullValue()));
+        assertThat(index.locate(-1), is(nullValue()));
+
+        Point[] located = index.locate(new double[]{12, -1, 4, 15, 0});
+        assertThat(located, equalTo(new Point[]{
+                Point.point(CRS.Cartesian, 10, 2),
+                null,
+                Point.point(CRS.Cartesian, 4, 0),
+                Point.point(CRS.Cartesian, 10, 5),
+                Point.point(CRS.Cartesian, 0, 0)
+        }));
+    }
+
+    @Test
+    public void shouldLocateLikeLinearReference() {
+        Random random = new Random(0);
+        Point[] points = new Point[50];
+        double x = 12, y = 55;
+        for (int i = 0; i < points.length; i++) {
+            x += random.nextDouble() * 0.01;
+            y += random.nextDouble() * 0.01 - 0.005;
+            points[i] = Point.point(CRS.WGS84, x, y);
+        }
+        Polyline polyline = Polyline.polyline(points);
+        CumulativeLengthIndex index = new CumulativeLengthIndex(polyline);
+        LinearReference calculator = LinearReferenceCalculator.getCalculator(CRS.WGS84);
+
+        double[] distances = new double[20];
+        for (int i = 0; i < distances.length; i++) {
+            distances[i] = random.nextDouble() * index.length();
+        }
+        Point[] located = index.locate(distances);
+        for (int i = 0; i < distances.length; i++) {
+            Point[] path = calculator.reference(polyline, points[0], points[1], distances[i]);
+            Point expected = path[path.length - 1];
+            assertThat(located[i], equalTo(index.locate(distances[i])));
+            assertThat(located[i].getCoordinate()[0], closeTo(expected.getCoordinate()[0], 1e-9));
+            assertThat(located[i].getCoordinate()[1], closeTo(expected.getCoordinate()[1], 1e-9));
+        }
+    }
+
+    @Test
+    public void shouldProjectCartesianPoints() {
+        CumulativeLengthIndex index = new CumulativeLengthIndex(new Point[]{
+                Point.point(CRS.Cartesian, 0, 0),
+                Point.point(CRS.Cartesian, 10, 0),
+                Point.point(CRS.Cartesian, 10, 10)
+        });
+
+        CumulativeLengthIndex.Projection projection = index.project(Point.point(CRS.Cartesian, 4, 3));
+        assertThat(projection.segment, equalTo(0));
+        assertThat(projection.point, equalTo(Point.point(CRS.Cartesian, 4, 0)));
+        assertThat(projection.measure, equalTo(4.0));
+        assertThat(projection.offset, equalTo(3.0));
+
+        projection = index.project(Point.point(CRS.Cartesian, 14, 7));
+        assertThat(projection.segment, equalTo(1));
+        assertThat(projection.measure, equalTo(17.0));
+        assertThat(projection.offset, equalTo(4.0));
+
+        projection = index.project(Point.point(CRS.Cartesian, -3, -4));
+        assertThat(projection.point, equalTo(Point.point(CRS.Cartesian, 0, 0)));
+        assertThat(projection.measure, equalTo(0.0));
+        assertThat(projection.offset, equalTo(5.0));
+    }
+
+    @Test
+    public void shouldProjectTracesLikeBruteForce() {
+        for (CRS crs : new CRS[]{CRS.Cartesian, CRS.WGS84}) {
+            Random random = new Random(1);
+            Point[] points = new Point[500];
+            double x = 12, y = 55;
+            for (int i = 0; i < points.length; i++) {
+                x += random.nextDouble() * 0.01 - 0.003;
+                y += random.nextDouble() * 0.01 - 0.005;
+                points[i] = Point.point(crs, x, y);
+            }
+            CumulativeLengthIndex index = new CumulativeLengthIndex(points);
+            LinearReference reference = LinearReferenceCalculator.getCalculator(crs);
+            Distance distance = DistanceCalculator.getCalculator(crs);
+
+            Point[] trace = new Point[100];
+            for (int i = 0; i < trace.length; i++) {
+                Point vertex = points[i * 5];
+                trace[i] = Point.point(crs, vertex.getCoordinate()[0] + random.nextDouble() * 0.02 - 0.01, vertex.getCoordinate()[1] + random.nextDouble() * 0.02 - 0.01);
+            }
+            CumulativeLengthIndex.Projection[] projections = index.project(trace);
+            for (int i = 0; i < trace.length; i++) {
+                double expected = Double.MAX_VALUE;
+                for (int s = 0; s < points.length - 1; s++) {
+                    Point closest = reference.project(LineSegment.lineSegment(points[s], points[s + 1]), trace[i]);
+                    expected = Math.min(expected, distance.distance(trace[i], closest));
+                }
+                assertThat(projections[i].offset, closeTo(expected, 1e-9));
+                assertThat(projections[i].offset, equalTo(index.project(trace[i]).offset));
+                assertThat(index.locate(projections[i].measure).getCoordinate()[0], closeTo(projections[i].point.getCoordinate()[0], 1e-6));
+                assertThat(index.locate(projections[i].measure).getCoordinate()[1], closeTo(projections[i].point.getCoordinate()[1], 1e-6));
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectLengthsOfOtherPolylines() {
+        new CumulativeLengthIndex(new Point[]{Point.point(CRS.Cartesian, 0, 0), Point.point(CRS.Cartesian, 1, 0)}, new double[]{0});
+    }
+}
@@ -0,0 +1,241 @@
+package org.neo4j.spatial.algo;
+
+import org.junit.Test;
+import org.neo4j.spatial.algo.cartesian.CartesianConvexHull;
+import org.neo4j.spatial.algo.wgs84.WGS84Area;
+import org.neo4j.spatial.algo.wgs84.WGS84ConvexHull;
+import org.neo4j.spatial.algo.wgs84.WGSUtil;
+import org.neo4j.spatial.core.CRS;
+import org.neo4j.spatial.core.MultiPolygon;
+import org.neo4j.spatial.core.Point;
+import org.neo4j.spatial.core.Polygon;
+import org.neo4j.spatial.core.Polyline;
+import org.neo4j.spatial.core.Vector;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.closeTo;
+import static org.junit.Assert.fail;
+
+public class GeometryAggregatesTest {
+
+    @Test
+    public void shouldAggregateCartesianPolygonWithHole() {
+        MultiPolygon multiPolygon = new MultiPolygon();
+        multiPolygon.insertPolygon(square(CRS.Cartesian, 0, 0, 10));
+        multiPolygon.insertPolygon(square(CRS.Cartesian, 6, 6, 2));
+
+        GeometryAggregates aggregates = GeometryConsumer.consume(multiPolygon, GeometryAggregatesCalculator.getCalculator(multiPolygon));
+        assertThat(aggregates.getArea(), closeTo(96, 1e-9));
+        assertThat(aggregates.getArea(), closeTo(AreaCalculator.getCalculator(multiPolygon).area(multiPolygon), 1e-9));
+        assertThat(aggregates.getLength(), closeTo(48, 1e-9));
+        assertThat(aggregates.getVertexCount(), equalTo(10L));
+        assertThat(aggregates.getMin(), equalTo(Point.point(CRS.Cartesian, 0, 0)));
+        assertThat(aggregates.getMax(), equalTo(Point.point(CRS.Cartesian, 10, 10)));
+        // The hole moves the centroid away from (5, 5): (100 * 5 - 4 * 7) / 96
+        double expected = (100 * 5 - 4 * 7) / 96.0;
+        assertThat(aggregates.getCentroid().getCoordinate()[0], closeTo(expected, 1e-9));
+        assertThat(aggregates.getCentroid().getCoordinate()[1], closeTo(expected, 1e-9));
+        assertThat(new HashSet<>(Arrays.asList(aggregates.getConvexHull().getPoints())), equalTo(new HashSet<>(Arrays.asList(square(CRS.Cartesian, 0, 0, 10).getPoints()))));
+    }
+
+    @Test
+    public void shouldFindSameConvexHullAsGrahamScan() {
+        Random random = new Random(0);
+        for (int test = 0; test < 20; test++) {
+            Polygon.SimplePolygon star = star(CRS.Cartesian, random, 0, 0, 10, 200);
+            GeometryAggregates aggregates = GeometryConsumer.consume(star, MultiPolygon.PolygonType.SHELL, GeometryAggregatesCalculator.getCalculator(star));
+            assertThat(asSet(aggregates.getConvexHull()), equalTo(asSet(CartesianConvexHull.convexHull(star))));
+            assertThat(aggregates.getArea(), closeTo(AreaCalculator.getCalculator(star).area(star), 1e-6));
+        }
+    }
+
+    @Test
+    public void shouldAggregateGeographicPolygons() {
+        Random random = new Random(0);
+        for (int test = 0; test < 20; test++) {
+            Polygon.SimplePolygon star = star(CRS.WGS84, random, 10, 50, 1, 200);
+            GeometryAggregates aggregates = GeometryConsumer.consume(star, MultiPolygon.PolygonType.SHELL, GeometryAggregatesCalculator.getCalculator(star));
+            double area = new WGS84Area().area(star);
+            assertThat(aggregates.getArea(), closeTo(area, area * 1e-6));
+            assertThat(asSet(aggregates.getConvexHull()), equalTo(asSet(WGS84ConvexHull.convexHull(star))));
+        }
+
+        Polygon.SimplePolygon square = square(CRS.WGS84, 9.9, -0.1, 0.2);
+        GeometryAggregates aggregates = GeometryConsumer.consume(square, MultiPolygon.PolygonType.SHELL, GeometryAggregatesCalculator.getCalculator(square));
+        assertThat(aggregates.getCentroid().getCoordinate()[0], closeTo(10, 1e-9));
+        assertThat(aggregates.getCentroid().getCoordinate()[1], closeTo(0, 1e-9));
+        assertThat(aggregates.getLength(), closeTo(4 * WGSUtil.RADIUS * Math.toRadians(0.2), 10));
+    }
+
+    @Test
+    public void shouldAggregateGeographicRingsAroundThePoles() {
+        Polygon.SimplePolygon equator = Polygon.simple(
+                Point.point(CRS.WGS84, 0, 0),
+                Point.point(CRS.WGS84, 90, 0),
+                Point.point(CRS.WGS84, 179, 0),
+                Point.point(CRS.WGS84, -179, 0),
+                Point.point(CRS.WGS84, -90, 0)
+        );
+        GeometryAggregates aggregates = GeometryConsumer.consume(equator, MultiPolygon.PolygonType.SHELL, GeometryAggregatesCalculator.getCalculator(equator));
+        assertThat(aggregates.getArea(), closeTo(2 * Math.PI * WGSUtil.RADIUS * WGSUtil.RADIUS, 0.1e12));
+        assertThat(aggregates.getLength(), closeTo(2 * Math.PI * WGSUtil.RADIUS, 1));
+    }
+
+    @Test
+    public void shouldAggregatePolylines() {
+        Polyline polyline = Polyline.polyline(
+                Point.point(CRS.Cartesian, 0, 0),
+                Point.point(CRS.Cartesian, 4, 0),
+                Point.point(CRS.Cartesian, 4, 3)
+        );
+        GeometryAggregates aggregates = GeometryConsumer.consume(polyline, GeometryAggregatesCalculator.getCalculator(polyline));
+        assertThat(aggregates.getArea(), equalTo(0.0));
+        assertThat(aggregates.getLength(), closeTo(7, 1e-9));
+        assertThat(aggregates.getCentroid().getCoordinate()[0], closeTo((4 * 2 + 3 * 4) / 7.0, 1e-9));
+        assertThat(aggregates.getCentroid().getCoordinate()[1], closeTo((3 * 1.5) / 7.0, 1e-9));
+        assertThat(aggregates.getConvexHull().getPoints().length, equalTo(4));
+    }
+
+    @Test
+    public void shouldCountClosingVertexOfRingsOnce() {
+        GeometryAggregates aggregates = GeometryAggregatesCalculator.getCalculator(CRS.Cartesian);
+        aggregates.startPolygon(MultiPolygon.PolygonType.SHELL);
+        for (double[] coordinate : new double[][]{{0, 0}, {4, 0}, {4, 3}, {0, 3}, {0, 0}}) {
+            aggregates.vertex(Point.point(CRS.Cartesian, coordinate));
+        }
+        aggregates.end();
+        assertThat(aggregates.getVertexCount(), equalTo(4L));
+        assertThat(aggregates.getLength(), closeTo(14, 1e-9));
+    }
+
+    @Test
+    public void shouldKeepBothExtremesOfCollinearStartPoints() {
+        Polyline polyline = Polyline.polyline(
+                Point.point(CRS.Cartesian, 0, 0),
+                Point.point(CRS.Cartesian, 2, 0),
+                Point.point(CRS.Cartesian, -5, 0),
+                Point.point(CRS.Cartesian, 1, 0),
+                Point.point(CRS.Cartesian, 0, 5)
+        );
+        GeometryAggregates aggregates = GeometryConsumer.consume(polyline, GeometryAggregatesCalculator.getCalculator(polyline));
+        assertThat(asSet(aggregates.getConvexHull()), equalTo(new HashSet<>(Arrays.asList(
+                Point.point(CRS.Cartesian, -5, 0),
+                Point.point(CRS.Cartesian, 2, 0),
+                Point.point(CRS.Cartesian, 0, 5)
+        ))));
+    }
+
+    @Test
+    public void shouldAggregatePointsInAnyOrder() {
+        Random random = new Random(0);
+        for (CRS crs : new CRS[]{CRS.Cartesian, CRS.WGS84}) {
+            Point[] points = new Point[5000];
+            GeometryAggregates aggregates = GeometryAggregatesCalculator.getCalculator(crs);
+            for (int i = 0; i < points.length; i++) {
+                points[i] = Point.point(crs, 10 + random.nextGaussian(), 50 + random.nextGaussian());
+                aggregates.point(points[i]);
+            }
+            if (crs == CRS.Cartesian) {
+                assertThat(asSet(aggregates.getConvexHull()), equalTo(asSet(CartesianConvexHull.convexHull(points))));
+            } else {
+                // The projections differ, so points that are nearly on an edge of the hull may be kept by only one of them
+                Polygon.SimplePolygon expected = WGS84ConvexHull.convexHull(points);
+                assertThat(asSet(expected).containsAll(asSet(aggregates.getConvexHull())), equalTo(true));
+                double area = new WGS84Area().area(expected);
+                assertThat(new WGS84Area().area(aggregates.getConvexHull()), closeTo(area, area * 1e-4));
+            }
+            assertThat(aggregates.getVertexCount(), equalTo(5000L));
+        }
+    }
+
+    @Test
+    public void shouldFindHullOfPointsSpreadOverAHemisphereInAnyOrder() {
+        Random random = new Random(0);
+        List<Point> points = new ArrayList<>(Arrays.asList(
+                Point.point(CRS.WGS84, 80, 0),
+                Point.point(CRS.WGS84, -80, 0),
+                Point.point(CRS.WGS84, 0, 80),
+                Point.point(CRS.WGS84, 0, -80)
+        ));
+        while (points.size() < 100) {
+            Point point = Point.point(CRS.WGS84, random.nextDouble() * 180 - 90, random.nextDouble() * 180 - 90);
+            // Within 87 degrees of (0 0)
+            if (new Vector(point).getCoordinate(0) > 0.05) {
+                points.add(point);
+            }
+        }
+        Polygon.SimplePolygon expected = WGS84ConvexHull.convexHull(points.toArray(new Point[0]));
+        double area = new WGS84Area().area(expected);
+        for (int i = 0; i < 10; i++) {
+            GeometryAggregates aggregates = GeometryAggregatesCalculator.getCalculator(CRS.WGS84);
+            for (Point point : points) {
+                aggregates.point(point);
+            }
+            assertThat(asSet(expected).containsAll(asSet(aggregates.getConvexHull())), equalTo(true));
+            assertThat(new WGS84Area().area(aggregates.getConvexHull()), closeTo(area, area * 1e-4));
+            Collections.shuffle(points, random);
+        }
+    }
+
+    @Test
+    public void shouldFindHullOfRingsReachingAcrossAHemisphere() {
+        // A convex ring of points 85 degrees from (0 0), starting at the point farthest from where it ends up
+        Point[] ring = new Point[72];
+        for (int i = 0; i < ring.length; i++) {
+            double angle = 2 * Math.PI * i / ring.length;
+            Vector vector = new Vector(Math.cos(Math.toRadians(85)), Math.sin(Math.toRadians(85)) * Math.cos(angle), Math.sin(Math.toRadians(85)) * Math.sin(angle));
+            ring[i] = vector.toPoint();
+        }
+        Polygon.SimplePolygon polygon = Polygon.simple(ring);
+        GeometryAggregates aggregates = GeometryConsumer.consume(polygon, MultiPolygon.PolygonType.SHELL, GeometryAggregatesCalculator.getCalculator(polygon));
+        assertThat(asSet(aggregates.getConvexHull()), equalTo(new HashSet<>(Arrays.asList(ring))));
+    }
+
+    @Test
+    public void shouldRejectHullOfPointsAllAroundTheEarth() {
+        GeometryAggregates aggregates = GeometryAggregatesCalculator.getCalculator(CRS.WGS84);
+        for (double[] coordinate : new double[][]{{0, 0}, {90, 0}, {180, 0}, {-90, 0}, {0, 90}, {0, -90}}) {
+            aggregates.point(Point.point(CRS.WGS84, coordinate));
+        }
+        try {
+            aggregates.getConvexHull();
+            fail("Should not find a hull of points that are not on one hemisphere");
+        } catch (IllegalArgumentException e) {
+            assertThat(e.getMessage(), equalTo("Points do not lie all on the same hemisphere"));
+        }
+    }
+
+    private static HashSet<Point> asSet(Polygon.SimplePolygon polygon) {
+        return new HashSet<>(Arrays.asList(polygon.getPoints()));
+    }
+
+    private static Polygon.SimplePolygon square(CRS crs, double x, double y, double size) {
+        return Polygon.simple(
+                Point.point(crs, x, y),
+                Point.point(crs, x + size, y),
+                Point.point(crs, x + size, y + size),
+                Point.point(crs, x, y + size)
+        );
+    }
+
+    /**
+     * @return A simple polygon with the given number of vertices at random distances around the center
+     */
+    private static Polygon.SimplePolygon star(CRS crs, Random random, double x, double y, double radius, int size) {
+        Point[] points = new Point[size];
+        for (int i = 0; i < size; i++) {
+            double angle = 2 * Math.PI * i / size;
+            double distance = radius * (0.2 + 0.8 * random.nextDouble());
+            points[i] = Point.point(crs, x + distance * Math.cos(angle), y + distance * Math.sin(angle));
+        }
+        return Polygon.simple(points);
+    }
+}
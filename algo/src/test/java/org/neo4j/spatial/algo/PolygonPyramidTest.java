@@ -0,0 +1,80 @@
+package org.neo4j.spatial.algo;
+
+import org.junit.Test;
+import org.neo4j.spatial.core.CRS;
+import org.neo4j.spatial.core.Point;
+import org.neo4j.spatial.core.Polygon;
+import org.neo4j.spatial.core.Polyline;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class PolygonPyramidTest {
+
+    private static Polygon.SimplePolygon makeJaggedCircle(int count, double radius) {
+        Point[] points = new Point[count];
+        for (int i = 0; i < count; i++) {
+            double angle = 2 * Math.PI * i / count;
+            double r = radius * (1 + 0.01 * (i % 2));
+            points[i] = Point.point(CRS.Cartesian, r * Math.cos(angle), r * Math.sin(angle));
+        }
+        return Polygon.simple(points);
+    }
+
+    @Test
+    public void shouldAnswerFromCoarsestLevelWhenFarFromBoundary() {
+        Polygon.SimplePolygon polygon = makeJaggedCircle(1000, 100);
+
+        PolygonPyramid pyramid = PolygonPyramid.build(polygon, 0.5, 2, 10);
+        assertThat(pyramid.getLevelCount(), equalTo(4));
+
+        assertThat(pyramid.within(Point.point(CRS.Cartesian, 0, 0)), equalTo(true));
+        assertThat(pyramid.getLoadCount(), equalTo(1));
+        assertThat(pyramid.within(Point.point(CRS.Cartesian, 200, 0)), equalTo(false));
+        assertThat(pyramid.getLoadCount(), equalTo(1));
+    }
+
+    @Test
+    public void shouldRefineNearBoundary() {
+        Polygon.SimplePolygon polygon = makeJaggedCircle(1000, 100);
+
+        PolygonPyramid pyramid = PolygonPyramid.build(polygon, 0.5, 2, 10);
+
+        Point inside = Point.point(CRS.Cartesian, 100.5, 0);
+        Point outside = Point.point(CRS.Cartesian, 101.5, 0);
+        assertThat(pyramid.within(inside), equalTo(WithinCalculator.within(polygon, inside)));
+        assertThat(pyramid.within(outside), equalTo(WithinCalculator.within(polygon, outside)));
+        assertThat(pyramid.getLoadCount(), equalTo(4));
+    }
+
+    @Test
+    public void shouldFindWithinDistance() {
+        Polygon.SimplePolygon polygon = makeJaggedCircle(1000, 100);
+
+        PolygonPyramid pyramid = PolygonPyramid.build(polygon, 0.5, 2, 10);
+
+        Point point = Point.point(CRS.Cartesian, 150, 0);
+        assertThat(pyramid.withinDistance(point, 10), equalTo(false));
+        assertThat(pyramid.withinDistance(point, 100), equalTo(true));
+        assertThat(pyramid.getLoadCount(), equalTo(1));
+
+        assertThat(pyramid.withinDistance(point, 49.5), equalTo(true));
+        assertThat(pyramid.withinDistance(point, 48.5), equalTo(false));
+        assertThat(pyramid.withinDistance(Point.point(CRS.Cartesian, 0, 0), 1), equalTo(true));
+    }
+
+    @Test
+    public void shouldFindIntersectingPolylines() {
+        Polygon.SimplePolygon polygon = makeJaggedCircle(1000, 100);
+
+        PolygonPyramid pyramid = PolygonPyramid.build(polygon, 0.5, 2, 10);
+
+        Polyline inside = Polyline.polyline(Point.point(CRS.Cartesian, -10, 0), Point.point(CRS.Cartesian, 10, 0));
+        Polyline outside = Polyline.polyline(Point.point(CRS.Cartesian, 150, 0), Point.point(CRS.Cartesian, 150, 10));
+        Polyline crossing = Polyline.polyline(Point.point(CRS.Cartesian, 0, 0), Point.point(CRS.Cartesian, 150, 0));
+        assertThat(pyramid.intersects(inside), equalTo(true));
+        assertThat(pyramid.intersects(outside), equalTo(false));
+        assertThat(pyramid.getLoadCount(), equalTo(1));
+        assertThat(pyramid.intersects(crossing), equalTo(true));
+    }
+}
@@ -0,0 +1,96 @@
+package org.neo4j.spatial.algo;
+
+import org.junit.Test;
+import org.neo4j.spatial.algo.cartesian.CartesianWithin;
+import org.neo4j.spatial.core.CRS;
+import org.neo4j.spatial.core.MultiPolygon;
+import org.neo4j.spatial.core.Point;
+import org.neo4j.spatial.core.Polygon;
+
+import java.util.Random;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
+
+public class PreparedPolygonTest {
+
+    @Test
+    public void shouldAgreeWithWithinForCartesianPolygonWithHoles() {
+        Random random = new Random(0);
+        MultiPolygon polygon = new MultiPolygon();
+        polygon.insertPolygon(star(CRS.Cartesian, random, 0, 0, 10, 200));
+        polygon.insertPolygon(star(CRS.Cartesian, random, 0, 0, 1, 20));
+        polygon.insertPolygon(star(CRS.Cartesian, random, 30, 0, 5, 50));
+        assertAgreesWithWithin(polygon, PreparedPolygon.prepare(polygon), random, -15, -15, 40, 15);
+    }
+
+    @Test
+    public void shouldAgreeWithWithinForGeographicPolygon() {
+        Random random = new Random(0);
+        Polygon.SimplePolygon star = star(CRS.WGS84, random, 170, 50, 5, 100);
+        PreparedPolygon prepared = PreparedPolygon.prepare(star);
+        for (int i = 0; i < 1000; i++) {
+            Point point = Point.point(CRS.WGS84, 160 + random.nextDouble() * 20, 40 + random.nextDouble() * 20);
+            assertThat("Should agree for " + point, prepared.within(point), equalTo(WithinCalculator.within(star, point)));
+        }
+        assertThat(prepared.getVertexCount(), equalTo(101));
+    }
+
+    @Test
+    public void shouldAgreeWithCartesianWithinWhenPreparedPlanar() {
+        Random random = new Random(0);
+        Polygon.SimplePolygon star = star(CRS.WGS84, random, 0, 60, 30, 100);
+        PreparedPolygon prepared = PreparedPolygon.preparePlanar(star);
+        for (int i = 0; i < 2000; i++) {
+            Point point = Point.point(CRS.WGS84, -40 + random.nextDouble() * 80, 25 + random.nextDouble() * 65);
+            assertThat("Should agree for " + point, prepared.within(point), equalTo(CartesianWithin.within(star, point)));
+        }
+        // The ring around the pole is tested on its coordinates too, instead of being rejected
+        Polygon.SimplePolygon aroundPole = Polygon.simple(
+                Point.point(CRS.WGS84, 0, 80),
+                Point.point(CRS.WGS84, 90, 80),
+                Point.point(CRS.WGS84, 180, 80),
+                Point.point(CRS.WGS84, -90, 80)
+        );
+        Point nearPole = Point.point(CRS.WGS84, 0, 85);
+        assertThat(PreparedPolygon.preparePlanar(aroundPole).within(nearPole), equalTo(CartesianWithin.within(aroundPole, nearPole)));
+    }
+
+    @Test
+    public void shouldRejectGeographicPolygonAroundThePole() {
+        Polygon.SimplePolygon polygon = Polygon.simple(
+                Point.point(CRS.WGS84, 0, 80),
+                Point.point(CRS.WGS84, 90, 80),
+                Point.point(CRS.WGS84, 180, 80),
+                Point.point(CRS.WGS84, -90, 80)
+        );
+        PreparedPolygon prepared = PreparedPolygon.prepare(polygon);
+        try {
+            prepared.within(Point.point(CRS.WGS84, 0, 85));
+            fail("Should not test points in polygons containing a pole");
+        } catch (IllegalArgumentException e) {
+            assertThat(e.getMessage(), equalTo("Polygon contains at least one pole"));
+        }
+    }
+
+    private static void assertAgreesWithWithin(Polygon polygon, PreparedPolygon prepared, Random random, double minX, double minY, double maxX, double maxY) {
+        for (int i = 0; i < 2000; i++) {
+            Point point = Point.point(polygon.getCRS(), minX + random.nextDouble() * (maxX - minX), minY + random.nextDouble() * (maxY - minY));
+            assertThat("Should agree for " + point, prepared.within(point), equalTo(WithinCalculator.within(polygon, point)));
+        }
+    }
+
+    /**
+     * @return A simple polygon with the given number of vertices at random distances around the center
+     */
+    private static Polygon.SimplePolygon star(CRS crs, Random random, double x, double y, double radius, int size) {
+        Point[] points = new Point[size];
+        for (int i = 0; i < size; i++) {
+            double angle = 2 * Math.PI * i / size;
+            double distance = radius * (0.2 + 0.8 * random.nextDouble());
+            points[i] = Point.point(crs, x + distance * Math.cos(angle), y + distance * Math.sin(angle));
+        }
+        return Polygon.simple(points);
+    }
+}
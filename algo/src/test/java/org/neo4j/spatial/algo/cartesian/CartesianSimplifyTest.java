@@ -0,0 +1,138 @@
+package org.neo4j.spatial.algo.cartesian;
+
+import org.junit.Test;
+import org.neo4j.spatial.algo.Simplify;
+import org.neo4j.spatial.algo.SimplifyCalculator;
+import org.neo4j.spatial.algo.WithinCalculator;
+import org.neo4j.spatial.core.CRS;
+import org.neo4j.spatial.core.MultiPolygon;
+import org.neo4j.spatial.core.Point;
+import org.neo4j.spatial.core.Polygon;
+import org.neo4j.spatial.core.Polyline;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class CartesianSimplifyTest {
+
+    @Test
+    public void simplifyPolyline() {
+        Polyline polyline = Polyline.polyline(
+                Point.point(CRS.Cartesian, 0, 0),
+                Point.point(CRS.Cartesian, 1, 0.1),
+                Point.point(CRS.Cartesian, 2, -0.1),
+                Point.point(CRS.Cartesian, 3, 5),
+                Point.point(CRS.Cartesian, 4, 6.1),
+                Point.point(CRS.Cartesian, 5, 7)
+        );
+
+        Simplify calculator = SimplifyCalculator.getCalculator(CRS.Cartesian);
+
+        Point[] expected = new Point[]{
+                Point.point(CRS.Cartesian, 0, 0),
+                Point.point(CRS.Cartesian, 2, -0.1),
+                Point.point(CRS.Cartesian, 3, 5),
+                Point.point(CRS.Cartesian, 5, 7)
+        };
+        assertThat(calculator.simplify(polyline, 0.5).getPoints(), equalTo(expected));
+        assertThat(calculator.simplify(polyline, 0).getPoints(), equalTo(polyline.getPoints()));
+    }
+
+    @Test
+    public void simplifyPolygon() {
+        Polygon.SimplePolygon polygon = Polygon.simple(
+                Point.point(CRS.Cartesian, 0, 0),
+                Point.point(CRS.Cartesian, 5, 0.01),
+                Point.point(CRS.Cartesian, 10, 0),
+                Point.point(CRS.Cartesian, 10, 10),
+                Point.point(CRS.Cartesian, 5, 9.99),
+                Point.point(CRS.Cartesian, 0, 10)
+        );
+
+        Simplify calculator = SimplifyCalculator.getCalculator(polygon);
+
+        Polygon.SimplePolygon expected = Polygon.simple(
+                Point.point(CRS.Cartesian, 0, 0),
+                Point.point(CRS.Cartesian, 10, 0),
+                Point.point(CRS.Cartesian, 10, 10),
+                Point.point(CRS.Cartesian, 0, 10)
+        );
+        assertThat(calculator.simplify(polygon, 0.1), equalTo(expected));
+    }
+
+    @Test
+    public void simplifiedPolygonKeepsThreeDistinctVertices() {
+        Polygon.SimplePolygon polygon = Polygon.simple(
+                Point.point(CRS.Cartesian, 0, 0),
+                Point.point(CRS.Cartesian, 10, 0),
+                Point.point(CRS.Cartesian, 10, 10),
+                Point.point(CRS.Cartesian, 0, 10)
+        );
+
+        Simplify calculator = SimplifyCalculator.getCalculator(polygon);
+
+        assertThat(calculator.simplify(polygon, 100).getPoints().length, equalTo(4));
+    }
+
+    @Test
+    public void simplificationShouldNotCutThroughHoles() {
+        Polygon.SimplePolygon shell = Polygon.simple(
+                Point.point(CRS.Cartesian, 0, 0),
+                Point.point(CRS.Cartesian, 10, 0),
+                Point.point(CRS.Cartesian, 10, 10),
+                Point.point(CRS.Cartesian, 5, 11),
+                Point.point(CRS.Cartesian, 0, 10)
+        );
+        Polygon.SimplePolygon hole = Polygon.simple(
+                Point.point(CRS.Cartesian, 4, 9.5),
+                Point.point(CRS.Cartesian, 6, 9.5),
+                Point.point(CRS.Cartesian, 5, 10.5)
+        );
+        MultiPolygon multiPolygon = new MultiPolygon();
+        multiPolygon.insertPolygon(shell);
+        multiPolygon.insertPolygon(hole);
+
+        Simplify calculator = SimplifyCalculator.getCalculator(CRS.Cartesian);
+
+        // On its own the top vertex of the shell is within tolerance
+        assertThat(calculator.simplify(shell, 2).getPoints().length, equalTo(5));
+
+        MultiPolygon simplified = calculator.simplify(multiPolygon, 2);
+        assertThat(simplified.getShells().length, equalTo(1));
+        assertThat(simplified.getHoles().length, equalTo(1));
+        assertThat(simplified.getShells()[0], equalTo(shell));
+        assertThat(simplified.getHoles()[0], equalTo(hole));
+    }
+
+    @Test
+    public void simplificationShouldNotSweepPastHoles() {
+        Polygon.SimplePolygon shell = Polygon.simple(
+                Point.point(CRS.Cartesian, 0, 0),
+                Point.point(CRS.Cartesian, 20, 0),
+                Point.point(CRS.Cartesian, 20, 10),
+                Point.point(CRS.Cartesian, 10.5, 10),
+                Point.point(CRS.Cartesian, 10, 14),
+                Point.point(CRS.Cartesian, 9.5, 10),
+                Point.point(CRS.Cartesian, 0, 10)
+        );
+        Polygon.SimplePolygon hole = Polygon.simple(
+                Point.point(CRS.Cartesian, 9.9, 11),
+                Point.point(CRS.Cartesian, 10.1, 11),
+                Point.point(CRS.Cartesian, 10, 11.5)
+        );
+        MultiPolygon multiPolygon = new MultiPolygon();
+        multiPolygon.insertPolygon(shell);
+        multiPolygon.insertPolygon(hole);
+
+        Simplify calculator = SimplifyCalculator.getCalculator(CRS.Cartesian);
+
+        // On its own the spike is within tolerance, and the simplified shell does not cross the hole
+        assertThat(calculator.simplify(shell, 5).getPoints().length, equalTo(5));
+
+        MultiPolygon simplified = calculator.simplify(multiPolygon, 5);
+        assertThat(simplified.getShells().length, equalTo(1));
+        assertThat(simplified.getHoles().length, equalTo(1));
+        assertThat(simplified.getHoles()[0], equalTo(hole));
+        assertThat(WithinCalculator.within(simplified.getShells()[0], hole.getPoints()[0]), equalTo(true));
+    }
+}
@@ -0,0 +1,71 @@
+package org.neo4j.spatial.algo.wgs84;
+
+import org.junit.Test;
+import org.neo4j.spatial.algo.Simplify;
+import org.neo4j.spatial.algo.SimplifyCalculator;
+import org.neo4j.spatial.core.CRS;
+import org.neo4j.spatial.core.Point;
+import org.neo4j.spatial.core.Polygon;
+import org.neo4j.spatial.core.Polyline;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class WGS84SimplifyTest {
+
+    @Test
+    public void simplifyPolyline() {
+        // Roughly 11m north of the equator at the middle point
+        Polyline polyline = Polyline.polyline(
+                Point.point(CRS.WGS84, 0, 0),
+                Point.point(CRS.WGS84, 0.5, 0.0001),
+                Point.point(CRS.WGS84, 1, 0)
+        );
+
+        Simplify calculator = SimplifyCalculator.getCalculator(polyline);
+
+        assertThat(calculator.simplify(polyline, 20).getPoints().length, equalTo(2));
+        assertThat(calculator.simplify(polyline, 5).getPoints().length, equalTo(3));
+    }
+
+    @Test
+    public void simplifyPolygon() {
+        // Meridians are great circles, so the second point is less than a meter off the western edge
+        Polygon.SimplePolygon polygon = Polygon.simple(
+                Point.point(CRS.WGS84, 10, 50),
+                Point.point(CRS.WGS84, 10.00001, 50.5),
+                Point.point(CRS.WGS84, 10, 51),
+                Point.point(CRS.WGS84, 11, 51),
+                Point.point(CRS.WGS84, 11, 50)
+        );
+
+        Simplify calculator = SimplifyCalculator.getCalculator(polygon);
+
+        Polygon.SimplePolygon simplified = calculator.simplify(polygon, 100);
+        assertThat(simplified.getPoints().length, equalTo(5));
+        assertThat(calculator.simplify(polygon, 0).getPoints().length, equalTo(6));
+    }
+
+    @Test
+    public void simplifyPolylinesWithoutCrossingTheBulgeOfAGreatCircle() {
+        // Simplified to its end points, the first line bulges north to about 85 degrees, across the second line
+        Polyline parallel = Polyline.polyline(
+                Point.point(CRS.WGS84, -60, 80),
+                Point.point(CRS.WGS84, -30, 80),
+                Point.point(CRS.WGS84, 0, 80),
+                Point.point(CRS.WGS84, 30, 80),
+                Point.point(CRS.WGS84, 60, 80)
+        );
+        Polyline north = Polyline.polyline(
+                Point.point(CRS.WGS84, 0, 82),
+                Point.point(CRS.WGS84, 0.5, 88)
+        );
+
+        Simplify calculator = SimplifyCalculator.getCalculator(parallel);
+
+        assertThat(calculator.simplify(parallel, 1000000).getPoints().length, equalTo(2));
+        Polyline[] simplified = calculator.simplify(new Polyline[]{parallel, north}, 1000000);
+        assertThat(simplified[0].getPoints().length, equalTo(3));
+        assertThat(simplified[1].getPoints().length, equalTo(2));
+    }
+}
@@ -6,6 +6,8 @@ import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.Label;
 import org.neo4j.graphdb.Node;
 import org.neo4j.graphdb.Transaction;
+import org.neo4j.kernel.api.KernelTransaction;
+import org.neo4j.kernel.impl.coreapi.InternalTransaction;
 import org.neo4j.spatial.algo.Area;
 import org.neo4j.spatial.algo.cartesian.CartesianArea;
 import org.neo4j.spatial.algo.wgs84.WGS84Area;
@@ -119,6 +121,32 @@ public class AreaMacroBenchmarks {
         }
     }
 
+    @Benchmark
+    public void testCartesianAreaGraphWalker(Blackhole bh) {
+        try (Transaction tx = db.beginTx()) {
+            KernelTransaction ktx = ((InternalTransaction) tx).kernelTransaction();
+            for (Node osmRelation : nodes) {
+                MultiPolygon polygon = UserDefinedFunctions.getGraphNodePolygon(osmRelation, ktx);
+
+                bh.consume(cartesianCalculator.area(polygon));
+            }
+            tx.commit();
+        }
+    }
+
+    @Benchmark
+    public void testGeographicAreaGraphWalker(Blackhole bh) {
+        try (Transaction tx = db.beginTx()) {
+            KernelTransaction ktx = ((InternalTransaction) tx).kernelTransaction();
+            for (Node osmRelation : nodes) {
+                MultiPolygon polygon = UserDefinedFunctions.getGraphNodePolygon(osmRelation, ktx);
+
+                bh.consume(WGS84Calculator.area(polygon));
+            }
+            tx.commit();
+        }
+    }
+
     @Benchmark
     public void testCartesianAreaProperty(Blackhole bh) {
         try {
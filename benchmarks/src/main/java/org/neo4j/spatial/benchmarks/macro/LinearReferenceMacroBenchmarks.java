@@ -6,6 +6,8 @@ import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.Label;
 import org.neo4j.graphdb.Node;
 import org.neo4j.graphdb.Transaction;
+import org.neo4j.kernel.api.KernelTransaction;
+import org.neo4j.kernel.impl.coreapi.InternalTransaction;
 import org.neo4j.spatial.algo.Distance;
 import org.neo4j.spatial.algo.DistanceCalculator;
 import org.neo4j.spatial.algo.LinearReferenceCalculator;
@@ -23,6 +25,7 @@ import org.openjdk.jmh.runner.options.Options;
 import org.openjdk.jmh.runner.options.OptionsBuilder;
 
 import java.nio.file.Path;
+import java.util.Iterator;
 import java.util.Random;
 
 import static org.neo4j.configuration.GraphDatabaseInternalSettings.databases_root_path;
@@ -109,9 +112,9 @@ public class LinearReferenceMacroBenchmarks {
                     cartesianDist += cartesianDistanceCalc.distance(polygon.getPoints()[j], polygon.getPoints()[j+1]);
                 }
 
-                polygon.startTraversal();
-                start[i] = polygon.getNextPoint();
-                direction[i] = polygon.getNextPoint();
+                Iterator<Point> vertices = polygon.vertices();
+                start[i] = vertices.next();
+                direction[i] = vertices.next();
                 geographicDistance[i] = geographicDist + r.nextDouble() * 1.5;
                 cartesianDistance[i] = cartesianDist + r.nextDouble() * 1.5;
 
@@ -152,6 +155,32 @@ public class LinearReferenceMacroBenchmarks {
         }
     }
 
+    @Benchmark
+    public void testCartesianLinearReferenceGraphWalker(Blackhole bh) {
+        try (Transaction tx = db.beginTx()) {
+            KernelTransaction ktx = ((InternalTransaction) tx).kernelTransaction();
+            for (int i = 0; i < nodes.length; i++) {
+                Polygon.SimplePolygon polygon = UserDefinedFunctions.getGraphNodePolygon(nodes[i], ktx).getChildren().get(0).getPolygon();
+
+                bh.consume(LinearReferenceCalculator.getCalculator(CRS.Cartesian).reference(polygon, start[i], direction[i], cartesianDistance[i]));
+            }
+            tx.commit();
+        }
+    }
+
+    @Benchmark
+    public void testGeographicLinearReferenceGraphWalker(Blackhole bh) {
+        try (Transaction tx = db.beginTx()) {
+            KernelTransaction ktx = ((InternalTransaction) tx).kernelTransaction();
+            for (int i = 0; i < nodes.length; i++) {
+                Polygon.SimplePolygon polygon = UserDefinedFunctions.getGraphNodePolygon(nodes[i], ktx).getChildren().get(0).getPolygon();
+
+                bh.consume(LinearReferenceCalculator.getCalculator(CRS.WGS84).reference(polygon, start[i], direction[i], geographicDistance[i]));
+            }
+            tx.commit();
+        }
+    }
+
     @Benchmark
     public void testCartesianLinearReferenceProperty(Blackhole bh) {
         try {
@@ -0,0 +1,133 @@
+package org.neo4j.spatial.benchmarks.macro;
+
+import org.neo4j.dbms.api.DatabaseManagementService;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.kernel.api.KernelTransaction;
+import org.neo4j.kernel.impl.coreapi.InternalTransaction;
+import org.neo4j.spatial.benchmarks.JfrProfiler;
+import org.neo4j.spatial.neo4j.OSMTraverser;
+import org.neo4j.spatial.neo4j.Relation;
+import org.neo4j.test.TestDatabaseManagementServiceBuilder;
+import org.neo4j.values.storable.CoordinateReferenceSystem;
+import org.neo4j.values.storable.PointValue;
+import org.neo4j.values.storable.Values;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Joins a relation made of many short ways, shuffled and partly reversed, which together form a few large rings, like
+ * the members of a national border. With a gap the ways do not share end nodes, like a broken coastline, and are
+ * joined by the proximity of their ends instead.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@BenchmarkMode(Mode.AverageTime)
+public class OSMTraverserMacroBenchmarks {
+
+    @Param({"100", "1000", "5000"})
+    private int ways;
+
+    @Param({"0", "0.0005"})
+    private double gap;
+
+    private static final int RINGS = 4;
+    private static final int NODES_PER_WAY = 4;
+
+    private DatabaseManagementService databases;
+    private GraphDatabaseService db;
+    private long mainId;
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(OSMTraverserMacroBenchmarks.class.getSimpleName())
+                .forks(1)
+                .addProfiler(JfrProfiler.class)
+                .build();
+
+        new Runner(opt).run();
+    }
+
+    @Setup
+    public void setup() {
+        databases = new TestDatabaseManagementServiceBuilder().impermanent().build();
+        db = databases.database("neo4j");
+
+        try (Transaction tx = db.beginTx()) {
+            Node main = tx.createNode(Label.label("OSMRelation"));
+            main.setProperty("relation_osm_id", 1L);
+            mainId = main.getId();
+
+            List<Node[]> fragments = new ArrayList<>();
+            int waysPerRing = ways / RINGS;
+            for (int ring = 0; ring < RINGS; ring++) {
+                Node[] nodes = new Node[waysPerRing * (NODES_PER_WAY - 1)];
+                for (int i = 0; i < nodes.length; i++) {
+                    double angle = 2 * Math.PI * i / nodes.length;
+                    nodes[i] = tx.createNode(Label.label("OSMNode"));
+                    nodes[i].setProperty("location", Values.pointValue(CoordinateReferenceSystem.WGS84, 10 * ring + Math.cos(angle), Math.sin(angle)));
+                }
+                for (int i = 0; i < nodes.length; i += NODES_PER_WAY - 1) {
+                    Node[] fragment = new Node[NODES_PER_WAY];
+                    for (int j = 0; j < NODES_PER_WAY; j++) {
+                        fragment[j] = nodes[(i + j) % nodes.length];
+                    }
+                    if (gap != 0) {
+                        double[] end = ((PointValue) fragment[NODES_PER_WAY - 1].getProperty("location")).coordinate();
+                        fragment[NODES_PER_WAY - 1] = tx.createNode(Label.label("OSMNode"));
+                        fragment[NODES_PER_WAY - 1].setProperty("location", Values.pointValue(CoordinateReferenceSystem.WGS84, end[0] + gap, end[1]));
+                    }
+                    fragments.add(fragment);
+                }
+            }
+
+            Random random = new Random(0);
+            Collections.shuffle(fragments, random);
+            for (Node[] fragment : fragments) {
+                if (random.nextBoolean()) {
+                    Collections.reverse(Arrays.asList(fragment));
+                }
+                Node way = tx.createNode(Label.label("OSMWay"));
+                main.createRelationshipTo(way, Relation.MEMBER);
+                Node previous = null;
+                for (Node node : fragment) {
+                    Node wayNode = tx.createNode(Label.label("OSMWayNode"));
+                    wayNode.createRelationshipTo(node, Relation.NODE);
+                    if (previous == null) {
+                        way.createRelationshipTo(wayNode, Relation.FIRST_NODE);
+                    } else {
+                        previous.createRelationshipTo(wayNode, Relation.NEXT);
+                    }
+                    previous = wayNode;
+                }
+            }
+            tx.commit();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        databases.shutdown();
+    }
+
+    @Benchmark
+    public void testTraverseRingFragments(Blackhole bh) {
+        try (Transaction tx = db.beginTx()) {
+            KernelTransaction ktx = ((InternalTransaction) tx).kernelTransaction();
+            bh.consume(OSMTraverser.traverseOSMGraph(ktx, mainId, 250));
+            tx.commit();
+        }
+    }
+}
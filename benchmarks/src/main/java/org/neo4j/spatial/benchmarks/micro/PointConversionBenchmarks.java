@@ -0,0 +1,133 @@
+package org.neo4j.spatial.benchmarks.micro;
+
+import org.neo4j.graphdb.spatial.CRS;
+import org.neo4j.graphdb.spatial.Coordinate;
+import org.neo4j.spatial.benchmarks.JfrProfiler;
+import org.neo4j.spatial.core.Point;
+import org.neo4j.spatial.core.Polygon;
+import org.neo4j.spatial.neo4j.Neo4jPoints;
+import org.neo4j.spatial.neo4j.UserDefinedFunctions;
+import org.neo4j.values.storable.CoordinateReferenceSystem;
+import org.neo4j.values.storable.Values;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Calls the spatial.algo.* functions the way Cypher does, with lists of point values, and compares the conversion of
+ * point values with the conversion of points that only offer boxed coordinate lists.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@BenchmarkMode(Mode.AverageTime)
+public class PointConversionBenchmarks {
+
+    private List<List<org.neo4j.graphdb.spatial.Point>> pointValues;
+    private List<List<org.neo4j.graphdb.spatial.Point>> boxedPoints;
+    private org.neo4j.graphdb.spatial.Point location;
+    private UserDefinedFunctions functions = new UserDefinedFunctions();
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(PointConversionBenchmarks.class.getSimpleName())
+                .forks(1)
+                .addProfiler(JfrProfiler.class)
+                .build();
+
+        new Runner(opt).run();
+    }
+
+    @Setup
+    public void setup() {
+        int n = 1000;
+
+        Random random = new Random(0);
+        pointValues = new ArrayList<>(n);
+        boxedPoints = new ArrayList<>(n);
+
+        Point origin = Point.point(org.neo4j.spatial.core.CRS.Cartesian, 12.99, 55.61);
+        for (int i = 0; i < n; i++) {
+            Polygon.SimplePolygon polygon = MicroBenchmarkUtil.createPolygon(random, origin, 0.1, 1.0, 0.1, 1.1).other();
+            List<org.neo4j.graphdb.spatial.Point> values = new ArrayList<>();
+            List<org.neo4j.graphdb.spatial.Point> boxed = new ArrayList<>();
+            for (Point point : polygon.getPoints()) {
+                values.add(Values.pointValue(CoordinateReferenceSystem.Cartesian, point.getCoordinate()));
+                boxed.add(new BoxedPoint(point.getCoordinate()));
+            }
+            pointValues.add(values);
+            boxedPoints.add(boxed);
+        }
+        location = Values.pointValue(CoordinateReferenceSystem.Cartesian, 12.99, 55.61);
+    }
+
+    @Benchmark
+    public void testConvertPointValues(Blackhole bh) {
+        for (List<org.neo4j.graphdb.spatial.Point> polygon : pointValues) {
+            bh.consume(Neo4jPoints.asInMemoryPoints(polygon));
+        }
+    }
+
+    @Benchmark
+    public void testConvertBoxedPoints(Blackhole bh) {
+        for (List<org.neo4j.graphdb.spatial.Point> polygon : boxedPoints) {
+            bh.consume(Neo4jPoints.asInMemoryPoints(polygon));
+        }
+    }
+
+    @Benchmark
+    public void testAreaFunction(Blackhole bh) {
+        for (List<org.neo4j.graphdb.spatial.Point> polygon : pointValues) {
+            bh.consume(functions.area(polygon));
+        }
+    }
+
+    @Benchmark
+    public void testWithinPolygonFunction(Blackhole bh) {
+        for (List<org.neo4j.graphdb.spatial.Point> polygon : pointValues) {
+            bh.consume(functions.withinPolygon(location, polygon));
+        }
+    }
+
+    @Benchmark
+    public void testBoundingBoxFunction(Blackhole bh) {
+        for (List<org.neo4j.graphdb.spatial.Point> polygon : pointValues) {
+            bh.consume(functions.boundingBoxFor(polygon));
+        }
+    }
+
+    @Benchmark
+    public void testConvexHullFunction(Blackhole bh) {
+        for (List<org.neo4j.graphdb.spatial.Point> polygon : pointValues) {
+            bh.consume(functions.convexHullPoints(polygon));
+        }
+    }
+
+    /**
+     * A point that is not a point value, so its coordinates can only be read as boxed lists
+     */
+    private static class BoxedPoint implements org.neo4j.graphdb.spatial.Point {
+        private final List<Coordinate> coordinates;
+
+        private BoxedPoint(double[] coordinate) {
+            this.coordinates = Collections.singletonList(new Coordinate(coordinate));
+        }
+
+        @Override
+        public List<Coordinate> getCoordinates() {
+            return coordinates;
+        }
+
+        @Override
+        public CRS getCRS() {
+            return CoordinateReferenceSystem.Cartesian;
+        }
+    }
+}
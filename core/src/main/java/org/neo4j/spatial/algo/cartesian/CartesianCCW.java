@@ -4,6 +4,8 @@ import org.neo4j.spatial.algo.CCW;
 import org.neo4j.spatial.core.Point;
 import org.neo4j.spatial.core.Polygon;
 
+import java.util.Iterator;
+
 public class CartesianCCW implements CCW {
     @Override
     public boolean isCCW(Polygon.SimplePolygon polygon) {
@@ -36,10 +38,10 @@ public class CartesianCCW implements CCW {
     public static double shoelace(Polygon.SimplePolygon polygon) {
         double sum = 0;
 
-        polygon.startTraversal();
-        double[] previous = polygon.getNextPoint().getCoordinate();
-        while (!polygon.fullyTraversed()) {
-            double[] current = polygon.getNextPoint().getCoordinate();
+        Iterator<Point> vertices = polygon.vertices();
+        double[] previous = vertices.next().getCoordinate();
+        while (vertices.hasNext()) {
+            double[] current = vertices.next().getCoordinate();
 
             sum += (previous[0] * current[1]) - (current[0] * previous[1]);
             previous = current;
@@ -1,5 +1,6 @@
 package org.neo4j.spatial.algo.cartesian;
 
+import org.neo4j.spatial.core.CoordinateSequence;
 import org.neo4j.spatial.core.Point;
 import org.neo4j.spatial.core.Polygon;
 
@@ -29,6 +30,9 @@ public class CartesianWithin {
      * @return True iff the points is inside the polygon (not on the edge)
      */
     public static boolean within(Polygon.SimplePolygon polygon, Point point) {
+        if (polygon instanceof CoordinateSequence) {
+            return within((CoordinateSequence) polygon, point);
+        }
         Point[] points = polygon.getPoints();
         boolean result = false;
         for (int i = 0, j = points.length - 1; i < points.length; j = i++) {
@@ -39,4 +43,28 @@ public class CartesianWithin {
         }
         return result;
     }
+
+    /**
+     * The same test as for a polygon, reading the coordinates of the closed ring directly from the sequence
+     *
+     * @param ring
+     * @param point
+     * @return True iff the points is inside the ring (not on the edge)
+     */
+    public static boolean within(CoordinateSequence ring, Point point) {
+        double x = point.getCoordinate()[0];
+        double y = point.getCoordinate()[1];
+        boolean result = false;
+        int size = ring.size();
+        for (int i = 0, j = size - 1; i < size; j = i++) {
+            double xi = ring.getCoordinate(i, 0);
+            double yi = ring.getCoordinate(i, 1);
+            double xj = ring.getCoordinate(j, 0);
+            double yj = ring.getCoordinate(j, 1);
+            if ((yi > y) != (yj > y) && (x < (xj - xi) * (y - yi) / (yj - yi) + xi)) {
+                result = !result;
+            }
+        }
+        return result;
+    }
 }
@@ -0,0 +1,28 @@
+package org.neo4j.spatial.core;
+
+/**
+ * Indexed access to the coordinates of a sequence of points, for geometries that can provide coordinates directly from
+ * their underlying storage without creating a Point for every vertex. Algorithms that only need a few coordinates, or
+ * that walk the vertices once, can use this instead of getPoints().
+ */
+public interface CoordinateSequence extends HasCRS {
+    /**
+     * @return The number of points in the sequence
+     */
+    int size();
+
+    /**
+     * @param index the index of the point
+     * @param axis  the index of the coordinate within the point, for example 0 for x and 1 for y
+     * @return The coordinate
+     */
+    double getCoordinate(int index, int axis);
+
+    default Point getPoint(int index) {
+        double[] coordinate = new double[dimension()];
+        for (int axis = 0; axis < coordinate.length; axis++) {
+            coordinate[axis] = getCoordinate(index, axis);
+        }
+        return Point.point(getCRS(), coordinate);
+    }
+}
@@ -0,0 +1,125 @@
+package org.neo4j.spatial.core;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.function.IntConsumer;
+
+/**
+ * A static R-tree over axis aligned envelopes, packed with Sort-Tile-Recursive: the envelopes are sorted into vertical
+ * slices by the x of their centers, and every slice by the y of their centers, so that consecutive envelopes are close
+ * together. Every node of the tree then covers a run of consecutive nodes of the level below.
+ * <p>
+ * Envelopes are given as {minX, minY, maxX, maxY} for every item, packed into a single array.
+ */
+public class EnvelopeTree {
+    private static final int NODE_SIZE = 16;
+
+    private final int[] items;
+    private final double[][] levels;
+
+    /**
+     * @param envelopes the envelopes of the items, four coordinates for every item
+     */
+    public EnvelopeTree(double[] envelopes) {
+        if (envelopes.length % 4 != 0) {
+            throw new IllegalArgumentException("Expected four coordinates for every envelope, but got " + envelopes.length + " coordinates");
+        }
+        int size = envelopes.length / 4;
+        this.items = sortTileRecursive(envelopes, size);
+
+        int height = 1;
+        for (int count = size; count > 1; count = (count + NODE_SIZE - 1) / NODE_SIZE) {
+            height++;
+        }
+        this.levels = new double[height][];
+        levels[0] = new double[size * 4];
+        for (int i = 0; i < size; i++) {
+            System.arraycopy(envelopes, items[i] * 4, levels[0], i * 4, 4);
+        }
+        for (int level = 1; level < height; level++) {
+            double[] below = levels[level - 1];
+            int count = below.length / 4;
+            double[] nodes = new double[((count + NODE_SIZE - 1) / NODE_SIZE) * 4];
+            for (int node = 0; node < nodes.length / 4; node++) {
+                nodes[node * 4] = Double.POSITIVE_INFINITY;
+                nodes[node * 4 + 1] = Double.POSITIVE_INFINITY;
+                nodes[node * 4 + 2] = Double.NEGATIVE_INFINITY;
+                nodes[node * 4 + 3] = Double.NEGATIVE_INFINITY;
+                for (int child = node * NODE_SIZE; child < Math.min(count, (node + 1) * NODE_SIZE); child++) {
+                    nodes[node * 4] = Math.min(nodes[node * 4], below[child * 4]);
+                    nodes[node * 4 + 1] = Math.min(nodes[node * 4 + 1], below[child * 4 + 1]);
+                    nodes[node * 4 + 2] = Math.max(nodes[node * 4 + 2], below[child * 4 + 2]);
+                    nodes[node * 4 + 3] = Math.max(nodes[node * 4 + 3], below[child * 4 + 3]);
+                }
+            }
+            levels[level] = nodes;
+        }
+    }
+
+    private static int[] sortTileRecursive(double[] envelopes, int size) {
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingDouble(i -> envelopes[i * 4] + envelopes[i * 4 + 2]));
+        int leaves = (size + NODE_SIZE - 1) / NODE_SIZE;
+        int slices = (int) Math.ceil(Math.sqrt(leaves));
+        int sliceSize = NODE_SIZE * ((leaves + slices - 1) / Math.max(1, slices));
+        for (int from = 0; from < size; from += sliceSize) {
+            Arrays.sort(order, from, Math.min(size, from + sliceSize), Comparator.comparingDouble(i -> envelopes[i * 4 + 1] + envelopes[i * 4 + 3]));
+        }
+        return Arrays.stream(order).mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * @return The number of indexed envelopes
+     */
+    public int size() {
+        return items.length;
+    }
+
+    /**
+     * Finds every envelope that contains the given envelope, including envelopes on its boundary
+     *
+     * @param consumer receives the index of every containing envelope, in no particular order
+     */
+    public void containing(double minX, double minY, double maxX, double maxY, IntConsumer consumer) {
+        if (items.length == 0) {
+            return;
+        }
+        double[] query = new double[]{minX, minY, maxX, maxY};
+        search(levels.length - 1, 0, query, true, consumer);
+    }
+
+    /**
+     * Finds every envelope that overlaps the given envelope, including envelopes only touching its boundary
+     *
+     * @param consumer receives the index of every overlapping envelope, in no particular order
+     */
+    public void intersecting(double minX, double minY, double maxX, double maxY, IntConsumer consumer) {
+        if (items.length == 0) {
+            return;
+        }
+        double[] query = new double[]{minX, minY, maxX, maxY};
+        search(levels.length - 1, 0, query, false, consumer);
+    }
+
+    private void search(int level, int node, double[] query, boolean containing, IntConsumer consumer) {
+        double[] boxes = levels[level];
+        if (containing) {
+            if (boxes[node * 4] > query[0] || boxes[node * 4 + 1] > query[1] || boxes[node * 4 + 2] < query[2] || boxes[node * 4 + 3] < query[3]) {
+                return;
+            }
+        } else if (boxes[node * 4] > query[2] || boxes[node * 4 + 1] > query[3] || boxes[node * 4 + 2] < query[0] || boxes[node * 4 + 3] < query[1]) {
+            return;
+        }
+        if (level == 0) {
+            consumer.accept(items[node]);
+            return;
+        }
+        int count = levels[level - 1].length / 4;
+        for (int child = node * NODE_SIZE; child < Math.min(count, (node + 1) * NODE_SIZE); child++) {
+            search(level - 1, child, query, containing, consumer);
+        }
+    }
+}
@@ -1,16 +1,72 @@
 package org.neo4j.spatial.core;
 
 import org.neo4j.spatial.algo.WithinCalculator;
+import org.neo4j.spatial.algo.wgs84.WGSUtil;
 
 import java.util.*;
 
 public class MultiPolygon implements Polygon {
     private List<MultiPolygonNode> children;
+    private boolean frozen;
+    private Rings rings;
 
     public MultiPolygon() {
         this.children = new ArrayList<>();
     }
 
+    /**
+     * The flattened rings of a frozen multipolygon, computed once
+     */
+    private static class Rings {
+        private final SimplePolygon[] shells;
+        private final SimplePolygon[] holes;
+        private final SimplePolygon shell;
+        private volatile LineSegment[] segments;
+        private volatile int[] offsets;
+
+        private Rings(SimplePolygon[] shells, SimplePolygon[] holes, SimplePolygon shell) {
+            this.shells = shells;
+            this.holes = holes;
+            this.shell = shell;
+        }
+    }
+
+    /**
+     * Ends the building of the multipolygon. The tree of shells and holes can no longer be changed, and the shells,
+     * holes, main shell and line segments are computed once and then returned by every call, so the returned arrays
+     * must not be modified.
+     *
+     * @return This multipolygon
+     */
+    public MultiPolygon freeze() {
+        if (frozen) {
+            return this;
+        }
+        lock();
+        SimplePolygon[] shells = getShells();
+        SimplePolygon shell = shells.length > 0 ? Polygon.super.getShell() : null;
+        this.rings = new Rings(shells, getHoles(), shell);
+        return this;
+    }
+
+    void lock() {
+        this.frozen = true;
+        this.children = List.copyOf(children);
+        for (MultiPolygonNode child : children) {
+            child.lock();
+        }
+    }
+
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    void assertNotFrozen() {
+        if (frozen) {
+            throw new IllegalStateException("Cannot change a frozen multipolygon");
+        }
+    }
+
     @Override
     public CRS getCRS() {
         if (children.isEmpty()) {
@@ -20,6 +76,7 @@ public class MultiPolygon implements Polygon {
     }
 
     public boolean insertPolygon(SimplePolygon polygon) {
+        assertNotFrozen();
         if (!children.isEmpty() && children.get(0).getCRS() != polygon.getCRS()) {
             return false;
         }
@@ -33,6 +90,7 @@ public class MultiPolygon implements Polygon {
      * @return
      */
     public boolean insertMultiPolygonNode(MultiPolygonNode other) {
+        assertNotFrozen();
         if (!children.isEmpty() && children.get(0).getCRS() != other.getCRS()) {
             return false;
         }
@@ -47,17 +105,152 @@ public class MultiPolygon implements Polygon {
         return true;
     }
 
+    /**
+     * Builds a multipolygon from many rings at once, instead of inserting them one by one with
+     * {@link #insertMultiPolygonNode(MultiPolygonNode)}, which tests every ring against the rings already inserted.
+     * <p>
+     * The points of every ring are read once into an in-memory polygon. The rings are then visited from the largest
+     * area to the smallest, so that every ring is visited after all rings that can contain it, and an
+     * {@link EnvelopeTree} finds the larger rings whose envelopes contain the envelope of the ring. Only those are tested
+     * for containing its first point, smallest first, and the first that does becomes its parent.
+     *
+     * @param nodes the rings, which must not be in a multipolygon yet
+     * @return A multipolygon with the rings nested inside each other
+     */
+    public static MultiPolygon nest(List<? extends MultiPolygonNode> nodes) {
+        MultiPolygon root = new MultiPolygon();
+        int size = nodes.size();
+        if (size == 0) {
+            return root;
+        }
+        CRS crs = nodes.get(0).getCRS();
+        SimplePolygon[] rings = new SimplePolygon[size];
+        double[] bounds = new double[size * 4];
+        double[] envelopes = new double[size * 4];
+        double[] areas = new double[size];
+        for (int i = 0; i < size; i++) {
+            if (nodes.get(i).getCRS() != crs) {
+                throw new IllegalArgumentException("Cannot nest " + nodes.get(i).getCRS() + " polygons with " + crs + " polygons");
+            }
+            Point[] points = nodes.get(i).getPolygon().getPoints();
+            rings[i] = Polygon.simple(points);
+            envelope(points, bounds, i);
+            System.arraycopy(bounds, i * 4, envelopes, i * 4, 4);
+            areas[i] = planarArea(points);
+            if (crs == CRS.WGS84) {
+                containingEnvelope(points, envelopes, i);
+                if (Double.isInfinite(envelopes[i * 4])) {
+                    // Rings around a pole or across the date line can only be inside other such rings, and are
+                    // visited first since their area in the plane is meaningless
+                    areas[i] = Double.POSITIVE_INFINITY;
+                    System.arraycopy(envelopes, i * 4, bounds, i * 4, 4);
+                }
+            }
+        }
+
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(areas[b], areas[a]));
+        int[] rank = new int[size];
+        for (int i = 0; i < size; i++) {
+            rank[order[i]] = i;
+        }
+
+        EnvelopeTree tree = new EnvelopeTree(envelopes);
+        for (int ring : order) {
+            List<Integer> candidates = new ArrayList<>();
+            tree.containing(bounds[ring * 4], bounds[ring * 4 + 1], bounds[ring * 4 + 2], bounds[ring * 4 + 3], candidate -> {
+                if (rank[candidate] < rank[ring]) {
+                    candidates.add(candidate);
+                }
+            });
+            candidates.sort((a, b) -> Integer.compare(rank[b], rank[a]));
+
+            Point first = rings[ring].getPoints()[0];
+            MultiPolygon parent = root;
+            for (int candidate : candidates) {
+                if (WithinCalculator.within(rings[candidate], first)) {
+                    parent = nodes.get(candidate);
+                    break;
+                }
+            }
+            parent.addChild(nodes.get(ring));
+        }
+        return root;
+    }
+
+    private static void envelope(Point[] points, double[] envelopes, int index) {
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        for (Point point : points) {
+            double[] coordinate = point.getCoordinate();
+            minX = Math.min(minX, coordinate[0]);
+            minY = Math.min(minY, coordinate[1]);
+            maxX = Math.max(maxX, coordinate[0]);
+            maxY = Math.max(maxY, coordinate[1]);
+        }
+        envelopes[index * 4] = minX;
+        envelopes[index * 4 + 1] = minY;
+        envelopes[index * 4 + 2] = maxX;
+        envelopes[index * 4 + 3] = maxY;
+    }
+
+    /**
+     * Widens the envelope of a WGS84 ring to contain its great circle edges, which bend towards the poles. No point of
+     * an edge is further from one of its ends than half its length, so the latitudes are widened by the longest half
+     * edge. Rings around a pole or across the date line get an infinite envelope.
+     */
+    private static void containingEnvelope(Point[] points, double[] envelopes, int index) {
+        double halfEdge = 0;
+        for (int i = 0; i < points.length - 1; i++) {
+            double[] a = points[i].getCoordinate();
+            double[] b = points[i + 1].getCoordinate();
+            if (Math.abs(a[0] - b[0]) > 180) {
+                Arrays.fill(envelopes, index * 4, index * 4 + 2, Double.NEGATIVE_INFINITY);
+                Arrays.fill(envelopes, index * 4 + 2, index * 4 + 4, Double.POSITIVE_INFINITY);
+                return;
+            }
+            double angle = WGSUtil.distance(new Vector(points[i]), new Vector(points[i + 1])) / WGSUtil.RADIUS;
+            halfEdge = Math.max(halfEdge, Math.toDegrees(angle) / 2);
+        }
+        double courseDelta = WGSUtil.courseDelta(points);
+        if (courseDelta <= 270 && courseDelta >= -270) {
+            Arrays.fill(envelopes, index * 4, index * 4 + 2, Double.NEGATIVE_INFINITY);
+            Arrays.fill(envelopes, index * 4 + 2, index * 4 + 4, Double.POSITIVE_INFINITY);
+            return;
+        }
+        envelopes[index * 4 + 1] -= halfEdge;
+        envelopes[index * 4 + 3] += halfEdge;
+    }
+
+    /**
+     * @return The area of the ring in the plane of its coordinates, which only orders rings by size
+     */
+    private static double planarArea(Point[] points) {
+        double sum = 0;
+        for (int i = 0; i < points.length - 1; i++) {
+            double[] a = points[i].getCoordinate();
+            double[] b = points[i + 1].getCoordinate();
+            sum += a[0] * b[1] - b[0] * a[1];
+        }
+        return Math.abs(sum) / 2;
+    }
+
     public List<MultiPolygonNode> getChildren() {
         return this.children;
     }
 
     public void addChild(MultiPolygonNode other) {
+        assertNotFrozen();
         this.children.add(other);
         other.setParent(this);
         other.setType(PolygonType.SHELL);
     }
 
     void removeChild(MultiPolygonNode other) {
+        assertNotFrozen();
         this.children.remove(other);
     }
 
@@ -76,6 +269,9 @@ public class MultiPolygon implements Polygon {
 
     @Override
     public Polygon.SimplePolygon[] getShells() {
+        if (rings != null) {
+            return rings.shells;
+        }
         List<Polygon.SimplePolygon> polygons = new ArrayList<>();
         for (MultiPolygonNode child : children) {
             polygons.addAll(Arrays.asList(child.getShells()));
@@ -85,6 +281,9 @@ public class MultiPolygon implements Polygon {
 
     @Override
     public Polygon.SimplePolygon[] getHoles() {
+        if (rings != null) {
+            return rings.holes;
+        }
         List<Polygon.SimplePolygon> polygons = new ArrayList<>();
         for (MultiPolygonNode child : children) {
             polygons.addAll(Arrays.asList(child.getHoles()));
@@ -92,6 +291,60 @@ public class MultiPolygon implements Polygon {
         return polygons.toArray(new Polygon.SimplePolygon[0]);
     }
 
+    @Override
+    public SimplePolygon getShell() {
+        if (rings != null) {
+            if (rings.shell == null) {
+                throw new IllegalStateException("No shells found - polygon is invalid");
+            }
+            return rings.shell;
+        }
+        return Polygon.super.getShell();
+    }
+
+    @Override
+    public LineSegment[] toLineSegments() {
+        if (rings == null) {
+            return Polygon.super.toLineSegments();
+        }
+        if (rings.segments == null) {
+            flattenSegments();
+        }
+        return rings.segments;
+    }
+
+    /**
+     * The rings are the shells followed by the holes, in the order of {@link #getShells()} and {@link #getHoles()}
+     *
+     * @return The index in {@link #toLineSegments()} of the first segment of every ring of a frozen multipolygon,
+     * followed by the number of segments
+     */
+    public int[] getRingOffsets() {
+        if (rings == null) {
+            throw new IllegalStateException("Ring offsets are only kept for frozen multipolygons");
+        }
+        if (rings.offsets == null) {
+            flattenSegments();
+        }
+        return rings.offsets;
+    }
+
+    private void flattenSegments() {
+        List<LineSegment> segments = new ArrayList<>();
+        int[] offsets = new int[rings.shells.length + rings.holes.length + 1];
+        int ring = 0;
+        for (SimplePolygon[] polygons : new SimplePolygon[][]{rings.shells, rings.holes}) {
+            for (SimplePolygon polygon : polygons) {
+                offsets[ring++] = segments.size();
+                Collections.addAll(segments, polygon.toLineSegments());
+            }
+        }
+        offsets[ring] = segments.size();
+        // Assigned in this order, so that a thread seeing the offsets also sees the segments
+        rings.segments = segments.toArray(new LineSegment[0]);
+        rings.offsets = offsets;
+    }
+
     @Override
     public int dimension() {
         return getChildren().get(0).dimension();
@@ -134,6 +387,7 @@ public class MultiPolygon implements Polygon {
          */
         @Override
         public boolean insertMultiPolygonNode(MultiPolygonNode other) {
+            assertNotFrozen();
             //If other polygon encompasses this polygon, switch places
             if (WithinCalculator.within(other.getPolygon(), this.getPolygon().getPoints()[0])) {
                 this.parent.removeChild(this);
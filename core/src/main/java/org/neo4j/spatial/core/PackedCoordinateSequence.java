@@ -0,0 +1,84 @@
+package org.neo4j.spatial.core;
+
+import java.util.Arrays;
+
+import static java.lang.String.format;
+
+/**
+ * A coordinate sequence stored in a single array, with the coordinates of every point next to each other
+ */
+public class PackedCoordinateSequence implements CoordinateSequence {
+    private final CRS crs;
+    private final int dimension;
+    private final double[] coordinates;
+
+    public PackedCoordinateSequence(CRS crs, int dimension, double[] coordinates) {
+        if (dimension < 1 || coordinates.length % dimension != 0) {
+            throw new IllegalArgumentException(format("Cannot pack %d coordinates into points of dimension %d", coordinates.length, dimension));
+        }
+        this.crs = crs;
+        this.dimension = dimension;
+        this.coordinates = coordinates;
+    }
+
+    @Override
+    public int size() {
+        return coordinates.length / dimension;
+    }
+
+    @Override
+    public double getCoordinate(int index, int axis) {
+        return coordinates[index * dimension + axis];
+    }
+
+    @Override
+    public CRS getCRS() {
+        return crs;
+    }
+
+    @Override
+    public int dimension() {
+        return dimension;
+    }
+
+    /**
+     * @return A new point for every point in the sequence
+     */
+    public Point[] toPoints() {
+        Point[] points = new Point[size()];
+        for (int i = 0; i < points.length; i++) {
+            points[i] = Point.point(crs, Arrays.copyOfRange(coordinates, i * dimension, (i + 1) * dimension));
+        }
+        return points;
+    }
+
+    /**
+     * @return A sequence with the same points in the opposite order
+     */
+    public PackedCoordinateSequence reverse() {
+        double[] reversed = new double[coordinates.length];
+        int size = size();
+        for (int i = 0; i < size; i++) {
+            System.arraycopy(coordinates, i * dimension, reversed, (size - 1 - i) * dimension, dimension);
+        }
+        return new PackedCoordinateSequence(crs, dimension, reversed);
+    }
+
+    /**
+     * @return This sequence if the last point equals the first, otherwise a sequence with the first point appended
+     */
+    public PackedCoordinateSequence closeRing() {
+        int size = size();
+        if (size == 0 || Arrays.equals(coordinates, 0, dimension, coordinates, (size - 1) * dimension, size * dimension)) {
+            return this;
+        }
+        double[] closed = Arrays.copyOf(coordinates, coordinates.length + dimension);
+        System.arraycopy(coordinates, 0, closed, coordinates.length, dimension);
+        return new PackedCoordinateSequence(crs, dimension, closed);
+    }
+
+    @Override
+    public String toString() {
+        return format("PackedCoordinateSequence(%s, %d points)", crs, size());
+    }
+}
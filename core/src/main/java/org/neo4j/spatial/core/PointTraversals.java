@@ -0,0 +1,111 @@
+package org.neo4j.spatial.core;
+
+import org.neo4j.spatial.algo.cartesian.CartesianUtil;
+import org.neo4j.spatial.algo.wgs84.WGSUtil;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterators over the vertices of point arrays, used by the default {@link Polygon.SimplePolygon#vertices()} and
+ * {@link Polyline#vertices()}. Every iterator keeps its own position, and only reads the array.
+ */
+final class PointTraversals {
+    private PointTraversals() {
+    }
+
+    /**
+     * @param points a closed ring, where the last point is the first point again
+     * @return The ring from the start index in the step direction, ending at the start point again
+     */
+    static Iterator<Point> ring(Point[] points, int start, int step) {
+        int size = points.length - 1;
+        return new Iterator<Point>() {
+            private int visited = 0;
+
+            @Override
+            public boolean hasNext() {
+                return visited <= size;
+            }
+
+            @Override
+            public Point next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return points[Math.floorMod(start + step * visited++, size)];
+            }
+        };
+    }
+
+    /**
+     * @param points a closed ring, where the last point is the first point again
+     * @return The ring from the point closest to the start point, towards whichever neighbour is closest to the
+     * direction point, ending at the start point again
+     */
+    static Iterator<Point> ring(Point[] points, Point startPoint, Point directionPoint) {
+        int size = points.length - 1;
+        int start = closest(points, startPoint);
+        double forward = distance(directionPoint, points[(start + 1) % points.length]);
+        double backward = distance(directionPoint, points[Math.floorMod(start - 1, size)]);
+        return ring(points, start, forward < backward ? 1 : -1);
+    }
+
+    /**
+     * @return The points from the start index in the step direction, until the end of the array
+     */
+    static Iterator<Point> line(Point[] points, int start, int step) {
+        return new Iterator<Point>() {
+            private int pointer = start;
+
+            @Override
+            public boolean hasNext() {
+                return pointer >= 0 && pointer < points.length;
+            }
+
+            @Override
+            public Point next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Point point = points[pointer];
+                pointer += step;
+                return point;
+            }
+        };
+    }
+
+    /**
+     * @return The points from the point closest to the start point, towards whichever neighbour is closest to the
+     * direction point, until that end of the array
+     */
+    static Iterator<Point> line(Point[] points, Point startPoint, Point directionPoint) {
+        int start = closest(points, startPoint);
+        double forward = start + 1 < points.length ? distance(directionPoint, points[start + 1]) : Double.MAX_VALUE;
+        double backward = start - 1 >= 0 ? distance(directionPoint, points[start - 1]) : Double.MAX_VALUE;
+        return line(points, start, forward < backward ? 1 : -1);
+    }
+
+    private static int closest(Point[] points, Point point) {
+        double minDistance = Double.MAX_VALUE;
+        int minIdx = 0;
+        for (int i = 0; i < points.length; i++) {
+            double currentDistance = distance(point, points[i]);
+            if (currentDistance < minDistance) {
+                minDistance = currentDistance;
+                minIdx = i;
+            }
+        }
+        return minIdx;
+    }
+
+    private static double distance(Point start, Point point) {
+        if (start.getCRS() == CRS.Cartesian) {
+            return CartesianUtil.distance(start.getCoordinate(), point.getCoordinate());
+        } else {
+            Vector u = new Vector(start);
+            Vector v = new Vector(point);
+            return WGSUtil.distance(u, v);
+        }
+    }
+}
@@ -2,12 +2,11 @@ package org.neo4j.spatial.core;
 
 import org.neo4j.spatial.algo.CCW;
 import org.neo4j.spatial.algo.CCWCalculator;
-import org.neo4j.spatial.algo.cartesian.CartesianUtil;
-import org.neo4j.spatial.algo.wgs84.WGSUtil;
 
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.StringJoiner;
 
@@ -145,10 +144,10 @@ public interface Polygon extends HasCRS {
         default LineSegment[] toLineSegments() {
             List<LineSegment> lineSegments = new ArrayList<>();
 
-            startTraversal();
-            Point previous = getNextPoint();
-            while (!fullyTraversed()) {
-                Point current = getNextPoint();
+            Iterator<Point> vertices = vertices();
+            Point previous = vertices.next();
+            while (vertices.hasNext()) {
+                Point current = vertices.next();
 
                 lineSegments.add(LineSegment.lineSegment(previous, current));
                 previous = current;
@@ -166,6 +165,26 @@ public interface Polygon extends HasCRS {
             return new SimplePolygon[0];
         }
 
+        /**
+         * An iterator over the ring, which unlike {@link #startTraversal()} keeps its own position, so that the same
+         * polygon can be traversed by nested loops. In-memory polygons, and array property polygons after getPoints() was
+         * called once, can also be traversed by several threads as long as the polygon is not changed. Graph polygons
+         * cannot, since they read through a transaction, which is confined to one thread.
+         *
+         * @return A new iterator from the first point of the ring, ending with the first point again
+         */
+        default Iterator<Point> vertices() {
+            return PointTraversals.ring(getPoints(), 0, 1);
+        }
+
+        /**
+         * @return A new iterator from the point closest to the start point, in the direction of the neighbour closest
+         * to the direction point, ending with the start point again, see {@link #vertices()}
+         */
+        default Iterator<Point> vertices(Point startPoint, Point directionPoint) {
+            return PointTraversals.ring(getPoints(), startPoint, directionPoint);
+        }
+
         Point getNextPoint();
 
         void startTraversal(Point startPoint, Point directionPoint);
@@ -217,10 +236,7 @@ public interface Polygon extends HasCRS {
         private final Point[] points;
         private final CRS crs;
 
-        private int pointer;
-        private int start;
-        private int direction;
-        private boolean traversing;
+        private Iterator<Point> traversal;
 
         private InMemorySimplePolygon(Point... points) {
             this.points = PolygonUtil.closeRing(points);
@@ -229,71 +245,29 @@ public interface Polygon extends HasCRS {
             }
             Polygon.assertAllSameDimension(this.points);
             crs = Polygon.assertAllSameCRS(this.points);
-            this.pointer = 0;
-            this.start = 0;
-            this.traversing = false;
         }
 
         @Override
         public Point getNextPoint() {
-            if (pointer == start ) {
-                this.traversing = true;
+            if (traversal == null) {
+                startTraversal();
             }
-            pointer = nextIndex(pointer, direction);
-            return points[pointer];
-        }
-
-        private int nextIndex(int idx, int direction) {
-            return ((idx + direction) % (points.length - 1) + (points.length - 1)) % (points.length - 1);
+            return traversal.next();
         }
 
         @Override
         public void startTraversal(Point startPoint, Point directionPoint) {
-            this.traversing = false;
-            double minDistance = Double.MAX_VALUE;
-            int minIdx = 0;
-            for (int i = 0; i < this.points.length; i++) {
-                double currentDistance = distance(startPoint, points[i]);
-                if (currentDistance < minDistance) {
-                    minDistance = currentDistance;
-                    minIdx = i;
-                }
-            }
-
-            this.start = minIdx;
-
-            double forwardDistance = distance(directionPoint, points[(minIdx + 1) % (points.length)]);
-            int backwardsIdx = nextIndex(minIdx, -1);
-            double backwardDistance = distance(directionPoint, points[backwardsIdx]);
-            if (forwardDistance < backwardDistance) {
-                this.direction = 1;
-            } else {
-                this.direction = -1;
-            }
-            this.pointer = nextIndex(minIdx, -direction);
-        }
-
-        private double distance(Point start, Point point) {
-            if (start.getCRS() == CRS.Cartesian) {
-                return CartesianUtil.distance(start.getCoordinate(), point.getCoordinate());
-            } else {
-                Vector u = new Vector(start);
-                Vector v = new Vector(point);
-                return WGSUtil.distance(u, v);
-            }
+            this.traversal = vertices(startPoint, directionPoint);
         }
 
         @Override
         public void startTraversal() {
-            this.traversing = false;
-            this.start = 0;
-            this.pointer = -1;
-            this.direction = 1;
+            this.traversal = vertices();
         }
 
         @Override
         public boolean fullyTraversed() {
-            return pointer == start && this.traversing;
+            return traversal != null && !traversal.hasNext();
         }
 
         @Override
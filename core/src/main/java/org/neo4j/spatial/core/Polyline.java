@@ -1,10 +1,8 @@
 package org.neo4j.spatial.core;
 
-import org.neo4j.spatial.algo.cartesian.CartesianUtil;
-import org.neo4j.spatial.algo.wgs84.WGSUtil;
-
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
 import java.util.StringJoiner;
 
@@ -41,10 +39,10 @@ public interface Polyline extends HasCRS {
     default LineSegment[] toLineSegments() {
         List<LineSegment> lineSegments = new ArrayList<>();
 
-        startTraversal();
-        Point previous = getNextPoint();
-        while (!fullyTraversed()) {
-            Point current = getNextPoint();
+        Iterator<Point> vertices = vertices();
+        Point previous = vertices.next();
+        while (vertices.hasNext()) {
+            Point current = vertices.next();
 
             lineSegments.add(LineSegment.lineSegment(previous, current));
             previous = current;
@@ -54,6 +52,26 @@ public interface Polyline extends HasCRS {
 
     Point[] getPoints();
 
+    /**
+     * An iterator over the polyline, which unlike {@link #startTraversal()} keeps its own position, so that the same
+     * polyline can be traversed by nested loops. In-memory polylines, and array property polylines after getPoints() was
+     * called once, can also be traversed by several threads as long as the polyline is not changed. Graph polylines
+     * cannot, since they read through a transaction, which is confined to one thread.
+     *
+     * @return A new iterator from the first to the last point
+     */
+    default Iterator<Point> vertices() {
+        return PointTraversals.line(getPoints(), 0, 1);
+    }
+
+    /**
+     * @return A new iterator from the point closest to the start point, in the direction of the neighbour closest to
+     * the direction point, until that end of the polyline, see {@link #vertices()}
+     */
+    default Iterator<Point> vertices(Point startPoint, Point directionPoint) {
+        return PointTraversals.line(getPoints(), startPoint, directionPoint);
+    }
+
     Point getNextPoint();
 
     void startTraversal(Point startPoint, Point directionPoint);
@@ -85,9 +103,7 @@ public interface Polyline extends HasCRS {
     }
     class InMemoryPolyline implements Polyline {
         private Point[] points;
-        private int pointer;
-        private int direction;
-        private boolean traversing;
+        private Iterator<Point> traversal;
         private CRS crs;
 
         private InMemoryPolyline(Point... points) {
@@ -116,69 +132,27 @@ public interface Polyline extends HasCRS {
 
         @Override
         public Point getNextPoint() {
-            this.traversing = true;
-            Point point = points[pointer];
-            pointer = pointer + direction;
-            return point;
+            if (traversal == null) {
+                startTraversal();
+            }
+            return traversal.next();
         }
 
         @Override
         public void startTraversal(Point startPoint, Point directionPoint) {
-            this.traversing = false;
-            double minDistance = Double.MAX_VALUE;
-            int minIdx = 0;
-            for (int i = 0; i < this.points.length; i++) {
-                double currentDistance = distance(startPoint, points[i]);
-                if (currentDistance < minDistance) {
-                    minDistance = currentDistance;
-                    minIdx = i;
-                }
-            }
-
-            this.pointer = minIdx;
-
-            int forwardIdx = minIdx + 1;
-            int backwardsIdx = minIdx - 1;
-            double forwardDistance = Double.MAX_VALUE;
-            double backwardDistance = Double.MAX_VALUE;
-
-            if (forwardIdx < points.length) {
-                forwardDistance = distance(directionPoint, points[forwardIdx]);
-            }
-
-            if (backwardsIdx >= 0) {
-                backwardDistance = distance(directionPoint, points[backwardsIdx]);
-            }
-            if (forwardDistance < backwardDistance) {
-                this.direction = 1;
-            } else {
-                this.direction = -1;
-            }
-        }
-
-        private double distance(Point start, Point point) {
-            if (start.getCRS() == CRS.Cartesian) {
-                return CartesianUtil.distance(start.getCoordinate(), point.getCoordinate());
-            } else {
-                Vector u = new Vector(start);
-                Vector v = new Vector(point);
-                return WGSUtil.distance(u, v);
-            }
+            this.traversal = vertices(startPoint, directionPoint);
         }
 
         @Override
         public void startTraversal() {
-            this.traversing = false;
-            this.pointer = 0;
-            this.direction = 1;
+            this.traversal = vertices();
         }
 
         @Override
         public boolean fullyTraversed() {
-            return (pointer < 0 || pointer >= points.length) && this.traversing;
+            return traversal != null && !traversal.hasNext();
         }
 
-
         @Override
         public String toString() {
             return format("InMemoryPolyline%s", Arrays.toString(points));
@@ -0,0 +1,149 @@
+package org.neo4j.spatial.core;
+
+/**
+ * A static kd-tree over the vertices of a coordinate sequence, answering which vertex is closest to a point in
+ * logarithmic time on average.
+ * <p>
+ * Cartesian vertices are indexed by their x and y coordinates. WGS84 vertices are indexed by their n-vectors, since
+ * the straight line distance between two n-vectors grows with the great circle distance between the points, so the
+ * closest n-vector is also the closest point on the sphere.
+ */
+public class VertexKdTree {
+    private final CRS crs;
+    private final int k;
+    private final double[] coordinates;
+    private final int[] tree;
+
+    public VertexKdTree(CoordinateSequence sequence) {
+        this.crs = sequence.getCRS();
+        this.k = crs == CRS.WGS84 ? 3 : 2;
+        int size = sequence.size();
+        this.coordinates = new double[size * k];
+        this.tree = new int[size];
+        for (int i = 0; i < size; i++) {
+            double[] key = key(sequence.getCoordinate(i, 0), sequence.getCoordinate(i, 1));
+            System.arraycopy(key, 0, coordinates, i * k, k);
+            tree[i] = i;
+        }
+        build(0, size, 0);
+    }
+
+    /**
+     * @return The number of indexed vertices
+     */
+    public int size() {
+        return tree.length;
+    }
+
+    /**
+     * @return The index in the sequence of the vertex closest to the point, the lowest index if several are equally
+     * close, or -1 if the sequence is empty
+     */
+    public int nearest(Point point) {
+        if (point.getCRS() != crs) {
+            throw new IllegalArgumentException("Cannot find the nearest " + crs + " vertex to a " + point.getCRS() + " point");
+        }
+        if (tree.length == 0) {
+            return -1;
+        }
+        double[] coordinate = point.getCoordinate();
+        Nearest nearest = new Nearest();
+        search(key(coordinate[0], coordinate[1]), 0, tree.length, 0, nearest);
+        return nearest.index;
+    }
+
+    private double[] key(double x, double y) {
+        if (k == 3) {
+            return Vector.pointCoordinatesToVectorCoordinates(new double[]{x, y});
+        }
+        return new double[]{x, y};
+    }
+
+    /**
+     * Arrange tree[from, to) so that the median along the axis of this depth is in the middle, with all smaller
+     * vertices before it and all larger vertices after it
+     */
+    private void build(int from, int to, int depth) {
+        if (to - from <= 1) {
+            return;
+        }
+        int axis = depth % k;
+        int middle = (from + to) >>> 1;
+        select(from, to - 1, middle, axis);
+        build(from, middle, depth + 1);
+        build(middle + 1, to, depth + 1);
+    }
+
+    private void select(int left, int right, int target, int axis) {
+        while (right > left) {
+            int pivot = partition(left, right, (left + right) >>> 1, axis);
+            if (pivot == target) {
+                return;
+            } else if (pivot < target) {
+                left = pivot + 1;
+            } else {
+                right = pivot - 1;
+            }
+        }
+    }
+
+    private int partition(int left, int right, int pivotIndex, int axis) {
+        double pivot = value(tree[pivotIndex], axis);
+        swap(pivotIndex, right);
+        int store = left;
+        for (int i = left; i < right; i++) {
+            if (value(tree[i], axis) < pivot) {
+                swap(i, store++);
+            }
+        }
+        swap(store, right);
+        return store;
+    }
+
+    private void swap(int a, int b) {
+        int tmp = tree[a];
+        tree[a] = tree[b];
+        tree[b] = tmp;
+    }
+
+    private double value(int vertex, int axis) {
+        return coordinates[vertex * k + axis];
+    }
+
+    private static class Nearest {
+        private int index = -1;
+        private double distance = Double.MAX_VALUE;
+    }
+
+    private void search(double[] key, int from, int to, int depth, Nearest nearest) {
+        if (from >= to) {
+            return;
+        }
+        int axis = depth % k;
+        int middle = (from + to) >>> 1;
+        int vertex = tree[middle];
+
+        double distance = 0;
+        for (int i = 0; i < k; i++) {
+            double delta = value(vertex, i) - key[i];
+            distance += delta * delta;
+        }
+        if (distance < nearest.distance || (distance == nearest.distance && vertex < nearest.index)) {
+            nearest.distance = distance;
+            nearest.index = vertex;
+        }
+
+        double delta = key[axis] - value(vertex, axis);
+        if (delta < 0) {
+            search(key, from, middle, depth + 1, nearest);
+            if (delta * delta <= nearest.distance) {
+                search(key, middle + 1, to, depth + 1, nearest);
+            }
+        } else {
+            search(key, middle + 1, to, depth + 1, nearest);
+            if (delta * delta <= nearest.distance) {
+                search(key, from, middle, depth + 1, nearest);
+            }
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package org.neo4j.spatial.core;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.Matchers.closeTo;
+import static org.junit.Assert.assertThat;
+
+public class EnvelopeTreeTest {
+
+    @Test
+    public void shouldFindContainingEnvelopes() {
+        Random random = new Random(0);
+        double[] envelopes = new double[1000 * 4];
+        for (int i = 0; i < envelopes.length; i += 4) {
+            double x = random.nextDouble() * 100;
+            double y = random.nextDouble() * 100;
+            double size = random.nextDouble() * random.nextDouble() * 50;
+            envelopes[i] = x;
+            envelopes[i + 1] = y;
+            envelopes[i + 2] = x + size;
+            envelopes[i + 3] = y + size;
+        }
+        EnvelopeTree tree = new EnvelopeTree(envelopes);
+        assertThat(tree.size(), equalTo(1000));
+
+        for (int i = 0; i < 200; i++) {
+            double x = random.nextDouble() * 100;
+            double y = random.nextDouble() * 100;
+            double size = random.nextDouble() * 5;
+            TreeSet<Integer> found = new TreeSet<>();
+            tree.containing(x, y, x + size, y + size, found::add);
+
+            TreeSet<Integer> expected = new TreeSet<>();
+            for (int j = 0; j < envelopes.length / 4; j++) {
+                if (envelopes[j * 4] <= x && envelopes[j * 4 + 1] <= y && envelopes[j * 4 + 2] >= x + size && envelopes[j * 4 + 3] >= y + size) {
+                    expected.add(j);
+                }
+            }
+            assertThat(found, equalTo(expected));
+        }
+    }
+
+    @Test
+    public void shouldFindIntersectingEnvelopes() {
+        Random random = new Random(0);
+        double[] envelopes = new double[1000 * 4];
+        for (int i = 0; i < envelopes.length; i += 4) {
+            double x = random.nextDouble() * 100;
+            double y = random.nextDouble() * 100;
+            double size = random.nextDouble() * random.nextDouble() * 10;
+            envelopes[i] = x;
+            envelopes[i + 1] = y;
+            envelopes[i + 2] = x + size;
+            envelopes[i + 3] = y + size;
+        }
+        EnvelopeTree tree = new EnvelopeTree(envelopes);
+
+        for (int i = 0; i < 200; i++) {
+            double x = random.nextDouble() * 100;
+            double y = random.nextDouble() * 100;
+            double size = random.nextDouble() * 5;
+            TreeSet<Integer> found = new TreeSet<>();
+            tree.intersecting(x, y, x + size, y + size, found::add);
+
+            TreeSet<Integer> expected = new TreeSet<>();
+            for (int j = 0; j < envelopes.length / 4; j++) {
+                if (envelopes[j * 4] <= x + size && envelopes[j * 4 + 1] <= y + size && envelopes[j * 4 + 2] >= x && envelopes[j * 4 + 3] >= y) {
+                    expected.add(j);
+                }
+            }
+            assertThat(found, equalTo(expected));
+        }
+    }
+
+    @Test
+    public void shouldNestIslandsAndLakes() {
+        for (CRS crs : new CRS[]{CRS.Cartesian, CRS.WGS84}) {
+            // A grid of islands, with a lake on every island, and an island in every lake
+            List<MultiPolygon.MultiPolygonNode> nodes = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                for (int j = 0; j < 10; j++) {
+                    for (int ring = 0; ring < 3; ring++) {
+                        double x = 10 * i + 2 * ring;
+                        double y = 10 * j + 2 * ring;
+                        double size = 8 - 4 * ring;
+                        nodes.add(new MultiPolygon.MultiPolygonNode(square(crs, x / 10, y / 10, size / 10)));
+                    }
+                }
+            }
+            Collections.shuffle(nodes, new Random(0));
+
+            MultiPolygon multiPolygon = MultiPolygon.nest(nodes);
+            assertThat(multiPolygon.getChildren().size(), equalTo(100));
+            assertThat(multiPolygon.getShells().length, equalTo(200));
+            assertThat(multiPolygon.getHoles().length, equalTo(100));
+            for (MultiPolygon.MultiPolygonNode island : multiPolygon.getChildren()) {
+                assertThat(island.getType(), equalTo(MultiPolygon.PolygonType.SHELL));
+                assertThat(island.getChildren().size(), equalTo(1));
+                MultiPolygon.MultiPolygonNode lake = island.getChildren().get(0);
+                assertThat(lake.getType(), equalTo(MultiPolygon.PolygonType.HOLE));
+                assertThat(lake.getChildren().size(), equalTo(1));
+                assertThat(lake.getChildren().get(0).getChildren().size(), equalTo(0));
+
+                double[] islandCorner = island.getPolygon().getPoints()[0].getCoordinate();
+                double[] lakeCorner = lake.getPolygon().getPoints()[0].getCoordinate();
+                assertThat(lakeCorner[0] - islandCorner[0], closeTo(0.2, 1e-9));
+            }
+        }
+    }
+
+    private static Polygon.SimplePolygon square(CRS crs, double x, double y, double size) {
+        return Polygon.simple(
+                Point.point(crs, x, y),
+                Point.point(crs, x + size, y),
+                Point.point(crs, x + size, y + size),
+                Point.point(crs, x, y + size)
+        );
+    }
+}
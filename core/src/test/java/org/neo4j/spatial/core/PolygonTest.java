@@ -6,7 +6,10 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 
+import java.util.Iterator;
+
 import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.sameInstance;
 import static org.hamcrest.MatcherAssert.assertThat;
 
 public class PolygonTest {
@@ -93,6 +96,75 @@ public class PolygonTest {
         return Polygon.simple(points);
     }
 
+    @Test
+    public void shouldTraversePolygonWithNestedIterators() {
+        int n = 10;
+        double[][] coordinates = getPoints(n);
+        Point[] points = new Point[n];
+        for (int i = 0; i < n; i++) {
+            points[i] = Point.point(CRS.Cartesian, coordinates[i]);
+        }
+        Polygon.SimplePolygon simplePolygon = Polygon.simple(points);
+
+        int outer = 0;
+        Iterator<Point> vertices = simplePolygon.vertices();
+        while (vertices.hasNext()) {
+            Assert.assertThat(vertices.next(), equalTo(points[outer % n]));
+            int idx = 5;
+            Iterator<Point> backwards = simplePolygon.vertices(Point.point(CRS.Cartesian, 0, 8), Point.point(CRS.Cartesian, 5, 8));
+            while (backwards.hasNext()) {
+                Assert.assertThat(backwards.next(), equalTo(points[idx]));
+                idx = Math.floorMod(idx - 1, n);
+            }
+            Assert.assertThat(idx, equalTo(4));
+            outer++;
+        }
+        Assert.assertThat(outer, equalTo(n + 1));
+    }
+
+    @Test
+    public void shouldServeFrozenMultiPolygonRingsWithoutRecomputing() {
+        MultiPolygon multiPolygon = new MultiPolygon();
+        multiPolygon.insertPolygon(makeSquare(0, 0, 10));
+        multiPolygon.insertPolygon(makeSquare(2, 2, 6));
+        multiPolygon.insertPolygon(makeSquare(3, 3, 2));
+        multiPolygon.insertPolygon(makeSquare(20, 0, 5));
+        LineSegment[] segments = multiPolygon.toLineSegments();
+        Polygon.SimplePolygon shell = multiPolygon.getShell();
+
+        assertThat(multiPolygon, sameInstance(multiPolygon.freeze()));
+        assertThat(multiPolygon.isFrozen(), equalTo(true));
+        assertThat(multiPolygon.getShells().length, equalTo(3));
+        assertThat(multiPolygon.getHoles().length, equalTo(1));
+        assertThat(multiPolygon.getShells(), sameInstance(multiPolygon.getShells()));
+        assertThat(multiPolygon.getHoles(), sameInstance(multiPolygon.getHoles()));
+        assertThat(multiPolygon.getShell(), sameInstance(multiPolygon.getShell()));
+        assertThat(multiPolygon.getShell(), equalTo(shell));
+
+        LineSegment[] frozenSegments = multiPolygon.toLineSegments();
+        assertThat(frozenSegments, sameInstance(multiPolygon.toLineSegments()));
+        assertThat(frozenSegments.length, equalTo(segments.length));
+        int[] offsets = multiPolygon.getRingOffsets();
+        assertThat(offsets.length, equalTo(5));
+        assertThat(offsets[0], equalTo(0));
+        assertThat(offsets[4], equalTo(frozenSegments.length));
+        for (int ring = 0; ring < 4; ring++) {
+            assertThat(offsets[ring + 1] - offsets[ring], equalTo(4));
+        }
+
+        thrown.expect(IllegalStateException.class);
+        multiPolygon.getChildren().get(0).insertPolygon(makeSquare(4, 4, 1));
+    }
+
+    private static Polygon.SimplePolygon makeSquare(double x, double y, double size) {
+        return Polygon.simple(
+                Point.point(CRS.Cartesian, x, y),
+                Point.point(CRS.Cartesian, x + size, y),
+                Point.point(CRS.Cartesian, x + size, y + size),
+                Point.point(CRS.Cartesian, x, y + size)
+        );
+    }
+
     private double[][] getPoints(int n) {
         double[][] points = new double[n][2];
 
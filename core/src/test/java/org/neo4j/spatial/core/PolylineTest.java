@@ -2,6 +2,8 @@ package org.neo4j.spatial.core;
 
 import org.junit.Test;
 
+import java.util.Iterator;
+
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.MatcherAssert.assertThat;
 
@@ -55,6 +57,32 @@ public class PolylineTest {
         assertThat(idx, equalTo(-1)); //6 iterations
     }
 
+    @Test
+    public void shouldTraversePolylineWithNestedIterators() {
+        int n = 10;
+        double[][] coordinates = getPoints(n);
+        Point[] points = new Point[n];
+        for (int i = 0; i < n; i++) {
+            points[i] = Point.point(CRS.Cartesian, coordinates[i]);
+        }
+        Polyline polyline = Polyline.polyline(points);
+
+        int outer = 0;
+        Iterator<Point> vertices = polyline.vertices();
+        while (vertices.hasNext()) {
+            assertThat(vertices.next(), equalTo(points[outer]));
+            int idx = n - 1;
+            Iterator<Point> backwards = polyline.vertices(Point.point(CRS.Cartesian, 0, 0), Point.point(CRS.Cartesian, 0, 2));
+            while (backwards.hasNext()) {
+                assertThat(backwards.next(), equalTo(points[idx]));
+                idx--;
+            }
+            assertThat(idx, equalTo(-1));
+            outer++;
+        }
+        assertThat(outer, equalTo(n));
+    }
+
     private double[][] getPoints(int n) {
         double[][] points = new double[n][2];
 
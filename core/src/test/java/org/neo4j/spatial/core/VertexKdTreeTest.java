@@ -0,0 +1,79 @@
+package org.neo4j.spatial.core;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class VertexKdTreeTest {
+
+    @Test
+    public void shouldFindNearestCartesianVertex() {
+        Random random = new Random(0);
+        double[] coordinates = new double[2000];
+        for (int i = 0; i < coordinates.length; i++) {
+            coordinates[i] = random.nextDouble() * 100;
+        }
+        PackedCoordinateSequence vertices = new PackedCoordinateSequence(CRS.Cartesian, 2, coordinates);
+        VertexKdTree tree = new VertexKdTree(vertices);
+
+        for (int i = 0; i < 200; i++) {
+            Point point = Point.point(CRS.Cartesian, random.nextDouble() * 120 - 10, random.nextDouble() * 120 - 10);
+            assertThat(tree.nearest(point), equalTo(bruteForce(vertices, point)));
+        }
+    }
+
+    @Test
+    public void shouldFindNearestWGS84VertexAcrossTheDateLine() {
+        Random random = new Random(1);
+        double[] coordinates = new double[2000];
+        for (int i = 0; i < coordinates.length; i += 2) {
+            coordinates[i] = random.nextDouble() * 360 - 180;
+            coordinates[i + 1] = random.nextDouble() * 170 - 85;
+        }
+        PackedCoordinateSequence vertices = new PackedCoordinateSequence(CRS.WGS84, 2, coordinates);
+        VertexKdTree tree = new VertexKdTree(vertices);
+
+        for (int i = 0; i < 200; i++) {
+            Point point = Point.point(CRS.WGS84, random.nextDouble() * 360 - 180, random.nextDouble() * 180 - 90);
+            assertThat(tree.nearest(point), equalTo(bruteForce(vertices, point)));
+        }
+
+        vertices = new PackedCoordinateSequence(CRS.WGS84, 2, new double[]{179.9, 10, -170, 10, 170, 10});
+        tree = new VertexKdTree(vertices);
+        assertThat(tree.nearest(Point.point(CRS.WGS84, -179.9, 10)), equalTo(0));
+    }
+
+    @Test
+    public void shouldPreferLowestIndexForDuplicates() {
+        PackedCoordinateSequence vertices = new PackedCoordinateSequence(CRS.Cartesian, 2, new double[]{5, 5, 0, 0, 1, 1, 0, 0, 5, 5});
+        VertexKdTree tree = new VertexKdTree(vertices);
+
+        assertThat(tree.nearest(Point.point(CRS.Cartesian, 0.1, 0)), equalTo(1));
+        assertThat(tree.nearest(Point.point(CRS.Cartesian, 4, 6)), equalTo(0));
+    }
+
+    private static int bruteForce(CoordinateSequence vertices, Point point) {
+        double[] key = key(vertices.getCRS(), point.getCoordinate());
+        int nearest = -1;
+        double min = Double.MAX_VALUE;
+        for (int i = 0; i < vertices.size(); i++) {
+            double[] vertex = key(vertices.getCRS(), vertices.getPoint(i).getCoordinate());
+            double distance = 0;
+            for (int axis = 0; axis < key.length; axis++) {
+                distance += (vertex[axis] - key[axis]) * (vertex[axis] - key[axis]);
+            }
+            if (distance < min) {
+                min = distance;
+                nearest = i;
+            }
+        }
+        return nearest;
+    }
+
+    private static double[] key(CRS crs, double[] coordinate) {
+        return crs == CRS.WGS84 ? Vector.pointCoordinatesToVectorCoordinates(coordinate) : coordinate;
+    }
+}
@@ -0,0 +1,217 @@
+package org.neo4j.spatial.neo4j;
+
+import org.neo4j.spatial.core.CRS;
+import org.neo4j.spatial.core.Point;
+
+import java.util.Arrays;
+
+/**
+ * A compact byte[] encoding of a sequence of points, as an alternative to storing a Point[] property.
+ * <p>
+ * Every coordinate is quantized to a fixed number of decimals, and stored as the zigzag varint encoded difference to the
+ * same coordinate of the previous point. Since consecutive vertices of real geometries are close together, most
+ * coordinates take two or three bytes instead of the eight bytes of a double, and decoding needs no per-point CRS lookup
+ * or boxing. With the default of 7 decimals, the quantization error is at most 0.5e-7 degrees, or about 5mm, for
+ * geographic coordinates, which is the same precision as the OpenStreetMap data itself.
+ * <p>
+ * The layout is: a magic byte, a version byte, the CRS, the dimension, the number of decimals, the number of points as a
+ * varint, followed by the coordinates.
+ */
+public class CompactPointArray {
+    public static final int DEFAULT_DECIMALS = 7;
+
+    private static final byte MAGIC = 'P';
+    private static final byte VERSION = 1;
+    private static final int HEADER_SIZE = 5;
+    private static final int MAX_DECIMALS = 15;
+    private static final byte WGS84 = 1;
+    private static final byte CARTESIAN = 2;
+
+    /**
+     * Besides the header, this decodes the whole value to check that the number of encoded coordinates matches the
+     * number of points in the header, so arbitrary byte[] properties starting with the magic byte and version are not
+     * mistaken for point arrays. Readers that expect a point array can call {@link #decode(byte[])} directly, which
+     * makes the same checks while decoding.
+     *
+     * @param value a property value
+     * @return True iff the value is a byte[] created by this encoding
+     */
+    public static boolean isCompact(Object value) {
+        if (!(value instanceof byte[]) || !hasHeader((byte[]) value)) {
+            return false;
+        }
+        try {
+            decodeCoordinates((byte[]) value);
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    public static byte[] encode(Point[] points) {
+        return encode(points, DEFAULT_DECIMALS);
+    }
+
+    /**
+     * @param points   the points to encode, which must all have the same CRS and dimension
+     * @param decimals the number of decimals to keep of every coordinate
+     * @return The encoded points
+     */
+    public static byte[] encode(Point[] points, int decimals) {
+        if (points.length == 0) {
+            throw new IllegalArgumentException("Cannot encode an empty point array");
+        }
+        CRS crs = points[0].getCRS();
+        int dimension = points[0].dimension();
+        double[] coordinates = new double[points.length * dimension];
+        for (int i = 0; i < points.length; i++) {
+            if (points[i].getCRS() != crs || points[i].dimension() != dimension) {
+                throw new IllegalArgumentException("All points must have the same CRS and dimension, but found " + points[0] + " and " + points[i]);
+            }
+            System.arraycopy(points[i].getCoordinate(), 0, coordinates, i * dimension, dimension);
+        }
+        return encode(crs, dimension, coordinates, decimals);
+    }
+
+    /**
+     * @param crs         the CRS of all points
+     * @param dimension   the number of coordinates per point
+     * @param coordinates the packed coordinates, with the coordinates of point i at [i * dimension, (i + 1) * dimension)
+     * @param decimals    the number of decimals to keep of every coordinate
+     * @return The encoded points
+     */
+    public static byte[] encode(CRS crs, int dimension, double[] coordinates, int decimals) {
+        if (dimension < 1 || dimension > Byte.MAX_VALUE || coordinates.length % dimension != 0) {
+            throw new IllegalArgumentException("Invalid dimension " + dimension + " for " + coordinates.length + " coordinates");
+        }
+        if (decimals < 0 || decimals > MAX_DECIMALS) {
+            throw new IllegalArgumentException("Invalid number of decimals, should be between 0 and " + MAX_DECIMALS + ", but was: " + decimals);
+        }
+        double scale = Math.pow(10, decimals);
+        // The worst case is ten bytes for every coordinate, which is only reached for huge jumps between points
+        byte[] buffer = new byte[HEADER_SIZE + 5 + coordinates.length * 10];
+        buffer[0] = MAGIC;
+        buffer[1] = VERSION;
+        buffer[2] = crsCode(crs);
+        buffer[3] = (byte) dimension;
+        buffer[4] = (byte) decimals;
+        int offset = writeVarint(buffer, HEADER_SIZE, coordinates.length / dimension);
+
+        long[] previous = new long[dimension];
+        for (int i = 0; i < coordinates.length; i++) {
+            double scaled = coordinates[i] * scale;
+            if (Double.isNaN(scaled) || Math.abs(scaled) >= Long.MAX_VALUE >> 2) {
+                throw new IllegalArgumentException("Coordinate " + coordinates[i] + " cannot be encoded with " + decimals + " decimals");
+            }
+            long quantized = Math.round(scaled);
+            long delta = quantized - previous[i % dimension];
+            previous[i % dimension] = quantized;
+            offset = writeVarint(buffer, offset, (delta << 1) ^ (delta >> 63));
+        }
+        return Arrays.copyOf(buffer, offset);
+    }
+
+    public static CRS decodeCRS(byte[] bytes) {
+        checkHeader(bytes);
+        return bytes[2] == WGS84 ? CRS.WGS84 : CRS.Cartesian;
+    }
+
+    public static int decodeDimension(byte[] bytes) {
+        checkHeader(bytes);
+        return bytes[3];
+    }
+
+    /**
+     * @param bytes
+     * @return The packed coordinates, with the coordinates of point i at [i * dimension, (i + 1) * dimension)
+     */
+    public static double[] decode(byte[] bytes) {
+        checkHeader(bytes);
+        return decodeCoordinates(bytes);
+    }
+
+    public static Point[] decodePoints(byte[] bytes) {
+        CRS crs = decodeCRS(bytes);
+        int dimension = bytes[3];
+        double[] coordinates = decodeCoordinates(bytes);
+        Point[] points = new Point[coordinates.length / dimension];
+        for (int i = 0; i < points.length; i++) {
+            points[i] = Point.point(crs, Arrays.copyOfRange(coordinates, i * dimension, (i + 1) * dimension));
+        }
+        return points;
+    }
+
+    /**
+     * Decodes the coordinates of bytes with a valid header, checking that they are neither truncated nor followed by
+     * extra bytes.
+     */
+    private static double[] decodeCoordinates(byte[] bytes) {
+        int dimension = bytes[3];
+        double scale = Math.pow(10, bytes[4]);
+
+        int[] offset = new int[]{HEADER_SIZE};
+        long count = readVarint(bytes, offset);
+        if (count <= 0 || count * dimension > bytes.length - offset[0]) {
+            throw new IllegalArgumentException("Truncated or corrupt compact point array");
+        }
+        double[] coordinates = new double[(int) count * dimension];
+        long[] previous = new long[dimension];
+        for (int i = 0; i < coordinates.length; i++) {
+            long zigzag = readVarint(bytes, offset);
+            long quantized = previous[i % dimension] + ((zigzag >>> 1) ^ -(zigzag & 1));
+            previous[i % dimension] = quantized;
+            coordinates[i] = quantized / scale;
+        }
+        if (offset[0] != bytes.length) {
+            throw new IllegalArgumentException("Corrupt compact point array, with " + (bytes.length - offset[0]) + " bytes after the last point");
+        }
+        return coordinates;
+    }
+
+    private static boolean hasHeader(byte[] bytes) {
+        if (bytes.length <= HEADER_SIZE || bytes[0] != MAGIC || bytes[1] != VERSION) {
+            return false;
+        }
+        return (bytes[2] == WGS84 || bytes[2] == CARTESIAN) && bytes[3] >= 1 && bytes[4] >= 0 && bytes[4] <= MAX_DECIMALS;
+    }
+
+    private static void checkHeader(byte[] bytes) {
+        if (!hasHeader(bytes)) {
+            throw new IllegalArgumentException("Not a compact point array, or unsupported version");
+        }
+    }
+
+    private static byte crsCode(CRS crs) {
+        if (crs == CRS.WGS84) {
+            return WGS84;
+        } else if (crs == CRS.Cartesian) {
+            return CARTESIAN;
+        } else {
+            throw new IllegalArgumentException("Unsupported Coordinate Reference System");
+        }
+    }
+
+    private static int writeVarint(byte[] buffer, int offset, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer[offset++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[offset++] = (byte) value;
+        return offset;
+    }
+
+    private static long readVarint(byte[] buffer, int[] offset) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            if (offset[0] >= buffer.length || shift > 63) {
+                throw new IllegalArgumentException("Truncated or corrupt compact point array");
+            }
+            b = buffer[offset[0]++];
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+}
@@ -0,0 +1,165 @@
+package org.neo4j.spatial.neo4j;
+
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.kernel.api.KernelTransaction;
+import org.neo4j.spatial.algo.GeometryAggregates;
+import org.neo4j.spatial.algo.GeometryAggregatesCalculator;
+import org.neo4j.spatial.core.MultiPolygon;
+import org.neo4j.spatial.core.Point;
+import org.neo4j.spatial.core.Polygon;
+import org.neo4j.spatial.core.Polyline;
+import org.neo4j.values.storable.CoordinateReferenceSystem;
+import org.neo4j.values.storable.Values;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.neo4j.spatial.neo4j.CRSConverter.toNeo4jCRS;
+
+/**
+ * Attributes derived from the graph geometries of an OSMRelation, stored on its Polygon and Polyline nodes and on the
+ * relation itself, so that Cypher queries can filter on them before any geometry is loaded. The envelope corners and
+ * the centroid are stored as native points, so that property indexes on them can be used for range and distance
+ * predicates.
+ * <p>
+ * On the Polygon nodes the area is the area of the ring, while on the relation the areas of the holes are subtracted.
+ * The envelope is the range of the longitudes and latitudes, so it is not meaningful for geometries crossing the date
+ * line.
+ * <p>
+ * A relation that has attributes gets new ones whenever its geometries are rebuilt, see
+ * {@link OSMGeometryWriter#buildGraphGeometries}.
+ */
+class GeometryAttributes {
+    static final String AREA = "area";
+    static final String LENGTH = "length";
+    static final String VERTICES = "vertices";
+    static final String ENVELOPE_MIN = "envelope_min";
+    static final String ENVELOPE_MAX = "envelope_max";
+    static final String CENTROID = "centroid";
+
+    private static final String[] ALL = new String[]{AREA, LENGTH, VERTICES, ENVELOPE_MIN, ENVELOPE_MAX, CENTROID};
+
+    private final KernelTransaction ktx;
+    private final long relationId;
+    private final List<Written> written = new ArrayList<>();
+    private GeometryAggregates total;
+
+    static class Written {
+        final Node node;
+        final GeometryAggregates aggregates;
+
+        private Written(Node node, GeometryAggregates aggregates) {
+            this.node = node;
+            this.aggregates = aggregates;
+        }
+    }
+
+    private GeometryAttributes(Node main, KernelTransaction ktx) {
+        this.ktx = ktx;
+        this.relationId = (long) main.getProperty("relation_osm_id");
+    }
+
+    /**
+     * @return True if the attributes of the relation have been written, and should be kept up to date
+     */
+    static boolean isWritten(Node main) {
+        return main.hasProperty(VERTICES);
+    }
+
+    /**
+     * Computes the attributes of all Polygon and Polyline nodes of the relation, and of the relation itself, with one
+     * walk over the way nodes of every ring and polyline. If the relation has no geometries, its attributes are removed.
+     *
+     * @return The nodes that got attributes, the relation last
+     */
+    static List<Written> write(Node main, KernelTransaction ktx) {
+        GeometryAttributes attributes = new GeometryAttributes(main, ktx);
+        attributes.writePolygons(main, MultiPolygon.PolygonType.SHELL);
+        attributes.writePolylines(main);
+        if (attributes.total == null) {
+            remove(main);
+        } else {
+            attributes.write(main, attributes.total);
+        }
+        return attributes.written;
+    }
+
+    static void remove(Node node) {
+        for (String property : ALL) {
+            node.removeProperty(property);
+        }
+    }
+
+    private void writePolygons(Node parent, MultiPolygon.PolygonType type) {
+        for (Relationship polygonStructure : parent.getRelationships(Direction.OUTGOING, Relation.POLYGON_STRUCTURE)) {
+            Node polygonNode = polygonStructure.getEndNode();
+            Node start = polygonNode.getSingleRelationship(Relation.POLYGON_START, Direction.OUTGOING).getEndNode().getSingleRelationship(Relation.FIRST_NODE, Direction.OUTGOING).getEndNode();
+            Polygon.SimplePolygon polygon = new Neo4jSimpleGraphNodePolygon(start, relationId, ktx);
+
+            GeometryAggregates ring = GeometryAggregatesCalculator.getCalculator(polygon);
+            startTotal(polygon.getCRS());
+            ring.startPolygon(type);
+            total.startPolygon(type);
+            consume(polygon.vertices(), ring);
+            write(polygonNode, ring);
+
+            writePolygons(polygonNode, type == MultiPolygon.PolygonType.SHELL ? MultiPolygon.PolygonType.HOLE : MultiPolygon.PolygonType.SHELL);
+        }
+    }
+
+    private void writePolylines(Node main) {
+        for (Relationship polylineStructure : main.getRelationships(Direction.OUTGOING, Relation.POLYLINE_STRUCTURE)) {
+            Node polylineNode = polylineStructure.getEndNode();
+            Node start = polylineNode.getSingleRelationship(Relation.POLYLINE_START, Direction.OUTGOING).getEndNode();
+            Polyline polyline = new Neo4jSimpleGraphNodePolyline(start, relationId, ktx);
+
+            GeometryAggregates line = GeometryAggregatesCalculator.getCalculator(polyline);
+            startTotal(polyline.getCRS());
+            line.startPolyline();
+            total.startPolyline();
+            consume(polyline.vertices(), line);
+            write(polylineNode, line);
+        }
+    }
+
+    private void startTotal(org.neo4j.spatial.core.CRS crs) {
+        if (total == null) {
+            total = GeometryAggregatesCalculator.getCalculator(crs);
+        }
+    }
+
+    /**
+     * Passes every vertex to both the aggregates of the part and the total, so that the ring is only walked once
+     */
+    private void consume(Iterator<Point> vertices, GeometryAggregates part) {
+        while (vertices.hasNext()) {
+            Point vertex = vertices.next();
+            part.vertex(vertex);
+            total.vertex(vertex);
+        }
+        part.end();
+        total.end();
+    }
+
+    private void write(Node node, GeometryAggregates aggregates) {
+        node.setProperty(AREA, Math.abs(aggregates.getArea()));
+        node.setProperty(LENGTH, aggregates.getLength());
+        node.setProperty(VERTICES, aggregates.getVertexCount());
+        node.setProperty(ENVELOPE_MIN, asNativePoint(aggregates.getMin()));
+        node.setProperty(ENVELOPE_MAX, asNativePoint(aggregates.getMax()));
+        Point centroid = aggregates.getCentroid();
+        if (centroid == null) {
+            node.removeProperty(CENTROID);
+        } else {
+            node.setProperty(CENTROID, asNativePoint(centroid));
+        }
+        written.add(new Written(node, aggregates));
+    }
+
+    private static org.neo4j.graphdb.spatial.Point asNativePoint(Point point) {
+        return Values.pointValue((CoordinateReferenceSystem) toNeo4jCRS(point.getCRS()), point.getCoordinate());
+    }
+}
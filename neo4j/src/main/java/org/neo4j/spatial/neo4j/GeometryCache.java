@@ -0,0 +1,272 @@
+package org.neo4j.spatial.neo4j;
+
+import org.neo4j.spatial.core.MultiPolygon;
+import org.neo4j.spatial.core.Point;
+import org.neo4j.spatial.core.Polygon;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * A bounded cache of decoded multipolygons, keyed by the id of the main node and the source of the geometry, for
+ * example the property the rings were read from.
+ * <p>
+ * The size of the cache is measured in vertices, and the least recently used geometries are evicted first. The cache
+ * only stores in-memory copies of the coordinates, and every lookup returns a new MultiPolygon over the cached points, so callers never share
+ * traversal state. Entries are invalidated by {@link GeometryCacheExtension} whenever a transaction changes one of the
+ * nodes the geometry was read from, and geometries read from the OSM graph are dropped whenever OSM data changes.
+ * A cache only exists for databases where that extension is running, since otherwise nothing would invalidate it.
+ */
+public class GeometryCache {
+    public static final long DEFAULT_MAX_VERTICES = 10_000_000;
+    public static final String MAX_VERTICES_PROPERTY = "spatial.geometry_cache.max_vertices";
+
+    private static final Map<String, GeometryCache> caches = new ConcurrentHashMap<>();
+
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<Long, Set<Key>> dependents = new HashMap<>();
+    private final long maxVertices;
+    private long vertices;
+    private long generation;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long invalidations;
+
+    public GeometryCache(long maxVertices) {
+        this.maxVertices = maxVertices;
+    }
+
+    /**
+     * @return The cache of the database, or null if caching is not enabled for it
+     */
+    public static GeometryCache forDatabase(String databaseName) {
+        return caches.get(databaseName);
+    }
+
+    static void register(String databaseName, GeometryCache cache) {
+        caches.put(databaseName, cache);
+    }
+
+    static void unregister(String databaseName) {
+        caches.remove(databaseName);
+    }
+
+    /**
+     * A geometry as read from the database, together with the ids of all nodes it was read from
+     */
+    public static class Loaded {
+        private final MultiPolygon polygon;
+        private final long[] dependencies;
+
+        public Loaded(MultiPolygon polygon, long[] dependencies) {
+            this.polygon = polygon;
+            this.dependencies = dependencies;
+        }
+    }
+
+    /**
+     * @param mainId the id of the main node of the geometry
+     * @param source what the geometry was read from, for example the name of the property
+     * @param graph  true if the geometry was read from the OSM graph, and should be dropped whenever OSM data changes
+     * @param loader reads the geometry if it is not cached
+     * @return A multipolygon with the cached coordinates
+     */
+    public MultiPolygon get(long mainId, String source, boolean graph, Supplier<Loaded> loader) {
+        Key key = new Key(mainId, source, graph);
+        long loadGeneration;
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                hits++;
+                return entry.toMultiPolygon();
+            }
+            misses++;
+            loadGeneration = generation;
+        }
+
+        Loaded loaded = loader.get();
+        Entry entry = new Entry(loaded.polygon, loaded.dependencies);
+        synchronized (this) {
+            // Anything committed while loading may not be visible in what was loaded, so it must not be cached
+            if (loadGeneration == generation && entry.vertices <= maxVertices && !entries.containsKey(key)) {
+                put(key, entry);
+            }
+        }
+        return entry.toMultiPolygon();
+    }
+
+    private void put(Key key, Entry entry) {
+        entries.put(key, entry);
+        vertices += entry.vertices;
+        for (long id : entry.dependencies) {
+            dependents.computeIfAbsent(id, k -> new HashSet<>()).add(key);
+        }
+        Iterator<Map.Entry<Key, Entry>> iterator = entries.entrySet().iterator();
+        while (vertices > maxVertices && iterator.hasNext()) {
+            Map.Entry<Key, Entry> eldest = iterator.next();
+            iterator.remove();
+            removed(eldest.getKey(), eldest.getValue());
+            evictions++;
+        }
+    }
+
+    private void removed(Key key, Entry entry) {
+        vertices -= entry.vertices;
+        for (long id : entry.dependencies) {
+            Set<Key> keys = dependents.get(id);
+            if (keys != null) {
+                keys.remove(key);
+                if (keys.isEmpty()) {
+                    dependents.remove(id);
+                }
+            }
+        }
+    }
+
+    /**
+     * Remove all geometries read from any of the given nodes, and all geometries read from the OSM graph if graphChanged
+     */
+    public synchronized void invalidate(Collection<Long> nodeIds, boolean graphChanged) {
+        generation++;
+        Set<Key> keys = new HashSet<>();
+        for (long id : nodeIds) {
+            keys.addAll(dependents.getOrDefault(id, Collections.emptySet()));
+        }
+        if (graphChanged) {
+            for (Key key : entries.keySet()) {
+                if (key.graph) {
+                    keys.add(key);
+                }
+            }
+        }
+        for (Key key : keys) {
+            Entry entry = entries.remove(key);
+            if (entry != null) {
+                removed(key, entry);
+                invalidations++;
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        generation++;
+        entries.clear();
+        dependents.clear();
+        vertices = 0;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    public synchronized long getInvalidations() {
+        return invalidations;
+    }
+
+    public synchronized int getEntryCount() {
+        return entries.size();
+    }
+
+    public synchronized long getVertexCount() {
+        return vertices;
+    }
+
+    public long getMaxVertices() {
+        return maxVertices;
+    }
+
+    private static class Key {
+        private final long mainId;
+        private final String source;
+        private final boolean graph;
+
+        private Key(long mainId, String source, boolean graph) {
+            this.mainId = mainId;
+            this.source = source;
+            this.graph = graph;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) other;
+            return mainId == key.mainId && graph == key.graph && source.equals(key.source);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(mainId, source, graph);
+        }
+    }
+
+    /**
+     * The rings of a multipolygon in pre-order, with the index of the parent of every ring
+     */
+    private static class Entry {
+        private final Point[][] rings;
+        private final int[] parents;
+        private final long[] dependencies;
+        private final long vertices;
+
+        private Entry(MultiPolygon polygon, long[] dependencies) {
+            List<Point[]> rings = new ArrayList<>();
+            List<Integer> parents = new ArrayList<>();
+            collect(polygon, -1, rings, parents);
+            this.rings = rings.toArray(new Point[0][]);
+            this.parents = parents.stream().mapToInt(i -> i).toArray();
+            this.dependencies = dependencies;
+            long count = 0;
+            for (Point[] ring : this.rings) {
+                count += ring.length;
+            }
+            this.vertices = count;
+        }
+
+        private static void collect(MultiPolygon polygon, int parent, List<Point[]> rings, List<Integer> parents) {
+            for (MultiPolygon.MultiPolygonNode child : polygon.getChildren()) {
+                int index = rings.size();
+                rings.add(detach(child.getPolygon().getPoints()));
+                parents.add(parent);
+                collect(child, index, rings, parents);
+            }
+        }
+
+        /**
+         * Copy points that are backed by the database, so that they can be used after the transaction is closed
+         */
+        private static Point[] detach(Point[] points) {
+            Point[] detached = new Point[points.length];
+            for (int i = 0; i < points.length; i++) {
+                detached[i] = Point.point(points[i].getCRS(), points[i].getCoordinate());
+            }
+            return detached;
+        }
+
+        private MultiPolygon toMultiPolygon() {
+            MultiPolygon result = new MultiPolygon();
+            MultiPolygon.MultiPolygonNode[] nodes = new MultiPolygon.MultiPolygonNode[rings.length];
+            for (int i = 0; i < rings.length; i++) {
+                nodes[i] = new MultiPolygon.MultiPolygonNode(Polygon.simple(rings[i]));
+                if (parents[i] < 0) {
+                    result.addChild(nodes[i]);
+                } else {
+                    nodes[parents[i]].addChild(nodes[i]);
+                }
+            }
+            return result.freeze();
+        }
+    }
+}
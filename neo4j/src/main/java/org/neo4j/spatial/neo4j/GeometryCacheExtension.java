@@ -0,0 +1,150 @@
+package org.neo4j.spatial.neo4j;
+
+import org.neo4j.dbms.api.DatabaseManagementService;
+import org.neo4j.graphdb.*;
+import org.neo4j.graphdb.event.LabelEntry;
+import org.neo4j.graphdb.event.PropertyEntry;
+import org.neo4j.graphdb.event.TransactionData;
+import org.neo4j.graphdb.event.TransactionEventListener;
+import org.neo4j.kernel.extension.ExtensionFactory;
+import org.neo4j.kernel.extension.ExtensionType;
+import org.neo4j.kernel.extension.context.ExtensionContext;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
+import org.neo4j.kernel.lifecycle.Lifecycle;
+import org.neo4j.kernel.lifecycle.LifecycleAdapter;
+
+import java.util.*;
+
+import static org.neo4j.configuration.GraphDatabaseSettings.SYSTEM_DATABASE_NAME;
+
+/**
+ * Creates a {@link GeometryCache} for every database, and keeps it up to date with a transaction event listener.
+ * The maximum size of each cache in vertices can be set with the system property spatial.geometry_cache.max_vertices,
+ * where 0 disables caching.
+ */
+public class GeometryCacheExtension extends ExtensionFactory<GeometryCacheExtension.Dependencies> {
+    private static final Set<String> OSM_LABELS = new HashSet<>(Arrays.asList("OSMRelation", "OSMWay", "OSMWayNode", "OSMNode"));
+    private static final Set<String> OSM_RELATIONSHIPS = new HashSet<>(Arrays.asList(
+            Relation.NEXT.name(), Relation.NEXT_IN_POLYGON.name(), Relation.FIRST_NODE.name(), Relation.MEMBER.name(),
+            Relation.NODE.name(), Relation.POLYGON_START.name()));
+
+    public interface Dependencies {
+        GraphDatabaseAPI graphDatabaseAPI();
+
+        DatabaseManagementService databaseManagementService();
+    }
+
+    public GeometryCacheExtension() {
+        super(ExtensionType.DATABASE, "spatialGeometryCache");
+    }
+
+    @Override
+    public Lifecycle newInstance(ExtensionContext context, Dependencies dependencies) {
+        String databaseName = dependencies.graphDatabaseAPI().databaseName();
+        long maxVertices = Long.getLong(GeometryCache.MAX_VERTICES_PROPERTY, GeometryCache.DEFAULT_MAX_VERTICES);
+        if (SYSTEM_DATABASE_NAME.equals(databaseName) || maxVertices <= 0) {
+            return new LifecycleAdapter();
+        }
+        return new LifecycleAdapter() {
+            private Listener listener;
+
+            @Override
+            public void start() {
+                GeometryCache cache = new GeometryCache(maxVertices);
+                listener = new Listener(cache);
+                dependencies.databaseManagementService().registerTransactionEventListener(databaseName, listener);
+                GeometryCache.register(databaseName, cache);
+            }
+
+            @Override
+            public void stop() {
+                GeometryCache.unregister(databaseName);
+                dependencies.databaseManagementService().unregisterTransactionEventListener(databaseName, listener);
+            }
+        };
+    }
+
+    /**
+     * The nodes changed by a transaction, and whether it changed any OSM data
+     */
+    private static class Changes {
+        private final Set<Long> nodeIds = new HashSet<>();
+        private boolean graphChanged;
+    }
+
+    private static class Listener implements TransactionEventListener<Changes> {
+        private final GeometryCache cache;
+
+        private Listener(GeometryCache cache) {
+            this.cache = cache;
+        }
+
+        @Override
+        public Changes beforeCommit(TransactionData data, Transaction transaction, GraphDatabaseService databaseService) {
+            Changes changes = new Changes();
+            for (Node node : data.deletedNodes()) {
+                // The labels of deleted nodes cannot be read, so assume OSM data was deleted
+                changes.nodeIds.add(node.getId());
+                changes.graphChanged = true;
+            }
+            for (PropertyEntry<Node> entry : data.assignedNodeProperties()) {
+                addNode(changes, entry.entity(), data);
+            }
+            for (PropertyEntry<Node> entry : data.removedNodeProperties()) {
+                addNode(changes, entry.entity(), data);
+            }
+            for (LabelEntry entry : data.assignedLabels()) {
+                addNode(changes, entry.node(), data);
+                changes.graphChanged |= OSM_LABELS.contains(entry.label().name());
+            }
+            for (LabelEntry entry : data.removedLabels()) {
+                addNode(changes, entry.node(), data);
+                changes.graphChanged |= OSM_LABELS.contains(entry.label().name());
+            }
+            for (Relationship relationship : data.createdRelationships()) {
+                addRelationship(changes, relationship);
+            }
+            for (Relationship relationship : data.deletedRelationships()) {
+                addRelationship(changes, relationship);
+            }
+            for (PropertyEntry<Relationship> entry : data.assignedRelationshipProperties()) {
+                addRelationship(changes, entry.entity());
+            }
+            for (PropertyEntry<Relationship> entry : data.removedRelationshipProperties()) {
+                addRelationship(changes, entry.entity());
+            }
+            cache.invalidate(changes.nodeIds, changes.graphChanged);
+            return changes;
+        }
+
+        private static void addNode(Changes changes, Node node, TransactionData data) {
+            if (changes.nodeIds.add(node.getId()) && !changes.graphChanged && !data.isDeleted(node)) {
+                for (Label label : node.getLabels()) {
+                    if (OSM_LABELS.contains(label.name())) {
+                        changes.graphChanged = true;
+                        break;
+                    }
+                }
+            }
+        }
+
+        private static void addRelationship(Changes changes, Relationship relationship) {
+            changes.nodeIds.add(relationship.getStartNodeId());
+            changes.nodeIds.add(relationship.getEndNodeId());
+            changes.graphChanged |= OSM_RELATIONSHIPS.contains(relationship.getType().name());
+        }
+
+        @Override
+        public void afterCommit(TransactionData data, Changes changes, GraphDatabaseService databaseService) {
+            // Invalidate again, in case a concurrent reader cached the old data before this transaction was visible
+            cache.invalidate(changes.nodeIds, changes.graphChanged);
+        }
+
+        @Override
+        public void afterRollback(TransactionData data, Changes changes, GraphDatabaseService databaseService) {
+            if (changes != null) {
+                cache.invalidate(changes.nodeIds, changes.graphChanged);
+            }
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package org.neo4j.spatial.neo4j;
+
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.ResourceIterator;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.kernel.api.KernelTransaction;
+import org.neo4j.spatial.algo.CellCovering;
+import org.neo4j.spatial.core.MultiPolygon;
+
+/**
+ * A {@link CellCovering} of the graph polygon of an OSMRelation, stored as the sorted cell keys on the relation, and as
+ * shared CoveringCell nodes with a COVERS relationship to every relation they cover, so that an index on the cell keys
+ * finds the relations around a point without loading any geometry. That index should be a unique constraint, which also
+ * keeps concurrent coverings from creating the same cell twice. The relationship tells if the cell is an interior
+ * cell, in which case the point is known to be within the relation, or a boundary cell, which needs an exact test.
+ * <p>
+ * A relation that has a covering gets a new one whenever its geometries are rebuilt, see
+ * {@link OSMGeometryWriter#buildGraphGeometries}.
+ */
+class GeometryCovering {
+    static final Label CELL_LABEL = Label.label("CoveringCell");
+    static final String CELL = "cell";
+    static final String INTERIOR = "interior";
+    static final String COVERING_INTERIOR = "covering_interior";
+    static final String COVERING_BOUNDARY = "covering_boundary";
+    static final String COVERING_FRAME = "covering_frame";
+    static final String COVERING_MAX_LEVEL = "covering_max_level";
+    static final String COVERING_MAX_CELLS = "covering_max_cells";
+
+    private static final String[] ALL = new String[]{COVERING_INTERIOR, COVERING_BOUNDARY, COVERING_FRAME, COVERING_MAX_LEVEL, COVERING_MAX_CELLS};
+
+    /**
+     * @return True if the relation has a covering, which should be kept up to date
+     */
+    static boolean isWritten(Node main) {
+        return main.hasProperty(COVERING_INTERIOR);
+    }
+
+    /**
+     * Covers the graph polygon of the relation again with the options used the last time
+     */
+    static CellCovering update(Transaction tx, Node main, KernelTransaction ktx) {
+        return write(tx, main, ktx, (int) (long) main.getProperty(COVERING_MAX_LEVEL), (int) (long) main.getProperty(COVERING_MAX_CELLS));
+    }
+
+    /**
+     * Replaces the covering of the relation, reusing the CoveringCell nodes of other relations where they exist
+     */
+    static CellCovering write(Transaction tx, Node main, KernelTransaction ktx, int maxLevel, int maxCells) {
+        remove(main);
+        MultiPolygon polygon = UserDefinedFunctions.getGraphNodePolygon(main, ktx);
+        if (polygon.getChildren().isEmpty()) {
+            return null;
+        }
+        CellCovering covering = CellCovering.cover(polygon, CellCovering.WGS84_FRAME, maxLevel, maxCells);
+        writeCells(tx, main, covering.getInterior(), true);
+        writeCells(tx, main, covering.getBoundary(), false);
+        main.setProperty(COVERING_INTERIOR, covering.getInterior());
+        main.setProperty(COVERING_BOUNDARY, covering.getBoundary());
+        main.setProperty(COVERING_FRAME, covering.getFrame());
+        main.setProperty(COVERING_MAX_LEVEL, (long) maxLevel);
+        main.setProperty(COVERING_MAX_CELLS, (long) maxCells);
+        return covering;
+    }
+
+    private static void writeCells(Transaction tx, Node main, long[] keys, boolean interior) {
+        for (long key : keys) {
+            // Without the unique constraint on the cell keys, concurrent transactions can both create a cell, so use any
+            Node cell;
+            try (ResourceIterator<Node> cells = tx.findNodes(CELL_LABEL, CELL, key)) {
+                cell = cells.hasNext() ? cells.next() : null;
+            }
+            if (cell == null) {
+                cell = tx.createNode(CELL_LABEL);
+                cell.setProperty(CELL, key);
+            }
+            cell.createRelationshipTo(main, Relation.COVERS).setProperty(INTERIOR, interior);
+        }
+    }
+
+    /**
+     * Removes the covering of the relation, and the CoveringCell nodes no other relation uses
+     */
+    static void remove(Node main) {
+        for (Relationship covers : main.getRelationships(Direction.INCOMING, Relation.COVERS)) {
+            Node cell = covers.getStartNode();
+            covers.delete();
+            if (!cell.hasRelationship(Direction.OUTGOING, Relation.COVERS)) {
+                cell.delete();
+            }
+        }
+        for (String property : ALL) {
+            main.removeProperty(property);
+        }
+    }
+
+    /**
+     * @return The stored covering of the relation, without the polygon, so only {@link CellCovering#classify} can be used
+     */
+    static CellCovering read(Node main) {
+        if (!isWritten(main)) {
+            throw new IllegalArgumentException("No covering found - perhaps you have not run spatial.osm.graph.createCovering(" + main + ") yet?");
+        }
+        return new CellCovering(null, (double[]) main.getProperty(COVERING_FRAME), (long[]) main.getProperty(COVERING_INTERIOR), (long[]) main.getProperty(COVERING_BOUNDARY));
+    }
+}
@@ -7,10 +7,13 @@ import java.util.List;
 
 public abstract class GraphBuilder {
     protected Node main;
-    protected List<List<Node>> polylines;
+    protected List<long[]> polylines;
     protected Transaction tx;
 
-    public GraphBuilder(Transaction tx, Node main, List<List<Node>> polylines) {
+    /**
+     * @param polylines the ids of the OSMWayNodes of every polygon or polyline, see {@link OSMTraverser#traverseOSMGraph}
+     */
+    public GraphBuilder(Transaction tx, Node main, List<long[]> polylines) {
         this.tx = tx;
         this.main = main;
         this.polylines = polylines;
@@ -24,15 +27,14 @@ public abstract class GraphBuilder {
     protected void connectPolylines(RelationshipType nextPolyRelType, int offset) {
         long relationOsmId = (long) main.getProperty("relation_osm_id");
 
-        for (List<Node> polyline : polylines) {
-
-            for (int i = offset; i < polyline.size() - offset; i++) {
-                Node a = polyline.get(i);
-                Node b = polyline.get((i + 1) % polyline.size());
+        for (long[] polyline : polylines) {
 
-                if (a.getId() == b.getId()) {
+            for (int i = offset; i < polyline.length - offset; i++) {
+                if (polyline[i] == polyline[(i + 1) % polyline.length]) {
                     continue;
                 }
+                Node a = tx.getNodeById(polyline[i]);
+                Node b = tx.getNodeById(polyline[(i + 1) % polyline.length]);
 
                 // If we already have a nextPolyRel relationship to the other node, update it
                 Relationship nextPolyRel = findPolyRel(a, b, nextPolyRelType);
@@ -4,16 +4,17 @@ import org.neo4j.graphdb.*;
 import org.neo4j.spatial.core.MultiPolygon;
 import org.neo4j.spatial.core.Polygon;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
+import java.util.Set;
 
 public class GraphPolygonBuilder extends GraphBuilder {
     private static Label POLYGON_LABEL = Label.label("Polygon");
     private static Label SHELL_LABEL = Label.label("Shell");
     private static Label HOLE_LABEL = Label.label("Hole");
 
-    public GraphPolygonBuilder(Transaction tx, Node main, List<List<Node>> polylines) {
+    public GraphPolygonBuilder(Transaction tx, Node main, List<long[]> polylines) {
         super(tx, main, polylines);
     }
 
@@ -34,20 +35,14 @@ public class GraphPolygonBuilder extends GraphBuilder {
     private MultiPolygon buildMultiPolygon() {
 
         long relationOsmId = (long) main.getProperty("relation_osm_id");
-        MultiPolygon root = new MultiPolygon();
 
-        Polygon.SimplePolygon[] polygons = new Polygon.SimplePolygon[polylines.size()];
-
-        for (int i = 0; i < polylines.size(); i++) {
-            Polygon.SimplePolygon polygon = new Neo4jSimpleGraphNodePolygon(polylines.get(i).get(0), relationOsmId);
-            polygons[i] = polygon;
-        }
-
-        for (int i = 0; i < polygons.length; i++) {
-            root.insertMultiPolygonNode(new Neo4jMultiPolygonNode(polygons[i], getWay(polylines.get(i))));
+        List<Neo4jMultiPolygonNode> nodes = new ArrayList<>(polylines.size());
+        for (long[] polyline : polylines) {
+            Polygon.SimplePolygon polygon = new Neo4jSimpleGraphNodePolygon(tx.getNodeById(polyline[0]), relationOsmId, UserDefinedFunctions.kernelTransaction(tx));
+            nodes.add(new Neo4jMultiPolygonNode(polygon, getWay(polyline)));
         }
 
-        return root;
+        return MultiPolygon.nest(nodes);
     }
 
     /**
@@ -70,19 +65,23 @@ public class GraphPolygonBuilder extends GraphBuilder {
 
     /**
      * @param polystring
-     * @return The OSMWay node belonging to the polystring
+     * @return The OSMWay node belonging to the first way node of the polystring, found by walking back along NEXT to the first way node of the way
      */
-    private Node getWay(List<Node> polystring) {
-        Map<String, Object> parameters = new HashMap<>();
-        parameters.put("n", polystring.get(0).getId());
-        parameters.put("m", main.getId());
-
-        Result result = tx.execute("MATCH (n:OSMWayNode)<-[:NEXT*0..]-(:OSMWayNode)<-[:FIRST_NODE]-(w:OSMWay)<-[:MEMBER*]-(m:OSMRelation) WHERE id(n)=$n AND id(m)=$m RETURN w", parameters);
-
-        if (result.hasNext()) {
-            return (Node) result.next().get("w");
+    private Node getWay(long[] polystring) {
+        Node wayNode = tx.getNodeById(polystring[0]);
+        Set<Long> visited = new HashSet<>();
+        while (visited.add(wayNode.getId())) {
+            Relationship first = wayNode.getSingleRelationship(Relation.FIRST_NODE, Direction.INCOMING);
+            if (first != null) {
+                return first.getStartNode();
+            }
+            Relationship next = wayNode.getSingleRelationship(Relation.NEXT, Direction.INCOMING);
+            if (next == null) {
+                break;
+            }
+            wayNode = next.getStartNode();
         }
-        System.out.println("Failed to find a way node between relation " + main + " and OSMWayNode " + polystring.get(0));
+        System.out.println("Failed to find a way node between relation " + main + " and OSMWayNode " + polystring[0]);
 
         return null;
     }
@@ -1,6 +1,5 @@
 package org.neo4j.spatial.neo4j;
 
-import org.bouncycastle.util.Arrays;
 import org.neo4j.graphdb.*;
 
 import java.util.List;
@@ -8,7 +7,7 @@ import java.util.List;
 public class GraphPolylineBuilder extends GraphBuilder {
     private static Label POLYLINE_LABEL = Label.label("Polyline");
 
-    public GraphPolylineBuilder(Transaction tx, Node main, List<List<Node>> polylines) {
+    public GraphPolylineBuilder(Transaction tx, Node main, List<long[]> polylines) {
         super(tx, main, polylines);
     }
 
@@ -19,11 +18,11 @@ public class GraphPolylineBuilder extends GraphBuilder {
     }
 
     private void connectToMain() {
-        for (List<Node> polyline : polylines) {
+        for (long[] polyline : polylines) {
             Node polylineNode = tx.createNode(POLYLINE_LABEL);
 
             main.createRelationshipTo(polylineNode, Relation.POLYLINE_STRUCTURE);
-            polylineNode.createRelationshipTo(polyline.get(0), Relation.POLYLINE_START);
+            polylineNode.createRelationshipTo(tx.getNodeById(polyline[0]), Relation.POLYLINE_START);
         }
     }
 }
@@ -0,0 +1,96 @@
+package org.neo4j.spatial.neo4j;
+
+import org.neo4j.graphdb.Node;
+import org.neo4j.spatial.core.CRS;
+import org.neo4j.spatial.core.CoordinateSequence;
+import org.neo4j.values.storable.PointValue;
+
+/**
+ * A read-only view of a point array property, in either of the {@link PointArrayFormat}s. The property is only read
+ * on first access, and coordinates are read directly from the stored point values, so no Point is created per vertex.
+ * Compact arrays are decoded once into a packed coordinate array.
+ * <p>
+ * Like the graph backed geometries, a view can only be used within the transaction of the node.
+ */
+public class Neo4jArrayPoints implements CoordinateSequence {
+    private final Node node;
+    private final String property;
+
+    private CRS crs;
+    private int dimension;
+    private PointValue[] values;
+    private double[] packed;
+    private int size = -1;
+
+    public Neo4jArrayPoints(Node node, String property) {
+        this.node = node;
+        this.property = property;
+    }
+
+    private void load() {
+        if (size >= 0) {
+            return;
+        }
+        Object value = node.getProperty(property);
+        if (value instanceof byte[]) {
+            // Decoding checks the header and length, so this does not need to check it with isCompact first
+            byte[] bytes = (byte[]) value;
+            crs = CompactPointArray.decodeCRS(bytes);
+            dimension = CompactPointArray.decodeDimension(bytes);
+            packed = CompactPointArray.decode(bytes);
+            size = packed.length / dimension;
+        } else if (value instanceof PointValue[]) {
+            values = (PointValue[]) value;
+            if (values.length == 0) {
+                throw new IllegalArgumentException("Property '" + property + "' of " + node + " is an empty point array");
+            }
+            crs = CRSConverter.toInMemoryCRS(values[0].getCRS());
+            dimension = values[0].coordinate().length;
+            size = values.length;
+        } else if (value instanceof org.neo4j.graphdb.spatial.Point[]) {
+            // Not backed by point values, so fall back to converting the whole array once
+            org.neo4j.spatial.core.Point[] points = Neo4jArrayToInMemoryConverter.convertToInMemoryPoints(value);
+            crs = points[0].getCRS();
+            dimension = points[0].dimension();
+            packed = new double[points.length * dimension];
+            for (int i = 0; i < points.length; i++) {
+                System.arraycopy(points[i].getCoordinate(), 0, packed, i * dimension, dimension);
+            }
+            size = points.length;
+        } else {
+            throw new IllegalArgumentException("Property '" + property + "' of " + node + " is not a point array");
+        }
+    }
+
+    @Override
+    public int size() {
+        load();
+        return size;
+    }
+
+    @Override
+    public double getCoordinate(int index, int axis) {
+        load();
+        if (values != null) {
+            return values[index].coordinate()[axis];
+        }
+        return packed[index * dimension + axis];
+    }
+
+    @Override
+    public CRS getCRS() {
+        load();
+        return crs;
+    }
+
+    @Override
+    public int dimension() {
+        load();
+        return dimension;
+    }
+
+    @Override
+    public String toString() {
+        return node + "." + property;
+    }
+}
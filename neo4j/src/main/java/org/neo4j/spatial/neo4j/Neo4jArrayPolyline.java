@@ -0,0 +1,128 @@
+package org.neo4j.spatial.neo4j;
+
+import org.neo4j.graphdb.Node;
+import org.neo4j.spatial.algo.Distance;
+import org.neo4j.spatial.algo.DistanceCalculator;
+import org.neo4j.spatial.core.CRS;
+import org.neo4j.spatial.core.CoordinateSequence;
+import org.neo4j.spatial.core.Point;
+import org.neo4j.spatial.core.Polyline;
+
+import static java.lang.String.format;
+
+/**
+ * A polyline backed directly by a point array property, see {@link Neo4jArrayPoints}. Points are only created when
+ * requested, and getPoints() creates them all once.
+ */
+public class Neo4jArrayPolyline implements Polyline, CoordinateSequence {
+    private final Neo4jArrayPoints array;
+    private Point[] points;
+
+    private int pointer;
+    private int direction;
+    private boolean traversing;
+
+    public Neo4jArrayPolyline(Node node, String property) {
+        this.array = new Neo4jArrayPoints(node, property);
+    }
+
+    @Override
+    public int size() {
+        int size = array.size();
+        if (size < 2) {
+            throw new IllegalArgumentException("Polyline cannot have less than 2 points");
+        }
+        return size;
+    }
+
+    @Override
+    public double getCoordinate(int index, int axis) {
+        return array.getCoordinate(index, axis);
+    }
+
+    @Override
+    public Point getPoint(int index) {
+        if (points != null) {
+            return points[index];
+        }
+        return CoordinateSequence.super.getPoint(index);
+    }
+
+    @Override
+    public Point[] getPoints() {
+        if (points == null) {
+            Point[] created = new Point[size()];
+            for (int i = 0; i < created.length; i++) {
+                created[i] = getPoint(i);
+            }
+            points = created;
+        }
+        return points;
+    }
+
+    @Override
+    public CRS getCRS() {
+        return array.getCRS();
+    }
+
+    @Override
+    public int dimension() {
+        return array.dimension();
+    }
+
+    @Override
+    public Point getNextPoint() {
+        this.traversing = true;
+        Point point = getPoint(pointer);
+        pointer = pointer + direction;
+        return point;
+    }
+
+    @Override
+    public void startTraversal(Point startPoint, Point directionPoint) {
+        this.traversing = false;
+        Distance calculator = DistanceCalculator.getCalculator(startPoint);
+        double minDistance = Double.MAX_VALUE;
+        int minIdx = 0;
+        for (int i = 0; i < size(); i++) {
+            double currentDistance = calculator.distance(startPoint, getPoint(i));
+            if (currentDistance < minDistance) {
+                minDistance = currentDistance;
+                minIdx = i;
+            }
+        }
+
+        this.pointer = minIdx;
+
+        double forwardDistance = Double.MAX_VALUE;
+        double backwardDistance = Double.MAX_VALUE;
+        if (minIdx + 1 < size()) {
+            forwardDistance = calculator.distance(directionPoint, getPoint(minIdx + 1));
+        }
+        if (minIdx - 1 >= 0) {
+            backwardDistance = calculator.distance(directionPoint, getPoint(minIdx - 1));
+        }
+        if (forwardDistance < backwardDistance) {
+            this.direction = 1;
+        } else {
+            this.direction = -1;
+        }
+    }
+
+    @Override
+    public void startTraversal() {
+        this.traversing = false;
+        this.pointer = 0;
+        this.direction = 1;
+    }
+
+    @Override
+    public boolean fullyTraversed() {
+        return (pointer < 0 || pointer >= size()) && this.traversing;
+    }
+
+    @Override
+    public String toString() {
+        return format("Neo4jArrayPolyline(%s)", array);
+    }
+}
@@ -0,0 +1,156 @@
+package org.neo4j.spatial.neo4j;
+
+import org.neo4j.graphdb.Node;
+import org.neo4j.spatial.algo.Distance;
+import org.neo4j.spatial.algo.DistanceCalculator;
+import org.neo4j.spatial.core.CRS;
+import org.neo4j.spatial.core.CoordinateSequence;
+import org.neo4j.spatial.core.Point;
+import org.neo4j.spatial.core.Polygon;
+
+import java.util.Arrays;
+
+import static java.lang.String.format;
+
+/**
+ * A simple polygon backed directly by a point array property, see {@link Neo4jArrayPoints}. The ring is always closed,
+ * also when the stored array is not. Points are only created when requested, and getPoints() creates them all once.
+ */
+public class Neo4jArraySimplePolygon implements Polygon.SimplePolygon, CoordinateSequence {
+    private final Neo4jArrayPoints array;
+    private int size = -1;
+    private Point[] points;
+
+    private int pointer;
+    private int start;
+    private int direction;
+    private boolean traversing;
+
+    public Neo4jArraySimplePolygon(Node node, String property) {
+        this.array = new Neo4jArrayPoints(node, property);
+    }
+
+    @Override
+    public int size() {
+        if (size < 0) {
+            int stored = array.size();
+            boolean closed = stored > 1;
+            for (int axis = 0; closed && axis < array.dimension(); axis++) {
+                closed = array.getCoordinate(0, axis) == array.getCoordinate(stored - 1, axis);
+            }
+            size = closed ? stored : stored + 1;
+            if (size < 4) {
+                throw new IllegalArgumentException("Polygon cannot have less than 4 points");
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public double getCoordinate(int index, int axis) {
+        return array.getCoordinate(index == array.size() ? 0 : index, axis);
+    }
+
+    @Override
+    public Point getPoint(int index) {
+        if (points != null) {
+            return points[index];
+        }
+        return CoordinateSequence.super.getPoint(index);
+    }
+
+    @Override
+    public Point[] getPoints() {
+        if (points == null) {
+            Point[] created = new Point[size()];
+            for (int i = 0; i < created.length; i++) {
+                created[i] = getPoint(i);
+            }
+            points = created;
+        }
+        return points;
+    }
+
+    @Override
+    public CRS getCRS() {
+        return array.getCRS();
+    }
+
+    @Override
+    public int dimension() {
+        return array.dimension();
+    }
+
+    @Override
+    public boolean isSimple() {
+        return true;
+    }
+
+    @Override
+    public Point getNextPoint() {
+        if (pointer == start) {
+            this.traversing = true;
+        }
+        pointer = nextIndex(pointer, direction);
+        return getPoint(pointer);
+    }
+
+    private int nextIndex(int idx, int direction) {
+        int ring = size() - 1;
+        return ((idx + direction) % ring + ring) % ring;
+    }
+
+    @Override
+    public void startTraversal(Point startPoint, Point directionPoint) {
+        this.traversing = false;
+        Distance calculator = DistanceCalculator.getCalculator(startPoint);
+        double minDistance = Double.MAX_VALUE;
+        int minIdx = 0;
+        for (int i = 0; i < size(); i++) {
+            double currentDistance = calculator.distance(startPoint, getPoint(i));
+            if (currentDistance < minDistance) {
+                minDistance = currentDistance;
+                minIdx = i;
+            }
+        }
+
+        this.start = minIdx;
+
+        double forwardDistance = calculator.distance(directionPoint, getPoint((minIdx + 1) % size()));
+        double backwardDistance = calculator.distance(directionPoint, getPoint(nextIndex(minIdx, -1)));
+        if (forwardDistance < backwardDistance) {
+            this.direction = 1;
+        } else {
+            this.direction = -1;
+        }
+        this.pointer = nextIndex(minIdx, -direction);
+    }
+
+    @Override
+    public void startTraversal() {
+        this.traversing = false;
+        this.start = 0;
+        this.pointer = -1;
+        this.direction = 1;
+    }
+
+    @Override
+    public boolean fullyTraversed() {
+        return pointer == start && this.traversing;
+    }
+
+    @Override
+    public String toString() {
+        return format("Neo4jArraySimplePolygon(%s)", array);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof Polygon.SimplePolygon && Polygon.SimplePolygon.areEqual(this, (Polygon.SimplePolygon) other);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(getPoints());
+    }
+}
@@ -5,34 +5,62 @@ import org.neo4j.graphdb.spatial.CRS;
 import org.neo4j.spatial.core.Point;
 import org.neo4j.spatial.core.Polygon;
 import org.neo4j.spatial.core.Polyline;
+import org.neo4j.values.storable.PointValue;
 
 public class Neo4jArrayToInMemoryConverter {
-    private static final String POLYGON_PROPERTY = "polygon";
-    private static final String POLYLINE_PROPERTY = "polyline";
+    public static final String POLYGON_PROPERTY = "polygon";
+    public static final String POLYLINE_PROPERTY = "polyline";
+    public static final String POLYLINE_LENGTHS_PROPERTY = "polyline_lengths";
+    public static final String POLYLINE_LENGTHS_FINGERPRINT_PROPERTY = "polyline_lengths_fingerprint";
+    public static final String POLYGON_LOD_PROPERTY_PREFIX = "polygon_lod";
+    public static final String POLYGON_LOD_TOLERANCES_PROPERTY = "polygon_lod_tolerances";
 
     public static Polygon.SimplePolygon convertToInMemoryPolygon(Node node) {
-        org.neo4j.graphdb.spatial.Point[] neo4jPoints = (org.neo4j.graphdb.spatial.Point[]) node.getProperty(POLYGON_PROPERTY);
-
-        Point[] result = new Point[neo4jPoints.length];
-        for (int i = 0; i < neo4jPoints.length; i++) {
-            CRS neo4jCRS = neo4jPoints[i].getCRS();
-            org.neo4j.spatial.core.CRS crs = CRSConverter.toInMemoryCRS(neo4jCRS);
-            result[i] = Point.point(crs, neo4jPoints[i].getCoordinate().getCoordinate().stream().mapToDouble(d -> d).toArray());
-        }
+        return convertToInMemoryPolygon(node, POLYGON_PROPERTY);
+    }
 
-        return Polygon.simple(result);
+    public static Polygon.SimplePolygon convertToInMemoryPolygon(Node node, String property) {
+        return Polygon.simple(convertToInMemoryPoints(node, property));
     }
 
     public static Polyline convertToInMemoryPolyline(Node node) {
-        org.neo4j.graphdb.spatial.Point[] neo4jPoints = (org.neo4j.graphdb.spatial.Point[]) node.getProperty(POLYLINE_PROPERTY);
+        return convertToInMemoryPolyline(node, POLYLINE_PROPERTY);
+    }
+
+    public static Polyline convertToInMemoryPolyline(Node node, String property) {
+        return Polyline.polyline(convertToInMemoryPoints(node, property));
+    }
+
+    /**
+     * Read a point array property stored in either of the {@link PointArrayFormat}s
+     */
+    public static Point[] convertToInMemoryPoints(Node node, String property) {
+        return convertToInMemoryPoints(node.getProperty(property));
+    }
+
+    public static Point[] convertToInMemoryPoints(Object value) {
+        if (value instanceof byte[]) {
+            return CompactPointArray.decodePoints((byte[]) value);
+        }
+        org.neo4j.graphdb.spatial.Point[] neo4jPoints = (org.neo4j.graphdb.spatial.Point[]) value;
 
         Point[] result = new Point[neo4jPoints.length];
+        if (neo4jPoints.length == 0) {
+            return result;
+        }
+        // Point arrays are homogeneous, so the CRS only needs to be looked up once
+        CRS neo4jCRS = neo4jPoints[0].getCRS();
+        org.neo4j.spatial.core.CRS crs = CRSConverter.toInMemoryCRS(neo4jCRS);
         for (int i = 0; i < neo4jPoints.length; i++) {
-            CRS neo4jCRS = neo4jPoints[i].getCRS();
-            org.neo4j.spatial.core.CRS crs = CRSConverter.toInMemoryCRS(neo4jCRS);
-            result[i] = Point.point(crs, neo4jPoints[i].getCoordinate().getCoordinate().stream().mapToDouble(d -> d).toArray());
+            result[i] = Point.point(crs, coordinate(neo4jPoints[i]));
         }
+        return result;
+    }
 
-        return Polyline.polyline(result);
+    private static double[] coordinate(org.neo4j.graphdb.spatial.Point point) {
+        if (point instanceof PointValue) {
+            return ((PointValue) point).coordinate();
+        }
+        return point.getCoordinate().getCoordinate().stream().mapToDouble(d -> d).toArray();
     }
 }
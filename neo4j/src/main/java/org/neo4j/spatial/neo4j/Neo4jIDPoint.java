@@ -1,11 +1,9 @@
 package org.neo4j.spatial.neo4j;
 
-import org.neo4j.internal.helpers.collection.Iterators;
 import org.neo4j.internal.kernel.api.NodeCursor;
 import org.neo4j.internal.kernel.api.PropertyCursor;
 import org.neo4j.io.pagecache.context.CursorContext;
 import org.neo4j.kernel.api.KernelTransaction;
-import org.neo4j.kernel.impl.api.TokenAccess;
 import org.neo4j.memory.EmptyMemoryTracker;
 import org.neo4j.spatial.core.CRS;
 import org.neo4j.spatial.core.Point;
@@ -18,16 +16,13 @@ class Neo4jIDPoint implements Point {
     private final long nodeId;
     private final KernelTransaction ktx;
 
-    private static int propertyId = -1;
+    private final int propertyId;
     private final static String property = "location";
 
     public Neo4jIDPoint(Long nodeId, KernelTransaction ktx) {
         this.nodeId = nodeId;
         this.ktx = ktx;
-
-        if (propertyId == -1) {
-            getPropertyId();
-        }
+        this.propertyId = ktx.tokenRead().propertyKey(property);
     }
 
     public boolean equals(Point other) {
@@ -81,16 +76,6 @@ class Neo4jIDPoint implements Point {
         return crs;
     }
 
-    private void getPropertyId() {
-        String[] properties = Iterators.stream(TokenAccess.PROPERTY_KEYS.inUse(ktx)).toArray(String[]::new);
-        for (int i = 0; i < properties.length; i++) {
-            if (properties[i].equals(property)) {
-                propertyId = i;
-                return;
-            }
-        }
-    }
-
     public String toString() {
         return format("Neo4jPoint%s", Arrays.toString(getCoordinate()));
     }
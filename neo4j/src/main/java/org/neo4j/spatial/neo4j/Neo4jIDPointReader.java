@@ -0,0 +1,134 @@
+package org.neo4j.spatial.neo4j;
+
+import org.neo4j.graphdb.Direction;
+import org.neo4j.internal.kernel.api.NodeCursor;
+import org.neo4j.internal.kernel.api.PropertyCursor;
+import org.neo4j.internal.kernel.api.RelationshipTraversalCursor;
+import org.neo4j.internal.kernel.api.TokenRead;
+import org.neo4j.io.pagecache.context.CursorContext;
+import org.neo4j.kernel.api.KernelTransaction;
+import org.neo4j.memory.EmptyMemoryTracker;
+import org.neo4j.spatial.core.CRS;
+import org.neo4j.storageengine.api.RelationshipSelection;
+import org.neo4j.values.storable.PointValue;
+import org.neo4j.values.storable.Value;
+
+/**
+ * Reads the locations of many OSM nodes with one set of kernel cursors, instead of allocating new cursors for every
+ * coordinate like {@link Neo4jIDPoint}. The property and relationship type tokens are resolved once, and coordinates
+ * are written to a packed array with {@link #dimension()} values per point.
+ * <p>
+ * A reader holds cursors of the transaction, so it must be closed before the transaction is.
+ */
+class Neo4jIDPointReader implements AutoCloseable {
+    private static final String PROPERTY = "location";
+
+    private final KernelTransaction ktx;
+    private final NodeCursor nodeCursor;
+    private final PropertyCursor propertyCursor;
+    private final RelationshipTraversalCursor relationshipCursor;
+    private final int propertyToken;
+    private final RelationshipSelection nodeSelection;
+
+    private CRS crs;
+    private int dimension;
+
+    Neo4jIDPointReader(KernelTransaction ktx) {
+        this.ktx = ktx;
+        this.propertyToken = ktx.tokenRead().propertyKey(PROPERTY);
+        int nodeType = ktx.tokenRead().relationshipType(Relation.NODE.name());
+        this.nodeSelection = nodeType == TokenRead.NO_TOKEN ? null : RelationshipSelection.selection(nodeType, Direction.OUTGOING);
+        this.nodeCursor = ktx.cursors().allocateNodeCursor(CursorContext.NULL);
+        this.propertyCursor = ktx.cursors().allocatePropertyCursor(CursorContext.NULL, EmptyMemoryTracker.INSTANCE);
+        this.relationshipCursor = ktx.cursors().allocateRelationshipTraversalCursor(CursorContext.NULL);
+    }
+
+    /**
+     * @param wayNodeIds the ids of OSMWayNodes, in order
+     * @return The locations of the OSMNodes the way nodes point to, packed with {@link #dimension()} values per point
+     */
+    double[] readWayNodeLocations(long[] wayNodeIds) {
+        long[] nodeIds = new long[wayNodeIds.length];
+        for (int i = 0; i < wayNodeIds.length; i++) {
+            nodeIds[i] = locationNode(wayNodeIds[i]);
+        }
+        return readLocations(nodeIds);
+    }
+
+    /**
+     * @param nodeIds the ids of nodes with a location property, in order
+     * @return The locations, packed with {@link #dimension()} values per point
+     */
+    double[] readLocations(long[] nodeIds) {
+        double[] packed = null;
+        for (int i = 0; i < nodeIds.length; i++) {
+            PointValue location = location(nodeIds[i]);
+            double[] coordinate = location.coordinate();
+            if (packed == null) {
+                crs = CRSConverter.toInMemoryCRS(location.getCRS());
+                dimension = coordinate.length;
+                packed = new double[nodeIds.length * dimension];
+            } else if (coordinate.length != dimension) {
+                throw new IllegalArgumentException("Node " + nodeIds[i] + " has a location with " + coordinate.length + " dimensions, expected " + dimension);
+            }
+            System.arraycopy(coordinate, 0, packed, i * dimension, dimension);
+        }
+        return packed == null ? new double[0] : packed;
+    }
+
+    /**
+     * @return The id of the OSMNode an OSMWayNode points to
+     */
+    long locationNode(long wayNodeId) {
+        if (nodeSelection != null) {
+            ktx.dataRead().singleNode(wayNodeId, nodeCursor);
+            if (nodeCursor.next()) {
+                nodeCursor.relationships(relationshipCursor, nodeSelection);
+                if (relationshipCursor.next()) {
+                    return relationshipCursor.otherNodeReference();
+                }
+            }
+        }
+        throw new IllegalArgumentException("Way node " + wayNodeId + " has no outgoing " + Relation.NODE.name() + " relationship");
+    }
+
+    PointValue location(long nodeId) {
+        if (propertyToken != TokenRead.NO_TOKEN) {
+            ktx.dataRead().singleNode(nodeId, nodeCursor);
+            if (nodeCursor.next()) {
+                nodeCursor.properties(propertyCursor);
+                while (propertyCursor.next()) {
+                    if (propertyCursor.propertyKey() == propertyToken) {
+                        Value value = propertyCursor.propertyValue();
+                        if (value instanceof PointValue) {
+                            return (PointValue) value;
+                        }
+                        break;
+                    }
+                }
+            }
+        }
+        throw new IllegalArgumentException("Node " + nodeId + " has no point property '" + PROPERTY + "'");
+    }
+
+    /**
+     * @return The CRS of the last points read
+     */
+    CRS getCRS() {
+        return crs;
+    }
+
+    /**
+     * @return The dimension of the last points read
+     */
+    int dimension() {
+        return dimension;
+    }
+
+    @Override
+    public void close() {
+        nodeCursor.close();
+        propertyCursor.close();
+        relationshipCursor.close();
+    }
+}
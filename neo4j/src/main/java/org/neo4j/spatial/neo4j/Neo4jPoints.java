@@ -0,0 +1,102 @@
+package org.neo4j.spatial.neo4j;
+
+import org.neo4j.graphdb.spatial.CRS;
+import org.neo4j.spatial.core.PackedCoordinateSequence;
+import org.neo4j.spatial.core.Point;
+import org.neo4j.values.storable.CoordinateReferenceSystem;
+import org.neo4j.values.storable.PointValue;
+import org.neo4j.values.storable.Values;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Converts between the points of Cypher arguments and results, and in-memory points. Points passed from Cypher are
+ * point values, whose coordinates are read directly as a double[] instead of through the boxed coordinate lists of
+ * {@link org.neo4j.graphdb.spatial.Point#getCoordinate()}, and the CRS of a list is only converted when it changes.
+ * Other point implementations take the slow path. Results are returned as point values, which Cypher uses as they are.
+ */
+public class Neo4jPoints {
+
+    public static Point asInMemoryPoint(org.neo4j.graphdb.spatial.Point point) {
+        return Point.point(CRSConverter.toInMemoryCRS(point.getCRS()), coordinate(point));
+    }
+
+    public static Point[] asInMemoryPoints(List<? extends org.neo4j.graphdb.spatial.Point> points) {
+        Point[] converted = new Point[points.size()];
+        CRS neo4jCRS = null;
+        org.neo4j.spatial.core.CRS crs = null;
+        for (int i = 0; i < converted.length; i++) {
+            org.neo4j.graphdb.spatial.Point point = points.get(i);
+            if (point.getCRS() != neo4jCRS) {
+                neo4jCRS = point.getCRS();
+                crs = CRSConverter.toInMemoryCRS(neo4jCRS);
+            }
+            converted[i] = Point.point(crs, coordinate(point));
+        }
+        return converted;
+    }
+
+    /**
+     * @return The coordinates of all points in a single array, without creating any in-memory points
+     */
+    public static PackedCoordinateSequence pack(List<? extends org.neo4j.graphdb.spatial.Point> points) {
+        if (points.isEmpty()) {
+            throw new IllegalArgumentException("Cannot pack an empty list of points");
+        }
+        CRS neo4jCRS = points.get(0).getCRS();
+        int dimension = coordinate(points.get(0)).length;
+        double[] packed = new double[points.size() * dimension];
+        for (int i = 0; i < points.size(); i++) {
+            org.neo4j.graphdb.spatial.Point point = points.get(i);
+            if (!point.getCRS().equals(neo4jCRS)) {
+                throw new IllegalArgumentException("Cannot pack points of different CRS: " + neo4jCRS + " and " + point.getCRS());
+            }
+            double[] coordinate = coordinate(point);
+            if (coordinate.length != dimension) {
+                throw new IllegalArgumentException("Cannot pack points of different dimensions: " + dimension + " and " + coordinate.length);
+            }
+            System.arraycopy(coordinate, 0, packed, i * dimension, dimension);
+        }
+        return new PackedCoordinateSequence(CRSConverter.toInMemoryCRS(neo4jCRS), dimension, packed);
+    }
+
+    /**
+     * @return A new array with the coordinates of the point
+     */
+    private static double[] coordinate(org.neo4j.graphdb.spatial.Point point) {
+        if (point instanceof PointValue) {
+            return ((PointValue) point).coordinate();
+        }
+        List<Double> coordinates = point.getCoordinate().getCoordinate();
+        double[] coordinate = new double[coordinates.size()];
+        for (int i = 0; i < coordinate.length; i++) {
+            coordinate[i] = coordinates.get(i);
+        }
+        return coordinate;
+    }
+
+    public static org.neo4j.graphdb.spatial.Point asNeo4jPoint(CRS crs, double[] coordinate) {
+        return Values.pointValue(asCoordinateReferenceSystem(crs), coordinate);
+    }
+
+    public static org.neo4j.graphdb.spatial.Point asNeo4jPoint(CRS crs, Point point) {
+        return asNeo4jPoint(crs, point.getCoordinate());
+    }
+
+    public static List<org.neo4j.graphdb.spatial.Point> asNeo4jPoints(CRS crs, Point[] points) {
+        CoordinateReferenceSystem coordinateReferenceSystem = asCoordinateReferenceSystem(crs);
+        List<org.neo4j.graphdb.spatial.Point> converted = new ArrayList<>(points.length);
+        for (Point point : points) {
+            converted.add(Values.pointValue(coordinateReferenceSystem, point.getCoordinate()));
+        }
+        return converted;
+    }
+
+    private static CoordinateReferenceSystem asCoordinateReferenceSystem(CRS crs) {
+        if (crs instanceof CoordinateReferenceSystem) {
+            return (CoordinateReferenceSystem) crs;
+        }
+        return CoordinateReferenceSystem.get(crs);
+    }
+}
@@ -2,44 +2,70 @@ package org.neo4j.spatial.neo4j;
 
 import org.neo4j.graphdb.Direction;
 import org.neo4j.graphdb.Node;
-import org.neo4j.internal.helpers.ArrayUtil;
 import org.neo4j.kernel.api.KernelTransaction;
-import org.neo4j.spatial.algo.CCW;
 import org.neo4j.spatial.algo.CCWCalculator;
+import org.neo4j.spatial.core.CRS;
+import org.neo4j.spatial.core.PackedCoordinateSequence;
 import org.neo4j.spatial.core.Point;
-import org.neo4j.spatial.core.PolygonUtil;
 
 public class Neo4jSimpleGraphIDPolygon extends Neo4jSimpleGraphPolygon {
-    private KernelTransaction ktx;
-
     public Neo4jSimpleGraphIDPolygon(Node main, long osmRelationId, KernelTransaction ktx) {
-        super(main, osmRelationId);
-        this.ktx = ktx;
+        super(main, osmRelationId, ktx);
     }
 
     @Override
     public Point[] getPoints() {
-        Node[] wayNodes = traverseWholePolygon();
-        Point[] unclosed = extractPoints(wayNodes);
-        Point[] points = PolygonUtil.closeRing(unclosed);
-
-        CCW calculator = CCWCalculator.getCalculator(points);
+        return readCoordinates().toPoints();
+    }
 
-        if (points.length < 4) {
+    /**
+     * Walks the polygon once and reads all coordinates with one set of kernel cursors. Cartesian rings are oriented
+     * with the shoelace formula on the packed coordinates and reversed in place if needed, so no points are created.
+     * Geographic rings are oriented with the course delta, like {@link CCWCalculator} does, so rings enclosing a pole
+     * keep the orientation they have everywhere else.
+     *
+     * @return The closed ring in CCW order, packed into a single array
+     */
+    public PackedCoordinateSequence readCoordinates() {
+        long[] wayNodeIds = traverseWholePolygonIds();
+        PackedCoordinateSequence ring;
+        try (Neo4jIDPointReader reader = new Neo4jIDPointReader(ktx)) {
+            double[] coordinates = reader.readWayNodeLocations(wayNodeIds);
+            int dimension = reader.dimension();
+            if (reader.getCRS() == CRS.Cartesian && shoelace(dimension, coordinates) < 0) {
+                reverse(dimension, coordinates);
+            }
+            ring = new PackedCoordinateSequence(reader.getCRS(), dimension, coordinates).closeRing();
+        }
+        if (ring.size() < 4) {
             throw new IllegalArgumentException("Polygon cannot have less than 4 points");
         }
-        if (!calculator.isCCW(points)) {
-            ArrayUtil.reverse(points);
+        if (ring.getCRS() != CRS.Cartesian && !CCWCalculator.getCalculator(ring.getCRS()).isCCW(ring.toPoints())) {
+            ring = ring.reverse();
+        }
+        return ring;
+    }
+
+    /**
+     * @return Twice the signed area of the ring, positive for CCW rings
+     */
+    private static double shoelace(int dimension, double[] coordinates) {
+        int size = coordinates.length / dimension;
+        double sum = 0;
+        for (int i = 0; i < size; i++) {
+            int j = (i + 1) % size;
+            sum += coordinates[i * dimension] * coordinates[j * dimension + 1] - coordinates[j * dimension] * coordinates[i * dimension + 1];
         }
-        return points;
+        return sum;
     }
 
-    private Point[] extractPoints(Node[] wayNodes) {
-        Point[] points = new Point[wayNodes.length];
-        for (int i = 0; i < points.length; i++) {
-            points[i] = extractPoint(wayNodes[i]);
+    private static void reverse(int dimension, double[] coordinates) {
+        double[] swap = new double[dimension];
+        for (int i = 0, j = coordinates.length / dimension - 1; i < j; i++, j--) {
+            System.arraycopy(coordinates, i * dimension, swap, 0, dimension);
+            System.arraycopy(coordinates, j * dimension, coordinates, i * dimension, dimension);
+            System.arraycopy(swap, 0, coordinates, j * dimension, dimension);
         }
-        return points;
     }
 
     @Override
@@ -3,6 +3,7 @@ package org.neo4j.spatial.neo4j;
 import org.neo4j.graphdb.Direction;
 import org.neo4j.graphdb.Node;
 import org.neo4j.internal.helpers.ArrayUtil;
+import org.neo4j.kernel.api.KernelTransaction;
 import org.neo4j.spatial.algo.CCW;
 import org.neo4j.spatial.algo.CCWCalculator;
 import org.neo4j.spatial.core.Point;
@@ -14,6 +15,13 @@ public class Neo4jSimpleGraphNodePolygon extends Neo4jSimpleGraphPolygon {
         super(firstWayNode, osmRelationId);
     }
 
+    /**
+     * A polygon walked directly with the kernel cursors of the transaction, see {@link WayNodeWalker}
+     */
+    public Neo4jSimpleGraphNodePolygon(Node firstWayNode, long osmRelationId, KernelTransaction ktx) {
+        super(firstWayNode, osmRelationId, ktx);
+    }
+
     @Override
     public Point[] getPoints() {
         Node[] wayNodes = traverseWholePolygon();
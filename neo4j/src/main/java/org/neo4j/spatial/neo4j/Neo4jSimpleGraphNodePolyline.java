@@ -2,6 +2,7 @@ package org.neo4j.spatial.neo4j;
 
 import org.neo4j.graphdb.Direction;
 import org.neo4j.graphdb.Node;
+import org.neo4j.kernel.api.KernelTransaction;
 import org.neo4j.spatial.core.CRS;
 import org.neo4j.spatial.core.Point;
 
@@ -13,6 +14,14 @@ public class Neo4jSimpleGraphNodePolyline extends Neo4jSimpleGraphPolyline {
         this.crs = extractPoint(main).getCRS();
     }
 
+    /**
+     * A polyline walked directly with the kernel cursors of the transaction, see {@link WayNodeWalker}
+     */
+    public Neo4jSimpleGraphNodePolyline(Node main, long osmRelationId, KernelTransaction ktx) {
+        super(main, osmRelationId, ktx);
+        this.crs = extractPoint(main).getCRS();
+    }
+
     @Override
     public CRS getCRS() {
         return crs;
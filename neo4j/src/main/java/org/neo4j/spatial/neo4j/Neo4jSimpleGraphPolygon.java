@@ -6,32 +6,50 @@ import org.neo4j.graphdb.traversal.Evaluator;
 import org.neo4j.graphdb.traversal.Traverser;
 import org.neo4j.graphdb.traversal.Uniqueness;
 import org.neo4j.internal.helpers.collection.Iterables;
-import org.neo4j.internal.helpers.collection.Pair;
+import org.neo4j.kernel.api.KernelTransaction;
 import org.neo4j.kernel.impl.traversal.MonoDirectionalTraversalDescription;
 import org.neo4j.spatial.algo.Distance;
 import org.neo4j.spatial.algo.DistanceCalculator;
 import org.neo4j.spatial.core.CRS;
+import org.neo4j.spatial.core.PackedCoordinateSequence;
 import org.neo4j.spatial.core.Point;
 import org.neo4j.spatial.core.Polygon;
+import org.neo4j.spatial.core.VertexKdTree;
 
 import java.util.*;
+import java.util.stream.IntStream;
 
 import static java.lang.String.format;
 
 public abstract class Neo4jSimpleGraphPolygon implements Polygon.SimplePolygon {
     final private long osmRelationId;
-    final private CRS crs;
+    private CRS crs;
     private Iterator<Node> nodeIterator;
+    private Node[] ring;
+    private PackedCoordinateSequence vertices;
+    private volatile VertexKdTree vertexIndex;
     Node firstWayNode;
+    final KernelTransaction ktx;
 
     public Neo4jSimpleGraphPolygon(Node firstWayNode, long osmRelationId) {
+        this(firstWayNode, osmRelationId, null);
+    }
+
+    /**
+     * @param ktx if not null, the polygon is walked with a {@link WayNodeWalker} instead of a traversal description
+     */
+    public Neo4jSimpleGraphPolygon(Node firstWayNode, long osmRelationId, KernelTransaction ktx) {
         this.osmRelationId = osmRelationId;
         this.firstWayNode = firstWayNode;
-        crs = extractPoint(firstWayNode).getCRS();
+        this.ktx = ktx;
     }
 
     @Override
     public CRS getCRS() {
+        // Read lazily, since subclasses may need their own fields to extract points
+        if (crs == null) {
+            crs = extractPoint(firstWayNode).getCRS();
+        }
         return crs;
     }
 
@@ -50,6 +68,23 @@ public abstract class Neo4jSimpleGraphPolygon implements Polygon.SimplePolygon {
         return format("Neo4jSimpleGraphNodePolygon(%s)", this.firstWayNode);
     }
 
+    private Iterator<Node> traverse(Node start) {
+        if (ktx == null) {
+            return getNewTraverser(start).nodes().iterator();
+        }
+        return toNodes(walk(start.getId()));
+    }
+
+    private long[] walk(long start) {
+        try (WayNodeWalker walker = new WayNodeWalker(ktx, osmRelationId, Relation.NEXT_IN_POLYGON, true)) {
+            return walker.walk(start, null, null, null);
+        }
+    }
+
+    private Iterator<Node> toNodes(long[] wayNodeIds) {
+        return Arrays.stream(wayNodeIds).mapToObj(id -> ktx.internalTransaction().getNodeById(id)).iterator();
+    }
+
     private Traverser getNewTraverser(Node start) {
         return new MonoDirectionalTraversalDescription()
                 .depthFirst()
@@ -59,15 +94,6 @@ public abstract class Neo4jSimpleGraphPolygon implements Polygon.SimplePolygon {
                 .evaluator(new WayEvaluator(osmRelationId, null, null)).traverse(start);
     }
 
-    private Traverser getNewTraverser(Node start, Direction nextDirection, Direction nextInPolygonDirection) {
-        return new MonoDirectionalTraversalDescription()
-                .depthFirst()
-                .relationships(Relation.NEXT, Direction.BOTH)
-                .relationships(Relation.NEXT_IN_POLYGON)
-                .uniqueness(Uniqueness.NONE)
-                .evaluator(new WayEvaluator(osmRelationId, nextDirection, nextInPolygonDirection)).traverse(start);
-    }
-
     @Override
     public boolean fullyTraversed() {
         if (this.nodeIterator != null) {
@@ -76,80 +102,103 @@ public abstract class Neo4jSimpleGraphPolygon implements Polygon.SimplePolygon {
         return false;
     }
 
+    /**
+     * Starts at the vertex closest to the start point, which is found with a kd-tree over the vertices, built the first
+     * time this is called. The ring is then traversed towards whichever neighbouring vertex is closest to the direction
+     * point, and ends at the start vertex again.
+     */
     @Override
     public void startTraversal(Point startPoint, Point directionPoint) {
-        Iterator<Node> iterator = getNewTraverser(this.firstWayNode).nodes().iterator();
-
-        Distance calculator = DistanceCalculator.getCalculator(startPoint);
-
-        Point firstPoint = null;
-        Node start = null;
-
-        double minDistance = Double.MAX_VALUE;
-        while (iterator.hasNext()) {
-            Node next = iterator.next();
-            Point extracted = extractPoint(next);
-            if (firstPoint == null) {
-                firstPoint = extracted;
-            } else if (firstPoint.equals(extracted)) {
-                // Having a ´break' in node.getRelationship causes a RelationshipTraversalCursor cleanup error, so we need to exhaust the iterator later to avoid this
-                break;
+        this.nodeIterator = ringNodes(startPoint, directionPoint);
+    }
+
+    /**
+     * Like {@link #startTraversal(Point, Point)}, but with an iterator of its own
+     */
+    @Override
+    public Iterator<Point> vertices(Point startPoint, Point directionPoint) {
+        return toPoints(ringNodes(startPoint, directionPoint));
+    }
+
+    @Override
+    public Iterator<Point> vertices() {
+        return toPoints(ringNodes());
+    }
+
+    private Iterator<Point> toPoints(Iterator<Node> nodes) {
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return nodes.hasNext();
             }
 
-            double currentDistance = calculator.distance(extracted, startPoint);
-            if (currentDistance <= minDistance) {
-                minDistance = currentDistance;
-                start = next;
+            @Override
+            public Point next() {
+                return extractPoint(nodes.next());
             }
-        }
-        // Exhaust iterator to avoid transaction closing bug with RelationshipTraversalCursor
-        while (iterator.hasNext()) {
-            iterator.next();
-        }
-        Pair<Direction, Direction> directions = getClosestNeighborToDirection(start, directionPoint);
-        this.nodeIterator = getNewTraverser(start, directions.first(), directions.other()).nodes().iterator();
+        };
     }
 
-    private Pair<Direction, Direction> getClosestNeighborToDirection(Node wayNode, Point directionPoint) {
-        double minDistance = Double.MAX_VALUE;
-        Direction minDirection = null;
-        boolean nextInPolygon = true;
+    private Iterator<Node> ringNodes(Point startPoint, Point directionPoint) {
+        indexRing();
+        int start = vertexIndex.nearest(startPoint);
 
         Distance calculator = DistanceCalculator.getCalculator(directionPoint);
+        int size = ring.length;
+        double forward = calculator.distance(directionPoint, vertices.getPoint((start + 1) % size));
+        double backward = calculator.distance(directionPoint, vertices.getPoint((start - 1 + size) % size));
+        return ringIterator(start, forward <= backward ? 1 : -1);
+    }
 
-        for (Relationship relationship : wayNode.getRelationships(Relation.NEXT_IN_POLYGON)) {
-            if (WayEvaluator.nextInPolygon(relationship, osmRelationId)) {
-                Node other = relationship.getOtherNode(wayNode);
-
-                double currentDistance = calculator.distance(directionPoint, extractPoint(other));
-                if (currentDistance < minDistance) {
-                    minDistance = currentDistance;
-                    minDirection = relationship.getStartNode().equals(wayNode) ? Direction.OUTGOING : Direction.INCOMING;
-                }
-            }
+    private Iterator<Node> ringNodes() {
+        if (vertexIndex != null) {
+            return ringIterator(0, 1);
+        } else {
+            return traverse(firstWayNode);
         }
+    }
 
-        for (Relationship relationship : wayNode.getRelationships(Relation.NEXT)) {
-            Node other = relationship.getOtherNode(wayNode);
-
-            double currentDistance = calculator.distance(directionPoint, extractPoint(other));
-            if (currentDistance < minDistance) {
-                minDistance = currentDistance;
-                minDirection = relationship.getStartNode().equals(wayNode) ? Direction.OUTGOING : Direction.INCOMING;
-                nextInPolygon = false;
-            }
+    /**
+     * Walk the ring once, and keep its way nodes and a kd-tree over their locations, so that later traversals can
+     * start anywhere without walking the ring again. The kd-tree is assigned last, so that a thread seeing it also
+     * sees the ring.
+     */
+    private synchronized void indexRing() {
+        if (vertexIndex != null) {
+            return;
         }
-
-        if (nextInPolygon) {
-            return Pair.of(null, minDirection);
-        } else {
-            return Pair.of(minDirection, null);
+        Node[] wayNodes = traverseWholePolygon();
+        double[][] coordinates = new double[wayNodes.length][];
+        for (int i = 0; i < wayNodes.length; i++) {
+            coordinates[i] = extractPoint(wayNodes[i]).getCoordinate();
+        }
+        int size = wayNodes.length;
+        if (size > 1 && Arrays.equals(coordinates[0], coordinates[size - 1])) {
+            size--;
         }
+        if (size < 3) {
+            throw new IllegalArgumentException("Polygon cannot have less than 4 points");
+        }
+        int dimension = coordinates[0].length;
+        double[] packed = new double[size * dimension];
+        for (int i = 0; i < size; i++) {
+            System.arraycopy(coordinates[i], 0, packed, i * dimension, dimension);
+        }
+        this.ring = Arrays.copyOf(wayNodes, size);
+        this.vertices = new PackedCoordinateSequence(getCRS(), dimension, packed);
+        this.vertexIndex = new VertexKdTree(vertices);
+    }
+
+    /**
+     * @return The way nodes of the indexed ring from the start index in the given direction, ending at the start again
+     */
+    private Iterator<Node> ringIterator(int start, int step) {
+        return IntStream.rangeClosed(0, ring.length).mapToObj(i -> ring[Math.floorMod(start + i * step, ring.length)]).iterator();
     }
 
     @Override
     public void startTraversal() {
-        this.nodeIterator = getNewTraverser(firstWayNode).nodes().iterator();
+        this.nodeIterator = ringNodes();
     }
 
     abstract Point extractPoint(Node node);
@@ -163,9 +212,19 @@ public abstract class Neo4jSimpleGraphPolygon implements Polygon.SimplePolygon {
     }
 
     protected Node[] traverseWholePolygon() {
+        if (ktx != null) {
+            return Arrays.stream(traverseWholePolygonIds()).mapToObj(id -> ktx.internalTransaction().getNodeById(id)).toArray(Node[]::new);
+        }
         return Iterables.stream(getNewTraverser(firstWayNode).nodes()).toArray(Node[]::new);
     }
 
+    protected long[] traverseWholePolygonIds() {
+        if (ktx != null) {
+            return walk(firstWayNode.getId());
+        }
+        return Iterables.stream(getNewTraverser(firstWayNode).nodes()).mapToLong(Node::getId).toArray();
+    }
+
     private static class WayEvaluator implements Evaluator {
         private long relationId;
         private Direction nextDirection;
@@ -10,6 +10,7 @@ import org.neo4j.graphdb.traversal.Traverser;
 import org.neo4j.graphdb.traversal.Uniqueness;
 import org.neo4j.internal.helpers.collection.Iterables;
 import org.neo4j.internal.helpers.collection.Pair;
+import org.neo4j.kernel.api.KernelTransaction;
 import org.neo4j.kernel.impl.traversal.MonoDirectionalTraversalDescription;
 import org.neo4j.spatial.algo.Distance;
 import org.neo4j.spatial.algo.DistanceCalculator;
@@ -29,8 +30,17 @@ public abstract class Neo4jSimpleGraphPolyline implements Polyline {
     Node start;
     Node main;
     Point startPoint;
+    final KernelTransaction ktx;
 
     public Neo4jSimpleGraphPolyline(Node main, long osmRelationId) {
+        this(main, osmRelationId, null);
+    }
+
+    /**
+     * @param ktx if not null, the polyline is walked with a {@link WayNodeWalker} instead of a traversal description
+     */
+    public Neo4jSimpleGraphPolyline(Node main, long osmRelationId, KernelTransaction ktx) {
+        this.ktx = ktx;
         this.osmRelationId = osmRelationId;
         this.traversing = false;
         this.pointer = null;
@@ -48,6 +58,30 @@ public abstract class Neo4jSimpleGraphPolyline implements Polyline {
         return format("Neo4jSimpleGraphNodePolygon%s", Arrays.toString(getPoints()));
     }
 
+    private Iterator<Node> traverse(Node start) {
+        if (ktx == null) {
+            return getNewTraverser(start).nodes().iterator();
+        }
+        return toNodes(walk(start.getId(), Relation.NEXT, Direction.OUTGOING));
+    }
+
+    private Iterator<Node> traverse(Node start, Relation relation, Direction direction) {
+        if (ktx == null) {
+            return getNewTraverser(start, relation, direction).nodes().iterator();
+        }
+        return toNodes(walk(start.getId(), relation, direction));
+    }
+
+    private long[] walk(long start, Relation first, Direction direction) {
+        try (WayNodeWalker walker = new WayNodeWalker(ktx, osmRelationId, Relation.NEXT_IN_POLYLINE, false)) {
+            return walker.walk(start, first, direction, direction);
+        }
+    }
+
+    private Iterator<Node> toNodes(long[] wayNodeIds) {
+        return Arrays.stream(wayNodeIds).mapToObj(id -> ktx.internalTransaction().getNodeById(id)).iterator();
+    }
+
     private Traverser getNewTraverser(Node start) {
         // TODO: With Direction.BOTH we need uniqueness checks, which cost memory and time. Perhaps better to check in one direction only
         return new MonoDirectionalTraversalDescription()
@@ -77,56 +111,89 @@ public abstract class Neo4jSimpleGraphPolyline implements Polyline {
 
     @Override
     public void startTraversal(Point startPoint, Point directionPoint) {
-        Iterator<Node> iterator = getNewTraverser(this.main).nodes().iterator();
         this.traversing = false;
+        this.start = getClosestNode(startPoint);
+        this.pointer = this.start;
+        this.startPoint = extractPoint(this.start);
+        this.nodeIterator = traverseTowards(this.start, directionPoint);
+    }
 
+    /**
+     * Like {@link #startTraversal(Point, Point)}, but with an iterator of its own
+     */
+    @Override
+    public Iterator<Point> vertices(Point startPoint, Point directionPoint) {
+        return toPoints(traverseTowards(getClosestNode(startPoint), directionPoint));
+    }
+
+    @Override
+    public Iterator<Point> vertices() {
+        return toPoints(traverse(this.main));
+    }
+
+    private Iterator<Point> toPoints(Iterator<Node> nodes) {
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return nodes.hasNext();
+            }
+
+            @Override
+            public Point next() {
+                return extractPoint(nodes.next());
+            }
+        };
+    }
+
+    private Node getClosestNode(Point startPoint) {
+        Iterator<Node> iterator = traverse(this.main);
         Distance calculator = DistanceCalculator.getCalculator(startPoint);
 
+        Node closest = this.main;
         double minDistance = Double.MAX_VALUE;
         while (iterator.hasNext()) {
             Node next = iterator.next();
-            Point extracted = extractPoint(next);
-
-            double currentDistance = calculator.distance(extracted, startPoint);
+            double currentDistance = calculator.distance(extractPoint(next), startPoint);
             if (currentDistance <= minDistance) {
                 minDistance = currentDistance;
-                this.start = next;
-                this.pointer = next;
-                this.startPoint = extracted;
+                closest = next;
             }
         }
+        return closest;
+    }
 
-        Pair<Relation, Direction> relationDirection = getClosestNeighborToDirection(directionPoint);
-        this.nodeIterator = getNewTraverser(this.start, relationDirection.first(), relationDirection.other()).nodes().iterator();
+    private Iterator<Node> traverseTowards(Node start, Point directionPoint) {
+        Pair<Relation, Direction> relationDirection = getClosestNeighborToDirection(start, directionPoint);
+        return traverse(start, relationDirection.first(), relationDirection.other());
     }
 
-    private Pair<Relation, Direction> getClosestNeighborToDirection(Point directionPoint) {
+    private Pair<Relation, Direction> getClosestNeighborToDirection(Node start, Point directionPoint) {
         double minDistance = Double.MAX_VALUE;
         Direction minDirection = null;
         Relation minRelation = null;
 
         Distance calculator = DistanceCalculator.getCalculator(directionPoint);
 
-        for (Relationship relationship : this.start.getRelationships(Relation.NEXT_IN_POLYLINE)) {
+        for (Relationship relationship : start.getRelationships(Relation.NEXT_IN_POLYLINE)) {
             if (WayEvaluator.partOfPolyline(relationship, osmRelationId)) {
-                Node other = relationship.getOtherNode(this.start);
+                Node other = relationship.getOtherNode(start);
 
                 double currentDistance = calculator.distance(directionPoint, extractPoint(other));
                 if (currentDistance < minDistance) {
                     minDistance = currentDistance;
-                    minRelation = Relation.NEXT_IN_POLYGON;
-                    minDirection = relationship.getStartNode().equals(this.start) ? Direction.OUTGOING : Direction.INCOMING;
+                    minRelation = Relation.NEXT_IN_POLYLINE;
+                    minDirection = relationship.getStartNode().equals(start) ? Direction.OUTGOING : Direction.INCOMING;
                 }
             }
         }
 
-        for (Relationship relationship : this.start.getRelationships(Relation.NEXT)) {
-            Node other = relationship.getOtherNode(this.start);
+        for (Relationship relationship : start.getRelationships(Relation.NEXT)) {
+            Node other = relationship.getOtherNode(start);
 
             double currentDistance = calculator.distance(directionPoint, extractPoint(other));
             if (currentDistance < minDistance) {
                 minDistance = currentDistance;
-                minDirection = relationship.getStartNode().equals(this.start) ? Direction.OUTGOING : Direction.INCOMING;
+                minDirection = relationship.getStartNode().equals(start) ? Direction.OUTGOING : Direction.INCOMING;
                 minRelation = Relation.NEXT;
             }
         }
@@ -139,7 +206,7 @@ public abstract class Neo4jSimpleGraphPolyline implements Polyline {
         this.start = main;
         this.pointer = main;
         this.traversing = false;
-        this.nodeIterator = getNewTraverser(this.start).nodes().iterator();
+        this.nodeIterator = traverse(this.start);
     }
 
     abstract Point extractPoint(Node node);
@@ -153,6 +220,9 @@ public abstract class Neo4jSimpleGraphPolyline implements Polyline {
     }
 
     protected Node[] traverseWholePolyline(Node main) {
+        if (ktx != null) {
+            return Arrays.stream(walk(main.getId(), Relation.NEXT, Direction.OUTGOING)).mapToObj(id -> ktx.internalTransaction().getNodeById(id)).toArray(Node[]::new);
+        }
         return Iterables.stream(getNewTraverser(main).nodes()).toArray(Node[]::new);
     }
 
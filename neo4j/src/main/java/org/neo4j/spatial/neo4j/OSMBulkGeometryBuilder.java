@@ -0,0 +1,262 @@
+package org.neo4j.spatial.neo4j;
+
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.internal.helpers.collection.Pair;
+import org.neo4j.logging.Log;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Builds the graph polygons and polylines of many OSMRelations. The ways of every relation are traversed by
+ * {@link OSMTraverser} on a pool of threads, each in its own read transaction, while the structures are written by the
+ * consuming thread in one transaction per batch of relations. At most a few batches are traversed ahead of the writer,
+ * so memory does not grow with the number of relations.
+ * <p>
+ * The geometries are traversed and written in different transactions, so the relations should not be changed while
+ * they are built.
+ * <p>
+ * A build can be run as a named job, see {@link #startJob}. Every relation that is built is then marked with the job
+ * name and generation in the same transaction as its structures, so a committed batch is a checkpoint: the old
+ * structures of a relation are only deleted together with writing the new ones, and running the job again only needs
+ * to build the relations that are not yet marked. Relations that failed are not marked, so they are tried again, and
+ * restarting a job starts a new generation, so the marks of earlier runs no longer count.
+ */
+class OSMBulkGeometryBuilder implements Iterator<OSMBulkGeometryBuilder.Batch> {
+    static final String JOB_PROPERTY = "geometry_job";
+    static final String JOB_GENERATION_PROPERTY = "geometry_job_generation";
+    static final Label JOB_LABEL = Label.label("GeometryJob");
+
+    private final GraphDatabaseService db;
+    private final Log log;
+    private final List<Long> mains;
+    private final int batchSize;
+    private final double proximityThreshold;
+    private final boolean properties;
+    private final String job;
+    private final long generation;
+    private final int ahead;
+    private final ExecutorService executor;
+    private final BlockingQueue<Traversed> completed = new LinkedBlockingQueue<>();
+    private final long started;
+    private int submitted = 0;
+    private int done = 0;
+    private int batches = 0;
+
+    OSMBulkGeometryBuilder(GraphDatabaseService db, Log log, List<Long> mains, int batchSize, int threads, double proximityThreshold, boolean properties, String job, long generation) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be at least 1, but was " + batchSize);
+        }
+        if (threads < 1) {
+            throw new IllegalArgumentException("Number of threads must be at least 1, but was " + threads);
+        }
+        this.db = db;
+        this.log = log;
+        this.mains = mains;
+        this.batchSize = batchSize;
+        this.proximityThreshold = proximityThreshold;
+        this.properties = properties;
+        this.job = job;
+        this.generation = generation;
+        this.ahead = 2 * Math.max(batchSize, threads);
+        this.executor = Executors.newFixedThreadPool(threads);
+        this.started = System.currentTimeMillis();
+    }
+
+    /**
+     * The outcome of one committed batch, with the totals so far
+     */
+    static class Batch {
+        final long number;
+        final long relations;
+        final long polygons;
+        final long polylines;
+        final long failed;
+        final long done;
+        final long total;
+        final long elapsedMillis;
+
+        private Batch(long number, long relations, long polygons, long polylines, long failed, long done, long total, long elapsedMillis) {
+            this.number = number;
+            this.relations = relations;
+            this.polygons = polygons;
+            this.polylines = polylines;
+            this.failed = failed;
+            this.done = done;
+            this.total = total;
+            this.elapsedMillis = elapsedMillis;
+        }
+    }
+
+    private static class Traversed {
+        private final long main;
+        private final Pair<List<long[]>, List<long[]>> geometries;
+        private final Throwable error;
+
+        private Traversed(long main, Pair<List<long[]>, List<long[]>> geometries, Throwable error) {
+            this.main = main;
+            this.geometries = geometries;
+            this.error = error;
+        }
+    }
+
+    /**
+     * Creates the job node with the options of the build, or checks that a job that is resumed was started with the
+     * same options, since the relations it already built are not built again
+     *
+     * @param restart if true, the job is started again with the given options, and all relations will be built
+     * @return The generation of the job, which only the relations built since it was last restarted are marked with
+     */
+    static long startJob(GraphDatabaseService db, String name, double proximityThreshold, boolean properties, boolean restart) {
+        try (Transaction tx = db.beginTx()) {
+            Node job = tx.findNode(JOB_LABEL, "name", name);
+            if (job == null) {
+                job = tx.createNode(JOB_LABEL);
+                job.setProperty("name", name);
+            } else if (!restart) {
+                double startedThreshold = ((Number) job.getProperty("proximityThreshold")).doubleValue();
+                boolean startedProperties = (Boolean) job.getProperty("properties");
+                if (startedThreshold != proximityThreshold || startedProperties != properties) {
+                    throw new IllegalArgumentException("Job '" + name + "' was started with proximityThreshold " + startedThreshold + " and properties " + startedProperties + ", but is resumed with proximityThreshold " + proximityThreshold + " and properties " + properties + ". Use restart: true to build all relations again");
+                }
+            }
+            long generation = (long) job.getProperty("generation", 0L);
+            if (restart || !job.hasProperty("built")) {
+                generation++;
+                job.setProperty("built", 0L);
+            }
+            job.setProperty("generation", generation);
+            job.setProperty("proximityThreshold", proximityThreshold);
+            job.setProperty("properties", properties);
+            job.setProperty("updated", System.currentTimeMillis());
+            tx.commit();
+            return generation;
+        }
+    }
+
+    /**
+     * @return True if the relation was built by the given generation of the job
+     */
+    static boolean isBuilt(Node main, String job, long generation) {
+        return job.equals(main.getProperty(JOB_PROPERTY, null)) && generation == (long) main.getProperty(JOB_GENERATION_PROPERTY, -1L);
+    }
+
+    /**
+     * @return The batches, built as they are consumed. Closing the stream stops the threads.
+     */
+    Stream<Batch> stream() {
+        return StreamSupport.stream(Spliterators.spliterator(this, (mains.size() + batchSize - 1) / batchSize, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(executor::shutdownNow);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (done < mains.size()) {
+            return true;
+        }
+        executor.shutdown();
+        return false;
+    }
+
+    @Override
+    public Batch next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        int size = Math.min(batchSize, mains.size() - done);
+        long polygons = 0;
+        long polylines = 0;
+        long failed = 0;
+        long built = 0;
+        try (Transaction tx = db.beginTx()) {
+            for (int i = 0; i < size; i++) {
+                Traversed traversed = take();
+                if (traversed.error != null) {
+                    log.error("Failed to traverse ways of node id=" + traversed.main + ": " + traversed.error.getMessage());
+                    failed++;
+                    continue;
+                }
+                Node main = tx.getNodeById(traversed.main);
+                if (!OSMGeometryWriter.buildGraphGeometries(tx, log, main, traversed.geometries)) {
+                    failed++;
+                    continue;
+                }
+                polygons += traversed.geometries.first().size();
+                polylines += traversed.geometries.other().size();
+                if (properties && !traversed.geometries.first().isEmpty()) {
+                    try {
+                        OSMGeometryWriter.writePolygonProperties(tx, main, Collections.emptyList(), PointArrayFormat.POINTS);
+                    } catch (IllegalArgumentException e) {
+                        log.error("Failed to create polygon property for node id=" + traversed.main + ": " + e.getMessage());
+                        failed++;
+                        continue;
+                    }
+                }
+                if (job != null) {
+                    main.setProperty(JOB_PROPERTY, job);
+                    main.setProperty(JOB_GENERATION_PROPERTY, generation);
+                    built++;
+                }
+            }
+            if (job != null) {
+                Node jobNode = tx.findNode(JOB_LABEL, "name", job);
+                jobNode.setProperty("built", (long) jobNode.getProperty("built", 0L) + built);
+                jobNode.setProperty("updated", System.currentTimeMillis());
+            }
+            tx.commit();
+        }
+        done += size;
+        batches++;
+        long elapsed = System.currentTimeMillis() - started;
+        log.info(String.format("Built OSM geometries for %d of %d relations in %d ms (%.1f relations/s)", done, mains.size(), elapsed, elapsed == 0 ? 0 : 1000.0 * done / elapsed));
+        return new Batch(batches, size, polygons, polylines, failed, done, mains.size(), elapsed);
+    }
+
+    /**
+     * Submits traversals to keep the threads busy, and waits for the next one to complete
+     */
+    private Traversed take() {
+        while (submitted < mains.size() && submitted - done < ahead) {
+            long main = mains.get(submitted++);
+            executor.execute(() -> completed.add(traverse(main)));
+        }
+        Traversed next;
+        try {
+            next = completed.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            executor.shutdownNow();
+            throw new IllegalStateException("Interrupted while building OSM geometries", e);
+        }
+        if (next.error instanceof Error) {
+            executor.shutdownNow();
+            throw new IllegalStateException("Failed to traverse OSM geometries", next.error);
+        }
+        return next;
+    }
+
+    /**
+     * Every traversal completes with a result, also when it fails, since the writer waits for as many results as it
+     * submitted traversals. Failed relations are skipped, while errors stop the build, see {@link #take()}.
+     */
+    private Traversed traverse(long main) {
+        try (Transaction tx = db.beginTx()) {
+            return new Traversed(main, OSMTraverser.traverseOSMGraph(UserDefinedFunctions.kernelTransaction(tx), main, proximityThreshold), null);
+        } catch (Throwable e) {
+            return new Traversed(main, null, e);
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package org.neo4j.spatial.neo4j;
+
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.Result;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.internal.helpers.collection.Pair;
+import org.neo4j.kernel.api.KernelTransaction;
+import org.neo4j.logging.Log;
+import org.neo4j.spatial.algo.Simplify;
+import org.neo4j.spatial.algo.SimplifyCalculator;
+import org.neo4j.spatial.core.CRS;
+import org.neo4j.spatial.core.Point;
+import org.neo4j.spatial.core.Polygon;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.neo4j.spatial.neo4j.UserDefinedFunctions.kernelTransaction;
+
+/**
+ * Writes the graph structures and the point array properties of OSMRelations in a given transaction. This is shared by
+ * the procedures in {@link UserDefinedFunctions} and by {@link OSMBulkGeometryBuilder}, which writes in transactions of
+ * its own.
+ */
+class OSMGeometryWriter {
+
+    /**
+     * Replaces the polygon and polyline structures of the relation with the traversed geometries, see
+     * {@link OSMTraverser#traverseOSMGraph(KernelTransaction, long, double)}
+     *
+     * @return False if the polygon or polyline structures could not be built, which is logged
+     */
+    static boolean buildGraphGeometries(Transaction tx, Log log, Node main, Pair<List<long[]>, List<long[]>> geometries) {
+        long id = (long) main.getProperty("relation_osm_id");
+
+        HashMap<String, Object> parameters = new HashMap<>();
+        parameters.put("id", id);
+        tx.execute("MATCH (m:OSMRelation)-[:POLYGON_STRUCTURE*]->(p:Polygon) WHERE m.relation_osm_id = $id DETACH DELETE p", parameters);
+        tx.execute("MATCH (m:OSMRelation)-[:POLYLINE_STRUCTURE*]->(p:Polyline) WHERE m.relation_osm_id = $id DETACH DELETE p", parameters);
+        //TODO fix this by deleting id from array (NEXT_IN_... & END_OF_POLYLINE)
+//        tx.execute("MATCH (:OSMWayNode)-[n:NEXT_IN_POLYGON]->(:OSMWayNode) DELETE n");
+//        tx.execute("MATCH (:OSMWayNode)-[n:NEXT_IN_POLYLINE]->(:OSMWayNode) DELETE n");
+//        tx.execute("MATCH (:OSMWayNode)-[n:END_OF_POLYLINE]->(:OSMWayNode) DELETE n");
+
+        List<long[]> polygons = geometries.first();
+        List<long[]> polylines = geometries.other();
+        boolean built = true;
+
+        // TODO: Old code would build from a superset of polygons and polylines, but this new code treats them separately - Verify!
+        if (!polygons.isEmpty()) {
+            log.info("Building " + polygons.size() + " polygons for node " + main + " with osm-id: " + id);
+            try {
+                new GraphPolygonBuilder(tx, main, polygons).build();
+            } catch (Exception e) {
+                log.error("Failed to build polygon/polyline structures for node id=" + main.getId() + ", osm-id=" + id + ": " + e.getMessage());
+                e.printStackTrace();
+                built = false;
+            }
+        }
+        if (!polylines.isEmpty()) {
+            log.info("Building " + polylines.size() + " polylines for node " + main + " with osm-id: " + id);
+            try {
+                // TODO: Can we not build polygons from multiple polylines?
+                new GraphPolylineBuilder(tx, main, polylines).build();
+            } catch (Exception e) {
+                log.error("Failed to build polygon/polyline structures for node id=" + main.getId() + ", osm-id=" + id + ": " + e.getMessage());
+                e.printStackTrace();
+                built = false;
+            }
+        }
+        if (GeometryAttributes.isWritten(main)) {
+            try {
+                GeometryAttributes.write(main, kernelTransaction(tx));
+            } catch (Exception e) {
+                log.error("Failed to update geometry attributes for node id=" + main.getId() + ", osm-id=" + id + ": " + e.getMessage());
+                GeometryAttributes.remove(main);
+            }
+        }
+        if (GeometryCovering.isWritten(main)) {
+            try {
+                GeometryCovering.update(tx, main, kernelTransaction(tx));
+            } catch (Exception e) {
+                log.error("Failed to update covering for node id=" + main.getId() + ", osm-id=" + id + ": " + e.getMessage());
+                GeometryCovering.remove(main);
+            }
+        }
+        return built;
+    }
+
+    /**
+     * @return The Polygon nodes below the relation
+     */
+    static Result findPolygonNodes(Transaction tx, Node main) {
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("main", main.getId());
+        Result result = tx.execute("MATCH (p:Polygon)<-[:POLYGON_STRUCTURE*]-(m:OSMRelation) WHERE id(m)=$main RETURN p AS polygonNode", parameters);
+        if (!result.hasNext()) {
+            throw new IllegalArgumentException("No polygon structure found - does " + main + " really have :POLYGON_STRUCTURE relationships? Perhaps you have not run spatial.osm.graph.createPolygon(" + main + ") yet?");
+        }
+        return result;
+    }
+
+    /**
+     * Stores the points of the graph polygon of the Polygon node as its 'polygon' property
+     *
+     * @return The stored points
+     */
+    static Point[] writePolygonProperty(Transaction tx, long relationOsmId, Node polygonNode, PointArrayFormat format) {
+        Map<String, Object> polygonParameters = new HashMap<>();
+        polygonParameters.put("polygonNode", polygonNode.getId());
+        Result startNodeResult = tx.execute("MATCH (p:Polygon)-[:POLYGON_START]->(:OSMWay)-[:FIRST_NODE]->(n:OSMWayNode) WHERE id(p)=$polygonNode RETURN n AS startNode", polygonParameters);
+
+        if (!startNodeResult.hasNext()) {
+            throw new IllegalArgumentException("Broken polygon structure found - polygon " + polygonNode + " is missing a ':POLYGON_START' relationship to an 'OSMWay' node");
+        }
+
+        Node startNode = (Node) startNodeResult.next().get("startNode");
+        Neo4jSimpleGraphNodePolygon polygon = new Neo4jSimpleGraphNodePolygon(startNode, relationOsmId, kernelTransaction(tx));
+        Point[] polygonPoints = polygon.getPoints();
+        format.write(polygonNode, Neo4jArrayToInMemoryConverter.POLYGON_PROPERTY, CRS.WGS84, polygonPoints);
+        return polygonPoints;
+    }
+
+    /**
+     * Stores the 'polygon' property of all polygons of the relation, and their levels of detail, at once
+     *
+     * @return The number of points of every polygon
+     */
+    static List<Integer> writePolygonProperties(Transaction tx, Node main, List<Double> tolerances, PointArrayFormat format) {
+        double[] levels = levels(tolerances);
+        long relationOsmId = (long) main.getProperty("relation_osm_id");
+        removePolygonLevels(main);
+        List<Node> polygonNodes = new ArrayList<>();
+        List<Integer> sizes = new ArrayList<>();
+        try (Result result = findPolygonNodes(tx, main)) {
+            while (result.hasNext()) {
+                Node polygonNode = (Node) result.next().get("polygonNode");
+                sizes.add(writePolygonProperty(tx, relationOsmId, polygonNode, format).length);
+                polygonNodes.add(polygonNode);
+            }
+        }
+        writePolygonLevels(main, polygonNodes, levels, format);
+        return sizes;
+    }
+
+    /**
+     * @return The tolerances of the levels of detail
+     * @throws IllegalArgumentException if the tolerances are not positive and increasing
+     */
+    static double[] levels(List<Double> tolerances) {
+        double[] levels = new double[tolerances.size()];
+        for (int i = 0; i < levels.length; i++) {
+            levels[i] = tolerances.get(i);
+            if (levels[i] <= 0 || (i > 0 && levels[i] <= levels[i - 1])) {
+                throw new IllegalArgumentException("Invalid 'tolerances', should be positive and increasing, but were: " + tolerances);
+            }
+        }
+        return levels;
+    }
+
+    /**
+     * Remove the levels of detail of all polygons below the relation, and their tolerances. This is done before the
+     * 'polygon' properties are rewritten, so that a rewrite that stops early leaves no levels of the old polygons.
+     */
+    static void removePolygonLevels(Node main) {
+        double[] previous = (double[]) main.getProperty(Neo4jArrayToInMemoryConverter.POLYGON_LOD_TOLERANCES_PROPERTY, new double[0]);
+        main.removeProperty(Neo4jArrayToInMemoryConverter.POLYGON_LOD_TOLERANCES_PROPERTY);
+        if (previous.length == 0) {
+            return;
+        }
+        Deque<Node> stack = new ArrayDeque<>();
+        stack.push(main);
+        while (!stack.isEmpty()) {
+            Node node = stack.pop();
+            for (int level = 1; level <= previous.length; level++) {
+                node.removeProperty(Neo4jArrayToInMemoryConverter.POLYGON_LOD_PROPERTY_PREFIX + level);
+            }
+            for (Relationship polygonStructure : node.getRelationships(Direction.OUTGOING, Relation.POLYGON_STRUCTURE)) {
+                stack.push(polygonStructure.getEndNode());
+            }
+        }
+    }
+
+    /**
+     * Write one simplified copy of all polygons per tolerance, each simplified from the full resolution polygons, see
+     * {@link #removePolygonLevels(Node)} for removing the levels of an earlier run
+     */
+    static void writePolygonLevels(Node main, List<Node> polygonNodes, double[] levels, PointArrayFormat format) {
+        if (levels.length == 0) {
+            return;
+        }
+        List<Polygon.SimplePolygon> polygons = new ArrayList<>();
+        for (Node polygonNode : polygonNodes) {
+            polygons.add(Neo4jArrayToInMemoryConverter.convertToInMemoryPolygon(polygonNode));
+        }
+        for (int level = 1; level <= levels.length; level++) {
+            writeSimplifiedPolygons(polygonNodes, polygons, levels[level - 1], Neo4jArrayToInMemoryConverter.POLYGON_LOD_PROPERTY_PREFIX + level, format);
+        }
+        main.setProperty(Neo4jArrayToInMemoryConverter.POLYGON_LOD_TOLERANCES_PROPERTY, levels);
+    }
+
+    /**
+     * @return The number of points of every simplified polygon
+     */
+    static int[] writeSimplifiedPolygons(List<Node> polygonNodes, List<Polygon.SimplePolygon> polygons, double tolerance, String property, PointArrayFormat format) {
+        // Simplify all rings together so that shells and holes do not cut through each other
+        Simplify calculator = SimplifyCalculator.getCalculator(polygons.get(0));
+        Polygon.SimplePolygon[] simplified = calculator.simplify(polygons.toArray(new Polygon.SimplePolygon[0]), tolerance);
+
+        int[] sizes = new int[simplified.length];
+        for (int i = 0; i < simplified.length; i++) {
+            Point[] polygonPoints = simplified[i].getPoints();
+            sizes[i] = polygonPoints.length;
+            format.write(polygonNodes.get(i), property, polygonPoints);
+        }
+        return sizes;
+    }
+}
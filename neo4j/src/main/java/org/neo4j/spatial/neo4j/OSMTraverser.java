@@ -1,8 +1,10 @@
 package org.neo4j.spatial.neo4j;
 
-import org.neo4j.graphdb.*;
-import org.neo4j.graphdb.spatial.Point;
+import org.eclipse.collections.impl.list.mutable.primitive.IntArrayList;
+import org.eclipse.collections.impl.list.mutable.primitive.LongArrayList;
+import org.eclipse.collections.impl.map.mutable.primitive.LongObjectHashMap;
 import org.neo4j.internal.helpers.collection.Pair;
+import org.neo4j.kernel.api.KernelTransaction;
 import org.neo4j.spatial.algo.AlgoUtil;
 import org.neo4j.spatial.algo.wgs84.WGSUtil;
 import org.neo4j.spatial.core.Vector;
@@ -14,15 +16,21 @@ public class OSMTraverser {
     /**
      * Traverse the OpenStreetMap graph looking for geometries in the form of a list of polygons and a list of polylines.
      *
-     * @param tx the database transaction in which to query the database
-     * @param main The node representing the OSMRelation
-     * @return A pair of two collections, one of polygons and one of polylines
+     * @param ktx  the kernel transaction in which to read the database
+     * @param main The id of the node representing the OSMRelation
+     * @return A pair of two collections, one of polygons and one of polylines, each given by the ids of its OSMWayNodes
      */
-    public static Pair<List<List<Node>>, List<List<Node>>> traverseOSMGraph(Transaction tx, Node main, double proximityThreshold) {
-        List<List<Node>> wayNodes = collectWays(tx, main);
-        List<EnrichedWay> candidates = wayNodes.stream().map(EnrichedWay::new).collect(Collectors.toList());
+    public static Pair<List<long[]>, List<long[]>> traverseOSMGraph(KernelTransaction ktx, long main, double proximityThreshold) {
+        OSMWayCollector.Ways ways;
+        try (OSMWayCollector collector = new OSMWayCollector(ktx)) {
+            ways = collector.collect(main);
+        }
+        List<EnrichedWay> candidates = new ArrayList<>(ways.size());
+        for (int i = 0; i < ways.size(); i++) {
+            candidates.add(new EnrichedWay(ways, i));
+        }
         int totalNodeCount = candidates.stream().mapToInt(EnrichedWay::size).sum();
-        System.out.println("Found " + candidates.size() + " polygon/polyline candidates comprising " + totalNodeCount + " nodes from " + wayNodes.size() + " ways within " + main);
+        System.out.println("Found " + candidates.size() + " polygon/polyline candidates comprising " + totalNodeCount + " nodes from " + ways.size() + " ways within Node[" + main + "]");
 
         Pair<List<EnrichedWay>, List<EnrichedWay>> enrichedWays = connectWaysByCommonNode(candidates);
 
@@ -39,8 +47,8 @@ public class OSMTraverser {
             debugPolygonPolylines(totalNodeCount, polygons, polylines);
         }
 
-        List<List<Node>> polygonNodes = polygons.stream().map(p -> p.wayNodes).collect(Collectors.toList());
-        List<List<Node>> polylineNodes = polylines.stream().map(p -> p.wayNodes).collect(Collectors.toList());
+        List<long[]> polygonNodes = polygons.stream().map(p -> p.wayNodes.toArray()).collect(Collectors.toList());
+        List<long[]> polylineNodes = polylines.stream().map(p -> p.wayNodes.toArray()).collect(Collectors.toList());
 
         return Pair.of(polygonNodes, polylineNodes);
     }
@@ -59,40 +67,9 @@ public class OSMTraverser {
     }
 
     /**
-     * Find all ways related to the OSMRelation and try to combine connected ways (share same node at extreme points)
-     *
-     * @param tx the database transaction in which to query the database
-     * @param main The node representing the OSMRelation
-     * @return List of ways where each way is connected by a common node
-     */
-    private static List<List<Node>> collectWays(Transaction tx, Node main) {
-        List<List<Node>> wayNodes = new ArrayList<>();
-        String findWayNodes;
-        if (main.hasProperty("relation_osm_id")) {
-            findWayNodes = "MATCH (r:OSMRelation)-[:MEMBER*]->(w:OSMWay)-[:FIRST_NODE]->(f:OSMWayNode), " +
-                    "(f)-[:NEXT*0..]->(wn:OSMWayNode) WHERE id(r) = $main " +
-                    "RETURN f, collect(wn) AS nodes";
-        } else if (main.hasProperty("way_osm_id")) {
-            findWayNodes = "MATCH (w:OSMWay)-[:FIRST_NODE]->(f:OSMWayNode), " +
-                    "(f)-[:NEXT*0..]->(wn:OSMWayNode) WHERE id(w) = $main " +
-                    "RETURN f, collect(wn) AS nodes";
-        } else {
-            throw new IllegalArgumentException("Cannot find ways from OSM node that is neither a Relation nor a Way: " + main);
-        }
-
-        Map<String, Object> parameters = new HashMap<>();
-        parameters.put("main", main.getId());
-        Result result = tx.execute(findWayNodes, parameters);
-        while(result.hasNext()) {
-            Map<String, Object> next = result.next();
-            List<Node> nextWay = (List<Node>) next.get("nodes");
-            wayNodes.add(nextWay);
-        }
-        return wayNodes;
-    }
-
-    /**
-     * Connect neighboring ways to create polygons by common nodes.
+     * Connect neighboring ways to create polygons by common nodes. The ways are indexed by the ids of their end nodes,
+     * so each join only looks at the ways sharing an end node with the way being built, instead of rescanning all
+     * remaining ways. When several ways could be joined, the one that came first in the candidates is used.
      *
      * @param candidates List of candidate ways
      * @return First list contains enriched ways which describe full polygons
@@ -102,21 +79,33 @@ public class OSMTraverser {
         List<EnrichedWay> polygons = new ArrayList<>();
         List<EnrichedWay> notPolygons = new ArrayList<>();
 
-        while (!candidates.isEmpty()) {
-            boolean joinedSome;
-            EnrichedWay way = candidates.remove(0);
-
-            do {
-                joinedSome = false;
-                ListIterator<EnrichedWay> wayIter = candidates.listIterator();
-                while (wayIter.hasNext()) {
-                    EnrichedWay candidate = wayIter.next();
-                    if (way.joinByCommonNode(candidate)) {
-                        wayIter.remove();
-                        joinedSome = true;
-                    }
+        LongObjectHashMap<IntArrayList> waysByEndNode = new LongObjectHashMap<>();
+        for (int i = 0; i < candidates.size(); i++) {
+            EnrichedWay candidate = candidates.get(i);
+            waysByEndNode.getIfAbsentPut(candidate.first.first(), IntArrayList::new).add(i);
+            if (!candidate.isClosed()) {
+                waysByEndNode.getIfAbsentPut(candidate.last.first(), IntArrayList::new).add(i);
+            }
+        }
+        boolean[] joined = new boolean[candidates.size()];
+
+        for (int i = 0; i < candidates.size(); i++) {
+            if (joined[i]) {
+                continue;
+            }
+            joined[i] = true;
+            EnrichedWay way = candidates.get(i);
+
+            while (true) {
+                int next = Math.min(
+                        firstUnjoined(waysByEndNode.get(way.first.first()), joined),
+                        firstUnjoined(waysByEndNode.get(way.last.first()), joined));
+                if (next == Integer.MAX_VALUE) {
+                    break;
                 }
-            } while (joinedSome);
+                joined[next] = true;
+                way.joinByCommonNode(candidates.get(next));
+            }
 
             if (way.isClosed()) {
                 polygons.add(way);
@@ -129,39 +118,65 @@ public class OSMTraverser {
     }
 
     /**
-     * Connect neighboring ways to create polygons by proximity of the end nodes.
+     * @return The lowest index of a way that is not joined yet, or Integer.MAX_VALUE if there is none. Joined ways
+     * are removed from the list on the way, so the list is only scanned once for every way ending at the node.
+     */
+    private static int firstUnjoined(IntArrayList ways, boolean[] joined) {
+        if (ways == null) {
+            return Integer.MAX_VALUE;
+        }
+        int first = Integer.MAX_VALUE;
+        int kept = 0;
+        for (int i = 0; i < ways.size(); i++) {
+            int way = ways.get(i);
+            if (!joined[way]) {
+                ways.set(kept++, way);
+                first = Math.min(first, way);
+            }
+        }
+        while (ways.size() > kept) {
+            ways.removeAtIndex(ways.size() - 1);
+        }
+        return first;
+    }
+
+    /**
+     * Connect neighboring ways to create polygons by proximity of the end nodes. The end points of the polylines built
+     * so far are kept in an {@link EndPointGrid}, so each way is only compared to the polylines ending near it.
      *
      * @param candidates List of candidate ways
      * @return List of enriched ways where each enriched way describes a polygon
      */
     private static Pair<List<EnrichedWay>, List<EnrichedWay>> connectWaysByProximity(List<EnrichedWay> candidates, double proximityThreshold) {
         List<EnrichedWay> polygons = new ArrayList<>();
-        List<EnrichedWay> polylines = new ArrayList<>();
+        Set<EnrichedWay> polylines = new LinkedHashSet<>();
+        EndPointGrid grid = new EndPointGrid(proximityThreshold);
 
-        polylines.add(candidates.remove(0));
+        EnrichedWay firstWay = candidates.get(0);
+        polylines.add(firstWay);
+        grid.add(firstWay);
 
-        while (candidates.size() > 0) {
-            EnrichedWay wayToAdd = candidates.remove(0);
+        for (int index = 1; index < candidates.size(); index++) {
+            EnrichedWay wayToAdd = candidates.get(index);
 
             double minDistance = Double.MAX_VALUE;
-            int bestIndex = -1;
+            EnrichedWay wayToAddTo = null;
             EnrichedWay.JoinDirection joinDirection = null;
 
-            for (int i = 0; i < polylines.size(); i++) {
-                EnrichedWay candidateWayToAddTo = polylines.get(i);
-
+            for (EnrichedWay candidateWayToAddTo : grid.near(wayToAdd)) {
                 Pair<Double, EnrichedWay.JoinDirection> distanceDirection = candidateWayToAddTo.distanceTo(wayToAdd);
 
-                if (distanceDirection.first() < minDistance) {
+                // Prefer the polyline created first when equally close
+                if (distanceDirection.first() < minDistance || (distanceDirection.first() == minDistance && candidateWayToAddTo.order < wayToAddTo.order)) {
                     minDistance = distanceDirection.first();
                     joinDirection = distanceDirection.other();
-                    bestIndex = i;
+                    wayToAddTo = candidateWayToAddTo;
                 }
             }
 
             // Closest polyline is close enough to merge
             if (minDistance <= proximityThreshold) {
-                EnrichedWay wayToAddTo = polylines.get(bestIndex);
+                grid.remove(wayToAddTo);
                 wayToAddTo.join(wayToAdd, joinDirection);
 
                 Vector first = new Vector(true, wayToAddTo.first.other());
@@ -172,6 +187,8 @@ public class OSMTraverser {
                 if (AlgoUtil.lessOrEqual(distance, proximityThreshold)) {
                     polygons.add(wayToAddTo);
                     polylines.remove(wayToAddTo);
+                } else {
+                    grid.add(wayToAddTo);
                 }
             } else {
                 Vector first = new Vector(true, wayToAdd.first.other());
@@ -181,29 +198,100 @@ public class OSMTraverser {
                 //The polyline closes itself
                 if (AlgoUtil.lessOrEqual(distance, proximityThreshold)) {
                     polygons.add(wayToAdd);
-                    polylines.remove(wayToAdd);
                 } else {
+                    wayToAdd.order = index;
                     polylines.add(wayToAdd);
+                    grid.add(wayToAdd);
+                }
+            }
+        }
+
+        return Pair.of(polygons, new ArrayList<>(polylines));
+    }
+
+    /**
+     * A spatial hash of the end points of ways. End points are placed in cubic cells of the earth centered cartesian
+     * space, with cells at least as large as the proximity threshold. Since the straight line between two points is
+     * never longer than the great circle distance, every end point within the threshold of a point is in the cell of
+     * the point or in one of its 26 neighbours.
+     */
+    private static class EndPointGrid {
+        private static final long MASK = (1L << 21) - 1;
+
+        private final double cellSize;
+        private final LongObjectHashMap<List<EnrichedWay>> cells = new LongObjectHashMap<>();
+
+        private EndPointGrid(double proximityThreshold) {
+            this.cellSize = Math.max(proximityThreshold, 1);
+        }
+
+        private void add(EnrichedWay way) {
+            cells.getIfAbsentPut(cell(way.first.other(), 0, 0, 0), ArrayList::new).add(way);
+            cells.getIfAbsentPut(cell(way.last.other(), 0, 0, 0), ArrayList::new).add(way);
+        }
+
+        /**
+         * Must be called before the end points of the way change
+         */
+        private void remove(EnrichedWay way) {
+            for (double[] end : new double[][]{way.first.other(), way.last.other()}) {
+                long cell = cell(end, 0, 0, 0);
+                List<EnrichedWay> ways = cells.get(cell);
+                if (ways != null) {
+                    ways.remove(way);
+                    if (ways.isEmpty()) {
+                        cells.remove(cell);
+                    }
+                }
+            }
+        }
+
+        /**
+         * @return The ways with an end point that may be within the proximity threshold of an end point of the way
+         */
+        private Set<EnrichedWay> near(EnrichedWay way) {
+            Set<EnrichedWay> near = new LinkedHashSet<>();
+            for (double[] end : new double[][]{way.first.other(), way.last.other()}) {
+                for (int dx = -1; dx <= 1; dx++) {
+                    for (int dy = -1; dy <= 1; dy++) {
+                        for (int dz = -1; dz <= 1; dz++) {
+                            List<EnrichedWay> ways = cells.get(cell(end, dx, dy, dz));
+                            if (ways != null) {
+                                near.addAll(ways);
+                            }
+                        }
+                    }
                 }
             }
+            return near;
         }
 
-        return Pair.of(polygons, polylines);
+        /**
+         * Cells far apart may share a key when the cells are small, which only adds ways that are then found to be too far away
+         */
+        private long cell(double[] coordinate, int dx, int dy, int dz) {
+            double[] vector = Vector.pointCoordinatesToVectorCoordinates(coordinate);
+            long x = (long) Math.floor(vector[0] * WGSUtil.RADIUS / cellSize) + dx;
+            long y = (long) Math.floor(vector[1] * WGSUtil.RADIUS / cellSize) + dy;
+            long z = (long) Math.floor(vector[2] * WGSUtil.RADIUS / cellSize) + dz;
+            return ((x & MASK) << 42) | ((y & MASK) << 21) | (z & MASK);
+        }
     }
 
     private static class EnrichedWay {
-        Pair<Node, double[]> first;
-        Pair<Node, double[]> last;
-        private List<Node> wayNodes;
+        Pair<Long, double[]> first;
+        Pair<Long, double[]> last;
+        private LongArrayList wayNodes;
+        private int order;
 
         enum JoinDirection {
             FF, FL, LF, LL
         }
 
-        EnrichedWay (List<Node> wayNodes) {
-            this.wayNodes = wayNodes;
-            this.first = getOSMNode(wayNodes.get(0));
-            this.last = getOSMNode(wayNodes.get(wayNodes.size() - 1));
+        EnrichedWay(OSMWayCollector.Ways ways, int way) {
+            this.wayNodes = LongArrayList.newListWith(ways.wayNodes(way));
+            this.first = getOSMNode(ways, ways.start(way));
+            this.last = getOSMNode(ways, ways.start(way + 1) - 1);
         }
 
         int size() {
@@ -230,7 +318,7 @@ public class OSMTraverser {
         void join(EnrichedWay other, JoinDirection direction) {
             switch (direction) {
                 case FF:
-                    Collections.reverse(other.wayNodes);
+                    other.wayNodes.reverseThis();
                     other.wayNodes.addAll(this.wayNodes);
                     this.wayNodes = other.wayNodes;
                     this.first = other.last;
@@ -245,7 +333,7 @@ public class OSMTraverser {
                     this.last = other.last;
                     break;
                 case LL:
-                    Collections.reverse(other.wayNodes);
+                    other.wayNodes.reverseThis();
                     this.wayNodes.addAll(other.wayNodes);
                     this.last = other.first;
                     break;
@@ -283,15 +371,10 @@ public class OSMTraverser {
         }
 
         /**
-         * @param wayNode
-         * @return The coordinate belonging to the OSMWayNode
+         * @return The OSMNode and coordinate belonging to the way node at the index
          */
-        static Pair<Node, double[]> getOSMNode(Node wayNode) {
-            Node node = wayNode.getSingleRelationship(Relation.NODE, Direction.OUTGOING).getEndNode();
-
-            Point point = (Point) node.getProperty("location");
-
-            return Pair.of(node, point.getCoordinate().getCoordinate().stream().mapToDouble(i -> i).toArray());
+        static Pair<Long, double[]> getOSMNode(OSMWayCollector.Ways ways, int index) {
+            return Pair.of(ways.location(index), ways.coordinate(index));
         }
     }
 }
@@ -0,0 +1,246 @@
+package org.neo4j.spatial.neo4j;
+
+import org.eclipse.collections.impl.list.mutable.primitive.DoubleArrayList;
+import org.eclipse.collections.impl.list.mutable.primitive.IntArrayList;
+import org.eclipse.collections.impl.list.mutable.primitive.LongArrayList;
+import org.eclipse.collections.impl.set.mutable.primitive.LongHashSet;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.internal.kernel.api.NodeCursor;
+import org.neo4j.internal.kernel.api.PropertyCursor;
+import org.neo4j.internal.kernel.api.RelationshipTraversalCursor;
+import org.neo4j.internal.kernel.api.TokenRead;
+import org.neo4j.io.pagecache.context.CursorContext;
+import org.neo4j.kernel.api.KernelTransaction;
+import org.neo4j.memory.EmptyMemoryTracker;
+import org.neo4j.storageengine.api.PropertySelection;
+import org.neo4j.storageengine.api.RelationshipSelection;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Collects the OSMWayNodes of all ways of an OSMRelation, or of a single OSMWay, with kernel cursors. Members are
+ * followed through nested relations, every way is read from its FIRST_NODE along its NEXT relationships, and the
+ * OSMNode and location of every way node are read in the same pass into primitive arrays, see {@link Ways}.
+ * <p>
+ * A collector holds cursors of the transaction, so it must be closed before the transaction is.
+ */
+class OSMWayCollector implements AutoCloseable {
+    private final KernelTransaction ktx;
+    private final Neo4jIDPointReader reader;
+    private final NodeCursor nodeCursor;
+    private final RelationshipTraversalCursor relationshipCursor;
+    private final PropertyCursor propertyCursor;
+    private final int wayLabel;
+    private final int wayNodeLabel;
+    private final int relationIdToken;
+    private final int wayIdToken;
+    private final RelationshipSelection members;
+    private final RelationshipSelection firstNode;
+    private final RelationshipSelection next;
+
+    OSMWayCollector(KernelTransaction ktx) {
+        this.ktx = ktx;
+        this.reader = new Neo4jIDPointReader(ktx);
+        TokenRead tokenRead = ktx.tokenRead();
+        this.wayLabel = tokenRead.nodeLabel("OSMWay");
+        this.wayNodeLabel = tokenRead.nodeLabel("OSMWayNode");
+        this.relationIdToken = tokenRead.propertyKey("relation_osm_id");
+        this.wayIdToken = tokenRead.propertyKey("way_osm_id");
+        this.members = selection(tokenRead, Relation.MEMBER);
+        this.firstNode = selection(tokenRead, Relation.FIRST_NODE);
+        this.next = selection(tokenRead, Relation.NEXT);
+        this.nodeCursor = ktx.cursors().allocateNodeCursor(CursorContext.NULL);
+        this.relationshipCursor = ktx.cursors().allocateRelationshipTraversalCursor(CursorContext.NULL);
+        this.propertyCursor = ktx.cursors().allocatePropertyCursor(CursorContext.NULL, EmptyMemoryTracker.INSTANCE);
+    }
+
+    private static RelationshipSelection selection(TokenRead tokenRead, Relation relation) {
+        int type = tokenRead.relationshipType(relation.name());
+        return type == TokenRead.NO_TOKEN ? null : RelationshipSelection.selection(type, Direction.OUTGOING);
+    }
+
+    /**
+     * The way nodes of a number of ways, stored consecutively. The way nodes of way i are at the indexes from
+     * {@code start(i)} up to {@code start(i + 1)}, and so are their OSMNodes and coordinates.
+     */
+    static class Ways {
+        private final int[] starts;
+        private final long[] wayNodes;
+        private final long[] locations;
+        private final double[] coordinates;
+
+        private Ways(int[] starts, long[] wayNodes, long[] locations, double[] coordinates) {
+            this.starts = starts;
+            this.wayNodes = wayNodes;
+            this.locations = locations;
+            this.coordinates = coordinates;
+        }
+
+        int size() {
+            return starts.length - 1;
+        }
+
+        int start(int way) {
+            return starts[way];
+        }
+
+        /**
+         * @return The ids of the way nodes of the way, in order
+         */
+        long[] wayNodes(int way) {
+            long[] result = new long[starts[way + 1] - starts[way]];
+            System.arraycopy(wayNodes, starts[way], result, 0, result.length);
+            return result;
+        }
+
+        /**
+         * @return The id of the OSMNode the way node at the index points to
+         */
+        long location(int index) {
+            return locations[index];
+        }
+
+        /**
+         * @return The x (longitude) and y (latitude) of the way node at the index
+         */
+        double[] coordinate(int index) {
+            return new double[]{coordinates[2 * index], coordinates[2 * index + 1]};
+        }
+    }
+
+    /**
+     * @param main the id of an OSMRelation or OSMWay
+     * @return The ways of the relation, or the way itself, skipping ways without way nodes
+     */
+    Ways collect(long main) {
+        LongArrayList ways = new LongArrayList();
+        if (hasProperty(main, relationIdToken)) {
+            collectMemberWays(main, ways);
+        } else if (hasProperty(main, wayIdToken)) {
+            ways.add(main);
+        } else {
+            throw new IllegalArgumentException("Cannot find ways from OSM node that is neither a Relation nor a Way: " + main);
+        }
+
+        IntArrayList starts = new IntArrayList();
+        LongArrayList wayNodes = new LongArrayList();
+        LongArrayList locations = new LongArrayList();
+        DoubleArrayList coordinates = new DoubleArrayList();
+        for (int i = 0; i < ways.size(); i++) {
+            long way = ways.get(i);
+            long wayNode = follow(way, firstNode, wayNodeLabel);
+            if (wayNode < 0) {
+                continue;
+            }
+            starts.add(wayNodes.size());
+            LongHashSet visited = new LongHashSet();
+            while (wayNode >= 0 && visited.add(wayNode)) {
+                long location = reader.locationNode(wayNode);
+                double[] coordinate = reader.location(location).coordinate();
+                wayNodes.add(wayNode);
+                locations.add(location);
+                coordinates.add(coordinate[0]);
+                coordinates.add(coordinate[1]);
+                wayNode = follow(wayNode, next, wayNodeLabel);
+            }
+        }
+        starts.add(wayNodes.size());
+        return new Ways(starts.toArray(), wayNodes.toArray(), locations.toArray(), coordinates.toArray());
+    }
+
+    /**
+     * Collect the OSMWays reachable over MEMBER relationships, depth first and each way once. The members of a
+     * relation are visited in the order of their MEMBER relationship ids, which only makes the result deterministic.
+     * On a fresh store that is the import order, but ids of deleted relationships can be reused, and the OSM member
+     * order is not stored, so nothing may depend on it: the ways are joined by their end nodes afterwards.
+     */
+    private void collectMemberWays(long relation, LongArrayList ways) {
+        LongHashSet visited = new LongHashSet();
+        LongArrayList stack = new LongArrayList();
+        stack.add(relation);
+        visited.add(relation);
+        while (!stack.isEmpty()) {
+            long node = stack.removeAtIndex(stack.size() - 1);
+            List<long[]> memberships = new ArrayList<>();
+            if (members != null) {
+                ktx.dataRead().singleNode(node, nodeCursor);
+                if (nodeCursor.next()) {
+                    nodeCursor.relationships(relationshipCursor, members);
+                    while (relationshipCursor.next()) {
+                        memberships.add(new long[]{relationshipCursor.relationshipReference(), relationshipCursor.otherNodeReference()});
+                    }
+                }
+            }
+            memberships.sort(Comparator.comparingLong(membership -> membership[0]));
+            LongArrayList children = new LongArrayList(memberships.size());
+            for (long[] membership : memberships) {
+                if (visited.add(membership[1])) {
+                    children.add(membership[1]);
+                }
+            }
+            for (int i = 0; i < children.size(); i++) {
+                if (hasLabel(children.get(i), wayLabel)) {
+                    ways.add(children.get(i));
+                }
+            }
+            // Push in reverse so that nested relations are visited in relationship id order
+            for (int i = children.size() - 1; i >= 0; i--) {
+                stack.add(children.get(i));
+            }
+        }
+    }
+
+    /**
+     * @return The node at the end of the first relationship of the selection that has the label, or -1 if there is none
+     */
+    private long follow(long node, RelationshipSelection selection, int label) {
+        if (selection == null) {
+            return -1;
+        }
+        ktx.dataRead().singleNode(node, nodeCursor);
+        if (!nodeCursor.next()) {
+            return -1;
+        }
+        nodeCursor.relationships(relationshipCursor, selection);
+        LongArrayList candidates = new LongArrayList(1);
+        while (relationshipCursor.next()) {
+            candidates.add(relationshipCursor.otherNodeReference());
+        }
+        for (int i = 0; i < candidates.size(); i++) {
+            if (hasLabel(candidates.get(i), label)) {
+                return candidates.get(i);
+            }
+        }
+        return -1;
+    }
+
+    private boolean hasLabel(long node, int label) {
+        if (label == TokenRead.NO_TOKEN) {
+            return false;
+        }
+        ktx.dataRead().singleNode(node, nodeCursor);
+        return nodeCursor.next() && nodeCursor.hasLabel(label);
+    }
+
+    private boolean hasProperty(long node, int token) {
+        if (token == TokenRead.NO_TOKEN) {
+            return false;
+        }
+        ktx.dataRead().singleNode(node, nodeCursor);
+        if (!nodeCursor.next()) {
+            return false;
+        }
+        nodeCursor.properties(propertyCursor, PropertySelection.selection(token));
+        return propertyCursor.next();
+    }
+
+    @Override
+    public void close() {
+        reader.close();
+        nodeCursor.close();
+        relationshipCursor.close();
+        propertyCursor.close();
+    }
+}
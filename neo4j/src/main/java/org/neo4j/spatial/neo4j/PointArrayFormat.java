@@ -0,0 +1,79 @@
+package org.neo4j.spatial.neo4j;
+
+import org.neo4j.graphdb.Node;
+import org.neo4j.spatial.core.CRS;
+import org.neo4j.spatial.core.Point;
+import org.neo4j.values.storable.CoordinateReferenceSystem;
+import org.neo4j.values.storable.Values;
+
+import java.util.Arrays;
+
+import static org.neo4j.spatial.neo4j.CRSConverter.toNeo4jCRS;
+
+/**
+ * The ways a sequence of points can be stored in a single node property. Reading does not need to know the format,
+ * since {@link Neo4jArrayToInMemoryConverter} recognizes both.
+ */
+public enum PointArrayFormat {
+    /**
+     * A native Point[] property, which can be used directly in Cypher
+     */
+    POINTS {
+        @Override
+        public Object encode(Point[] points) {
+            return Arrays.stream(points).map(p -> Values.pointValue((CoordinateReferenceSystem) toNeo4jCRS(p.getCRS()), p.getCoordinate())).toArray(org.neo4j.graphdb.spatial.Point[]::new);
+        }
+    },
+    /**
+     * A delta encoded byte[] property, see {@link CompactPointArray}
+     */
+    COMPACT {
+        @Override
+        public Object encode(Point[] points) {
+            return CompactPointArray.encode(points);
+        }
+    };
+
+    public abstract Object encode(Point[] points);
+
+    /**
+     * Write the points as a property, replacing the CRS of all points with the given CRS
+     */
+    public void write(Node node, String property, CRS crs, Point[] points) {
+        Point[] converted = new Point[points.length];
+        for (int i = 0; i < points.length; i++) {
+            converted[i] = points[i].getCRS() == crs ? points[i] : Point.point(crs, points[i].getCoordinate());
+        }
+        write(node, property, converted);
+    }
+
+    public void write(Node node, String property, Point[] points) {
+        node.setProperty(property, encode(points));
+    }
+
+    /**
+     * @param name 'points' or 'compact', ignoring case
+     */
+    public static PointArrayFormat fromName(String name) {
+        for (PointArrayFormat format : values()) {
+            if (format.name().equalsIgnoreCase(name)) {
+                return format;
+            }
+        }
+        throw new IllegalArgumentException("Invalid 'format', should be one of " + Arrays.toString(values()) + ", but was: " + name);
+    }
+
+    /**
+     * @param value a property value
+     * @return The format of the value, or null if it is not a point array
+     */
+    public static PointArrayFormat of(Object value) {
+        if (value instanceof org.neo4j.graphdb.spatial.Point[]) {
+            return POINTS;
+        } else if (CompactPointArray.isCompact(value)) {
+            return COMPACT;
+        } else {
+            return null;
+        }
+    }
+}
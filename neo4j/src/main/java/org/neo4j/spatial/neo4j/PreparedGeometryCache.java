@@ -0,0 +1,136 @@
+package org.neo4j.spatial.neo4j;
+
+import org.neo4j.graphdb.spatial.Point;
+import org.neo4j.spatial.algo.PreparedPolygon;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * A bounded cache of prepared polygons, keyed by the points of the polygon arguments of functions like
+ * spatial.algo.withinPolygon, so that a query passing the same polygon on every row only converts and analyzes it once.
+ * <p>
+ * The key is a cheap fingerprint of the size and the hash codes of the points, and a hit is only used after comparing
+ * the points with those the polygon was prepared from. Cypher passes the same point values on every row, so this mostly
+ * compares references. The size of the cache is measured in vertices, and the least recently used polygons are evicted
+ * first. Since the arguments are values, and not read from the database, nothing ever needs to be invalidated.
+ */
+class PreparedGeometryCache {
+    static final long DEFAULT_MAX_VERTICES = 1_000_000;
+    static final String MAX_VERTICES_PROPERTY = "spatial.prepared_cache.max_vertices";
+
+    private final LinkedHashMap<Fingerprint, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final long maxVertices;
+    private long vertices;
+
+    private long hits;
+    private long misses;
+
+    PreparedGeometryCache(long maxVertices) {
+        this.maxVertices = maxVertices;
+    }
+
+    /**
+     * @param preparer prepares the polygon if it is not cached
+     * @return The polygon prepared from equal points
+     */
+    PreparedPolygon get(List<Point> points, Supplier<PreparedPolygon> preparer) {
+        Fingerprint fingerprint = new Fingerprint(points);
+        synchronized (this) {
+            Entry entry = entries.get(fingerprint);
+            if (entry != null && entry.matches(points)) {
+                hits++;
+                return entry.prepared;
+            }
+            misses++;
+        }
+
+        PreparedPolygon prepared = preparer.get();
+        Entry entry = new Entry(points, prepared);
+        synchronized (this) {
+            if (prepared.getVertexCount() <= maxVertices) {
+                Entry previous = entries.put(fingerprint, entry);
+                if (previous != null) {
+                    vertices -= previous.prepared.getVertexCount();
+                }
+                vertices += prepared.getVertexCount();
+                Iterator<Entry> iterator = entries.values().iterator();
+                while (vertices > maxVertices && iterator.hasNext()) {
+                    vertices -= iterator.next().prepared.getVertexCount();
+                    iterator.remove();
+                }
+            }
+        }
+        return prepared;
+    }
+
+    synchronized void clear() {
+        entries.clear();
+        vertices = 0;
+    }
+
+    synchronized long getHits() {
+        return hits;
+    }
+
+    synchronized long getMisses() {
+        return misses;
+    }
+
+    synchronized int getEntryCount() {
+        return entries.size();
+    }
+
+    private static class Entry {
+        private final Point[] points;
+        private final PreparedPolygon prepared;
+
+        private Entry(List<Point> points, PreparedPolygon prepared) {
+            this.points = points.toArray(new Point[0]);
+            this.prepared = prepared;
+        }
+
+        private boolean matches(List<Point> other) {
+            if (other.size() != points.length) {
+                return false;
+            }
+            for (int i = 0; i < points.length; i++) {
+                Point point = other.get(i);
+                if (point != points[i] && !point.equals(points[i])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static class Fingerprint {
+        private final int size;
+        private final int hash;
+
+        private Fingerprint(List<Point> points) {
+            this.size = points.size();
+            int hash = 1;
+            for (Point point : points) {
+                hash = 31 * hash + point.hashCode();
+            }
+            this.hash = hash;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Fingerprint)) {
+                return false;
+            }
+            Fingerprint fingerprint = (Fingerprint) other;
+            return size == fingerprint.size && hash == fingerprint.hash;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * size + hash;
+        }
+    }
+}
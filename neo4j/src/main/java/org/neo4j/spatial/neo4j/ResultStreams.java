@@ -0,0 +1,68 @@
+package org.neo4j.spatial.neo4j;
+
+import org.neo4j.graphdb.ResourceIterator;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Lazy procedure results. The rows are mapped from the source one at a time while the client consumes them, instead of
+ * being collected into a list first, so that memory does not grow with the number of rows and the first rows are
+ * available as soon as they are computed.
+ * <p>
+ * Note that Cypher materializes the results of write procedures before passing them on, so there it is mostly the
+ * intermediate state that is no longer kept, while the rows of read procedures really are streamed to the client.
+ */
+final class ResultStreams {
+    private ResultStreams() {
+    }
+
+    /**
+     * @param source the source rows, closed when the stream is closed
+     * @param rows   maps every source row to any number of result rows
+     */
+    static <T, R> Stream<R> stream(ResourceIterator<T> source, Function<T, Stream<R>> rows) {
+        return stream(source, rows, () -> {
+        });
+    }
+
+    /**
+     * @param source      the source rows, closed when the stream is closed
+     * @param rows        maps every source row to any number of result rows
+     * @param onExhausted run once after the last source row has been mapped, for work that needs all rows, and not
+     *                    run at all if the stream is closed before the end
+     */
+    static <T, R> Stream<R> stream(ResourceIterator<T> source, Function<T, Stream<R>> rows, Runnable onExhausted) {
+        Iterator<T> completing = new Iterator<T>() {
+            private boolean exhausted = false;
+
+            @Override
+            public boolean hasNext() {
+                if (source.hasNext()) {
+                    return true;
+                }
+                if (!exhausted) {
+                    exhausted = true;
+                    onExhausted.run();
+                }
+                return false;
+            }
+
+            @Override
+            public T next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return source.next();
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(completing, Spliterator.ORDERED), false)
+                .flatMap(rows)
+                .onClose(source::close);
+    }
+}
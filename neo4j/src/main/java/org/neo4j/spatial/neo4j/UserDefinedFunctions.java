@@ -2,37 +2,45 @@ package org.neo4j.spatial.neo4j;
 
 import org.neo4j.graphdb.*;
 import org.neo4j.graphdb.spatial.CRS;
-import org.neo4j.graphdb.spatial.Coordinate;
 import org.neo4j.graphdb.spatial.Point;
 import org.neo4j.internal.helpers.collection.Pair;
+import org.neo4j.kernel.api.KernelTransaction;
+import org.neo4j.kernel.impl.coreapi.InternalTransaction;
 import org.neo4j.logging.Log;
 import org.neo4j.procedure.*;
 import org.neo4j.spatial.algo.*;
 import org.neo4j.spatial.algo.cartesian.CartesianConvexHull;
 import org.neo4j.spatial.algo.cartesian.intersect.CartesianMCSweepLineIntersect;
 import org.neo4j.spatial.algo.cartesian.intersect.CartesianNaiveIntersect;
-import org.neo4j.spatial.algo.cartesian.CartesianWithin;
 import org.neo4j.spatial.algo.wgs84.WGS84ConvexHull;
 import org.neo4j.spatial.core.MultiPolygon;
 import org.neo4j.spatial.core.MultiPolyline;
+import org.neo4j.spatial.core.PackedCoordinateSequence;
 import org.neo4j.spatial.core.Polygon;
 import org.neo4j.spatial.core.Polyline;
+import org.neo4j.spatial.core.Vector;
 import org.neo4j.values.storable.CoordinateReferenceSystem;
 import org.neo4j.values.storable.Values;
 
 import java.util.*;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import static org.neo4j.spatial.neo4j.CRSConverter.toNeo4jCRS;
 
 public class UserDefinedFunctions {
 
+    static final PreparedGeometryCache preparedPolygons = new PreparedGeometryCache(Long.getLong(PreparedGeometryCache.MAX_VERTICES_PROPERTY, PreparedGeometryCache.DEFAULT_MAX_VERTICES));
+
     @Context
     public Log log;
     
     @Context
     public Transaction tx;
 
+    @Context
+    public GraphDatabaseService db;
+
     @UserFunction("spatial.polygon")
     public List<Point> makePolygon(@Name("points") List<Point> points) {
         if (points == null || points.size() < 3) {
@@ -48,43 +56,36 @@ public class UserDefinedFunctions {
     }
 
     // TODO write tests
-    @Description( "Creates a polygon as a Point[] property named 'polygon' on the node" )
+    @Description( "Creates a polygon as a Point[] property named 'polygon' on the node, and optionally simplified levels of detail named 'polygon_lod1', 'polygon_lod2', ... for the given increasing tolerances, in meters for geographic points and in coordinate units for Cartesian points. With format 'compact' the points are stored as a delta encoded byte[] instead" )
     @Procedure(name = "spatial.osm.property.createPolygon", mode = Mode.WRITE)
-    public Stream<PointArraySizeResult> createArrayCache(@Name("main") Node main) {
-        Map<String, Object> parameters = new HashMap<>();
-        parameters.put("main", main.getId());
+    public Stream<PointArraySizeResult> createArrayCache(
+            @Name("main") Node main,
+            @Name(value = "tolerances", defaultValue = "[]") List<Double> tolerances,
+            @Name(value = "format", defaultValue = "points") String formatName) {
+        PointArrayFormat format = PointArrayFormat.fromName(formatName);
+        double[] levels = OSMGeometryWriter.levels(tolerances);
         long relation_osm_id = (long) main.getProperty("relation_osm_id");
-
-        Result mainResult = tx.execute("MATCH (p:Polygon)<-[:POLYGON_STRUCTURE*]-(m:OSMRelation) WHERE id(m)=$main RETURN p AS polygonNode", parameters);
-        if (!mainResult.hasNext()) {
-            throw new IllegalArgumentException("No polygon structure found - does " + main + " really have :POLYGON_STRUCTURE relationships? Perhaps you have not run spatial.osm.graph.createPolygon(" + main + ") yet?");
-        }
-
-        List<PointArraySizeResult> result = new ArrayList<>();
-        while (mainResult.hasNext()) {
-            Node polygonNode = (Node) mainResult.next().get("polygonNode");
-
-            parameters = new HashMap<>();
-            parameters.put("polygonNode", polygonNode.getId());
-            Result startNodeResult = tx.execute("MATCH (p:Polygon)-[:POLYGON_START]->(:OSMWay)-[:FIRST_NODE]->(n:OSMWayNode) WHERE id(p)=$polygonNode RETURN n AS startNode", parameters);
-
-            if (!startNodeResult.hasNext()) {
-                throw new IllegalArgumentException("Broken polygon structure found - polygon " + polygonNode + " is missing a ':POLYGON_START' relationship to an 'OSMWay' node");
-            }
-
-            Node startNode = (Node) startNodeResult.next().get("startNode");
-            Neo4jSimpleGraphNodePolygon polygon = new Neo4jSimpleGraphNodePolygon(startNode, relation_osm_id);
-            Point[] polygonPoints = Arrays.stream(polygon.getPoints()).map(p -> Values.pointValue(CoordinateReferenceSystem.WGS84, p.getCoordinate())).toArray(Point[]::new);
-            result.add(new PointArraySizeResult(polygonNode.getId(), polygonPoints.length));
-            polygonNode.setProperty("polygon", polygonPoints);
-        }
-        return result.stream();
+        Result mainResult = OSMGeometryWriter.findPolygonNodes(tx, main);
+        // The levels of the old polygons are removed now, and the new ones are written after the last row
+        OSMGeometryWriter.removePolygonLevels(main);
+
+        List<Node> polygonNodes = new ArrayList<>();
+        return ResultStreams.stream(mainResult, row -> {
+            Node polygonNode = (Node) row.get("polygonNode");
+            org.neo4j.spatial.core.Point[] polygonPoints = OSMGeometryWriter.writePolygonProperty(tx, relation_osm_id, polygonNode, format);
+            polygonNodes.add(polygonNode);
+            return Stream.of(new PointArraySizeResult(polygonNode.getId(), polygonPoints.length));
+        }, () -> OSMGeometryWriter.writePolygonLevels(main, polygonNodes, levels, format));
     }
 
     // TODO write tests
-    @Description( "Creates a polyline as a Point[] property named 'polyline' on the node" )
+    @Description( "Creates a polyline as a Point[] property named 'polyline' on the node. With format 'compact' the points are stored as a delta encoded byte[] instead. With lengths true the cumulative length in meters up to every point is also stored as 'polyline_lengths', and only used while the points are unchanged" )
     @Procedure(name = "spatial.osm.property.createPolyline", mode = Mode.WRITE)
-    public Stream<PointArraySizeResult> createArrayLine(@Name("main") Node main) {
+    public Stream<PointArraySizeResult> createArrayLine(
+            @Name("main") Node main,
+            @Name(value = "format", defaultValue = "points") String formatName,
+            @Name(value = "lengths", defaultValue = "false") boolean lengths) {
+        PointArrayFormat format = PointArrayFormat.fromName(formatName);
         Map<String, Object> parameters = new HashMap<>();
         parameters.put("main", main.getId());
         long relation_osm_id = (long) main.getProperty("relation_osm_id");
@@ -94,14 +95,12 @@ public class UserDefinedFunctions {
             throw new IllegalArgumentException("No polyline structure found - does " + main + " really have :POLYLINE_STRUCTURE relationships? Perhaps you have not run spatial.osm.graph.createPolygon(" + main + ") yet?");
         }
 
-        // TODO: We could stream results from this iterator with a mapping function rather than building state
-        List<PointArraySizeResult> result = new ArrayList<>();
-        while (mainResult.hasNext()) {
-            Node polylineNode = (Node) mainResult.next().get("polylineNode");
+        return ResultStreams.stream(mainResult, row -> {
+            Node polylineNode = (Node) row.get("polylineNode");
 
-            parameters = new HashMap<>();
-            parameters.put("polylineNode", polylineNode.getId());
-            Result startNodeResult = tx.execute("MATCH (p:Polyline)-[:POLYLINE_START]->(n:OSMWayNode) WHERE id(p)=$polylineNode RETURN n AS startNode", parameters);
+            Map<String, Object> polylineParameters = new HashMap<>();
+            polylineParameters.put("polylineNode", polylineNode.getId());
+            Result startNodeResult = tx.execute("MATCH (p:Polyline)-[:POLYLINE_START]->(n:OSMWayNode) WHERE id(p)=$polylineNode RETURN n AS startNode", polylineParameters);
 
             if (!startNodeResult.hasNext()) {
                 throw new IllegalArgumentException("Broken polyline structure found - polyline " + polylineNode + " is missing a ':POLYLINE_START' relationship to an 'OSMWayNode' node");
@@ -109,18 +108,122 @@ public class UserDefinedFunctions {
 
             try {
                 Node startNode = (Node) startNodeResult.next().get("startNode");
-                Neo4jSimpleGraphNodePolyline polyline = new Neo4jSimpleGraphNodePolyline(startNode, relation_osm_id);
-                Point[] polylinePoints = Arrays.stream(polyline.getPoints()).map(p -> Values.pointValue(CoordinateReferenceSystem.WGS84, p.getCoordinate())).toArray(Point[]::new);
-                result.add(new PointArraySizeResult(polylineNode.getId(), polylinePoints.length));
-                polylineNode.setProperty("polyline", polylinePoints);
+                Neo4jSimpleGraphNodePolyline polyline = new Neo4jSimpleGraphNodePolyline(startNode, relation_osm_id, kernelTransaction(tx));
+                org.neo4j.spatial.core.Point[] polylinePoints = polyline.getPoints();
+                format.write(polylineNode, Neo4jArrayToInMemoryConverter.POLYLINE_PROPERTY, org.neo4j.spatial.core.CRS.WGS84, polylinePoints);
+                if (lengths) {
+                    writeArrayPolylineLengths(polylineNode);
+                } else {
+                    polylineNode.removeProperty(Neo4jArrayToInMemoryConverter.POLYLINE_LENGTHS_PROPERTY);
+                    polylineNode.removeProperty(Neo4jArrayToInMemoryConverter.POLYLINE_LENGTHS_FINGERPRINT_PROPERTY);
+                }
+                return Stream.of(new PointArraySizeResult(polylineNode.getId(), polylinePoints.length));
             } catch (Exception e) {
                 log.error("Failed to create polyline at " + polylineNode + ": " + e.getMessage());
                 e.printStackTrace();
+                return Stream.empty();
             }
+        });
+    }
+
+    @Description( "Creates a simplified copy of the 'polygon' properties of all polygons below the node, with the given tolerance in meters for geographic points and in coordinate units for Cartesian points" )
+    @Procedure(name = "spatial.osm.property.createSimplifiedPolygon", mode = Mode.WRITE)
+    public Stream<PointArraySizeResult> createSimplifiedArrayCache(
+            @Name("main") Node main,
+            @Name("tolerance") double tolerance,
+            @Name(value = "property", defaultValue = "polygon_simplified") String property,
+            @Name(value = "format", defaultValue = "points") String formatName) {
+        PointArrayFormat format = PointArrayFormat.fromName(formatName);
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("main", main.getId());
+
+        Result mainResult = tx.execute("MATCH (p:Polygon)<-[:POLYGON_STRUCTURE*]-(m:OSMRelation) WHERE id(m)=$main RETURN p AS polygonNode", parameters);
+        List<Node> polygonNodes = new ArrayList<>();
+        List<Polygon.SimplePolygon> polygons = new ArrayList<>();
+        while (mainResult.hasNext()) {
+            Node polygonNode = (Node) mainResult.next().get("polygonNode");
+            if (!polygonNode.hasProperty(Neo4jArrayToInMemoryConverter.POLYGON_PROPERTY)) {
+                throw new IllegalArgumentException("Polygon " + polygonNode + " has no 'polygon' property - perhaps you have not run spatial.osm.property.createPolygon(" + main + ") yet?");
+            }
+            polygonNodes.add(polygonNode);
+            polygons.add(Neo4jArrayToInMemoryConverter.convertToInMemoryPolygon(polygonNode));
+        }
+        if (polygons.isEmpty()) {
+            throw new IllegalArgumentException("No polygon structure found - does " + main + " really have :POLYGON_STRUCTURE relationships? Perhaps you have not run spatial.osm.graph.createPolygon(" + main + ") yet?");
+        }
+
+        int[] sizes = OSMGeometryWriter.writeSimplifiedPolygons(polygonNodes, polygons, tolerance, property, format);
+        List<PointArraySizeResult> result = new ArrayList<>();
+        for (int i = 0; i < sizes.length; i++) {
+            result.add(new PointArraySizeResult(polygonNodes.get(i).getId(), sizes[i]));
         }
         return result.stream();
     }
 
+    @Description( "Creates a simplified copy of the 'polyline' properties of all polylines below the node, with the given tolerance in meters for geographic points and in coordinate units for Cartesian points" )
+    @Procedure(name = "spatial.osm.property.createSimplifiedPolyline", mode = Mode.WRITE)
+    public Stream<PointArraySizeResult> createSimplifiedArrayLine(
+            @Name("main") Node main,
+            @Name("tolerance") double tolerance,
+            @Name(value = "property", defaultValue = "polyline_simplified") String property,
+            @Name(value = "format", defaultValue = "points") String formatName) {
+        PointArrayFormat format = PointArrayFormat.fromName(formatName);
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("main", main.getId());
+
+        Result mainResult = tx.execute("MATCH (p:Polyline)<-[:POLYLINE_STRUCTURE*]-(m:OSMRelation) WHERE id(m)=$main RETURN p AS polylineNode", parameters);
+        List<Node> polylineNodes = new ArrayList<>();
+        List<Polyline> polylines = new ArrayList<>();
+        while (mainResult.hasNext()) {
+            Node polylineNode = (Node) mainResult.next().get("polylineNode");
+            if (!polylineNode.hasProperty(Neo4jArrayToInMemoryConverter.POLYLINE_PROPERTY)) {
+                throw new IllegalArgumentException("Polyline " + polylineNode + " has no 'polyline' property - perhaps you have not run spatial.osm.property.createPolyline(" + main + ") yet?");
+            }
+            polylineNodes.add(polylineNode);
+            polylines.add(Neo4jArrayToInMemoryConverter.convertToInMemoryPolyline(polylineNode));
+        }
+        if (polylines.isEmpty()) {
+            throw new IllegalArgumentException("No polyline structure found - does " + main + " really have :POLYLINE_STRUCTURE relationships? Perhaps you have not run spatial.osm.graph.createPolygon(" + main + ") yet?");
+        }
+
+        Simplify calculator = SimplifyCalculator.getCalculator(polylines.get(0));
+        Polyline[] simplified = calculator.simplify(polylines.toArray(new Polyline[0]), tolerance);
+
+        List<PointArraySizeResult> result = new ArrayList<>();
+        for (int i = 0; i < simplified.length; i++) {
+            Node polylineNode = polylineNodes.get(i);
+            org.neo4j.spatial.core.Point[] polylinePoints = simplified[i].getPoints();
+            result.add(new PointArraySizeResult(polylineNode.getId(), polylinePoints.length));
+            format.write(polylineNode, property, polylinePoints);
+        }
+        return result.stream();
+    }
+
+    @Description( "Converts all point array properties of the polygons and polylines below the node to the given format, 'points' for Point[] or 'compact' for a delta encoded byte[]" )
+    @Procedure(name = "spatial.osm.property.convertFormat", mode = Mode.WRITE)
+    public Stream<PointArrayFormatResult> convertArrayFormat(
+            @Name("main") Node main,
+            @Name(value = "format", defaultValue = "compact") String formatName) {
+        PointArrayFormat format = PointArrayFormat.fromName(formatName);
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("main", main.getId());
+
+        Result mainResult = tx.execute("MATCH (p)<-[:POLYGON_STRUCTURE|POLYLINE_STRUCTURE*]-(m:OSMRelation) WHERE id(m)=$main RETURN DISTINCT p AS node", parameters);
+        return ResultStreams.stream(mainResult, row -> {
+            Node node = (Node) row.get("node");
+            List<PointArrayFormatResult> converted = new ArrayList<>();
+            for (Map.Entry<String, Object> property : node.getAllProperties().entrySet()) {
+                PointArrayFormat current = PointArrayFormat.of(property.getValue());
+                if (current != null && current != format) {
+                    org.neo4j.spatial.core.Point[] points = Neo4jArrayToInMemoryConverter.convertToInMemoryPoints(property.getValue());
+                    format.write(node, property.getKey(), points);
+                    converted.add(new PointArrayFormatResult(node.getId(), property.getKey(), points.length));
+                }
+            }
+            return converted.stream();
+        });
+    }
+
     @Procedure(name = "spatial.osm.graph.createPolygon.nodeId", mode = Mode.WRITE)
     public void createOSMGraphGeometries(
             @Name("mainId") Long mainId,
@@ -132,104 +235,412 @@ public class UserDefinedFunctions {
     public void createOSMGraphGeometries(
             @Name("main") Node main,
             @Name(value = "proximityThreshold", defaultValue = "250") double proximityThreshold) {
-        long id = (long) main.getProperty("relation_osm_id");
-
-        HashMap<String, Object> parameters = new HashMap<>();
-        parameters.put("id", id);
-        tx.execute("MATCH (m:OSMRelation)-[:POLYGON_STRUCTURE*]->(p:Polygon) WHERE m.relation_osm_id = $id DETACH DELETE p", parameters);
-        tx.execute("MATCH (m:OSMRelation)-[:POLYLINE_STRUCTURE*]->(p:Polyline) WHERE m.relation_osm_id = $id DETACH DELETE p", parameters);
-        //TODO fix this by deleting id from array (NEXT_IN_... & END_OF_POLYLINE)
-//        tx.execute("MATCH (:OSMWayNode)-[n:NEXT_IN_POLYGON]->(:OSMWayNode) DELETE n");
-//        tx.execute("MATCH (:OSMWayNode)-[n:NEXT_IN_POLYLINE]->(:OSMWayNode) DELETE n");
-//        tx.execute("MATCH (:OSMWayNode)-[n:END_OF_POLYLINE]->(:OSMWayNode) DELETE n");
-
-        Pair<List<List<Node>>, List<List<Node>>> geometries = OSMTraverser.traverseOSMGraph(tx, main, proximityThreshold);
-        List<List<Node>> polygons = geometries.first();
-        List<List<Node>> polylines = geometries.other();
-
-        // TODO: Old code would build from a superset of polygons and polylines, but this new code treats them separately - Verify!
-        if (!polygons.isEmpty()) {
-            log.info("Building " + polygons.size() + " polygons for node " + main + " with osm-id: " + id);
-            try {
-                new GraphPolygonBuilder(tx, main, polygons).build();
-            } catch (Exception e) {
-                log.error("Failed to build polygon/polyline structures for node id=" + main.getId() + ", osm-id=" + id + ": " + e.getMessage());
-                e.printStackTrace();
+        Pair<List<long[]>, List<long[]>> geometries = OSMTraverser.traverseOSMGraph(kernelTransaction(tx), main.getId(), proximityThreshold);
+        OSMGeometryWriter.buildGraphGeometries(tx, log, main, geometries);
+    }
+
+    @Description( "Creates graph polygons and polylines, like spatial.osm.graph.createPolygon, for every OSMRelation, or only for those with the given relation_osm_ids. The ways are traversed by a pool of threads in their own read transactions, and the structures are written in separate transactions of batchSize relations each, so the work is committed as it goes. Options are batchSize (default 100), threads (default the number of processors), proximityThreshold (default 250) and properties (default false) to also create the 'polygon' properties, like spatial.osm.property.createPolygon. With a job name every built relation is marked in the same transaction, and running the same job again skips the marked relations, so an interrupted build resumes after its last committed batch. Relations that failed are not marked, so they are tried again. With restart true all relations are built again, also when that run is interrupted and resumed. Returns a row for every committed batch" )
+    @Procedure(name = "spatial.osm.graph.createAllPolygons", mode = Mode.WRITE)
+    public Stream<BulkBuildResult> createAllOSMGraphGeometries(
+            @Name(value = "relationIds", defaultValue = "[]") List<Long> relationIds,
+            @Name(value = "options", defaultValue = "{}") Map<String, Object> options) {
+        int batchSize = ((Number) options.getOrDefault("batchSize", 100)).intValue();
+        int threads = ((Number) options.getOrDefault("threads", Runtime.getRuntime().availableProcessors())).intValue();
+        double proximityThreshold = ((Number) options.getOrDefault("proximityThreshold", 250)).doubleValue();
+        boolean properties = (Boolean) options.getOrDefault("properties", false);
+        String job = (String) options.get("job");
+        boolean restart = (Boolean) options.getOrDefault("restart", false);
+        long generation = job == null ? 0 : OSMBulkGeometryBuilder.startJob(db, job, proximityThreshold, properties, restart);
+
+        Set<Long> filter = new HashSet<>(relationIds);
+        List<Long> mains = new ArrayList<>();
+        long skipped = 0;
+        try (ResourceIterator<Node> relations = tx.findNodes(Label.label("OSMRelation"))) {
+            while (relations.hasNext()) {
+                Node relation = relations.next();
+                Object id = relation.getProperty("relation_osm_id", null);
+                if (id != null && (filter.isEmpty() || filter.contains(((Number) id).longValue()))) {
+                    if (job != null && OSMBulkGeometryBuilder.isBuilt(relation, job, generation)) {
+                        skipped++;
+                    } else {
+                        mains.add(relation.getId());
+                    }
+                }
             }
         }
-        if (!polylines.isEmpty()) {
-            log.info("Building " + polylines.size() + " polylines for node " + main + " with osm-id: " + id);
-            try {
-                // TODO: Can we not build polygons from multiple polylines?
-                new GraphPolylineBuilder(tx, main, polylines).build();
-            } catch (Exception e) {
-                log.error("Failed to build polygon/polyline structures for node id=" + main.getId() + ", osm-id=" + id + ": " + e.getMessage());
-                e.printStackTrace();
-            }
+        if (skipped > 0) {
+            log.info("Resuming job '" + job + "', skipping " + skipped + " relations that are already built");
+        }
+
+        OSMBulkGeometryBuilder builder = new OSMBulkGeometryBuilder(db, log, mains, batchSize, threads, proximityThreshold, properties, job, generation);
+        long alreadyBuilt = skipped;
+        return builder.stream().map(batch -> new BulkBuildResult(batch, alreadyBuilt));
+    }
+
+    @Description( "Stores the area in square meters, length in meters, number of distinct vertices (the closing vertex of a ring is not counted twice), envelope and centroid of the graph polygons and polylines of the node as the properties 'area', 'length', 'vertices', 'envelope_min', 'envelope_max' and 'centroid' on every Polygon and Polyline node, and the totals on the node itself. The points are native point properties, so they can be indexed. The attributes are kept up to date when the geometries are rebuilt" )
+    @Procedure(name = "spatial.osm.graph.createAttributes", mode = Mode.WRITE)
+    public Stream<GeometryAttributesResult> createGeometryAttributes(@Name("main") Node main) {
+        if (!main.hasRelationship(Direction.OUTGOING, Relation.POLYGON_STRUCTURE, Relation.POLYLINE_STRUCTURE)) {
+            throw new IllegalArgumentException("No polygon or polyline structure found - does " + main + " really have :POLYGON_STRUCTURE or :POLYLINE_STRUCTURE relationships? Perhaps you have not run spatial.osm.graph.createPolygon(" + main + ") yet?");
+        }
+        return GeometryAttributes.write(main, kernelTransaction(tx)).stream().map(GeometryAttributesResult::new);
+    }
+
+    @Description( "Covers the graph polygon of the node with at most 'maxCells' cells of a quad-tree over the whole world, down to 'maxLevel', and stores them as (:CoveringCell {cell})-[:COVERS {interior}]->(node). Points in interior cells are within the polygon, and only points in boundary cells need an exact test. The covering is kept up to date when the geometries are rebuilt. Create a unique constraint on :CoveringCell(cell) first, so that concurrent calls cannot create the same cell twice" )
+    @Procedure(name = "spatial.osm.graph.createCovering", mode = Mode.WRITE)
+    public Stream<CoveringResult> createCovering(
+            @Name("main") Node main,
+            @Name(value = "maxLevel", defaultValue = "16") long maxLevel,
+            @Name(value = "maxCells", defaultValue = "256") long maxCells) {
+        if (!main.hasRelationship(Direction.OUTGOING, Relation.POLYGON_STRUCTURE)) {
+            throw new IllegalArgumentException("No polygon structure found - does " + main + " really have :POLYGON_STRUCTURE relationships? Perhaps you have not run spatial.osm.graph.createPolygon(" + main + ") yet?");
+        }
+        CellCovering covering = GeometryCovering.write(tx, main, kernelTransaction(tx), (int) maxLevel, (int) maxCells);
+        return Stream.of(new CoveringResult(main, covering));
+    }
+
+    @UserFunction(name = "spatial.covering.cells")
+    @Description( "Returns the keys of the cells containing the point on every level down to 'maxLevel', to find the coverings around the point with MATCH (c:CoveringCell) WHERE c.cell IN spatial.covering.cells(point). The 'maxLevel' must be at least the 'maxLevel' the coverings were created with by spatial.osm.graph.createCovering, or their deepest cells are not found" )
+    public List<Long> getCoveringCells(@Name("point") Point point, @Name(value = "maxLevel", defaultValue = "16") long maxLevel) {
+        long[] cells = CellCovering.cellsContaining(CellCovering.WGS84_FRAME, asInMemoryPoint(point), (int) maxLevel);
+        return Arrays.stream(cells).boxed().collect(Collectors.toList());
+    }
+
+    @UserFunction(name = "spatial.osm.graph.covering.within")
+    @Description( "Tests if the point is within the graph polygon of the node, using the covering of spatial.osm.graph.createCovering, and reading the polygon only for points in boundary cells" )
+    public boolean withinCovering(@Name("main") Node main, @Name("point") Point point) {
+        org.neo4j.spatial.core.Point inMemoryPoint = asInMemoryPoint(point);
+        switch (GeometryCovering.read(main).classify(inMemoryPoint)) {
+            case INTERIOR:
+                return true;
+            case EXTERIOR:
+                return false;
+            default:
+                return WithinCalculator.within(getCachedGraphNodePolygon(main), inMemoryPoint);
         }
     }
 
     public static MultiPolygon getGraphNodePolygon(Node main) {
+        return getGraphNodePolygon(main, null);
+    }
+
+    /**
+     * @param ktx if not null, the polygons are walked directly with kernel cursors, see {@link WayNodeWalker}
+     */
+    public static MultiPolygon getGraphNodePolygon(Node main, KernelTransaction ktx) {
         long relationId = (long) main.getProperty("relation_osm_id");
         MultiPolygon multiPolygon = new MultiPolygon();
-        insertChildrenGraphNode(main, multiPolygon, relationId);
+        insertChildrenGraphNode(main, multiPolygon, relationId, ktx);
 
         return multiPolygon;
     }
 
+    static KernelTransaction kernelTransaction(Transaction tx) {
+        return ((InternalTransaction) tx).kernelTransaction();
+    }
+
     // TODO write tests
     @UserFunction(name = "spatial.osm.graph.polygonAsWKT")
     public String getGraphPolygonWKT(@Name("main") Node main) {
-        return getGraphNodePolygon(main).toWKT();
+        return getCachedGraphNodePolygon(main).toWKT();
+    }
+
+    /**
+     * The cache is shared by all transactions, so it is neither read nor populated by a transaction with uncommitted
+     * changes: those could be in what is loaded, and be seen by other transactions or survive a rollback, while a cached
+     * geometry would miss them.
+     *
+     * @return The geometry cache of the database, or null if it is disabled or must not be used by this transaction
+     */
+    private GeometryCache geometryCache() {
+        if (kernelTransaction(tx).dataRead().transactionStateHasChanges()) {
+            return null;
+        }
+        return GeometryCache.forDatabase(db.databaseName());
+    }
+
+    /**
+     * @return The polygon of the main node, from the geometry cache if it is enabled
+     */
+    private MultiPolygon getCachedGraphNodePolygon(Node main) {
+        GeometryCache cache = geometryCache();
+        if (cache == null) {
+            return getGraphNodePolygon(main, kernelTransaction(tx));
+        }
+        return cache.get(main.getId(), "graph", true, () -> new GeometryCache.Loaded(getGraphNodePolygon(main, kernelTransaction(tx)), getPolygonStructure(main)));
+    }
+
+    /**
+     * @return The polygon stored in the given property of the main node, from the geometry cache if it is enabled
+     */
+    private MultiPolygon getCachedArrayPolygon(Node main, String property) {
+        GeometryCache cache = geometryCache();
+        if (cache == null) {
+            return getArrayPolygon(main, property);
+        }
+        return cache.get(main.getId(), property, false, () -> new GeometryCache.Loaded(getArrayPolygon(main, property), getPolygonStructure(main)));
+    }
+
+    /**
+     * @return The ids of the main node and all polygon nodes below it
+     */
+    private static long[] getPolygonStructure(Node main) {
+        List<Long> ids = new ArrayList<>();
+        Deque<Node> stack = new ArrayDeque<>();
+        stack.push(main);
+        while (!stack.isEmpty()) {
+            Node node = stack.pop();
+            ids.add(node.getId());
+            for (Relationship polygonStructure : node.getRelationships(Direction.OUTGOING, Relation.POLYGON_STRUCTURE)) {
+                stack.push(polygonStructure.getEndNode());
+            }
+        }
+        return ids.stream().mapToLong(id -> id).toArray();
+    }
+
+    @Description( "Returns the hit and miss counts and the size of the geometry cache of the current database, or nothing if the cache is disabled" )
+    @Procedure(name = "spatial.cache.stats")
+    public Stream<CacheStatsResult> cacheStats() {
+        GeometryCache cache = GeometryCache.forDatabase(db.databaseName());
+        if (cache == null) {
+            return Stream.empty();
+        }
+        return Stream.of(new CacheStatsResult(cache));
+    }
+
+    @Description( "Removes all geometries from the geometry cache of the current database" )
+    @Procedure(name = "spatial.cache.clear")
+    public void cacheClear() {
+        GeometryCache cache = GeometryCache.forDatabase(db.databaseName());
+        if (cache != null) {
+            cache.clear();
+        }
     }
 
     public static MultiPolygon getArrayPolygon(Node main) {
+        return getArrayPolygon(main, Neo4jArrayToInMemoryConverter.POLYGON_PROPERTY);
+    }
+
+    public static MultiPolygon getArrayPolygon(Node main, String property) {
         MultiPolygon multiPolygon = new MultiPolygon();
-        insertChildrenArray(main, multiPolygon);
+        insertChildrenArray(main, multiPolygon, property);
 
         return multiPolygon;
     }
 
+    /**
+     * @return A pyramid over the levels of detail written by spatial.osm.property.createPolygon, which only reads a level from the store when it is needed
+     */
+    public static PolygonPyramid getArrayPolygonPyramid(Node main) {
+        double[] tolerances = (double[]) main.getProperty(Neo4jArrayToInMemoryConverter.POLYGON_LOD_TOLERANCES_PROPERTY, new double[0]);
+        return new PolygonPyramid(tolerances, level -> {
+            if (level == 0) {
+                return getArrayPolygon(main);
+            } else {
+                return getArrayPolygon(main, Neo4jArrayToInMemoryConverter.POLYGON_LOD_PROPERTY_PREFIX + level);
+            }
+        });
+    }
+
+    @UserFunction(name = "spatial.osm.property.lod.within")
+    @Description( "Tests if the point is within the polygon, reading the full resolution polygon only if the coarser levels of detail are not conclusive" )
+    public boolean withinArrayPolygonPyramid(@Name("main") Node main, @Name("point") Point point) {
+        return getArrayPolygonPyramid(main).within(asInMemoryPoint(point));
+    }
+
+    @UserFunction(name = "spatial.osm.property.lod.withinDistance")
+    @Description( "Tests if the point is within the distance (in meters) of the polygon, reading the full resolution polygon only if the coarser levels of detail are not conclusive" )
+    public boolean withinDistanceArrayPolygonPyramid(@Name("main") Node main, @Name("point") Point point, @Name("distance") double distance) {
+        return getArrayPolygonPyramid(main).withinDistance(asInMemoryPoint(point), distance);
+    }
+
+    @UserFunction(name = "spatial.osm.property.lod.intersects")
+    @Description( "Tests if the polyline crosses or is within the polygon, reading the full resolution polygon only if the coarser levels of detail are not conclusive" )
+    public boolean intersectsArrayPolygonPyramid(@Name("main") Node main, @Name("polyline") List<Point> polyline) {
+        if (polyline == null || polyline.size() < 2) {
+            throw new IllegalArgumentException("Invalid 'polyline', should be a list of at least 2, but was: " + (polyline == null ? "null" : polyline.size()));
+        }
+        return getArrayPolygonPyramid(main).intersects(Polyline.polyline(asInMemoryPoints(polyline)));
+    }
+
     // TODO write tests
     @UserFunction(name = "spatial.osm.property.polygonAsWKT")
-    public String getArrayPolygonWKT(@Name("main") Node main) {
-        return getArrayPolygon(main).toWKT();
+    public String getArrayPolygonWKT(
+            @Name("main") Node main,
+            @Name(value = "property", defaultValue = "polygon") String property) {
+        return getCachedArrayPolygon(main, property).toWKT();
     }
 
     // TODO write tests
     @UserFunction(name = "spatial.osm.property.polygonShell")
     public List<Point> getArrayPolygonShell(@Name("main") Node main) {
-        org.neo4j.spatial.core.Point[] mainPoints = getArrayPolygon(main).getShell().getPoints();
+        org.neo4j.spatial.core.Point[] mainPoints = getCachedArrayPolygon(main, Neo4jArrayToInMemoryConverter.POLYGON_PROPERTY).getShell().getPoints();
         return asNeo4jPoints(toNeo4jCRS(mainPoints[0].getCRS()), mainPoints);
     }
 
     // TODO write tests
     @UserFunction(name = "spatial.osm.graph.polygonShell")
     public List<Point> getGraphPolygonShell(@Name("main") Node main) {
-        org.neo4j.spatial.core.Point[] mainPoints = getGraphNodePolygon(main).getShell().getPoints();
+        org.neo4j.spatial.core.Point[] mainPoints = getCachedGraphNodePolygon(main).getShell().getPoints();
         return asNeo4jPoints(toNeo4jCRS(mainPoints[0].getCRS()), mainPoints);
     }
 
     public static MultiPolyline getArrayPolyline(Node main) {
-        long relationId = (long) main.getProperty("relation_osm_id");
+        return getArrayPolyline(main, Neo4jArrayToInMemoryConverter.POLYLINE_PROPERTY);
+    }
+
+    public static MultiPolyline getArrayPolyline(Node main, String property) {
         MultiPolyline multiPolyline = new MultiPolyline();
 
         for (Relationship relationship : main.getRelationships(Direction.OUTGOING, Relation.POLYLINE_STRUCTURE)) {
             Node start = relationship.getEndNode();
-            Polyline polyline = Neo4jArrayToInMemoryConverter.convertToInMemoryPolyline(start);
+            Polyline polyline = new Neo4jArrayPolyline(start, property);
             multiPolyline.insertPolyline(polyline);
         }
 
         return multiPolyline;
     }
 
+    /**
+     * @return An index over the 'polyline' property of a Polyline node, using the lengths stored by spatial.osm.property.createPolyline if they still match the points
+     */
+    public static CumulativeLengthIndex getArrayPolylineLengths(Node polylineNode) {
+        org.neo4j.spatial.core.Point[] points = new Neo4jArrayPolyline(polylineNode, Neo4jArrayToInMemoryConverter.POLYLINE_PROPERTY).getPoints();
+        Object lengths = polylineNode.getProperty(Neo4jArrayToInMemoryConverter.POLYLINE_LENGTHS_PROPERTY, null);
+        Object fingerprint = polylineNode.getProperty(Neo4jArrayToInMemoryConverter.POLYLINE_LENGTHS_FINGERPRINT_PROPERTY, null);
+        // Edits that keep the number of points would otherwise leave stale lengths, so they are only used for the same points
+        if (lengths instanceof double[] && ((double[]) lengths).length == points.length
+                && fingerprint instanceof Long && (Long) fingerprint == fingerprint(points)) {
+            return new CumulativeLengthIndex(points, (double[]) lengths);
+        }
+        return new CumulativeLengthIndex(points);
+    }
+
+    /**
+     * Store the cumulative lengths of the 'polyline' property of a Polyline node, together with a fingerprint of the
+     * points as they are read back, so that the lengths are not used after the points change
+     */
+    static void writeArrayPolylineLengths(Node polylineNode) {
+        org.neo4j.spatial.core.Point[] points = new Neo4jArrayPolyline(polylineNode, Neo4jArrayToInMemoryConverter.POLYLINE_PROPERTY).getPoints();
+        polylineNode.setProperty(Neo4jArrayToInMemoryConverter.POLYLINE_LENGTHS_PROPERTY, CumulativeLengthIndex.cumulativeLengths(points));
+        polylineNode.setProperty(Neo4jArrayToInMemoryConverter.POLYLINE_LENGTHS_FINGERPRINT_PROPERTY, fingerprint(points));
+    }
+
+    /**
+     * @return A hash of all coordinates of the points
+     */
+    private static long fingerprint(org.neo4j.spatial.core.Point[] points) {
+        long hash = points.length;
+        for (org.neo4j.spatial.core.Point point : points) {
+            for (double coordinate : point.getCoordinate()) {
+                hash = 31 * hash + Double.doubleToLongBits(coordinate);
+            }
+        }
+        return hash;
+    }
+
+    @UserFunction(name = "spatial.osm.property.polyline.locate")
+    @Description( "Finds the point at the distance (in meters) along the 'polyline' property of a Polyline node, or null if the polyline is shorter" )
+    public Point locateOnArrayPolyline(@Name("polyline") Node polylineNode, @Name("distance") double distance) {
+        org.neo4j.spatial.core.Point point = getArrayPolylineLengths(polylineNode).locate(distance);
+        return point == null ? null : asNeo4jPoint(point);
+    }
+
+    @UserFunction(name = "spatial.osm.property.polyline.locateAll")
+    @Description( "Finds the points at the distances (in meters) along the 'polyline' property of a Polyline node in one pass, with null for distances beyond the polyline" )
+    public List<Point> locateAllOnArrayPolyline(@Name("polyline") Node polylineNode, @Name("distances") List<Double> distances) {
+        double[] d = new double[distances.size()];
+        for (int i = 0; i < d.length; i++) {
+            d[i] = distances.get(i);
+        }
+        List<Point> result = new ArrayList<>(d.length);
+        for (org.neo4j.spatial.core.Point point : getArrayPolylineLengths(polylineNode).locate(d)) {
+            result.add(point == null ? null : asNeo4jPoint(point));
+        }
+        return result;
+    }
+
+    @Description( "Projects the points, like a GPS trace, onto the closest of the 'polyline' properties below the node, returning the measure in meters along that polyline and the offset in meters from it" )
+    @Procedure(name = "spatial.osm.property.polyline.project")
+    public Stream<ProjectionResult> projectOnArrayPolylines(@Name("main") Node main, @Name("points") List<Point> points) {
+        Map<Long, CumulativeLengthIndex> polylines = new LinkedHashMap<>();
+        for (Relationship relationship : main.getRelationships(Direction.OUTGOING, Relation.POLYLINE_STRUCTURE)) {
+            Node polylineNode = relationship.getEndNode();
+            polylines.put(polylineNode.getId(), getArrayPolylineLengths(polylineNode));
+        }
+        return project(polylines, points);
+    }
+
+    @Description( "Projects the points, like a GPS trace, onto the closest of the graph polylines below the node, returning the measure in meters along that polyline and the offset in meters from it" )
+    @Procedure(name = "spatial.osm.graph.polyline.project")
+    public Stream<ProjectionResult> projectOnGraphPolylines(@Name("main") Node main, @Name("points") List<Point> points) {
+        long relationId = (long) main.getProperty("relation_osm_id");
+        Map<Long, CumulativeLengthIndex> polylines = new LinkedHashMap<>();
+        for (Relationship relationship : main.getRelationships(Direction.OUTGOING, Relation.POLYLINE_STRUCTURE)) {
+            Node polylineNode = relationship.getEndNode();
+            Node start = polylineNode.getSingleRelationship(Relation.POLYLINE_START, Direction.OUTGOING).getEndNode();
+            polylines.put(polylineNode.getId(), new CumulativeLengthIndex(new Neo4jSimpleGraphNodePolyline(start, relationId, kernelTransaction(tx))));
+        }
+        return project(polylines, points);
+    }
+
+    private Stream<ProjectionResult> project(Map<Long, CumulativeLengthIndex> polylines, List<Point> points) {
+        if (polylines.isEmpty()) {
+            throw new IllegalArgumentException("No polyline structure found - does the node really have :POLYLINE_STRUCTURE relationships?");
+        }
+        org.neo4j.spatial.core.Point[] trace = asInMemoryPoints(points);
+        CumulativeLengthIndex.Projection[] closest = new CumulativeLengthIndex.Projection[trace.length];
+        long[] closestNode = new long[trace.length];
+        for (Map.Entry<Long, CumulativeLengthIndex> polyline : polylines.entrySet()) {
+            CumulativeLengthIndex.Projection[] projections = polyline.getValue().project(trace);
+            for (int i = 0; i < trace.length; i++) {
+                if (closest[i] == null || projections[i].offset < closest[i].offset) {
+                    closest[i] = projections[i];
+                    closestNode[i] = polyline.getKey();
+                }
+            }
+        }
+        List<ProjectionResult> result = new ArrayList<>(trace.length);
+        for (int i = 0; i < trace.length; i++) {
+            result.add(new ProjectionResult(i, closestNode[i], closest[i].measure, closest[i].offset, asNeo4jPoint(closest[i].point)));
+        }
+        return result.stream();
+    }
+
+    @Description( "Computes the area in square meters, perimeter in meters, envelope, centroid and convex hull of the graph polygon of the node, in a single pass over its way nodes without loading the points of whole rings" )
+    @Procedure("spatial.osm.graph.polygonAggregates")
+    public Stream<GeometryAggregatesResult> graphPolygonAggregates(@Name("main") Node main) {
+        MultiPolygon multiPolygon = getGraphNodePolygon(main, kernelTransaction(tx));
+        if (multiPolygon.getChildren().isEmpty()) {
+            throw new IllegalArgumentException("No polygon structure found - does " + main + " really have :POLYGON_STRUCTURE relationships? Perhaps you have not run spatial.osm.graph.createPolygon(" + main + ") yet?");
+        }
+        return Stream.of(new GeometryAggregatesResult(GeometryConsumer.consume(multiPolygon, GeometryAggregatesCalculator.getCalculator(multiPolygon))));
+    }
+
+    @Description( "Computes the length in meters, envelope, centroid and convex hull of the graph polylines of the node, in a single pass over their way nodes without loading the points of whole polylines" )
+    @Procedure("spatial.osm.graph.polylineAggregates")
+    public Stream<GeometryAggregatesResult> graphPolylineAggregates(@Name("main") Node main) {
+        MultiPolyline multiPolyline = getGraphNodePolyline(main, kernelTransaction(tx));
+        if (multiPolyline.getChildren().length == 0) {
+            throw new IllegalArgumentException("No polyline structure found - does " + main + " really have :POLYLINE_STRUCTURE relationships? Perhaps you have not run spatial.osm.graph.createPolygon(" + main + ") yet?");
+        }
+        return Stream.of(new GeometryAggregatesResult(GeometryConsumer.consume(multiPolyline, GeometryAggregatesCalculator.getCalculator(multiPolyline))));
+    }
+
     public static MultiPolyline getGraphNodePolyline(Node main) {
+        return getGraphNodePolyline(main, null);
+    }
+
+    /**
+     * @param ktx if not null, the polylines are walked directly with kernel cursors, see {@link WayNodeWalker}
+     */
+    public static MultiPolyline getGraphNodePolyline(Node main, KernelTransaction ktx) {
         long relationId = (long) main.getProperty("relation_osm_id");
         MultiPolyline multiPolyline = new MultiPolyline();
 
         for (Relationship relationship : main.getRelationships(Direction.OUTGOING, Relation.POLYLINE_STRUCTURE)) {
             Node start = relationship.getEndNode().getSingleRelationship(Relation.POLYLINE_START, Direction.OUTGOING).getEndNode();
-            Polyline polyline = new Neo4jSimpleGraphNodePolyline(start, relationId);
+            Polyline polyline = new Neo4jSimpleGraphNodePolyline(start, relationId, ktx);
             multiPolyline.insertPolyline(polyline);
         }
 
@@ -238,31 +649,39 @@ public class UserDefinedFunctions {
 
     @UserFunction(name = "spatial.osm.graph.polylineAsWKT")
     public String getGraphPolylineWKT(@Name("main") Node main) {
-        return getGraphNodePolyline(main).toWKT();
+        return getGraphNodePolyline(main, kernelTransaction(tx)).toWKT();
     }
 
     public static void insertChildrenGraphNode(Node node, MultiPolygon multiPolygon, long relationId) {
+        insertChildrenGraphNode(node, multiPolygon, relationId, null);
+    }
+
+    public static void insertChildrenGraphNode(Node node, MultiPolygon multiPolygon, long relationId, KernelTransaction ktx) {
         for (Relationship polygonStructure : node.getRelationships(Direction.OUTGOING, Relation.POLYGON_STRUCTURE)) {
             Node child = polygonStructure.getEndNode();
             Node start = child.getSingleRelationship(Relation.POLYGON_START, Direction.OUTGOING).getEndNode().getSingleRelationship(Relation.FIRST_NODE, Direction.OUTGOING).getEndNode();
 
-            Polygon.SimplePolygon polygon = new Neo4jSimpleGraphNodePolygon(start, relationId);
+            Polygon.SimplePolygon polygon = new Neo4jSimpleGraphNodePolygon(start, relationId, ktx);
             MultiPolygon.MultiPolygonNode childNode = new MultiPolygon.MultiPolygonNode(polygon);
             multiPolygon.addChild(childNode);
 
-            insertChildrenGraphNode(child, childNode, relationId);
+            insertChildrenGraphNode(child, childNode, relationId, ktx);
         }
     }
 
     public static void insertChildrenArray(Node node, MultiPolygon multiPolygon) {
+        insertChildrenArray(node, multiPolygon, Neo4jArrayToInMemoryConverter.POLYGON_PROPERTY);
+    }
+
+    public static void insertChildrenArray(Node node, MultiPolygon multiPolygon, String property) {
         for (Relationship polygonStructure : node.getRelationships(Direction.OUTGOING, Relation.POLYGON_STRUCTURE)) {
             Node child = polygonStructure.getEndNode();
 
-            Polygon.SimplePolygon polygon = Neo4jArrayToInMemoryConverter.convertToInMemoryPolygon(child);
+            Polygon.SimplePolygon polygon = new Neo4jArraySimplePolygon(child, property);
             MultiPolygon.MultiPolygonNode childNode = new MultiPolygon.MultiPolygonNode(polygon);
             multiPolygon.addChild(childNode);
 
-            insertChildrenArray(child, childNode);
+            insertChildrenArray(child, childNode, property);
         }
     }
 
@@ -289,16 +708,15 @@ public class UserDefinedFunctions {
             throw new IllegalArgumentException("Illegal algorithm variant. Choose 'Naive' or 'MCSweepLine'");
         }
 
-        List<org.neo4j.spatial.core.Point> result = new ArrayList<>();
-        Polygon polygon = getGraphNodePolygon(polygonMain);
-        MultiPolyline multiPolyline = getGraphNodePolyline(polylineMain);
+        Polygon polygon = getGraphNodePolygon(polygonMain, kernelTransaction(tx));
+        MultiPolyline multiPolyline = getGraphNodePolyline(polylineMain, kernelTransaction(tx));
 
         Intersect calculator = IntersectCalculator.getCalculator(polygon, variant);
 
-        for (Polyline polyline : multiPolyline.getChildren()) {
-            Collections.addAll(result, calculator.intersect(polygon, polyline));
-        }
-        return result.stream().map(a -> new PointResult(asNeo4jPoint(a)));
+        // The intersections of every polyline are only computed when the client has consumed those of the previous one
+        return Arrays.stream(multiPolyline.getChildren())
+                .flatMap(polyline -> Arrays.stream(calculator.intersect(polygon, polyline)))
+                .map(a -> new PointResult(asNeo4jPoint(a)));
     }
 
     @UserFunction("spatial.boundingBox")
@@ -309,16 +727,19 @@ public class UserDefinedFunctions {
             throw new IllegalArgumentException("Invalid 'polygon', first and last point should be the same, but were: " + polygon.get(0) + " and " + polygon.get(polygon.size() - 1));
         } else {
             CRS crs = polygon.get(0).getCRS();
-            double[] min = asInMemoryPoint(polygon.get(0)).getCoordinate();
-            double[] max = asInMemoryPoint(polygon.get(0)).getCoordinate();
-            for (Point p : polygon) {
-                double[] vertex = asInMemoryPoint(p).getCoordinate();
-                for (int i = 0; i < vertex.length; i++) {
-                    if (vertex[i] < min[i]) {
-                        min[i] = vertex[i];
+            PackedCoordinateSequence coordinates = Neo4jPoints.pack(polygon);
+            double[] min = new double[coordinates.dimension()];
+            double[] max = new double[coordinates.dimension()];
+            Arrays.fill(min, Double.POSITIVE_INFINITY);
+            Arrays.fill(max, Double.NEGATIVE_INFINITY);
+            for (int index = 0; index < coordinates.size(); index++) {
+                for (int i = 0; i < min.length; i++) {
+                    double value = coordinates.getCoordinate(index, i);
+                    if (value < min[i]) {
+                        min[i] = value;
                     }
-                    if (vertex[i] > max[i]) {
-                        max[i] = vertex[i];
+                    if (value > max[i]) {
+                        max[i] = value;
                     }
                 }
             }
@@ -330,6 +751,7 @@ public class UserDefinedFunctions {
     }
 
     @UserFunction("spatial.algo.withinPolygon")
+    @Description( "Tests if the point is within the polygon, with straight edges between the coordinates, also for geographic points. The polygon is prepared once and reused while the same polygon is passed again, so testing many points against one polygon only costs the point tests" )
     public boolean withinPolygon(@Name("point") Point point, @Name("polygon") List<Point> polygon) {
         if (polygon == null || polygon.size() < 4) {
             throw new IllegalArgumentException("Invalid 'polygon', should be a list of at least 4, but was: " + polygon.size());
@@ -341,12 +763,28 @@ public class UserDefinedFunctions {
             if (!polyCrs.equals(pointCrs)) {
                 throw new IllegalArgumentException("Cannot compare geometries of different CRS: " + polyCrs + " !+ " + pointCrs);
             } else {
-                Polygon.SimplePolygon geometry = Polygon.simple(asInMemoryPoints(polygon));
-                return CartesianWithin.within(geometry, asInMemoryPoint(point));
+                PreparedPolygon prepared = preparedPolygons.get(polygon, () -> PreparedPolygon.preparePlanar(Polygon.simple(asInMemoryPoints(polygon))));
+                return prepared.within(asInMemoryPoint(point));
             }
         }
     }
 
+    @UserFunction("spatial.algo.simplify")
+    @Description( "Simplifies a polyline, or a polygon if the first and last points are equal, keeping no vertex further than the tolerance away. The tolerance is in meters for geographic points and in coordinate units for Cartesian points." )
+    public List<Point> simplify(@Name("points") List<Point> points, @Name("tolerance") double tolerance) {
+        if (points == null || points.size() < 2) {
+            throw new IllegalArgumentException("Invalid 'points', should be a list of at least 2, but was: " + (points == null ? "null" : points.size()));
+        }
+        CRS crs = points.get(0).getCRS();
+        org.neo4j.spatial.core.Point[] converted = asInMemoryPoints(points);
+        Simplify calculator = SimplifyCalculator.getCalculator(converted[0]);
+        if (points.size() >= 4 && points.get(0).equals(points.get(points.size() - 1))) {
+            return asNeo4jPoints(crs, calculator.simplify(Polygon.simple(converted), tolerance).getPoints());
+        } else {
+            return asNeo4jPoints(crs, calculator.simplify(Polyline.polyline(converted), tolerance).getPoints());
+        }
+    }
+
     @UserFunction("spatial.algo.convexHull")
     public List<Point> convexHullPoints(@Name("points") List<Point> points) {
         Polygon.SimplePolygon convexHull = CartesianConvexHull.convexHull(asInMemoryPoints(points));
@@ -354,10 +792,34 @@ public class UserDefinedFunctions {
         return asNeo4jPoints(CoordinateReferenceSystem.WGS84, convexHull.getPoints());
     }
 
+    @UserAggregationFunction("spatial.algo.aggregate.envelope")
+    @Description( "Aggregates points into a map with the 'min' and 'max' corners of their envelope, keeping only the corners instead of collecting the points" )
+    public EnvelopeAggregator envelopeAggregate() {
+        return new EnvelopeAggregator();
+    }
+
+    @UserAggregationFunction("spatial.algo.aggregate.convexHull")
+    @Description( "Aggregates points into their convex hull, keeping only the points of the hull and a bounded batch of points instead of collecting all points. Geographic points must lie on one hemisphere, in any order" )
+    public ConvexHullAggregator convexHullAggregate() {
+        return new ConvexHullAggregator();
+    }
+
+    @UserAggregationFunction("spatial.algo.aggregate.centroid")
+    @Description( "Aggregates points into their centroid, which for geographic points is the normalized mean of their directions from the center of the earth" )
+    public CentroidAggregator centroidAggregate() {
+        return new CentroidAggregator();
+    }
+
+    @UserAggregationFunction("spatial.algo.aggregate.count")
+    @Description( "Counts the points that the other spatial.algo.aggregate functions would aggregate, ignoring nulls and checking that all points have the same CRS" )
+    public CountAggregator countAggregate() {
+        return new CountAggregator();
+    }
+
     // TODO: write tests
     @UserFunction("spatial.algo.property.convexHull")
     public List<Point> convexHullArray(@Name("main") Node main) {
-        MultiPolygon multiPolygon = getArrayPolygon(main);
+        MultiPolygon multiPolygon = getCachedArrayPolygon(main, Neo4jArrayToInMemoryConverter.POLYGON_PROPERTY);
         Polygon.SimplePolygon convexHull = CartesianConvexHull.convexHull(multiPolygon);
 
         return asNeo4jPoints(CoordinateReferenceSystem.WGS84, convexHull.getPoints());
@@ -366,7 +828,7 @@ public class UserDefinedFunctions {
     // TODO: write tests
     @UserFunction("spatial.algo.graph.convexHull")
     public List<Point> convexHullGraphNode(@Name("main") Node main) {
-        MultiPolygon multiPolygon = getGraphNodePolygon(main);
+        MultiPolygon multiPolygon = getCachedGraphNodePolygon(main);
         Polygon.SimplePolygon convexHull = WGS84ConvexHull.convexHull(multiPolygon);
 
         return asNeo4jPoints(CoordinateReferenceSystem.WGS84, convexHull.getPoints());
@@ -478,61 +940,173 @@ public class UserDefinedFunctions {
     }
 
 
-    private org.neo4j.spatial.core.Point[] asInMemoryPoints(List<Point> polygon) {
-        org.neo4j.spatial.core.Point[] points = new org.neo4j.spatial.core.Point[polygon.size()];
-        for (int i = 0; i < points.length; i++) {
-            points[i] = asInMemoryPoint(polygon.get(i));
-        }
-        return points;
+    private org.neo4j.spatial.core.Point[] asInMemoryPoints(List<Point> points) {
+        return Neo4jPoints.asInMemoryPoints(points);
     }
 
     private org.neo4j.spatial.core.Point asInMemoryPoint(Point point) {
-        List<Double> coordinates = point.getCoordinate().getCoordinate();
-        double[] coords = new double[coordinates.size()];
-        for (int i = 0; i < coords.length; i++) {
-            coords[i] = coordinates.get(i);
-        }
-        org.neo4j.spatial.core.CRS crs = CRSConverter.toInMemoryCRS(point.getCRS());
-        return org.neo4j.spatial.core.Point.point(crs, coords);
+        return Neo4jPoints.asInMemoryPoint(point);
     }
 
     private List<Point> asNeo4jPoints(CRS crs, org.neo4j.spatial.core.Point[] points) {
-        List<Point> converted = new ArrayList<>();
-        for (int i = 0; i < points.length; i++) {
-            converted.add(asNeo4jPoint(crs, points[i]));
-        }
-        return converted;
+        return Neo4jPoints.asNeo4jPoints(crs, points);
     }
 
     private Point asNeo4jPoint(CRS crs, org.neo4j.spatial.core.Point point) {
-        return new Neo4jPoint(crs, new Coordinate(point.getCoordinate()));
+        return Neo4jPoints.asNeo4jPoint(crs, point);
     }
 
     private Point asNeo4jPoint(org.neo4j.spatial.core.Point point) {
-        return new Neo4jPoint(toNeo4jCRS(point.getCRS()), new Coordinate(point.getCoordinate()));
+        return Neo4jPoints.asNeo4jPoint(toNeo4jCRS(point.getCRS()), point);
     }
 
     private Point asNeo4jPoint(CRS crs, double[] coords) {
-        return new Neo4jPoint(crs, new Coordinate(coords));
+        return Neo4jPoints.asNeo4jPoint(crs, coords);
+    }
+
+    /**
+     * The state of the spatial.algo.aggregate functions, which all points must share the CRS of the first point with.
+     * Every aggregator keeps only what its result needs.
+     */
+    public abstract class PointAggregator {
+        protected org.neo4j.spatial.core.CRS crs;
+
+        protected void add(Point point) {
+            if (point == null) {
+                return;
+            }
+            org.neo4j.spatial.core.Point inMemoryPoint = asInMemoryPoint(point);
+            if (crs == null) {
+                crs = inMemoryPoint.getCRS();
+            } else if (crs != inMemoryPoint.getCRS()) {
+                throw new IllegalArgumentException("Cannot aggregate points of different CRS: " + crs + " != " + inMemoryPoint.getCRS());
+            }
+            add(inMemoryPoint);
+        }
+
+        protected abstract void add(org.neo4j.spatial.core.Point point);
+    }
+
+    public class EnvelopeAggregator extends PointAggregator {
+        private final double[] min = new double[]{Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY};
+        private final double[] max = new double[]{Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY};
+
+        @UserAggregationUpdate
+        public void update(@Name("point") Point point) {
+            add(point);
+        }
+
+        @Override
+        protected void add(org.neo4j.spatial.core.Point point) {
+            double[] coordinate = point.getCoordinate();
+            for (int i = 0; i < 2; i++) {
+                min[i] = Math.min(min[i], coordinate[i]);
+                max[i] = Math.max(max[i], coordinate[i]);
+            }
+        }
+
+        @UserAggregationResult
+        public Map<String, Point> result() {
+            if (crs == null) {
+                return null;
+            }
+            Map<String, Point> envelope = new HashMap<>();
+            envelope.put("min", asNeo4jPoint(org.neo4j.spatial.core.Point.point(crs, min[0], min[1])));
+            envelope.put("max", asNeo4jPoint(org.neo4j.spatial.core.Point.point(crs, max[0], max[1])));
+            return envelope;
+        }
     }
 
-    private class Neo4jPoint implements Point {
-        private final List<Coordinate> coordinates;
-        private final CRS crs;
+    public class ConvexHullAggregator extends PointAggregator {
+        private GeometryAggregates aggregates;
 
-        private Neo4jPoint(CRS crs, Coordinate coordinate) {
-            this.crs = crs;
-            this.coordinates = Arrays.asList(coordinate);
+        @UserAggregationUpdate
+        public void update(@Name("point") Point point) {
+            add(point);
         }
 
         @Override
-        public List<Coordinate> getCoordinates() {
-            return coordinates;
+        protected void add(org.neo4j.spatial.core.Point point) {
+            if (aggregates == null) {
+                aggregates = GeometryAggregatesCalculator.getCalculator(point);
+            }
+            aggregates.point(point);
+        }
+
+        @UserAggregationResult
+        public List<Point> result() {
+            if (aggregates == null) {
+                return null;
+            }
+            try {
+                return asNeo4jPoints(toNeo4jCRS(aggregates.getCRS()), aggregates.getConvexHull().getPoints());
+            } catch (IllegalStateException e) {
+                // Less than 3 points, or points on a line, have no convex hull
+                return null;
+            }
+        }
+    }
+
+    public class CentroidAggregator extends PointAggregator {
+        // Cartesian coordinates are summed relative to the first point, and geographic points as unit vectors
+        private double[] origin;
+        private double sumX;
+        private double sumY;
+        private long count;
+        private Vector moment = new Vector(0, 0, 0);
+
+        @UserAggregationUpdate
+        public void update(@Name("point") Point point) {
+            add(point);
         }
 
         @Override
-        public CRS getCRS() {
-            return crs;
+        protected void add(org.neo4j.spatial.core.Point point) {
+            if (crs == org.neo4j.spatial.core.CRS.WGS84) {
+                moment = moment.add(new Vector(point));
+                return;
+            }
+            double[] coordinate = point.getCoordinate();
+            if (origin == null) {
+                origin = coordinate;
+            }
+            sumX += coordinate[0] - origin[0];
+            sumY += coordinate[1] - origin[1];
+            count++;
+        }
+
+        @UserAggregationResult
+        public Point result() {
+            if (crs == org.neo4j.spatial.core.CRS.WGS84) {
+                return moment.magnitude() > 1e-12 ? asNeo4jPoint(moment.normalize().toPoint()) : null;
+            }
+            if (count == 0) {
+                return null;
+            }
+            return asNeo4jPoint(org.neo4j.spatial.core.Point.point(crs, origin[0] + sumX / count, origin[1] + sumY / count));
+        }
+    }
+
+    public class CountAggregator {
+        private CRS crs;
+        private long count;
+
+        @UserAggregationUpdate
+        public void update(@Name("point") Point point) {
+            if (point == null) {
+                return;
+            }
+            if (crs == null) {
+                crs = point.getCRS();
+            } else if (!crs.equals(point.getCRS())) {
+                throw new IllegalArgumentException("Cannot aggregate points of different CRS: " + crs + " != " + point.getCRS());
+            }
+            count++;
+        }
+
+        @UserAggregationResult
+        public long result() {
+            return count;
         }
     }
 
@@ -544,6 +1118,131 @@ public class UserDefinedFunctions {
         }
     }
 
+    public class ProjectionResult {
+        public long index;
+        public long node_id;
+        public double measure;
+        public double offset;
+        public Point point;
+
+        private ProjectionResult(long index, long node_id, double measure, double offset, Point point) {
+            this.index = index;
+            this.node_id = node_id;
+            this.measure = measure;
+            this.offset = offset;
+            this.point = point;
+        }
+    }
+
+    public class PointArrayFormatResult {
+        public long node_id;
+        public String property;
+        public long count;
+
+        private PointArrayFormatResult(long node_id, String property, long count) {
+            this.node_id = node_id;
+            this.property = property;
+            this.count = count;
+        }
+    }
+
+    public class CacheStatsResult {
+        public long hits;
+        public long misses;
+        public long evictions;
+        public long invalidations;
+        public long entries;
+        public long vertices;
+        public long max_vertices;
+
+        private CacheStatsResult(GeometryCache cache) {
+            this.hits = cache.getHits();
+            this.misses = cache.getMisses();
+            this.evictions = cache.getEvictions();
+            this.invalidations = cache.getInvalidations();
+            this.entries = cache.getEntryCount();
+            this.vertices = cache.getVertexCount();
+            this.max_vertices = cache.getMaxVertices();
+        }
+    }
+
+    public class BulkBuildResult {
+        public long batch;
+        public long relations;
+        public long polygons;
+        public long polylines;
+        public long failed;
+        public long skipped;
+        public long done;
+        public long total;
+        public long elapsed_ms;
+        public double relations_per_second;
+
+        private BulkBuildResult(OSMBulkGeometryBuilder.Batch batch, long skipped) {
+            this.batch = batch.number;
+            this.relations = batch.relations;
+            this.polygons = batch.polygons;
+            this.polylines = batch.polylines;
+            this.failed = batch.failed;
+            this.skipped = skipped;
+            this.done = batch.done;
+            this.total = batch.total;
+            this.elapsed_ms = batch.elapsedMillis;
+            this.relations_per_second = batch.elapsedMillis == 0 ? 0 : 1000.0 * batch.done / batch.elapsedMillis;
+        }
+    }
+
+    public class GeometryAggregatesResult {
+        public double area;
+        public double length;
+        public long vertices;
+        public Point min;
+        public Point max;
+        public Point centroid;
+        public List<Point> convex_hull;
+
+        private GeometryAggregatesResult(GeometryAggregates aggregates) {
+            this.area = aggregates.getArea();
+            this.length = aggregates.getLength();
+            this.vertices = aggregates.getVertexCount();
+            this.min = asNeo4jPoint(aggregates.getMin());
+            this.max = asNeo4jPoint(aggregates.getMax());
+            this.centroid = aggregates.getCentroid() == null ? null : asNeo4jPoint(aggregates.getCentroid());
+            try {
+                this.convex_hull = asNeo4jPoints(toNeo4jCRS(aggregates.getCRS()), aggregates.getConvexHull().getPoints());
+            } catch (IllegalArgumentException | IllegalStateException e) {
+                // Points on a line, or not on one hemisphere, have no convex hull
+                this.convex_hull = null;
+            }
+        }
+    }
+
+    public class GeometryAttributesResult {
+        public long node_id;
+        public double area;
+        public double length;
+        public long vertices;
+
+        private GeometryAttributesResult(GeometryAttributes.Written written) {
+            this.node_id = written.node.getId();
+            this.area = Math.abs(written.aggregates.getArea());
+            this.length = written.aggregates.getLength();
+            this.vertices = written.aggregates.getVertexCount();
+        }
+    }
+
+    public class CoveringResult {
+        public long node_id;
+        public long interior;
+        public long boundary;
+
+        private CoveringResult(Node main, CellCovering covering) {
+            this.node_id = main.getId();
+            this.interior = covering == null ? 0 : covering.getInterior().length;
+            this.boundary = covering == null ? 0 : covering.getBoundary().length;
+        }
+    }
+
     public class PointArraySizeResult {
         public long node_id;
         public long count;
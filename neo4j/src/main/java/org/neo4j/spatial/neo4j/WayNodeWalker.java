@@ -0,0 +1,203 @@
+package org.neo4j.spatial.neo4j;
+
+import org.eclipse.collections.impl.list.mutable.primitive.LongArrayList;
+import org.eclipse.collections.impl.set.mutable.primitive.LongHashSet;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.internal.kernel.api.NodeCursor;
+import org.neo4j.internal.kernel.api.PropertyCursor;
+import org.neo4j.internal.kernel.api.RelationshipTraversalCursor;
+import org.neo4j.internal.kernel.api.TokenRead;
+import org.neo4j.io.pagecache.context.CursorContext;
+import org.neo4j.kernel.api.KernelTransaction;
+import org.neo4j.memory.EmptyMemoryTracker;
+import org.neo4j.storageengine.api.PropertySelection;
+import org.neo4j.storageengine.api.RelationshipSelection;
+import org.neo4j.values.storable.LongArray;
+import org.neo4j.values.storable.Value;
+
+/**
+ * Walks the OSMWayNodes of a polygon or polyline directly with kernel cursors, following NEXT relationships along
+ * each way and the relation specific NEXT_IN_POLYGON or NEXT_IN_POLYLINE relationships between ways. This visits the
+ * same way nodes as the traversal descriptions in {@link Neo4jSimpleGraphPolygon} and {@link Neo4jSimpleGraphPolyline},
+ * without creating paths, branches or relationship objects for every step.
+ * <p>
+ * Way nodes pointing to the same location as the previous way node are skipped. A walk ends when no relationship can
+ * be followed, when a way node is visited twice, or for rings when the location of the first way node is reached
+ * again, in which case that way node is the last one returned.
+ */
+class WayNodeWalker implements AutoCloseable {
+    private static final String RELATION_IDS_PROPERTY = "relation_osm_ids";
+    private static final int ANY_TYPE = -2;
+
+    private final KernelTransaction ktx;
+    private final long osmRelationId;
+    private final boolean ring;
+    private final int nextType;
+    private final int joinType;
+    private final int nodeType;
+    private final int relationIdsToken;
+    private final RelationshipSelection wayRelationships;
+
+    private final NodeCursor nodeCursor;
+    private final RelationshipTraversalCursor relationshipCursor;
+    private final PropertyCursor propertyCursor;
+
+    /**
+     * @param join the relationship joining the ways of the geometry, NEXT_IN_POLYGON or NEXT_IN_POLYLINE
+     * @param ring true if the walk should end when returning to the first location
+     */
+    WayNodeWalker(KernelTransaction ktx, long osmRelationId, Relation join, boolean ring) {
+        this.ktx = ktx;
+        this.osmRelationId = osmRelationId;
+        this.ring = ring;
+        TokenRead tokenRead = ktx.tokenRead();
+        this.nextType = tokenRead.relationshipType(Relation.NEXT.name());
+        this.joinType = tokenRead.relationshipType(join.name());
+        this.nodeType = tokenRead.relationshipType(Relation.NODE.name());
+        this.relationIdsToken = tokenRead.propertyKey(RELATION_IDS_PROPERTY);
+        int[] types = joinType == TokenRead.NO_TOKEN ? new int[]{nextType} : new int[]{nextType, joinType};
+        this.wayRelationships = RelationshipSelection.selection(types, Direction.BOTH);
+        this.nodeCursor = ktx.cursors().allocateNodeCursor(CursorContext.NULL);
+        this.relationshipCursor = ktx.cursors().allocateRelationshipTraversalCursor(CursorContext.NULL);
+        this.propertyCursor = ktx.cursors().allocatePropertyCursor(CursorContext.NULL, EmptyMemoryTracker.INSTANCE);
+    }
+
+    /**
+     * @param start         the way node to start from
+     * @param first         the type of the first relationship to follow, or null for either
+     * @param nextDirection the direction of NEXT relationships to follow until the first join, or null for either
+     * @param joinDirection the direction of join relationships to follow, or null to keep the direction of the first join
+     * @return The ids of the way nodes in walking order
+     */
+    long[] walk(long start, Relation first, Direction nextDirection, Direction joinDirection) {
+        LongArrayList wayNodes = new LongArrayList();
+        LongHashSet visited = new LongHashSet();
+        wayNodes.add(start);
+        visited.add(start);
+
+        long firstLocation = locationNode(start);
+        long previousLocation = firstLocation;
+        long current = start;
+        long previousRelationship = -1;
+        Direction along = nextDirection;
+        int firstType = first == null ? ANY_TYPE : (first == Relation.NEXT ? nextType : joinType);
+
+        while (true) {
+            Step step = step(current, previousRelationship, firstType, along, joinDirection);
+            if (step == null) {
+                break;
+            }
+            firstType = ANY_TYPE;
+            current = step.node;
+            previousRelationship = step.relationship;
+            if (step.join) {
+                along = null;
+                if (joinDirection == null) {
+                    joinDirection = step.direction;
+                }
+            } else {
+                along = step.direction;
+            }
+
+            long location = locationNode(current);
+            if (location == previousLocation) {
+                if (!visited.add(current)) {
+                    break;
+                }
+                continue;
+            }
+            previousLocation = location;
+            if (ring && location == firstLocation) {
+                wayNodes.add(current);
+                break;
+            }
+            if (!visited.add(current)) {
+                break;
+            }
+            wayNodes.add(current);
+        }
+        return wayNodes.toArray();
+    }
+
+    private static class Step {
+        private final long node;
+        private final long relationship;
+        private final Direction direction;
+        private final boolean join;
+
+        private Step(long node, long relationship, Direction direction, boolean join) {
+            this.node = node;
+            this.relationship = relationship;
+            this.direction = direction;
+            this.join = join;
+        }
+    }
+
+    /**
+     * Find the next way node, preferring to continue along the current way over joining another way
+     */
+    private Step step(long wayNode, long previousRelationship, int firstType, Direction along, Direction joinDirection) {
+        ktx.dataRead().singleNode(wayNode, nodeCursor);
+        if (!nodeCursor.next()) {
+            return null;
+        }
+        nodeCursor.relationships(relationshipCursor, wayRelationships);
+        Step join = null;
+        while (relationshipCursor.next()) {
+            long relationship = relationshipCursor.relationshipReference();
+            long source = relationshipCursor.sourceNodeReference();
+            long target = relationshipCursor.targetNodeReference();
+            int type = relationshipCursor.type();
+            if (relationship == previousRelationship || source == target || (firstType != ANY_TYPE && type != firstType)) {
+                continue;
+            }
+            Direction direction = source == wayNode ? Direction.OUTGOING : Direction.INCOMING;
+            long other = relationshipCursor.otherNodeReference();
+            if (type == nextType) {
+                if (along == null || along == direction) {
+                    return new Step(other, relationship, direction, false);
+                }
+            } else if (join == null && (joinDirection == null || joinDirection == direction) && partOfRelation()) {
+                join = new Step(other, relationship, direction, true);
+            }
+        }
+        return join;
+    }
+
+    private boolean partOfRelation() {
+        if (relationIdsToken == TokenRead.NO_TOKEN) {
+            return false;
+        }
+        relationshipCursor.properties(propertyCursor, PropertySelection.selection(relationIdsToken));
+        while (propertyCursor.next()) {
+            Value value = propertyCursor.propertyValue();
+            if (value instanceof LongArray) {
+                LongArray ids = (LongArray) value;
+                for (int i = 0; i < ids.length(); i++) {
+                    if (ids.longValue(i) == osmRelationId) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private long locationNode(long wayNode) {
+        ktx.dataRead().singleNode(wayNode, nodeCursor);
+        if (nodeCursor.next()) {
+            nodeCursor.relationships(relationshipCursor, RelationshipSelection.selection(nodeType, Direction.OUTGOING));
+            if (relationshipCursor.next()) {
+                return relationshipCursor.otherNodeReference();
+            }
+        }
+        throw new IllegalArgumentException("Way node " + wayNode + " has no outgoing " + Relation.NODE.name() + " relationship");
+    }
+
+    @Override
+    public void close() {
+        nodeCursor.close();
+        relationshipCursor.close();
+        propertyCursor.close();
+    }
+}
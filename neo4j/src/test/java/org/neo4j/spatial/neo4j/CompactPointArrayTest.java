@@ -0,0 +1,103 @@
+package org.neo4j.spatial.neo4j;
+
+import org.junit.Test;
+import org.neo4j.spatial.core.CRS;
+import org.neo4j.spatial.core.Point;
+
+import java.util.Arrays;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class CompactPointArrayTest {
+
+    @Test
+    public void shouldEncodeAndDecodeGeographicPoints() {
+        Point[] points = new Point[]{
+                Point.point(CRS.WGS84, 12.5683371, 55.6760968),
+                Point.point(CRS.WGS84, 12.5683412, 55.6761003),
+                Point.point(CRS.WGS84, -179.9999999, -89.9999999),
+                Point.point(CRS.WGS84, 179.9999999, 89.9999999),
+                Point.point(CRS.WGS84, 12.5683371, 55.6760968)
+        };
+        byte[] bytes = CompactPointArray.encode(points);
+
+        assertThat(CompactPointArray.isCompact(bytes), equalTo(true));
+        assertThat(CompactPointArray.decodeCRS(bytes), equalTo(CRS.WGS84));
+        assertThat(CompactPointArray.decodeDimension(bytes), equalTo(2));
+        Point[] decoded = CompactPointArray.decodePoints(bytes);
+        assertThat(decoded.length, equalTo(points.length));
+        for (int i = 0; i < points.length; i++) {
+            assertThat("Points with 7 decimals should round trip exactly", decoded[i].getCoordinate(), equalTo(points[i].getCoordinate()));
+            assertThat(decoded[i].getCRS(), equalTo(CRS.WGS84));
+        }
+    }
+
+    @Test
+    public void shouldQuantizeCartesianPoints() {
+        Point[] points = new Point[]{
+                Point.point(CRS.Cartesian, 1.0 / 3.0, -2.0 / 3.0, 100),
+                Point.point(CRS.Cartesian, 1000000, -1000000, 0)
+        };
+        double[] decoded = CompactPointArray.decode(CompactPointArray.encode(points, 2));
+
+        assertThat(decoded.length, equalTo(6));
+        assertThat(decoded[0], equalTo(0.33));
+        assertThat(decoded[1], equalTo(-0.67));
+        assertThat(decoded[2], equalTo(100.0));
+        assertThat(decoded[3], closeTo(1000000, 0.005));
+        assertThat(decoded[4], closeTo(-1000000, 0.005));
+    }
+
+    @Test
+    public void shouldBeMuchSmallerThanDoublesForDenseGeometries() {
+        Point[] points = new Point[1000];
+        for (int i = 0; i < points.length; i++) {
+            double angle = Math.toRadians(i * 360.0 / points.length);
+            points[i] = Point.point(CRS.WGS84, 10 + 0.1 * Math.cos(angle), 50 + 0.1 * Math.sin(angle));
+        }
+        byte[] bytes = CompactPointArray.encode(points);
+
+        assertThat(bytes.length, lessThan(points.length * 2 * 8 / 4));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldNotDecodeOtherByteArrays() {
+        CompactPointArray.decode(new byte[]{1, 2, 3, 4, 5, 6, 7});
+    }
+
+    @Test
+    public void shouldNotMistakeOtherByteArraysWithMagicHeader() {
+        byte[] bytes = CompactPointArray.encode(new Point[]{Point.point(CRS.WGS84, 12.5, 55.6), Point.point(CRS.WGS84, 12.6, 55.7)});
+        assertThat(CompactPointArray.isCompact(bytes), equalTo(true));
+
+        byte[] unknownCRS = bytes.clone();
+        unknownCRS[2] = 3;
+        assertThat(CompactPointArray.isCompact(unknownCRS), equalTo(false));
+
+        assertThat(CompactPointArray.isCompact(Arrays.copyOf(bytes, bytes.length - 1)), equalTo(false));
+        assertThat(CompactPointArray.isCompact(Arrays.copyOf(bytes, bytes.length + 1)), equalTo(false));
+        assertThat(CompactPointArray.isCompact(new byte[]{'P', 1, 1, 2, 7, 5, 0, 0}), equalTo(false));
+    }
+
+    @Test
+    public void shouldNotDecodeTruncatedOrExtendedByteArrays() {
+        byte[] bytes = CompactPointArray.encode(new Point[]{Point.point(CRS.WGS84, 12.5, 55.6), Point.point(CRS.WGS84, 12.6, 55.7)});
+        for (byte[] corrupt : new byte[][]{Arrays.copyOf(bytes, bytes.length - 1), Arrays.copyOf(bytes, bytes.length + 1)}) {
+            try {
+                CompactPointArray.decode(corrupt);
+                fail("Expected IllegalArgumentException for " + Arrays.toString(corrupt));
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldNotEncodeMixedCRS() {
+        CompactPointArray.encode(new Point[]{Point.point(CRS.WGS84, 0, 0), Point.point(CRS.Cartesian, 0, 0)});
+    }
+}
@@ -9,7 +9,12 @@ import org.neo4j.graphdb.Label;
 import org.neo4j.graphdb.Node;
 import org.neo4j.graphdb.Transaction;
 import org.neo4j.graphdb.spatial.Point;
+import org.neo4j.kernel.api.KernelTransaction;
+import org.neo4j.kernel.impl.coreapi.InternalTransaction;
+import org.neo4j.spatial.algo.CCWCalculator;
+import org.neo4j.spatial.algo.WithinCalculator;
 import org.neo4j.spatial.core.CRS;
+import org.neo4j.spatial.core.PackedCoordinateSequence;
 import org.neo4j.spatial.core.Polygon;
 import org.neo4j.spatial.core.Polyline;
 import org.neo4j.test.TestDatabaseManagementServiceBuilder;
@@ -17,7 +22,10 @@ import org.neo4j.values.storable.CoordinateReferenceSystem;
 import org.neo4j.values.storable.PointValue;
 import org.neo4j.values.storable.Values;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
 
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.junit.Assert.assertThat;
@@ -94,6 +102,37 @@ public class Neo4jDataTest {
         assertThat("expected polygon to contain correct coordinates on pos 6", simplePolygon.getPoints()[5].getCoordinate(), equalTo(new double[]{-10, -10}));
     }
 
+    @Test
+    public void shouldViewPropertyArrayAsSimplePolygonInBothFormats() {
+        Point[] points = new Point[]{
+                Values.pointValue(CoordinateReferenceSystem.Cartesian, -10, -10),
+                Values.pointValue(CoordinateReferenceSystem.Cartesian, 10, -10),
+                Values.pointValue(CoordinateReferenceSystem.Cartesian, 10, 10),
+                Values.pointValue(CoordinateReferenceSystem.Cartesian, 0, 20),
+                Values.pointValue(CoordinateReferenceSystem.Cartesian, -10, 10)
+        };
+
+        try (Transaction tx = db.beginTx()) {
+            Node node = tx.createNode(Label.label("Building"));
+            node.setProperty("polygon", points);
+            Polygon.SimplePolygon expected = Neo4jArrayToInMemoryConverter.convertToInMemoryPolygon(node);
+            node.setProperty("compact", CompactPointArray.encode(expected.getPoints()));
+
+            for (String property : new String[]{"polygon", "compact"}) {
+                Neo4jArraySimplePolygon view = new Neo4jArraySimplePolygon(node, property);
+                assertThat("expected the view to close the ring", view.size(), equalTo(6));
+                assertThat(view.getCoordinate(3, 1), equalTo(20.0));
+                assertThat(view.getCoordinate(5, 0), equalTo(-10.0));
+                assertThat(WithinCalculator.within(view, org.neo4j.spatial.core.Point.point(CRS.Cartesian, 0, 15)), equalTo(true));
+                assertThat(WithinCalculator.within(view, org.neo4j.spatial.core.Point.point(CRS.Cartesian, 8, 15)), equalTo(false));
+                assertThat(view.toLineSegments(), equalTo(expected.toLineSegments()));
+                assertThat(view.getPoints(), equalTo(expected.getPoints()));
+                assertThat(view, equalTo(expected));
+            }
+            tx.commit();
+        }
+    }
+
     @Test
     public void shouldTraverseSingleWayPolygon() {
         long osmRelationId = 1;
@@ -211,6 +250,102 @@ public class Neo4jDataTest {
         }
     }
 
+    @Test
+    public void shouldReadIDPolygonCoordinatesInBulk() {
+        long osmRelationId = 1;
+
+        TestModel model = new TestModel(10, 2);
+
+        try (Transaction tx = db.beginTx()) {
+            model.buildNodes(tx);
+            model.buildTwoWayPolygon(tx, osmRelationId);
+            tx.commit();
+        }
+        try (Transaction tx = db.beginTx()) {
+            model.refresh(tx);
+            org.neo4j.spatial.core.Point[] expected = new Neo4jSimpleGraphNodePolygon(model.wayNodeAt(0), osmRelationId).getPoints();
+            Neo4jSimpleGraphIDPolygon polygon = new Neo4jSimpleGraphIDPolygon(model.wayNodeAt(0), osmRelationId, ((InternalTransaction) tx).kernelTransaction());
+
+            org.neo4j.spatial.core.Point[] points = polygon.getPoints();
+            assertThat(points.length, equalTo(expected.length));
+            for (int i = 0; i < points.length; i++) {
+                assertThat(points[i], equalTo(expected[i]));
+            }
+
+            PackedCoordinateSequence coordinates = polygon.readCoordinates();
+            assertThat(coordinates.getCRS(), equalTo(CRS.Cartesian));
+            assertThat(coordinates.size(), equalTo(expected.length));
+            for (int i = 0; i < expected.length; i++) {
+                assertThat(coordinates.getCoordinate(i, 0), equalTo(expected[i].getCoordinate()[0]));
+                assertThat(coordinates.getCoordinate(i, 1), equalTo(expected[i].getCoordinate()[1]));
+            }
+            tx.commit();
+        }
+    }
+
+    @Test
+    public void shouldReadClockwiseIDPolygonCoordinatesInCCWOrder() {
+        long osmRelationId = 1;
+
+        TestModel model = new TestModel(10, 2);
+        // Mirroring the model makes the way nodes run clockwise
+        for (double[] point : model.points) {
+            point[0] = -point[0];
+        }
+
+        try (Transaction tx = db.beginTx()) {
+            model.buildNodes(tx);
+            model.buildTwoWayPolygon(tx, osmRelationId);
+            tx.commit();
+        }
+        try (Transaction tx = db.beginTx()) {
+            model.refresh(tx);
+            org.neo4j.spatial.core.Point[] expected = new Neo4jSimpleGraphNodePolygon(model.wayNodeAt(0), osmRelationId).getPoints();
+            Neo4jSimpleGraphIDPolygon polygon = new Neo4jSimpleGraphIDPolygon(model.wayNodeAt(0), osmRelationId, ((InternalTransaction) tx).kernelTransaction());
+
+            PackedCoordinateSequence coordinates = polygon.readCoordinates();
+            assertThat(CCWCalculator.getCalculator(CRS.Cartesian).isCCW(coordinates.toPoints()), equalTo(true));
+            assertThat(coordinates.size(), equalTo(expected.length));
+            for (int i = 0; i < expected.length; i++) {
+                assertThat(coordinates.getCoordinate(i, 0), equalTo(expected[i].getCoordinate()[0]));
+                assertThat(coordinates.getCoordinate(i, 1), equalTo(expected[i].getCoordinate()[1]));
+            }
+            tx.commit();
+        }
+    }
+
+    @Test
+    public void shouldReadGeographicIDPolygonAroundPoleLikeNodePolygon() {
+        long osmRelationId = 1;
+
+        TestModel model = new TestModel(10, 2);
+        model.crs = CoordinateReferenceSystem.WGS84;
+        // A ring around the north pole, crossing the date line
+        for (int i = 0; i < model.n; i++) {
+            model.points[i] = new double[]{-180 + 36 * i + 18, 80};
+        }
+
+        try (Transaction tx = db.beginTx()) {
+            model.buildNodes(tx);
+            model.buildTwoWayPolygon(tx, osmRelationId);
+            tx.commit();
+        }
+        try (Transaction tx = db.beginTx()) {
+            model.refresh(tx);
+            org.neo4j.spatial.core.Point[] expected = new Neo4jSimpleGraphNodePolygon(model.wayNodeAt(0), osmRelationId).getPoints();
+            Neo4jSimpleGraphIDPolygon polygon = new Neo4jSimpleGraphIDPolygon(model.wayNodeAt(0), osmRelationId, ((InternalTransaction) tx).kernelTransaction());
+
+            PackedCoordinateSequence coordinates = polygon.readCoordinates();
+            assertThat(coordinates.getCRS(), equalTo(CRS.WGS84));
+            assertThat(coordinates.size(), equalTo(expected.length));
+            for (int i = 0; i < expected.length; i++) {
+                assertThat(coordinates.getCoordinate(i, 0), equalTo(expected[i].getCoordinate()[0]));
+                assertThat(coordinates.getCoordinate(i, 1), equalTo(expected[i].getCoordinate()[1]));
+            }
+            tx.commit();
+        }
+    }
+
     @Test
     public void shouldTraverseSingleWayPolyline() {
         long osmRelationId = 1;
@@ -263,6 +398,38 @@ public class Neo4jDataTest {
         }
     }
 
+    @Test
+    public void shouldFollowNextInPolylineWhenStartingTowardsTheNextWay() {
+        long osmRelationId = 1;
+
+        TestModel model = new TestModel(10, 1, false);
+
+        try (Transaction tx = db.beginTx()) {
+            model.buildNodes(tx);
+            model.buildTwoWayPolyline(tx, osmRelationId);
+            tx.commit();
+        }
+        try (Transaction tx = db.beginTx()) {
+            model.refresh(tx);
+            KernelTransaction ktx = ((InternalTransaction) tx).kernelTransaction();
+            org.neo4j.spatial.core.Point start = org.neo4j.spatial.core.Point.point(CRS.Cartesian, 0, 8);
+            org.neo4j.spatial.core.Point direction = org.neo4j.spatial.core.Point.point(CRS.Cartesian, 0, 6);
+            // The closest way node is the end of the first way, which is joined to the second way by NEXT_IN_POLYLINE
+            for (Polyline polyline : new Polyline[]{new Neo4jSimpleGraphNodePolyline(model.wayNodeAt(0), osmRelationId), new Neo4jSimpleGraphNodePolyline(model.wayNodeAt(0), osmRelationId, ktx)}) {
+                Iterator<org.neo4j.spatial.core.Point> vertices = polyline.vertices(start, direction);
+                int idx = model.n / 2;
+                while (vertices.hasNext()) {
+                    org.neo4j.spatial.core.Point point = vertices.next();
+                    assertThat(point.getCoordinate()[0], equalTo(model.pointAt(idx)[0]));
+                    assertThat(point.getCoordinate()[1], equalTo(model.pointAt(idx)[1]));
+                    idx++;
+                }
+                assertThat(idx, equalTo(model.n));
+            }
+            tx.commit();
+        }
+    }
+
     @Test
     public void shouldTraverseTwoWayPolyline() {
         long osmRelationId = 1;
@@ -322,12 +489,159 @@ public class Neo4jDataTest {
         }
     }
 
+    @Test
+    public void shouldWalkGraphGeometriesLikeTraversals() {
+        long osmRelationId = 1;
+
+        TestModel polygonModel = new TestModel(10, 2);
+        TestModel polylineModel = new TestModel(10, 1);
+
+        try (Transaction tx = db.beginTx()) {
+            polygonModel.buildNodes(tx);
+            polygonModel.buildTwoWayPolygon(tx, osmRelationId);
+            polylineModel.buildNodes(tx);
+            polylineModel.buildTwoWayPolyline(tx, osmRelationId);
+            tx.commit();
+        }
+        try (Transaction tx = db.beginTx()) {
+            polygonModel.refresh(tx);
+            polylineModel.refresh(tx);
+            KernelTransaction ktx = ((InternalTransaction) tx).kernelTransaction();
+            double[][] starts = new double[][]{{5, 0}, {5, 2}, {5, 0}, {0, 0}, {0, 8}, {5, 8}};
+
+            Polygon.SimplePolygon traversed = new Neo4jSimpleGraphNodePolygon(polygonModel.wayNodeAt(0), osmRelationId);
+            Polygon.SimplePolygon walked = new Neo4jSimpleGraphNodePolygon(polygonModel.wayNodeAt(0), osmRelationId, ktx);
+            assertThat(Arrays.asList(walked.getPoints()), equalTo(Arrays.asList(traversed.getPoints())));
+            for (int i = 0; i < starts.length; i += 2) {
+                org.neo4j.spatial.core.Point start = org.neo4j.spatial.core.Point.point(CRS.Cartesian, starts[i]);
+                org.neo4j.spatial.core.Point direction = org.neo4j.spatial.core.Point.point(CRS.Cartesian, starts[i + 1]);
+                traversed.startTraversal(start, direction);
+                walked.startTraversal(start, direction);
+                assertThat(traverse(walked), equalTo(traverse(traversed)));
+            }
+
+            Polyline traversedLine = new Neo4jSimpleGraphNodePolyline(polylineModel.wayNodeAt(0), osmRelationId);
+            Polyline walkedLine = new Neo4jSimpleGraphNodePolyline(polylineModel.wayNodeAt(0), osmRelationId, ktx);
+            assertThat(Arrays.asList(walkedLine.getPoints()), equalTo(Arrays.asList(traversedLine.getPoints())));
+            for (int i = 0; i < starts.length; i += 2) {
+                org.neo4j.spatial.core.Point start = org.neo4j.spatial.core.Point.point(CRS.Cartesian, starts[i]);
+                org.neo4j.spatial.core.Point direction = org.neo4j.spatial.core.Point.point(CRS.Cartesian, starts[i + 1]);
+                traversedLine.startTraversal(start, direction);
+                walkedLine.startTraversal(start, direction);
+                assertThat(traverse(walkedLine), equalTo(traverse(traversedLine)));
+            }
+            tx.commit();
+        }
+    }
+
+    @Test
+    public void shouldWalkGraphGeometriesSharingWaysLikeTraversals() {
+        // Two polygons and two polylines sharing the way from (5,0) to (5,8), which branches at both ends
+        Node[] wayNodes = new Node[10];
+        try (Transaction tx = db.beginTx()) {
+            Node[] locations = new Node[6];
+            double[][] points = new double[][]{{5, 0}, {5, 8}, {0, 8}, {0, 0}, {10, 8}, {10, 0}};
+            for (int i = 0; i < locations.length; i++) {
+                locations[i] = tx.createNode();
+                locations[i].setProperty("location", Values.pointValue(CoordinateReferenceSystem.Cartesian, points[i]));
+            }
+            int[] shared = new int[]{0, 1};
+            int[] left = new int[]{1, 2, 3, 0};
+            int[] right = new int[]{1, 4, 5, 0};
+            Node[][] ways = new Node[][]{buildWay(tx, locations, shared), buildWay(tx, locations, left), buildWay(tx, locations, right)};
+            for (int way = 0, i = 0; way < ways.length; way++) {
+                for (Node wayNode : ways[way]) {
+                    wayNodes[i++] = wayNode;
+                }
+            }
+            Node sharedStart = ways[0][0], sharedEnd = ways[0][1];
+            join(sharedEnd, ways[1][0], Relation.NEXT_IN_POLYGON, 1);
+            join(ways[1][3], sharedStart, Relation.NEXT_IN_POLYGON, 1);
+            join(sharedEnd, ways[2][0], Relation.NEXT_IN_POLYGON, 2);
+            join(ways[2][3], sharedStart, Relation.NEXT_IN_POLYGON, 2);
+            join(sharedEnd, ways[1][0], Relation.NEXT_IN_POLYLINE, 3);
+            join(sharedEnd, ways[2][0], Relation.NEXT_IN_POLYLINE, 4);
+            tx.commit();
+        }
+        try (Transaction tx = db.beginTx()) {
+            KernelTransaction ktx = ((InternalTransaction) tx).kernelTransaction();
+            double[][] starts = new double[][]{{5, 0}, {5, 8}, {5, 0}, {0, 0}, {5, 0}, {10, 0}, {5, 8}, {0, 8}, {5, 8}, {10, 8}};
+            int[][] relationWayNodes = new int[][]{{0, 1, 2, 3, 4, 5}, {0, 1, 6, 7, 8, 9}};
+            for (int relationId = 1; relationId <= 2; relationId++) {
+                for (int wayNode : relationWayNodes[relationId - 1]) {
+                    Node start = tx.getNodeById(wayNodes[wayNode].getId());
+                    Polygon.SimplePolygon traversed = new Neo4jSimpleGraphNodePolygon(start, relationId);
+                    Polygon.SimplePolygon walked = new Neo4jSimpleGraphNodePolygon(start, relationId, ktx);
+                    assertThat(Arrays.asList(walked.getPoints()), equalTo(Arrays.asList(traversed.getPoints())));
+                }
+                Node start = tx.getNodeById(wayNodes[0].getId());
+                Polygon.SimplePolygon traversed = new Neo4jSimpleGraphNodePolygon(start, relationId);
+                Polygon.SimplePolygon walked = new Neo4jSimpleGraphNodePolygon(start, relationId, ktx);
+                for (int i = 0; i < starts.length; i += 2) {
+                    org.neo4j.spatial.core.Point startPoint = org.neo4j.spatial.core.Point.point(CRS.Cartesian, starts[i]);
+                    org.neo4j.spatial.core.Point direction = org.neo4j.spatial.core.Point.point(CRS.Cartesian, starts[i + 1]);
+                    traversed.startTraversal(startPoint, direction);
+                    walked.startTraversal(startPoint, direction);
+                    assertThat(traverse(walked), equalTo(traverse(traversed)));
+                }
+            }
+            for (int relationId = 3; relationId <= 4; relationId++) {
+                Node start = tx.getNodeById(wayNodes[0].getId());
+                Polyline traversed = new Neo4jSimpleGraphNodePolyline(start, relationId);
+                Polyline walked = new Neo4jSimpleGraphNodePolyline(start, relationId, ktx);
+                assertThat(Arrays.asList(walked.getPoints()), equalTo(Arrays.asList(traversed.getPoints())));
+                assertThat(walked.getPoints().length, equalTo(5));
+                for (int i = 0; i < starts.length; i += 2) {
+                    org.neo4j.spatial.core.Point startPoint = org.neo4j.spatial.core.Point.point(CRS.Cartesian, starts[i]);
+                    org.neo4j.spatial.core.Point direction = org.neo4j.spatial.core.Point.point(CRS.Cartesian, starts[i + 1]);
+                    traversed.startTraversal(startPoint, direction);
+                    walked.startTraversal(startPoint, direction);
+                    assertThat(traverse(walked), equalTo(traverse(traversed)));
+                }
+            }
+            tx.commit();
+        }
+    }
+
+    private static Node[] buildWay(Transaction tx, Node[] locations, int[] indices) {
+        Node[] wayNodes = new Node[indices.length];
+        for (int i = 0; i < indices.length; i++) {
+            wayNodes[i] = tx.createNode();
+            wayNodes[i].createRelationshipTo(locations[indices[i]], Relation.NODE);
+            if (i > 0) {
+                wayNodes[i - 1].createRelationshipTo(wayNodes[i], Relation.NEXT);
+            }
+        }
+        return wayNodes;
+    }
+
+    private static void join(Node from, Node to, Relation relation, long osmRelationId) {
+        from.createRelationshipTo(to, relation).setProperty("relation_osm_ids", new long[]{osmRelationId});
+    }
+
+    private static List<org.neo4j.spatial.core.Point> traverse(Polygon.SimplePolygon polygon) {
+        List<org.neo4j.spatial.core.Point> points = new ArrayList<>();
+        while (!polygon.fullyTraversed()) {
+            points.add(polygon.getNextPoint());
+        }
+        return points;
+    }
+
+    private static List<org.neo4j.spatial.core.Point> traverse(Polyline polyline) {
+        List<org.neo4j.spatial.core.Point> points = new ArrayList<>();
+        while (!polyline.fullyTraversed()) {
+            points.add(polyline.getNextPoint());
+        }
+        return points;
+    }
+
     private static class TestModel {
         final int n;
         final Node[] wayNodes;
         final Node[] nodes;
         final double[][] points;
         final boolean debug;
+        CoordinateReferenceSystem crs = CoordinateReferenceSystem.Cartesian;
 
         TestModel(int n, int extraWays) {
             this(n, extraWays, false);
@@ -364,7 +678,7 @@ public class Neo4jDataTest {
                 wayNodes[i] = tx.createNode();
                 nodes[i] = tx.createNode();
 
-                PointValue point = Values.pointValue(CoordinateReferenceSystem.Cartesian, points[i][0], points[i][1]);
+                PointValue point = Values.pointValue(crs, points[i][0], points[i][1]);
                 if (debug) System.out.printf("%s: %s\n", wayNodes[i], Arrays.toString(points[i]));
 
                 nodes[i].setProperty("location", point);
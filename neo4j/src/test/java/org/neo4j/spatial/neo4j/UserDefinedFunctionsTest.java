@@ -9,12 +9,19 @@ import org.neo4j.configuration.GraphDatabaseSettings;
 import org.neo4j.dbms.api.DatabaseManagementService;
 import org.neo4j.exceptions.KernelException;
 import org.neo4j.graphdb.*;
+import org.neo4j.graphdb.spatial.CRS;
+import org.neo4j.graphdb.spatial.Coordinate;
 import org.neo4j.graphdb.spatial.Point;
 import org.neo4j.graphdb.traversal.Evaluators;
 import org.neo4j.internal.helpers.collection.Iterables;
+import org.neo4j.internal.helpers.collection.Pair;
+import org.neo4j.internal.helpers.collection.Iterators;
 import org.neo4j.kernel.api.procedure.GlobalProcedures;
 import org.neo4j.kernel.impl.traversal.MonoDirectionalTraversalDescription;
 import org.neo4j.kernel.internal.GraphDatabaseAPI;
+import org.neo4j.spatial.algo.AreaCalculator;
+import org.neo4j.spatial.algo.wgs84.WGS84ConvexHull;
+import org.neo4j.spatial.core.MultiPolygon;
 import org.neo4j.test.TestDatabaseManagementServiceBuilder;
 import org.neo4j.values.storable.CoordinateReferenceSystem;
 import org.neo4j.values.storable.Values;
@@ -22,10 +29,14 @@ import org.neo4j.values.storable.Values;
 import java.util.*;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.hamcrest.CoreMatchers.*;
 import static org.hamcrest.Matchers.closeTo;
 import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
 import static org.junit.Assert.*;
 import static org.neo4j.configuration.GraphDatabaseSettings.DEFAULT_DATABASE_NAME;
 
@@ -363,6 +374,23 @@ public class UserDefinedFunctionsTest {
 
             tx.commit();
         }
+
+        Map<String, Object> params = map("mainId", mainId, "points", Arrays.asList(
+                Values.pointValue(CoordinateReferenceSystem.WGS84, -0.1, 1),
+                Values.pointValue(CoordinateReferenceSystem.WGS84, 3.1, 2.5)));
+        testResult(db, "MATCH (m) WHERE id(m)=$mainId CALL spatial.osm.property.createPolyline(m) YIELD node_id RETURN node_id", params, Result::resultAsString);
+        List<Map<String, Object>> projections = new ArrayList<>();
+        for (String procedure : new String[]{"spatial.osm.graph.polyline.project", "spatial.osm.property.polyline.project"}) {
+            testResult(db, "MATCH (m) WHERE id(m)=$mainId CALL " + procedure + "(m, $points) YIELD index, measure, offset RETURN index, measure, offset", params, result -> {
+                List<Map<String, Object>> rows = Iterators.asList(result);
+                assertThat(rows.size(), equalTo(2));
+                assertThat((double) rows.get(0).get("measure"), closeTo(oneDegreeDistance, oneDegreeDistance / 100));
+                assertThat((double) rows.get(0).get("offset"), closeTo(oneDegreeDistance / 10, oneDegreeDistance / 1000));
+                assertThat((double) rows.get(1).get("offset"), closeTo(Math.hypot(0.1, 0.5) * oneDegreeDistance, oneDegreeDistance / 100));
+                projections.addAll(rows);
+            });
+        }
+        assertThat(projections.subList(0, 2), equalTo(projections.subList(2, 4)));
     }
 
     @Test
@@ -506,6 +534,65 @@ public class UserDefinedFunctionsTest {
         });
     }
 
+    @Test
+    public void shouldAggregatePointsWithoutCollectingThem() {
+        String query = "UNWIND range(0, 9999) AS i " +
+                "WITH point({x: (i % 100) - 50.0, y: (i / 100) - 50.0}) AS p " +
+                "RETURN spatial.algo.aggregate.envelope(p) AS envelope, spatial.algo.aggregate.convexHull(p) AS hull, " +
+                "spatial.algo.aggregate.centroid(p) AS centroid, spatial.algo.aggregate.count(p) AS count";
+        testCall(db, query, result -> {
+            Map envelope = (Map) result.get("envelope");
+            assertThat(envelope.get("min"), equalTo(Values.pointValue(CoordinateReferenceSystem.Cartesian, -50, -50)));
+            assertThat(envelope.get("max"), equalTo(Values.pointValue(CoordinateReferenceSystem.Cartesian, 49, 49)));
+            assertThat(new HashSet<>((List) result.get("hull")), equalTo(new HashSet<>(Arrays.asList(
+                    Values.pointValue(CoordinateReferenceSystem.Cartesian, -50, -50),
+                    Values.pointValue(CoordinateReferenceSystem.Cartesian, 49, -50),
+                    Values.pointValue(CoordinateReferenceSystem.Cartesian, 49, 49),
+                    Values.pointValue(CoordinateReferenceSystem.Cartesian, -50, 49)
+            ))));
+            assertThat(result.get("centroid"), equalTo(Values.pointValue(CoordinateReferenceSystem.Cartesian, -0.5, -0.5)));
+            assertThat(result.get("count"), equalTo(10000L));
+        });
+        testCall(db, "UNWIND [point({longitude: 10, latitude: 50}), null, point({longitude: 12, latitude: 50})] AS p " +
+                "RETURN spatial.algo.aggregate.envelope(p) AS envelope, spatial.algo.aggregate.convexHull(p) AS hull, " +
+                "spatial.algo.aggregate.centroid(p) AS centroid, spatial.algo.aggregate.count(p) AS count", result -> {
+            Map envelope = (Map) result.get("envelope");
+            assertThat(envelope.get("min"), equalTo(Values.pointValue(CoordinateReferenceSystem.WGS84, 10, 50)));
+            assertThat(envelope.get("max"), equalTo(Values.pointValue(CoordinateReferenceSystem.WGS84, 12, 50)));
+            assertThat("Two points have no convex hull", result.get("hull"), equalTo(null));
+            List<Double> centroid = ((Point) result.get("centroid")).getCoordinate().getCoordinate();
+            assertThat(centroid.get(0), closeTo(11, 1e-9));
+            assertThat("The great circle between the points bends towards the pole", centroid.get(1), greaterThan(50.0));
+            assertThat(result.get("count"), equalTo(2L));
+        });
+    }
+
+    @Test
+    public void shouldAggregateConvexHullOfWidelySpreadGeographicPoints() {
+        // The first point is more than 90 degrees from most of the others, but all are on the hemisphere around (0 0)
+        List<Point> points = new ArrayList<>();
+        List<org.neo4j.spatial.core.Point> inMemory = new ArrayList<>();
+        for (int lon = 80; lon >= -80; lon -= 20) {
+            for (int lat = -60; lat <= 60; lat += 40) {
+                points.add(Values.pointValue(CoordinateReferenceSystem.WGS84, lon, lat));
+                inMemory.add(org.neo4j.spatial.core.Point.point(org.neo4j.spatial.core.CRS.WGS84, lon, lat));
+            }
+        }
+        Set<List<Double>> expected = new HashSet<>();
+        for (org.neo4j.spatial.core.Point point : WGS84ConvexHull.convexHull(inMemory.toArray(new org.neo4j.spatial.core.Point[0])).getPoints()) {
+            expected.add(Arrays.asList(point.getCoordinate()[0], point.getCoordinate()[1]));
+        }
+        testCall(db, "UNWIND $points AS p RETURN spatial.algo.aggregate.convexHull(p) AS hull", map("points", points), result -> {
+            Set<List<Double>> hull = new HashSet<>();
+            for (Point point : (List<Point>) result.get("hull")) {
+                hull.add(point.getCoordinate().getCoordinate());
+            }
+            // WGS84ConvexHull also keeps the points along the meridians, which the aggregation leaves out
+            assertTrue(expected.containsAll(hull));
+            assertThat(hull, containsInAnyOrder(Arrays.asList(80.0, -60.0), Arrays.asList(80.0, 60.0), Arrays.asList(-80.0, 60.0), Arrays.asList(-80.0, -60.0)));
+        });
+    }
+
     @Test
     public void shouldFindBBoxForPolygon() {
         ArrayList<Point> points = new ArrayList<>();
@@ -524,6 +611,32 @@ public class UserDefinedFunctionsTest {
         });
     }
 
+    @Test
+    public void shouldConvertOtherPointsLikePointValues() {
+        List<Point> values = new ArrayList<>();
+        List<Point> others = new ArrayList<>();
+        for (double[] coordinate : new double[][]{{0, 0}, {10, 0}, {10, 5}, {0, 10}, {0, 0}}) {
+            values.add(Values.pointValue(CoordinateReferenceSystem.Cartesian, coordinate));
+            others.add(new Point() {
+                @Override
+                public List<Coordinate> getCoordinates() {
+                    return Collections.singletonList(new Coordinate(coordinate));
+                }
+
+                @Override
+                public CRS getCRS() {
+                    return CoordinateReferenceSystem.Cartesian;
+                }
+            });
+        }
+        UserDefinedFunctions functions = new UserDefinedFunctions();
+        assertThat(functions.area(others), equalTo(functions.area(values)));
+        assertThat(Neo4jPoints.asInMemoryPoints(others), equalTo(Neo4jPoints.asInMemoryPoints(values)));
+        assertThat(functions.boundingBoxFor(values).get("max"), equalTo(Values.pointValue(CoordinateReferenceSystem.Cartesian, 10, 10)));
+        assertThat(functions.convexHullPoints(others), equalTo(functions.convexHullPoints(values)));
+        assertThat(Neo4jPoints.pack(others).getCoordinate(2, 1), equalTo(5.0));
+    }
+
     @Test
     public void shouldFindPointInPolygon() {
         ArrayList<Point> points = new ArrayList<>();
@@ -540,6 +653,727 @@ public class UserDefinedFunctionsTest {
         });
     }
 
+    @Test
+    public void shouldFindPointInGeographicPolygonWithStraightEdges() {
+        ArrayList<Point> points = new ArrayList<>();
+        points.add(Values.pointValue(CoordinateReferenceSystem.WGS84, 0, 0));
+        points.add(Values.pointValue(CoordinateReferenceSystem.WGS84, 90, 0));
+        points.add(Values.pointValue(CoordinateReferenceSystem.WGS84, 90, 60));
+        points.add(Values.pointValue(CoordinateReferenceSystem.WGS84, 0, 60));
+        points.add(Values.pointValue(CoordinateReferenceSystem.WGS84, 0, 0));
+        // The great circle from (90 60) to (0 60) passes north of (45 62), but the straight edge does not
+        Point a = Values.pointValue(CoordinateReferenceSystem.WGS84, 45, 62);
+        Point b = Values.pointValue(CoordinateReferenceSystem.WGS84, 45, 58);
+        testCall(db, "RETURN spatial.algo.withinPolygon($a, $polygon) AS a, spatial.algo.withinPolygon($b, $polygon) AS b", map("polygon", points, "a", a, "b", b), result -> {
+            assertThat(result.get("a"), equalTo(false));
+            assertThat(result.get("b"), equalTo(true));
+        });
+    }
+
+    @Test
+    public void shouldPreparePolygonOnceForManyPoints() {
+        ArrayList<Point> zone = new ArrayList<>();
+        zone.add(Values.pointValue(CoordinateReferenceSystem.Cartesian, 0, 0));
+        zone.add(Values.pointValue(CoordinateReferenceSystem.Cartesian, 10, 0));
+        zone.add(Values.pointValue(CoordinateReferenceSystem.Cartesian, 10, 10));
+        zone.add(Values.pointValue(CoordinateReferenceSystem.Cartesian, 5, 2));
+        zone.add(Values.pointValue(CoordinateReferenceSystem.Cartesian, 0, 10));
+        zone.add(Values.pointValue(CoordinateReferenceSystem.Cartesian, 0, 0));
+        long misses = UserDefinedFunctions.preparedPolygons.getMisses();
+        long hits = UserDefinedFunctions.preparedPolygons.getHits();
+        testCall(db, "UNWIND range(0, 99) AS i WITH point({x: i / 10.0 + 0.05, y: 1.0}) AS p " +
+                "WHERE spatial.algo.withinPolygon(p, $zone) RETURN count(p) AS count", map("zone", zone), result -> {
+            assertThat(result.get("count"), equalTo(100L));
+        });
+        testCall(db, "UNWIND range(0, 99) AS i WITH point({x: i / 10.0 + 0.05, y: 3.0}) AS p " +
+                "WHERE spatial.algo.withinPolygon(p, $zone) RETURN count(p) AS count", map("zone", zone), result -> {
+            // The notch of the zone reaches down to y = 2 at x = 5, so the middle of the line is outside
+            assertThat((long) result.get("count"), lessThan(100L));
+        });
+        assertThat("Should prepare the zone once", UserDefinedFunctions.preparedPolygons.getMisses() - misses, equalTo(1L));
+        assertThat(UserDefinedFunctions.preparedPolygons.getHits() - hits, equalTo(199L));
+    }
+
+    @Test
+    public void shouldSimplifyPolygon() {
+        ArrayList<Point> points = new ArrayList<>();
+        points.add(Values.pointValue(CoordinateReferenceSystem.Cartesian, 0, 0));
+        points.add(Values.pointValue(CoordinateReferenceSystem.Cartesian, 5, 0.01));
+        points.add(Values.pointValue(CoordinateReferenceSystem.Cartesian, 10, 0));
+        points.add(Values.pointValue(CoordinateReferenceSystem.Cartesian, 10, 10));
+        points.add(Values.pointValue(CoordinateReferenceSystem.Cartesian, 0, 10));
+        testCall(db, "RETURN spatial.algo.simplify(spatial.polygon($points), 0.1) AS polygon, spatial.algo.simplify($points, 0.1) AS polyline", map("points", points), result -> {
+            List<Point> polygon = (List<Point>) result.get("polygon");
+            List<Point> polyline = (List<Point>) result.get("polyline");
+            assertThat("Should remove the almost collinear point from the polygon", polygon.size(), equalTo(5));
+            assertThat("Should be closed polygon", polygon.get(0), equalTo(polygon.get(polygon.size() - 1)));
+            assertThat("Should remove the almost collinear point from the polyline", polyline.size(), equalTo(4));
+        });
+    }
+
+    @Test
+    public void shouldCreateSimplifiedPolygonPropertyWithoutCuttingThroughHoles() {
+        long mainId;
+        try (Transaction tx = db.beginTx()) {
+            Node main = tx.createNode(Label.label("OSMRelation"));
+            main.setProperty("relation_osm_id", 1L);
+            mainId = main.getId();
+
+            // The top vertex of the shell is about 11km from the top edge, but the hole sticks out above that edge
+            Node shell = tx.createNode(Label.label("Polygon"));
+            shell.setProperty("polygon", new Point[]{
+                    Values.pointValue(CoordinateReferenceSystem.WGS84, 0, 0),
+                    Values.pointValue(CoordinateReferenceSystem.WGS84, 1, 0),
+                    Values.pointValue(CoordinateReferenceSystem.WGS84, 1, 1),
+                    Values.pointValue(CoordinateReferenceSystem.WGS84, 0.5, 1.1),
+                    Values.pointValue(CoordinateReferenceSystem.WGS84, 0, 1),
+                    Values.pointValue(CoordinateReferenceSystem.WGS84, 0, 0)
+            });
+            Node hole = tx.createNode(Label.label("Polygon"));
+            hole.setProperty("polygon", new Point[]{
+                    Values.pointValue(CoordinateReferenceSystem.WGS84, 0.4, 0.95),
+                    Values.pointValue(CoordinateReferenceSystem.WGS84, 0.6, 0.95),
+                    Values.pointValue(CoordinateReferenceSystem.WGS84, 0.5, 1.05),
+                    Values.pointValue(CoordinateReferenceSystem.WGS84, 0.4, 0.95)
+            });
+            main.createRelationshipTo(shell, Relation.POLYGON_STRUCTURE);
+            shell.createRelationshipTo(hole, Relation.POLYGON_STRUCTURE);
+            tx.commit();
+        }
+
+        testCallCount(db, "MATCH (m) WHERE id(m)=$mainId CALL spatial.osm.property.createSimplifiedPolygon(m, 20000) YIELD node_id, count RETURN node_id, count", map("mainId", mainId), 2);
+        testCall(db, "MATCH (m) WHERE id(m)=$mainId RETURN spatial.osm.property.polygonAsWKT(m, 'polygon_simplified') AS WKT", map("mainId", mainId), result -> {
+            assertThat(result.get("WKT"), equalTo("MULTIPOLYGON(((0.0 0.0,0.0 1.0,0.5 1.1,1.0 1.0,1.0 0.0,0.0 0.0), (0.4 0.95,0.6 0.95,0.5 1.05,0.4 0.95)))"));
+        });
+
+        testCall(db, "MATCH (:Polygon)-[:POLYGON_STRUCTURE]->(h:Polygon) DETACH DELETE h", map());
+        testCall(db, "MATCH (m) WHERE id(m)=$mainId CALL spatial.osm.property.createSimplifiedPolygon(m, 20000) YIELD count RETURN count", map("mainId", mainId), result -> {
+            assertThat("Without the hole the top vertex should be removed", result.get("count"), equalTo(5L));
+        });
+    }
+
+    @Test
+    public void shouldAnswerPredicatesUsingPolygonLevelsOfDetail() {
+        long mainId;
+        try (Transaction tx = db.beginTx()) {
+            Node main = tx.createNode(Label.label("OSMRelation"));
+            main.setProperty("relation_osm_id", 1L);
+            mainId = main.getId();
+
+            // A circle of radius 0.1 degrees with a slightly jagged boundary
+            Point[] points = new Point[360];
+            for (int i = 0; i < points.length; i++) {
+                double angle = Math.toRadians(i);
+                double radius = 0.1 * (1 + 0.001 * (i % 2));
+                points[i] = Values.pointValue(CoordinateReferenceSystem.WGS84, 10 + radius * Math.cos(angle), 50 + radius * Math.sin(angle));
+            }
+            createClosedWayOSM(tx, main, points);
+            tx.commit();
+        }
+
+        Map<String, Object> params = map("mainId", mainId);
+        testResult(db, "CALL spatial.osm.graph.createPolygon.nodeId($mainId)", params, Result::resultAsString);
+        testCallCount(db, "MATCH (m) WHERE id(m)=$mainId CALL spatial.osm.property.createPolygon(m, [10.0, 100.0, 1000.0]) YIELD node_id, count RETURN node_id, count", params, 1);
+        testCall(db, "MATCH (p:Polygon) RETURN size(p.polygon) AS full, size(p.polygon_lod3) AS coarse", map(), result -> {
+            assertThat(result.get("full"), equalTo(361L));
+            assertThat((Long) result.get("coarse"), lessThan(20L));
+        });
+
+        testCall(db, "MATCH (m) WHERE id(m)=$mainId RETURN spatial.osm.property.lod.within(m, point({longitude:10, latitude:50})) AS center, " +
+                "spatial.osm.property.lod.within(m, point({longitude:10.2, latitude:50})) AS outside", params, result -> {
+            assertThat(result.get("center"), equalTo(true));
+            assertThat(result.get("outside"), equalTo(false));
+        });
+        testCall(db, "MATCH (m) WHERE id(m)=$mainId RETURN spatial.osm.property.lod.withinDistance(m, point({longitude:10.2, latitude:50}), 5000) AS near, " +
+                "spatial.osm.property.lod.withinDistance(m, point({longitude:10.2, latitude:50}), 10000) AS far", params, result -> {
+            assertThat(result.get("near"), equalTo(false));
+            assertThat(result.get("far"), equalTo(true));
+        });
+        testCall(db, "MATCH (m) WHERE id(m)=$mainId RETURN spatial.osm.property.lod.intersects(m, [point({longitude:10.2, latitude:50}), point({longitude:10.3, latitude:50})]) AS outside, " +
+                "spatial.osm.property.lod.intersects(m, [point({longitude:10, latitude:50}), point({longitude:10.3, latitude:50})]) AS crossing", params, result -> {
+            assertThat(result.get("outside"), equalTo(false));
+            assertThat(result.get("crossing"), equalTo(true));
+        });
+
+        testCallCount(db, "MATCH (m) WHERE id(m)=$mainId CALL spatial.osm.property.createPolygon(m) YIELD node_id RETURN node_id", params, 1);
+        testCall(db, "MATCH (p:Polygon) RETURN p.polygon_lod1 AS lod", map(), result -> {
+            assertThat("Recreating without tolerances should remove old levels", result.get("lod"), nullValue());
+        });
+    }
+
+    @Test
+    public void shouldCreateAndConvertCompactPolygonProperties() {
+        long mainId;
+        try (Transaction tx = db.beginTx()) {
+            Node main = tx.createNode(Label.label("OSMRelation"));
+            main.setProperty("relation_osm_id", 1L);
+            mainId = main.getId();
+            createClosedWayOSM(tx, main, new Point[]{
+                    Values.pointValue(CoordinateReferenceSystem.WGS84, 12.5, 55.5),
+                    Values.pointValue(CoordinateReferenceSystem.WGS84, 12.6, 55.5),
+                    Values.pointValue(CoordinateReferenceSystem.WGS84, 12.6, 55.6),
+                    Values.pointValue(CoordinateReferenceSystem.WGS84, 12.5, 55.6)
+            });
+            tx.commit();
+        }
+
+        Map<String, Object> params = map("mainId", mainId);
+        String expected = "MULTIPOLYGON(((12.5 55.5,12.5 55.6,12.6 55.6,12.6 55.5,12.5 55.5)))";
+        testResult(db, "CALL spatial.osm.graph.createPolygon.nodeId($mainId)", params, Result::resultAsString);
+        testCallCount(db, "MATCH (m) WHERE id(m)=$mainId CALL spatial.osm.property.createPolygon(m, [1000.0], 'compact') YIELD node_id, count RETURN node_id, count", params, 1);
+        testCall(db, "MATCH (p:Polygon) RETURN p.polygon AS polygon, p.polygon_lod1 AS lod", map(), result -> {
+            assertThat(result.get("polygon"), instanceOf(byte[].class));
+            assertThat(result.get("lod"), instanceOf(byte[].class));
+        });
+        testCall(db, "MATCH (m) WHERE id(m)=$mainId RETURN spatial.osm.property.polygonAsWKT(m) AS WKT, spatial.osm.property.lod.within(m, point({longitude:12.55, latitude:55.55})) AS within", params, result -> {
+            assertThat(result.get("WKT"), equalTo(expected));
+            assertThat(result.get("within"), equalTo(true));
+        });
+
+        testCallCount(db, "MATCH (m) WHERE id(m)=$mainId CALL spatial.osm.property.convertFormat(m, 'points') YIELD node_id, property, count RETURN node_id, property, count", params, 2);
+        testCall(db, "MATCH (p:Polygon) RETURN p.polygon AS polygon", map(), result -> {
+            assertThat(result.get("polygon"), instanceOf(List.class));
+        });
+        testCall(db, "MATCH (m) WHERE id(m)=$mainId RETURN spatial.osm.property.polygonAsWKT(m) AS WKT", params, result -> {
+            assertThat(result.get("WKT"), equalTo(expected));
+        });
+        testCallCount(db, "MATCH (m) WHERE id(m)=$mainId CALL spatial.osm.property.convertFormat(m) YIELD node_id RETURN node_id", params, 2);
+        testCallCount(db, "MATCH (m) WHERE id(m)=$mainId CALL spatial.osm.property.convertFormat(m) YIELD node_id RETURN node_id", params, 0);
+    }
+
+    @Test
+    public void shouldCacheGeometriesUntilTheyChange() {
+        long mainId;
+        try (Transaction tx = db.beginTx()) {
+            Node main = tx.createNode(Label.label("OSMRelation"));
+            main.setProperty("relation_osm_id", 1L);
+            mainId = main.getId();
+            createClosedWayOSM(tx, main, new Point[]{
+                    Values.pointValue(CoordinateReferenceSystem.WGS84, 12.5, 55.5),
+                    Values.pointValue(CoordinateReferenceSystem.WGS84, 12.6, 55.5),
+                    Values.pointValue(CoordinateReferenceSystem.WGS84, 12.6, 55.6),
+                    Values.pointValue(CoordinateReferenceSystem.WGS84, 12.5, 55.6)
+            });
+            tx.commit();
+        }
+
+        Map<String, Object> params = map("mainId", mainId);
+        String original = "MULTIPOLYGON(((12.5 55.5,12.5 55.6,12.6 55.6,12.6 55.5,12.5 55.5)))";
+        String moved = "MULTIPOLYGON(((12.5 55.5,12.5 55.6,12.6 55.6,12.7 55.4,12.5 55.5)))";
+        testResult(db, "CALL spatial.osm.graph.createPolygon.nodeId($mainId)", params, Result::resultAsString);
+        testResult(db, "MATCH (m) WHERE id(m)=$mainId CALL spatial.osm.property.createPolygon(m) YIELD node_id RETURN node_id", params, Result::resultAsString);
+        testResult(db, "CALL spatial.cache.clear()", map(), Result::resultAsString);
+
+        for (int i = 0; i < 2; i++) {
+            testCall(db, "MATCH (m) WHERE id(m)=$mainId RETURN spatial.osm.property.polygonAsWKT(m) AS array, spatial.osm.graph.polygonAsWKT(m) AS graph", params, result -> {
+                assertThat(result.get("array"), equalTo(original));
+                assertThat(result.get("graph"), equalTo(original));
+            });
+        }
+        testCall(db, "CALL spatial.cache.stats()", map(), result -> {
+            assertThat(result.get("hits"), equalTo(2L));
+            assertThat(result.get("misses"), equalTo(2L));
+            assertThat(result.get("entries"), equalTo(2L));
+            assertThat(result.get("vertices"), equalTo(10L));
+        });
+
+        // Moving an OSM node changes the graph polygon, but not the stored array
+        testResult(db, "MATCH (n:OSMNode) WHERE n.location = point({longitude:12.6, latitude:55.5}) SET n.location = point({longitude:12.7, latitude:55.4})", map(), Result::resultAsString);
+        testCall(db, "MATCH (m) WHERE id(m)=$mainId RETURN spatial.osm.property.polygonAsWKT(m) AS array, spatial.osm.graph.polygonAsWKT(m) AS graph", params, result -> {
+            assertThat(result.get("array"), equalTo(original));
+            assertThat(result.get("graph"), equalTo(moved));
+        });
+
+        // Writing the property to the OSM relation also drops the graph polygon, since OSM data changed
+        testResult(db, "MATCH (m) WHERE id(m)=$mainId CALL spatial.osm.property.createPolygon(m) YIELD node_id RETURN node_id", params, Result::resultAsString);
+        testCall(db, "MATCH (m) WHERE id(m)=$mainId RETURN spatial.osm.property.polygonAsWKT(m) AS array", params, result -> {
+            assertThat(result.get("array"), equalTo(moved));
+        });
+        testCall(db, "CALL spatial.cache.stats()", map(), result -> {
+            assertThat(result.get("hits"), equalTo(3L));
+            assertThat(result.get("misses"), equalTo(4L));
+            assertThat(result.get("invalidations"), equalTo(3L));
+        });
+    }
+
+    @Test
+    public void shouldNotCacheUncommittedGeometries() {
+        long mainId;
+        try (Transaction tx = db.beginTx()) {
+            Node main = tx.createNode(Label.label("OSMRelation"));
+            main.setProperty("relation_osm_id", 1L);
+            mainId = main.getId();
+            createClosedWayOSM(tx, main, new Point[]{
+                    Values.pointValue(CoordinateReferenceSystem.WGS84, 12.5, 55.5),
+                    Values.pointValue(CoordinateReferenceSystem.WGS84, 12.6, 55.5),
+                    Values.pointValue(CoordinateReferenceSystem.WGS84, 12.6, 55.6),
+                    Values.pointValue(CoordinateReferenceSystem.WGS84, 12.5, 55.6)
+            });
+            tx.commit();
+        }
+
+        Map<String, Object> params = map("mainId", mainId);
+        String original = "MULTIPOLYGON(((12.5 55.5,12.5 55.6,12.6 55.6,12.6 55.5,12.5 55.5)))";
+        String moved = "MULTIPOLYGON(((12.5 55.5,12.5 55.6,12.6 55.6,12.7 55.4,12.5 55.5)))";
+        testResult(db, "CALL spatial.osm.graph.createPolygon.nodeId($mainId)", params, Result::resultAsString);
+        testResult(db, "MATCH (m) WHERE id(m)=$mainId CALL spatial.osm.property.createPolygon(m) YIELD node_id RETURN node_id", params, Result::resultAsString);
+        testResult(db, "CALL spatial.cache.clear()", map(), Result::resultAsString);
+
+        try (Transaction tx = db.beginTx()) {
+            tx.execute("MATCH (n:OSMNode) WHERE n.location = point({longitude:12.6, latitude:55.5}) SET n.location = point({longitude:12.7, latitude:55.4})").close();
+            tx.execute("MATCH (m) WHERE id(m)=$mainId CALL spatial.osm.property.createPolygon(m) YIELD node_id RETURN node_id", params).close();
+            Map<String, Object> row = tx.execute("MATCH (m) WHERE id(m)=$mainId RETURN spatial.osm.property.polygonAsWKT(m) AS array, spatial.osm.graph.polygonAsWKT(m) AS graph", params).next();
+            assertThat(row.get("array"), equalTo(moved));
+            assertThat(row.get("graph"), equalTo(moved));
+            tx.rollback();
+        }
+
+        testCall(db, "MATCH (m) WHERE id(m)=$mainId RETURN spatial.osm.property.polygonAsWKT(m) AS array, spatial.osm.graph.polygonAsWKT(m) AS graph", params, result -> {
+            assertThat(result.get("array"), equalTo(original));
+            assertThat(result.get("graph"), equalTo(original));
+        });
+        testCall(db, "CALL spatial.cache.stats()", map(), result -> {
+            assertThat(result.get("hits"), equalTo(0L));
+            assertThat(result.get("misses"), equalTo(2L));
+            assertThat(result.get("entries"), equalTo(2L));
+        });
+    }
+
+    @Test
+    public void shouldLocateDistancesAlongPolylineProperty() {
+        long polylineId;
+        try (Transaction tx = db.beginTx()) {
+            Node polyline = tx.createNode(Label.label("Polyline"));
+            polyline.setProperty("polyline", new Point[]{
+                    Values.pointValue(CoordinateReferenceSystem.WGS84, 0, 0),
+                    Values.pointValue(CoordinateReferenceSystem.WGS84, 1, 0),
+                    Values.pointValue(CoordinateReferenceSystem.WGS84, 1, 1)
+            });
+            polylineId = polyline.getId();
+            tx.commit();
+        }
+
+        Map<String, Object> params = map("polylineId", polylineId, "distances", Arrays.asList(1.5 * oneDegreeDistance, -1.0, 0.5 * oneDegreeDistance, 3 * oneDegreeDistance));
+        for (int i = 0; i < 2; i++) {
+            testCall(db, "MATCH (p) WHERE id(p)=$polylineId RETURN spatial.osm.property.polyline.locate(p, $distances[0]) AS point, spatial.osm.property.polyline.locateAll(p, $distances) AS points", params, result -> {
+                Point point = (Point) result.get("point");
+                assertThat(point.getCoordinate().getCoordinate().get(0), closeTo(1, 0.01));
+                assertThat(point.getCoordinate().getCoordinate().get(1), closeTo(0.5, 0.01));
+                List<Point> points = (List<Point>) result.get("points");
+                assertThat(points.size(), equalTo(4));
+                assertThat(points.get(0), equalTo(point));
+                assertThat(points.get(1), equalTo(null));
+                assertThat(points.get(2).getCoordinate().getCoordinate().get(0), closeTo(0.5, 0.01));
+                assertThat(points.get(3), equalTo(null));
+            });
+            // The second round uses stored lengths, which must give the same answers
+            try (Transaction tx = db.beginTx()) {
+                UserDefinedFunctions.writeArrayPolylineLengths(tx.getNodeById(polylineId));
+                tx.commit();
+            }
+        }
+
+        // Moving a point without changing the number of points must not use the stale lengths
+        testResult(db, "MATCH (p) WHERE id(p)=$polylineId SET p.polyline = [point({longitude:0, latitude:0}), point({longitude:2, latitude:0}), point({longitude:2, latitude:1})]", params, Result::resultAsString);
+        testCall(db, "MATCH (p) WHERE id(p)=$polylineId RETURN spatial.osm.property.polyline.locate(p, $distances[0]) AS point", params, result -> {
+            Point point = (Point) result.get("point");
+            assertThat(point.getCoordinate().getCoordinate().get(0), closeTo(1.5, 0.01));
+            assertThat(point.getCoordinate().getCoordinate().get(1), closeTo(0, 0.01));
+        });
+    }
+
+    @Test
+    public void shouldJoinShuffledWayFragmentsIntoRings() {
+        try (Transaction tx = db.beginTx()) {
+            Node main = tx.createNode(Label.label("OSMRelation"));
+            main.setProperty("relation_osm_id", 1L);
+            createRingFragmentsOSM(tx, main, 10, 0);
+
+            Pair<List<long[]>, List<long[]>> geometries = OSMTraverser.traverseOSMGraph(UserDefinedFunctions.kernelTransaction(tx), main.getId(), 0);
+            assertThat(geometries.first().size(), equalTo(3));
+            assertThat(geometries.other().size(), equalTo(0));
+            for (long[] polygon : geometries.first()) {
+                // 10 fragments of 5 way nodes, with the end nodes of neighbouring fragments at the same location
+                assertThat(polygon.length, equalTo(50));
+            }
+            tx.commit();
+        }
+    }
+
+    @Test
+    public void shouldJoinShuffledWayFragmentsWithGapsIntoRings() {
+        try (Transaction tx = db.beginTx()) {
+            Node main = tx.createNode(Label.label("OSMRelation"));
+            main.setProperty("relation_osm_id", 1L);
+            // Gaps of about 55m between the halves of every ring
+            createRingFragmentsOSM(tx, main, 2, 0.0005);
+
+            Pair<List<long[]>, List<long[]>> geometries = OSMTraverser.traverseOSMGraph(UserDefinedFunctions.kernelTransaction(tx), main.getId(), 10);
+            assertThat(geometries.first().size(), equalTo(0));
+            assertThat(geometries.other().size(), equalTo(6));
+
+            geometries = OSMTraverser.traverseOSMGraph(UserDefinedFunctions.kernelTransaction(tx), main.getId(), 250);
+            assertThat(geometries.first().size(), equalTo(3));
+            assertThat(geometries.other().size(), equalTo(0));
+            for (long[] polygon : geometries.first()) {
+                assertThat(polygon.length, equalTo(42));
+            }
+            tx.commit();
+        }
+    }
+
+    @Test
+    public void shouldAggregateGraphPolygonInOnePass() {
+        long mainId;
+        try (Transaction tx = db.beginTx()) {
+            Node main = tx.createNode(Label.label("OSMRelation"));
+            main.setProperty("relation_osm_id", 1L);
+            mainId = main.getId();
+            createClosedWayOSM(tx, main, new Point[]{
+                    Values.pointValue(CoordinateReferenceSystem.WGS84, 12.5, 55.5),
+                    Values.pointValue(CoordinateReferenceSystem.WGS84, 12.6, 55.5),
+                    Values.pointValue(CoordinateReferenceSystem.WGS84, 12.55, 55.55),
+                    Values.pointValue(CoordinateReferenceSystem.WGS84, 12.6, 55.6),
+                    Values.pointValue(CoordinateReferenceSystem.WGS84, 12.5, 55.6)
+            });
+            tx.commit();
+        }
+
+        Map<String, Object> params = map("mainId", mainId);
+        testResult(db, "CALL spatial.osm.graph.createPolygon.nodeId($mainId)", params, Result::resultAsString);
+        double expectedArea;
+        try (Transaction tx = db.beginTx()) {
+            MultiPolygon polygon = UserDefinedFunctions.getGraphNodePolygon(tx.getNodeById(mainId));
+            expectedArea = AreaCalculator.getCalculator(polygon).area(polygon);
+        }
+        testCall(db, "MATCH (m) WHERE id(m)=$mainId CALL spatial.osm.graph.polygonAggregates(m) YIELD area, length, vertices, min, max, centroid, convex_hull " +
+                "RETURN area, length, vertices, min, max, centroid, convex_hull, spatial.algo.graph.convexHull(m) AS expectedHull", params, result -> {
+            assertThat((double) result.get("area"), closeTo(expectedArea, expectedArea * 1e-6));
+            assertThat(result.get("vertices"), equalTo(5L));
+            assertThat(result.get("min"), equalTo(Values.pointValue(CoordinateReferenceSystem.WGS84, 12.5, 55.5)));
+            assertThat(result.get("max"), equalTo(Values.pointValue(CoordinateReferenceSystem.WGS84, 12.6, 55.6)));
+            assertThat(((Point) result.get("centroid")).getCoordinate().getCoordinate().get(0), lessThan(12.55));
+            assertThat(new HashSet<>((List<?>) result.get("convex_hull")), equalTo(new HashSet<>((List<?>) result.get("expectedHull"))));
+        });
+    }
+
+    @Test
+    public void shouldStoreGeometryAttributesAndKeepThemOnRebuild() {
+        long mainId;
+        try (Transaction tx = db.beginTx()) {
+            Node main = tx.createNode(Label.label("OSMRelation"));
+            main.setProperty("relation_osm_id", 1L);
+            mainId = main.getId();
+            createClosedWayOSM(tx, main, new Point[]{
+                    Values.pointValue(CoordinateReferenceSystem.WGS84, 12.5, 55.5),
+                    Values.pointValue(CoordinateReferenceSystem.WGS84, 12.6, 55.5),
+                    Values.pointValue(CoordinateReferenceSystem.WGS84, 12.6, 55.6),
+                    Values.pointValue(CoordinateReferenceSystem.WGS84, 12.5, 55.6)
+            });
+            tx.commit();
+        }
+
+        Map<String, Object> params = map("mainId", mainId);
+        testResult(db, "CALL spatial.osm.graph.createPolygon.nodeId($mainId)", params, Result::resultAsString);
+        testCallCount(db, "MATCH (m) WHERE id(m)=$mainId CALL spatial.osm.graph.createAttributes(m) YIELD node_id, area, length, vertices RETURN node_id, area, length, vertices", params, 2);
+
+        String query = "MATCH (m)-[:POLYGON_STRUCTURE]->(p:Polygon) WHERE id(m)=$mainId " +
+                "AND p.envelope_min <= point({longitude: 12.55, latitude: 55.55}) AND p.envelope_max >= point({longitude: 12.55, latitude: 55.55}) " +
+                "RETURN p.area AS area, p.length AS length, p.vertices AS vertices, p.centroid AS centroid, m.area AS total";
+        Consumer<Map<String, Object>> attributes = result -> {
+            assertThat((double) result.get("area"), closeTo(7.0e7, 0.1e7));
+            assertThat((double) result.get("length"), closeTo(34.8e3, 0.1e3));
+            assertThat(result.get("vertices"), equalTo(4L));
+            assertThat(((Point) result.get("centroid")).getCoordinate().getCoordinate().get(0), closeTo(12.55, 1e-6));
+            assertThat(result.get("total"), equalTo(result.get("area")));
+        };
+        testCall(db, query, params, attributes);
+
+        testResult(db, "CALL spatial.osm.graph.createPolygon.nodeId($mainId)", params, Result::resultAsString);
+        testCall(db, query, params, attributes);
+    }
+
+    @Test
+    public void shouldFindPolygonsThroughStoredCovering() {
+        long mainId = createCoveredSquare();
+        Map<String, Object> params = map("mainId", mainId);
+
+        String query = "MATCH (c:CoveringCell)-[covers:COVERS]->(m) WHERE c.cell IN spatial.covering.cells($point) " +
+                "RETURN id(m) AS id, covers.interior AS interior, spatial.osm.graph.covering.within(m, $point) AS within";
+        Consumer<Map<String, Object>> inside = result -> {
+            assertThat(result.get("id"), equalTo(mainId));
+            assertThat(result.get("interior"), equalTo(true));
+            assertThat(result.get("within"), equalTo(true));
+        };
+        Map<String, Object> center = map("mainId", mainId, "point", Values.pointValue(CoordinateReferenceSystem.WGS84, 12.55, 55.55));
+        testCall(db, query, center, inside);
+        testCallCount(db, query, map("point", Values.pointValue(CoordinateReferenceSystem.WGS84, 12.7, 55.55)), 0);
+        testCall(db, "MATCH (m) WHERE id(m)=$mainId RETURN spatial.osm.graph.covering.within(m, point({longitude: 12.6001, latitude: 55.55})) AS within", params,
+                result -> assertThat(result.get("within"), equalTo(false)));
+
+        long cells = count(db, "MATCH (c:CoveringCell) RETURN count(c) AS count");
+        testResult(db, "CALL spatial.osm.graph.createPolygon.nodeId($mainId)", params, Result::resultAsString);
+        testCall(db, query, center, inside);
+        assertThat("Rebuilding should replace the cells", count(db, "MATCH (c:CoveringCell) RETURN count(c) AS count"), equalTo(cells));
+    }
+
+    @Test
+    public void shouldCreateCoveringWithUniqueCells() {
+        db.executeTransactionally("CREATE CONSTRAINT covering_cell IF NOT EXISTS FOR (c:CoveringCell) REQUIRE c.cell IS UNIQUE");
+        long mainId = createCoveredSquare();
+        long cells = count(db, "MATCH (c:CoveringCell) RETURN count(c) AS count");
+        testCall(db, "MATCH (m) WHERE id(m)=$mainId CALL spatial.osm.graph.createCovering(m) YIELD interior RETURN interior", map("mainId", mainId),
+                result -> assertThat((long) result.get("interior"), greaterThan(0L)));
+        assertThat(count(db, "MATCH (c:CoveringCell) RETURN count(c) AS count"), equalTo(cells));
+    }
+
+    @Test
+    public void shouldReuseDuplicateCoveringCells() {
+        long mainId = createCoveredSquare();
+        // Without the unique constraint, concurrent coverings can leave several nodes for the same cell, and they remain
+        // when the covering is replaced
+        db.executeTransactionally("MATCH (c:CoveringCell) WITH c LIMIT 1 CREATE (:CoveringCell {cell: c.cell}), (:CoveringCell {cell: c.cell})");
+        long cells = count(db, "MATCH (c:CoveringCell) RETURN count(c) AS count");
+        testCall(db, "MATCH (m) WHERE id(m)=$mainId CALL spatial.osm.graph.createCovering(m) YIELD interior RETURN interior", map("mainId", mainId),
+                result -> assertThat((long) result.get("interior"), greaterThan(0L)));
+        assertThat(count(db, "MATCH (c:CoveringCell) RETURN count(c) AS count"), lessThanOrEqualTo(cells));
+    }
+
+    private long createCoveredSquare() {
+        long mainId;
+        try (Transaction tx = db.beginTx()) {
+            Node main = tx.createNode(Label.label("OSMRelation"));
+            main.setProperty("relation_osm_id", 1L);
+            mainId = main.getId();
+            createClosedWayOSM(tx, main, new Point[]{
+                    Values.pointValue(CoordinateReferenceSystem.WGS84, 12.5, 55.5),
+                    Values.pointValue(CoordinateReferenceSystem.WGS84, 12.6, 55.5),
+                    Values.pointValue(CoordinateReferenceSystem.WGS84, 12.6, 55.6),
+                    Values.pointValue(CoordinateReferenceSystem.WGS84, 12.5, 55.6)
+            });
+            tx.commit();
+        }
+
+        Map<String, Object> params = map("mainId", mainId);
+        testResult(db, "CALL spatial.osm.graph.createPolygon.nodeId($mainId)", params, Result::resultAsString);
+        testCall(db, "MATCH (m) WHERE id(m)=$mainId CALL spatial.osm.graph.createCovering(m) YIELD interior, boundary RETURN interior, boundary", params, result -> {
+            assertThat((long) result.get("interior"), greaterThan(0L));
+            assertThat((long) result.get("interior") + (long) result.get("boundary"), lessThanOrEqualTo(256L));
+        });
+        return mainId;
+    }
+
+    private static long count(GraphDatabaseService db, String query) {
+        try (Transaction tx = db.beginTx()) {
+            return count(tx, query);
+        }
+    }
+
+    @Test
+    public void shouldStreamPolygonPropertiesWhileTheyAreWritten() {
+        long mainId;
+        try (Transaction tx = db.beginTx()) {
+            Node main = tx.createNode(Label.label("OSMRelation"));
+            main.setProperty("relation_osm_id", 1L);
+            mainId = main.getId();
+            createRingFragmentsOSM(tx, main, 5, 0);
+            tx.commit();
+        }
+        testResult(db, "CALL spatial.osm.graph.createPolygon.nodeId($mainId)", map("mainId", mainId), Result::resultAsString);
+
+        try (Transaction tx = db.beginTx()) {
+            UserDefinedFunctions functions = new UserDefinedFunctions();
+            functions.tx = tx;
+            functions.db = db;
+            Node main = tx.getNodeById(mainId);
+            try (Stream<UserDefinedFunctions.PointArraySizeResult> rows = functions.createArrayCache(main, Collections.singletonList(100.0), "points")) {
+                Iterator<UserDefinedFunctions.PointArraySizeResult> iterator = rows.iterator();
+                assertThat(iterator.next().count, equalTo(41L));
+                assertThat("Rows should be written as they are consumed", count(tx, "MATCH (p:Polygon) WHERE p.polygon IS NOT NULL RETURN count(p) AS count"), equalTo(1L));
+                assertThat("Levels should only be written after the last row", main.hasProperty(Neo4jArrayToInMemoryConverter.POLYGON_LOD_TOLERANCES_PROPERTY), equalTo(false));
+                iterator.forEachRemaining(row -> assertThat(row.count, equalTo(41L)));
+            }
+            assertThat(count(tx, "MATCH (p:Polygon) WHERE p.polygon_lod1 IS NOT NULL RETURN count(p) AS count"), equalTo(3L));
+            assertThat(main.hasProperty(Neo4jArrayToInMemoryConverter.POLYGON_LOD_TOLERANCES_PROPERTY), equalTo(true));
+            tx.commit();
+        }
+
+        // A rewrite that stops early must not leave the levels of the old polygons behind
+        try (Transaction tx = db.beginTx()) {
+            UserDefinedFunctions functions = new UserDefinedFunctions();
+            functions.tx = tx;
+            functions.db = db;
+            Node main = tx.getNodeById(mainId);
+            try (Stream<UserDefinedFunctions.PointArraySizeResult> rows = functions.createArrayCache(main, Collections.singletonList(100.0), "points")) {
+                assertThat(rows.iterator().next().count, equalTo(41L));
+            }
+            assertThat(count(tx, "MATCH (p:Polygon) WHERE p.polygon_lod1 IS NOT NULL RETURN count(p) AS count"), equalTo(0L));
+            assertThat(main.hasProperty(Neo4jArrayToInMemoryConverter.POLYGON_LOD_TOLERANCES_PROPERTY), equalTo(false));
+            tx.commit();
+        }
+    }
+
+    private static long count(Transaction tx, String query) {
+        try (Result result = tx.execute(query)) {
+            return (long) result.next().get("count");
+        }
+    }
+
+    @Test
+    public void shouldCreateAllOSMGraphGeometriesInBatches() {
+        try (Transaction tx = db.beginTx()) {
+            for (long id = 1; id <= 3; id++) {
+                Node main = tx.createNode(Label.label("OSMRelation"));
+                main.setProperty("relation_osm_id", id);
+                createRingFragmentsOSM(tx, main, 5, 0);
+            }
+            tx.commit();
+        }
+
+        String query = "CALL spatial.osm.graph.createAllPolygons([1, 2], {batchSize: 1, threads: 2, properties: true}) YIELD batch, relations, polygons, polylines, failed, done, total RETURN batch, relations, polygons, polylines, failed, done, total";
+        testResult(db, query, result -> {
+            for (long batch = 1; batch <= 2; batch++) {
+                Map<String, Object> row = result.next();
+                assertThat(row.get("batch"), equalTo(batch));
+                assertThat(row.get("relations"), equalTo(1L));
+                assertThat(row.get("polygons"), equalTo(3L));
+                assertThat(row.get("polylines"), equalTo(0L));
+                assertThat(row.get("failed"), equalTo(0L));
+                assertThat(row.get("done"), equalTo(batch));
+                assertThat(row.get("total"), equalTo(2L));
+            }
+            assertThat(result.hasNext(), equalTo(false));
+        });
+
+        String structures = "MATCH (m:OSMRelation) OPTIONAL MATCH (m)-[:POLYGON_STRUCTURE*]->(p:Polygon) RETURN m.relation_osm_id AS id, count(p) AS polygons, count(p.polygon) AS properties ORDER BY id";
+        testResult(db, structures, result -> {
+            for (long id = 1; id <= 3; id++) {
+                Map<String, Object> row = result.next();
+                assertThat(row.get("id"), equalTo(id));
+                assertThat(row.get("polygons"), equalTo(id < 3 ? 3L : 0L));
+                assertThat(row.get("properties"), equalTo(id < 3 ? 3L : 0L));
+            }
+        });
+    }
+
+    @Test
+    public void shouldResumeOSMGraphGeometryJob() {
+        try (Transaction tx = db.beginTx()) {
+            for (long id = 1; id <= 3; id++) {
+                Node main = tx.createNode(Label.label("OSMRelation"));
+                main.setProperty("relation_osm_id", id);
+                createRingFragmentsOSM(tx, main, 5, 0);
+            }
+            tx.commit();
+        }
+
+        // The first run is interrupted after building relation 1
+        String query = "CALL spatial.osm.graph.createAllPolygons($ids, $options) YIELD relations, skipped, total RETURN sum(relations) AS relations, max(skipped) AS skipped, max(total) AS total";
+        testCall(db, query, map("ids", List.of(1L), "options", map("job", "all", "batchSize", 2)), result -> {
+            assertThat(result.get("relations"), equalTo(1L));
+            assertThat(result.get("skipped"), equalTo(0L));
+        });
+        testCall(db, query, map("ids", List.of(), "options", map("job", "all", "batchSize", 2)), result -> {
+            assertThat(result.get("relations"), equalTo(2L));
+            assertThat(result.get("skipped"), equalTo(1L));
+            assertThat(result.get("total"), equalTo(2L));
+        });
+        testCall(db, query, map("ids", List.of(), "options", map("job", "all", "batchSize", 2)), result -> {
+            assertThat(result.get("relations"), equalTo(0L));
+        });
+        testCallFails(db, query, map("ids", List.of(), "options", map("job", "all", "properties", true)), "Job 'all' was started with");
+        // A restart that is interrupted does not count the relations built by the earlier runs when it is resumed
+        testCall(db, query, map("ids", List.of(1L), "options", map("job", "all", "properties", true, "restart", true)), result -> {
+            assertThat(result.get("relations"), equalTo(1L));
+            assertThat(result.get("skipped"), equalTo(0L));
+        });
+        testCall(db, query, map("ids", List.of(), "options", map("job", "all", "properties", true)), result -> {
+            assertThat(result.get("relations"), equalTo(2L));
+            assertThat(result.get("skipped"), equalTo(1L));
+        });
+
+        String built = "MATCH (j:GeometryJob {name: 'all'}) MATCH (m:OSMRelation {geometry_job: 'all'})-[:POLYGON_STRUCTURE*]->(p:Polygon) WHERE p.polygon IS NOT NULL RETURN j.built AS built, count(DISTINCT m) AS relations, count(p) AS polygons";
+        testCall(db, built, result -> {
+            assertThat(result.get("built"), equalTo(3L));
+            assertThat(result.get("relations"), equalTo(3L));
+            assertThat(result.get("polygons"), equalTo(9L));
+        });
+    }
+
+    /**
+     * Create 3 rings of 40 nodes, split into overlapping ways, which are shuffled and partly reversed
+     *
+     * @param ways the number of ways every ring is split into
+     * @param gap  if not 0, the last node of every way is a copy of the first node of the next way, moved this many degrees east
+     */
+    private static void createRingFragmentsOSM(Transaction tx, Node main, int ways, double gap) {
+        List<Node[]> fragments = new ArrayList<>();
+        for (int ring = 0; ring < 3; ring++) {
+            Node[] nodes = new Node[40];
+            for (int i = 0; i < nodes.length; i++) {
+                double angle = 2 * Math.PI * i / nodes.length;
+                nodes[i] = tx.createNode(Label.label("OSMNode"));
+                nodes[i].setProperty("location", Values.pointValue(CoordinateReferenceSystem.WGS84, 10 * ring + Math.cos(angle), Math.sin(angle)));
+            }
+            for (int i = 0; i < nodes.length; i += nodes.length / ways) {
+                Node[] fragment = new Node[nodes.length / ways + 1];
+                for (int j = 0; j < fragment.length; j++) {
+                    fragment[j] = nodes[(i + j) % nodes.length];
+                }
+                if (gap != 0) {
+                    int last = fragment.length - 1;
+                    double[] end = ((Point) fragment[last].getProperty("location")).getCoordinate().getCoordinate().stream().mapToDouble(d -> d).toArray();
+                    fragment[last] = tx.createNode(Label.label("OSMNode"));
+                    fragment[last].setProperty("location", Values.pointValue(CoordinateReferenceSystem.WGS84, end[0] + gap, end[1]));
+                }
+                fragments.add(fragment);
+            }
+        }
+        Collections.shuffle(fragments, new Random(0));
+        for (int i = 0; i < fragments.size(); i++) {
+            Node[] fragment = fragments.get(i);
+            if (i % 3 == 0) {
+                Collections.reverse(Arrays.asList(fragment));
+            }
+            Node way = tx.createNode(Label.label("OSMWay"));
+            main.createRelationshipTo(way, Relation.MEMBER);
+            Node previous = null;
+            for (Node node : fragment) {
+                Node wayNode = tx.createNode(Label.label("OSMWayNode"));
+                wayNode.createRelationshipTo(node, Relation.NODE);
+                if (previous == null) {
+                    way.createRelationshipTo(wayNode, Relation.FIRST_NODE);
+                } else {
+                    previous.createRelationshipTo(wayNode, Relation.NEXT);
+                }
+                previous = wayNode;
+            }
+        }
+    }
+
+    private static void createClosedWayOSM(Transaction tx, Node main, Point[] points) {
+        Node way = tx.createNode(Label.label("OSMWay"));
+        main.createRelationshipTo(way, Relation.MEMBER);
+
+        Node[] nodes = new Node[points.length];
+        for (int i = 0; i < points.length; i++) {
+            nodes[i] = tx.createNode(Label.label("OSMNode"));
+            nodes[i].setProperty("location", points[i]);
+        }
+
+        Node previous = null;
+        for (int i = 0; i <= points.length; i++) {
+            Node wayNode = tx.createNode(Label.label("OSMWayNode"));
+            wayNode.createRelationshipTo(nodes[i % points.length], Relation.NODE);
+            if (previous == null) {
+                way.createRelationshipTo(wayNode, Relation.FIRST_NODE);
+            } else {
+                previous.createRelationshipTo(wayNode, Relation.NEXT);
+            }
+            previous = wayNode;
+        }
+    }
+
     private static final double circumference = 40000000;
     private static final double oneDegreeDistance = circumference / 360.0;
     private static final double oneByOneDiagonal = Math.sqrt(2 * oneDegreeDistance * oneDegreeDistance);
@@ -780,5 +1614,6 @@ public class UserDefinedFunctionsTest {
         GlobalProcedures procedures = ((GraphDatabaseAPI) db).getDependencyResolver().resolveDependency(GlobalProcedures.class);
         procedures.registerProcedure(udfClass);
         procedures.registerFunction(udfClass);
+        procedures.registerAggregationFunction(udfClass);
     }
 }